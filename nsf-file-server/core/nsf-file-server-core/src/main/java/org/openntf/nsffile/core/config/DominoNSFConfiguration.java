@@ -15,18 +15,19 @@
  */
 package org.openntf.nsffile.core.config;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.file.FileSystem;
 import java.text.MessageFormat;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import com.hcl.domino.DominoClient;
 import com.hcl.domino.data.CollectionEntry;
@@ -44,6 +45,7 @@ import com.ibm.commons.util.io.json.JsonParser;
 import org.openntf.nsffile.core.fs.CompositeFileSystem;
 import org.openntf.nsffile.core.fs.CompositeFileSystemProvider;
 import org.openntf.nsffile.core.spi.FileSystemMountProvider;
+import org.openntf.nsffile.core.util.DatabaseChangePoller;
 import org.openntf.nsffile.core.util.NSFFileUtil;
 import org.openntf.nsffile.core.util.NotesThreadFactory;
 
@@ -59,6 +61,14 @@ public enum DominoNSFConfiguration {
 	public static final String ENV_DBPATH = "SFTPConfigPath"; //$NON-NLS-1$
 	public static final String DEFAULT_DBPATH = "fileserverconfig.nsf"; //$NON-NLS-1$
 	public static final int DEFAULT_PORT = 9022;
+	/** @since 2.3.0 */
+	public static final int DEFAULT_MAX_SESSIONS = 256;
+	/** @since 2.3.0 */
+	public static final int DEFAULT_MAX_SESSIONS_PER_ADDRESS = 64;
+	/** @since 2.3.0 */
+	public static final int DEFAULT_MAX_SESSIONS_PER_USER = 32;
+	/** @since 2.3.0 */
+	public static final int DEFAULT_ACCEPT_BACKLOG = 16;
 	public static final String VIEW_MOUNTS = "Mounts"; //$NON-NLS-1$
 	public static final int COL_INDEX_PATH = 0;
 	public static final int COL_INDEX_TYPE = 1;
@@ -73,6 +83,28 @@ public enum DominoNSFConfiguration {
 	public static final String ITEM_ENABLED = "SSHEnabled"; //$NON-NLS-1$
 	public static final String ITEM_PORT = "SSHPort"; //$NON-NLS-1$
 	public static final String ITEM_PASSWORDAUTH = "SSHAllowPasswordAuth"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	public static final String ITEM_MAXSESSIONS = "SSHMaxSessions"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	public static final String ITEM_MAXSESSIONSPERADDRESS = "SSHMaxSessionsPerAddress"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	public static final String ITEM_MAXSESSIONSPERUSER = "SSHMaxSessionsPerUser"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	public static final String ITEM_ACCEPTBACKLOG = "SSHAcceptBacklog"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	public static final String ITEM_MAXTHREADS = "NotesMaxThreads"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	public static final String ITEM_MAXQUEUED = "NotesMaxQueued"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	public static final String ITEM_QUEUETIMEOUT = "NotesQueueTimeout"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	public static final String ITEM_CONTENTMAXTHREADS = "NotesContentMaxThreads"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	public static final String ITEM_CONTENTMAXQUEUED = "NotesContentMaxQueued"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	public static final String ITEM_THROTTLELIMITS = "ThrottleLimits"; //$NON-NLS-1$
+	/** The key in {@link #ITEM_THROTTLELIMITS} for the limit applied to users with no other match */
+	public static final String THROTTLE_DEFAULT = "*"; //$NON-NLS-1$
 	
 	public static final String VIEW_SSHKEYPAIRS = "ServerSSHKeyPairs"; //$NON-NLS-1$
 	public static final String FORM_SSHKEYPAIR = "ServerSSHKeyPair"; //$NON-NLS-1$
@@ -80,6 +112,10 @@ public enum DominoNSFConfiguration {
 	public static final String ITEM_PRIVATEKEY = "PrivateKey"; //$NON-NLS-1$
 
 	private String nsfPath;
+	private volatile Snapshot snapshot;
+	private volatile MountTable mountTable;
+	/** Maps user names to filesystems that may be shared by their sessions */
+	private final Map<String, SharedFileSystem> sharedFileSystems = new ConcurrentHashMap<>();
 	
 	public String getConfigNsfPath() {
 		if(this.nsfPath == null) {
@@ -94,34 +130,364 @@ public enum DominoNSFConfiguration {
 		return nsfPath;
 	}
 	
+	/**
+	 * Retrieves the current settings for this server, re-reading them from the
+	 * configuration NSF only if it has changed.
+	 * 
+	 * @return an immutable {@link ServerConfiguration} snapshot
+	 * @since 2.3.0
+	 */
+	public ServerConfiguration getSnapshot() {
+		long modTime = DatabaseChangePoller.instance.getModifiedTime(getConfigNsfPath(), DatabaseChangePoller.DEFAULT_INTERVAL);
+		Snapshot snapshot = this.snapshot;
+		if(snapshot != null && snapshot.modTime == modTime) {
+			return snapshot.config;
+		}
+		synchronized(this) {
+			snapshot = this.snapshot;
+			if(snapshot != null && snapshot.modTime == modTime) {
+				return snapshot.config;
+			}
+			ServerConfiguration config = readConfiguration();
+			this.snapshot = new Snapshot(modTime, config);
+			if(log.isLoggable(Level.INFO)) {
+				log.info(MessageFormat.format("Read server configuration: {0}", config));
+			}
+			return config;
+		}
+	}
+	
+	/**
+	 * Discards the cached server settings and mount table, re-reading them from the
+	 * configuration NSF. Open sessions keep the filesystems they already have, while
+	 * new sessions use the new mounts.
+	 * 
+	 * @return the newly-read {@link ServerConfiguration}
+	 * @since 2.3.0
+	 */
+	public synchronized ServerConfiguration reload() {
+		this.snapshot = null;
+		this.mountTable = null;
+		getMounts();
+		return getSnapshot();
+	}
+	
 	public boolean isEnabled() {
-		return NotesThreadFactory.call(client -> {
-			return getServerDoc(client)
-				.map(doc -> !"N".equals(doc.getAsText(ITEM_ENABLED, ' '))) //$NON-NLS-1$
-				.orElse(true);
-		});
+		return getSnapshot().isEnabled();
 	}
 	
 	public int getPort() {
-		return NotesThreadFactory.call(client -> {
-			int port = getServerDoc(client)
-				.map(doc -> doc.get(ITEM_PORT, int.class, 0))
-				.orElse(0);
-			return port == 0 ? DEFAULT_PORT : port;
-		});
+		return getSnapshot().getPort();
 	}
 	
 	public boolean isAllowPasswordAuth() {
+		return getSnapshot().isAllowPasswordAuth();
+	}
+	
+	/**
+	 * @return the maximum number of threads used for Notes work
+	 * @since 2.3.0
+	 */
+	public int getNotesMaxThreads() {
+		return getSnapshot().getNotesMaxThreads();
+	}
+	
+	/**
+	 * @return the maximum number of Notes tasks that may wait for a thread
+	 * @since 2.3.0
+	 */
+	public int getNotesMaxQueued() {
+		return getSnapshot().getNotesMaxQueued();
+	}
+	
+	/**
+	 * @return the time, in milliseconds, to wait for space in a full Notes queue before
+	 *         rejecting a request
+	 * @since 2.3.0
+	 */
+	public long getNotesQueueTimeout() {
+		return getSnapshot().getNotesQueueTimeout();
+	}
+	
+	/**
+	 * @return the maximum number of threads used for transferring file content
+	 * @since 2.3.0
+	 */
+	public int getNotesContentMaxThreads() {
+		return getSnapshot().getNotesContentMaxThreads();
+	}
+	
+	/**
+	 * @return the maximum number of content transfers that may wait for a thread
+	 * @since 2.3.0
+	 */
+	public int getNotesContentMaxQueued() {
+		return getSnapshot().getNotesContentMaxQueued();
+	}
+	
+	/**
+	 * Determines the rate limits that apply to the provided user across all of their
+	 * sessions.
+	 * 
+	 * <p>A limit configured for the user by name takes precedence. Otherwise, the most
+	 * permissive of the limits for the user's groups applies, falling back to the
+	 * {@code "*"} entry if none match.</p>
+	 * 
+	 * @param username the name of the user
+	 * @return the applicable {@link ThrottleLimit}, which may be {@link ThrottleLimit#UNLIMITED}
+	 * @since 2.3.0
+	 */
+	public ThrottleLimit getThrottleLimit(String username) {
+		ServerConfiguration config = getSnapshot();
+		Map<String, ThrottleLimit> limits = config.getThrottleLimits();
+		if(limits.isEmpty()) {
+			return ThrottleLimit.UNLIMITED;
+		}
+		ThrottleLimit limit = limits.get(username);
+		if(limit != null) {
+			return limit;
+		}
+		
+		// Group resolution requires a directory lookup, so keep the result until the configuration changes
+		Snapshot snapshot = this.snapshot;
+		if(snapshot != null && snapshot.config == config) {
+			limit = snapshot.userLimits.get(username);
+			if(limit == null) {
+				limit = resolveThrottleLimit(limits, username);
+				snapshot.userLimits.put(username, limit);
+			}
+			return limit;
+		} else {
+			return resolveThrottleLimit(limits, username);
+		}
+	}
+	
+	/**
+	 * Creates a new composite filesystem containing the mounts configured for this
+	 * server, accessed as the provided user.
+	 * 
+	 * @param username the name of the user accessing the filesystem
+	 * @return a new {@link CompositeFileSystem}, which the caller is responsible for closing
+	 */
+	public CompositeFileSystem buildFileSystem(String username) {
+		// Mounts are opened on first access, so this does not depend on how many there are
+		Map<String, MountDescriptor> mounts = getMounts();
+		if(log.isLoggable(Level.FINE)) {
+			log.fine(MessageFormat.format("Building filesystem for {0} with mounts {1}", username, mounts.keySet()));
+		}
+		return new CompositeFileSystem(CompositeFileSystemProvider.instance, mounts, username);
+	}
+	
+	/**
+	 * Retrieves a composite filesystem for the provided user, sharing an open one with
+	 * other sessions of the same user when the mount configuration has not changed
+	 * since it was built.
+	 * 
+	 * <p>Each call returns a separate handle, which the caller should close when done.
+	 * The mounts are only actually closed once all handles have been closed.</p>
+	 * 
+	 * @param username the name of the user accessing the filesystem
+	 * @return a {@link CompositeFileSystem} for the user
+	 * @since 2.3.0
+	 */
+	public CompositeFileSystem openFileSystem(String username) {
+		Map<String, MountDescriptor> mounts = getMounts();
+		CompositeFileSystem handle = retainShared(username, mounts);
+		if(handle != null) {
+			return handle;
+		}
+		
+		synchronized(sharedFileSystems) {
+			handle = retainShared(username, mounts);
+			if(handle != null) {
+				return handle;
+			}
+			CompositeFileSystem fs = buildFileSystem(username);
+			// The first handle goes to the caller; the cache itself does not keep one
+			sharedFileSystems.put(username, new SharedFileSystem(mounts, fs));
+			return fs;
+		}
+	}
+	
+	private CompositeFileSystem retainShared(String username, Map<String, MountDescriptor> mounts) {
+		SharedFileSystem shared = sharedFileSystems.get(username);
+		if(shared == null || shared.mounts != mounts) {
+			return null;
+		}
+		return shared.fileSystem.retain();
+	}
+	
+	/**
+	 * Retrieves the mounts configured for this server, re-reading them from the
+	 * configuration NSF only if it has changed.
+	 * 
+	 * @return a map of mount paths to their descriptors
+	 * @since 2.3.0
+	 */
+	public Map<String, MountDescriptor> getMounts() {
+		String configPath = getConfigNsfPath();
+		long modTime = DatabaseChangePoller.instance.getModifiedTime(configPath, DatabaseChangePoller.DEFAULT_INTERVAL);
+		MountTable table = this.mountTable;
+		if(table != null && table.modTime == modTime) {
+			return table.mounts;
+		}
+		synchronized(this) {
+			table = this.mountTable;
+			if(table != null && table.modTime == modTime) {
+				return table.mounts;
+			}
+			Map<String, MountDescriptor> mounts = readMounts();
+			this.mountTable = new MountTable(modTime, mounts);
+			
+			// Stop sharing filesystems built from the old configuration; open ones are left for their sessions
+			sharedFileSystems.values().removeIf(shared -> shared.mounts != mounts);
+			return mounts;
+		}
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private static class Snapshot {
+		private final long modTime;
+		private final ServerConfiguration config;
+		/** Maps user names to their resolved throttle limits */
+		private final Map<String, ThrottleLimit> userLimits = new ConcurrentHashMap<>();
+		
+		Snapshot(long modTime, ServerConfiguration config) {
+			this.modTime = modTime;
+			this.config = config;
+		}
+	}
+	
+	private static class MountTable {
+		private final long modTime;
+		private final Map<String, MountDescriptor> mounts;
+		
+		MountTable(long modTime, Map<String, MountDescriptor> mounts) {
+			this.modTime = modTime;
+			this.mounts = mounts;
+		}
+	}
+	
+	private static class SharedFileSystem {
+		private final Map<String, MountDescriptor> mounts;
+		private final CompositeFileSystem fileSystem;
+		
+		SharedFileSystem(Map<String, MountDescriptor> mounts, CompositeFileSystem fileSystem) {
+			this.mounts = mounts;
+			this.fileSystem = fileSystem;
+		}
+	}
+	
+	private ServerConfiguration readConfiguration() {
 		return NotesThreadFactory.call(client -> {
-			return getServerDoc(client)
+			Optional<Document> serverDoc = getServerDoc(client);
+			
+			boolean enabled = serverDoc
+				.map(doc -> !"N".equals(doc.getAsText(ITEM_ENABLED, ' '))) //$NON-NLS-1$
+				.orElse(true);
+			int port = serverDoc
+				.map(doc -> doc.get(ITEM_PORT, int.class, 0))
+				.orElse(0);
+			boolean allowPasswordAuth = serverDoc
 				.map(doc -> "Y".equals(doc.getAsText(ITEM_PASSWORDAUTH, ' '))) //$NON-NLS-1$
 				.orElse(false);
+			int maxThreads = serverDoc
+				.map(doc -> doc.get(ITEM_MAXTHREADS, int.class, 0))
+				.orElse(0);
+			int maxQueued = serverDoc
+				.map(doc -> doc.get(ITEM_MAXQUEUED, int.class, 0))
+				.orElse(0);
+			// Stored in seconds
+			int timeout = serverDoc
+				.map(doc -> doc.get(ITEM_QUEUETIMEOUT, int.class, 0))
+				.orElse(0);
+			int contentMaxThreads = serverDoc
+				.map(doc -> doc.get(ITEM_CONTENTMAXTHREADS, int.class, 0))
+				.orElse(0);
+			int contentMaxQueued = serverDoc
+				.map(doc -> doc.get(ITEM_CONTENTMAXQUEUED, int.class, 0))
+				.orElse(0);
+			int maxSessions = serverDoc
+				.map(doc -> doc.get(ITEM_MAXSESSIONS, int.class, 0))
+				.orElse(0);
+			int maxSessionsPerAddress = serverDoc
+				.map(doc -> doc.get(ITEM_MAXSESSIONSPERADDRESS, int.class, 0))
+				.orElse(0);
+			int maxSessionsPerUser = serverDoc
+				.map(doc -> doc.get(ITEM_MAXSESSIONSPERUSER, int.class, 0))
+				.orElse(0);
+			int acceptBacklog = serverDoc
+				.map(doc -> doc.get(ITEM_ACCEPTBACKLOG, int.class, 0))
+				.orElse(0);
+			Map<String, ThrottleLimit> throttleLimits = serverDoc
+				.map(doc -> parseThrottleLimits(doc.getAsText(ITEM_THROTTLELIMITS, ' ')))
+				.orElse(Collections.emptyMap());
+			
+			return new ServerConfiguration(
+				enabled,
+				port == 0 ? DEFAULT_PORT : port,
+				allowPasswordAuth,
+				maxThreads <= 0 ? NotesThreadFactory.DEFAULT_MAX_THREADS : maxThreads,
+				maxQueued <= 0 ? NotesThreadFactory.DEFAULT_MAX_QUEUED : maxQueued,
+				timeout <= 0 ? NotesThreadFactory.DEFAULT_QUEUE_TIMEOUT : TimeUnit.SECONDS.toMillis(timeout),
+				contentMaxThreads <= 0 ? NotesThreadFactory.DEFAULT_CONTENT_MAX_THREADS : contentMaxThreads,
+				contentMaxQueued <= 0 ? NotesThreadFactory.DEFAULT_CONTENT_MAX_QUEUED : contentMaxQueued,
+				throttleLimits,
+				maxSessions <= 0 ? DEFAULT_MAX_SESSIONS : maxSessions,
+				maxSessionsPerAddress <= 0 ? DEFAULT_MAX_SESSIONS_PER_ADDRESS : maxSessionsPerAddress,
+				maxSessionsPerUser <= 0 ? DEFAULT_MAX_SESSIONS_PER_USER : maxSessionsPerUser,
+				acceptBacklog <= 0 ? DEFAULT_ACCEPT_BACKLOG : acceptBacklog
+			);
 		});
 	}
 	
-	public CompositeFileSystem buildFileSystem(String username) {
-		// Read the view to create filesystems for each entry
-		Map<String, FileSystem> fileSystems = NotesThreadFactory.call(client -> {
+	/**
+	 * Parses the JSON object in {@link #ITEM_THROTTLELIMITS}, which maps names to objects
+	 * with {@code bytesPerSecond} and {@code opsPerSecond} properties.
+	 */
+	private static Map<String, ThrottleLimit> parseThrottleLimits(String json) {
+		if(json == null || json.trim().isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Map<String, ThrottleLimit> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		try {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> parsed = (Map<String, Object>)JsonParser.fromJson(JsonJavaFactory.instance, json);
+			parsed.forEach((name, value) -> {
+				if(value instanceof Map) {
+					@SuppressWarnings("unchecked")
+					Map<String, Object> limit = (Map<String, Object>)value;
+					result.put(name, ThrottleLimit.fromMap(limit));
+				}
+			});
+		} catch(JsonException | ClassCastException e) {
+			if(log.isLoggable(Level.WARNING)) {
+				log.log(Level.WARNING, MessageFormat.format("Could not parse throttle limits JSON: {0}", json), e);
+			}
+			return Collections.emptyMap();
+		}
+		return Collections.unmodifiableMap(result);
+	}
+	
+	private static ThrottleLimit resolveThrottleLimit(Map<String, ThrottleLimit> limits, String username) {
+		List<String> names = NotesThreadFactory.call(client -> Names.buildNamesList(client, username).toList());
+		List<ThrottleLimit> matches = names.stream()
+			.filter(name -> !THROTTLE_DEFAULT.equals(name))
+			.map(limits::get)
+			.filter(Objects::nonNull)
+			.collect(Collectors.toList());
+		if(matches.isEmpty()) {
+			return limits.getOrDefault(THROTTLE_DEFAULT, ThrottleLimit.UNLIMITED);
+		}
+		return ThrottleLimit.mostPermissive(matches);
+	}
+	
+	private Map<String, MountDescriptor> readMounts() {
+		// Read the view to find the mounts for this server
+		Map<String, MountDescriptor> mounts = NotesThreadFactory.call(client -> {
 			try {
 				List<String> names = Names.buildNamesList(client, client.getIDUserName()).toList();
 				
@@ -131,18 +497,18 @@ public enum DominoNSFConfiguration {
 				}
 				
 				Database configNsf = client.openDatabase(getConfigNsfPath());
-				DominoCollection mounts = configNsf.openCollection(VIEW_MOUNTS)
+				DominoCollection mountsView = configNsf.openCollection(VIEW_MOUNTS)
 						.orElseThrow(() -> new IllegalStateException(MessageFormat.format("Unable to open view \"{0}\" in database \"{1}\"", VIEW_MOUNTS, getConfigNsfPath())));
-				return mounts.query()
+				return mountsView.query()
 					.readColumnValues()
-					.build(0, Integer.MAX_VALUE, new CollectionEntryProcessor<Map<String, FileSystem>>() {
+					.build(0, Integer.MAX_VALUE, new CollectionEntryProcessor<Map<String, MountDescriptor>>() {
 					@Override
-					public Map<String, FileSystem> start() {
+					public Map<String, MountDescriptor> start() {
 						return new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
 					}
 
 					@Override
-					public Action entryRead(Map<String, FileSystem> result, CollectionEntry entry) {
+					public Action entryRead(Map<String, MountDescriptor> result, CollectionEntry entry) {
 						List<String> servers = entry.getAsList(DominoNSFConfiguration.COL_INDEX_SERVERS, String.class, Collections.emptyList());
 						if(servers.stream().anyMatch(s -> names.contains(s))) {
 							if(log.isLoggable(Level.FINEST)) {
@@ -175,37 +541,29 @@ public enum DominoNSFConfiguration {
 								}
 							}
 							
-							env.put("username", username); //$NON-NLS-1$
-							
-							try {
-								FileSystem fs = provider.createFileSystem(dataSource, env);
-								result.put(path, fs);
-							} catch(IOException e) {
-								throw new UncheckedIOException(MessageFormat.format("Encountered exception building filesystem for mount \"{0}\"", path), e);
-							}
+							result.put(path, new MountDescriptor(path, provider, dataSource, env));
 						}
 						return Action.Continue;
 					}
 					
 					@Override
-					public Map<String, FileSystem> end(Map<String, FileSystem> result) {
-						return result;
+					public Map<String, MountDescriptor> end(Map<String, MountDescriptor> result) {
+						return Collections.unmodifiableMap(result);
 					}
 					
 				});
 			} catch(Throwable t) {
 				if(log.isLoggable(Level.SEVERE)) {
-					log.log(Level.SEVERE, "Encountered exception while building composite filesystem");
+					log.log(Level.SEVERE, "Encountered exception while reading mount configuration");
 				}
 				throw t;
 			}
 		});
 		
 		if(log.isLoggable(Level.INFO)) {
-			log.info(MessageFormat.format("Built filesystem list: {0}", fileSystems));
+			log.info(MessageFormat.format("Read mount configuration: {0}", mounts));
 		}
-		
-		return new CompositeFileSystem(CompositeFileSystemProvider.instance, fileSystems);
+		return mounts;
 	}
 	
 	private Optional<Document> getServerDoc(DominoClient client) {
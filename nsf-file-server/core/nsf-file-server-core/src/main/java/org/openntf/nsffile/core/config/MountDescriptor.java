@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.config;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openntf.nsffile.core.spi.FileSystemMountProvider;
+
+/**
+ * Describes a single mount from the configuration NSF, independent of the user
+ * accessing it.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class MountDescriptor {
+	/** The environment key used to pass the authenticated user name to providers */
+	public static final String ENV_USERNAME = "username"; //$NON-NLS-1$
+	/** The environment key used to pass the name of the mount to providers, for statistics */
+	public static final String ENV_MOUNT = "mount"; //$NON-NLS-1$
+	
+	private final String path;
+	private final FileSystemMountProvider provider;
+	private final String dataSource;
+	private final Map<String, Object> env;
+	private final ThrottleLimit throttleLimit;
+	
+	public MountDescriptor(String path, FileSystemMountProvider provider, String dataSource, Map<String, Object> env) {
+		this.path = path;
+		this.provider = provider;
+		this.dataSource = dataSource;
+		this.env = Collections.unmodifiableMap(new HashMap<>(env));
+		this.throttleLimit = ThrottleLimit.fromMap(env);
+	}
+	
+	public String getPath() {
+		return path;
+	}
+	
+	public FileSystemMountProvider getProvider() {
+		return provider;
+	}
+	
+	public String getDataSource() {
+		return dataSource;
+	}
+	
+	/**
+	 * @return the parsed environment configuration for the mount, not including the
+	 *         user name
+	 */
+	public Map<String, Object> getEnv() {
+		return env;
+	}
+	
+	/**
+	 * @return the rate limits applied to each user of this mount, read from the
+	 *         {@code bytesPerSecond} and {@code opsPerSecond} environment keys
+	 */
+	public ThrottleLimit getThrottleLimit() {
+		return throttleLimit;
+	}
+	
+	/**
+	 * Creates the filesystem for this mount on behalf of the provided user.
+	 * 
+	 * @param username the name of the user accessing the mount
+	 * @return the {@link FileSystem} for the mount
+	 * @throws IOException if there is a problem creating the filesystem
+	 */
+	public FileSystem createFileSystem(String username) throws IOException {
+		Map<String, Object> userEnv = new HashMap<>(env);
+		userEnv.put(ENV_USERNAME, username);
+		userEnv.put(ENV_MOUNT, path);
+		return provider.createFileSystem(dataSource, userEnv);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MountDescriptor [path=%s, provider=%s, dataSource=%s, env=%s]", path, provider.getName(), dataSource, env); //$NON-NLS-1$
+	}
+}
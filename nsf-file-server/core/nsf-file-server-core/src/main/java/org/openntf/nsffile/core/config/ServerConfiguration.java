@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.config;
+
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the settings in this server's configuration document.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ * @see DominoNSFConfiguration#getSnapshot()
+ */
+public class ServerConfiguration {
+	private final boolean enabled;
+	private final int port;
+	private final boolean allowPasswordAuth;
+	private final int notesMaxThreads;
+	private final int notesMaxQueued;
+	private final long notesQueueTimeout;
+	private final int notesContentMaxThreads;
+	private final int notesContentMaxQueued;
+	private final Map<String, ThrottleLimit> throttleLimits;
+	private final int maxSessions;
+	private final int maxSessionsPerAddress;
+	private final int maxSessionsPerUser;
+	private final int acceptBacklog;
+	
+	public ServerConfiguration(boolean enabled, int port, boolean allowPasswordAuth, int notesMaxThreads, int notesMaxQueued,
+			long notesQueueTimeout, int notesContentMaxThreads, int notesContentMaxQueued, Map<String, ThrottleLimit> throttleLimits,
+			int maxSessions, int maxSessionsPerAddress, int maxSessionsPerUser, int acceptBacklog) {
+		this.enabled = enabled;
+		this.port = port;
+		this.allowPasswordAuth = allowPasswordAuth;
+		this.notesMaxThreads = notesMaxThreads;
+		this.notesMaxQueued = notesMaxQueued;
+		this.notesQueueTimeout = notesQueueTimeout;
+		this.notesContentMaxThreads = notesContentMaxThreads;
+		this.notesContentMaxQueued = notesContentMaxQueued;
+		this.throttleLimits = throttleLimits;
+		this.maxSessions = maxSessions;
+		this.maxSessionsPerAddress = maxSessionsPerAddress;
+		this.maxSessionsPerUser = maxSessionsPerUser;
+		this.acceptBacklog = acceptBacklog;
+	}
+	
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	public int getPort() {
+		return port;
+	}
+	
+	public boolean isAllowPasswordAuth() {
+		return allowPasswordAuth;
+	}
+	
+	/**
+	 * @return the maximum number of threads used for Notes work
+	 */
+	public int getNotesMaxThreads() {
+		return notesMaxThreads;
+	}
+	
+	/**
+	 * @return the maximum number of Notes tasks that may wait for a thread
+	 */
+	public int getNotesMaxQueued() {
+		return notesMaxQueued;
+	}
+	
+	/**
+	 * @return the time, in milliseconds, to wait for space in a full Notes queue before
+	 *         rejecting a request
+	 */
+	public long getNotesQueueTimeout() {
+		return notesQueueTimeout;
+	}
+	
+	/**
+	 * @return the maximum number of threads used for transferring file content
+	 */
+	public int getNotesContentMaxThreads() {
+		return notesContentMaxThreads;
+	}
+	
+	/**
+	 * @return the maximum number of content transfers that may wait for a thread
+	 */
+	public int getNotesContentMaxQueued() {
+		return notesContentMaxQueued;
+	}
+	
+	/**
+	 * @return an unmodifiable, case-insensitive map of user names, group names, and
+	 *         {@code "*"} to the rate limits configured for them
+	 */
+	public Map<String, ThrottleLimit> getThrottleLimits() {
+		return throttleLimits;
+	}
+	
+	/**
+	 * @return the maximum number of concurrent SSH sessions on this server
+	 */
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+	
+	/**
+	 * @return the maximum number of concurrent SSH sessions from a single remote address
+	 */
+	public int getMaxSessionsPerAddress() {
+		return maxSessionsPerAddress;
+	}
+	
+	/**
+	 * @return the maximum number of concurrent SSH sessions for a single user
+	 */
+	public int getMaxSessionsPerUser() {
+		return maxSessionsPerUser;
+	}
+	
+	/**
+	 * @return the maximum number of incoming connections that may wait to be accepted,
+	 *         which takes effect when the server is started
+	 */
+	public int getAcceptBacklog() {
+		return acceptBacklog;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ServerConfiguration [enabled=%s, port=%s, allowPasswordAuth=%s, notesMaxThreads=%s, notesMaxQueued=%s, notesQueueTimeout=%s, notesContentMaxThreads=%s, notesContentMaxQueued=%s, throttleLimits=%s, maxSessions=%s, maxSessionsPerAddress=%s, maxSessionsPerUser=%s, acceptBacklog=%s]", //$NON-NLS-1$
+				enabled, port, allowPasswordAuth, notesMaxThreads, notesMaxQueued, notesQueueTimeout, notesContentMaxThreads, notesContentMaxQueued, throttleLimits,
+				maxSessions, maxSessionsPerAddress, maxSessionsPerUser, acceptBacklog);
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.config;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * An immutable pair of rate limits for a user or mount, where {@code 0} means that
+ * the quantity is not limited.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class ThrottleLimit {
+	/** The key for the limit on file data, in bytes per second */
+	public static final String KEY_BYTESPERSECOND = "bytesPerSecond"; //$NON-NLS-1$
+	/** The key for the limit on filesystem operations per second */
+	public static final String KEY_OPSPERSECOND = "opsPerSecond"; //$NON-NLS-1$
+	
+	public static final ThrottleLimit UNLIMITED = new ThrottleLimit(0, 0);
+	
+	private final long bytesPerSecond;
+	private final long opsPerSecond;
+	
+	public ThrottleLimit(long bytesPerSecond, long opsPerSecond) {
+		this.bytesPerSecond = Math.max(0, bytesPerSecond);
+		this.opsPerSecond = Math.max(0, opsPerSecond);
+	}
+	
+	/**
+	 * Reads limits from a parsed JSON object, such as a mount's environment
+	 * configuration.
+	 * 
+	 * @param values the map to read from
+	 * @return the limits specified in the map, which may be {@link #UNLIMITED}
+	 */
+	public static ThrottleLimit fromMap(Map<String, ?> values) {
+		long bytes = toLong(values.get(KEY_BYTESPERSECOND));
+		long ops = toLong(values.get(KEY_OPSPERSECOND));
+		return bytes <= 0 && ops <= 0 ? UNLIMITED : new ThrottleLimit(bytes, ops);
+	}
+	
+	/**
+	 * Combines the provided limits by taking the most permissive value of each, in the
+	 * same way that a user in several ACL groups receives the highest access of them.
+	 * 
+	 * @param limits the limits to combine
+	 * @return the combined limit
+	 */
+	public static ThrottleLimit mostPermissive(Collection<ThrottleLimit> limits) {
+		long bytes = -1;
+		long ops = -1;
+		for(ThrottleLimit limit : limits) {
+			bytes = bytes == 0 || limit.bytesPerSecond == 0 ? 0 : Math.max(bytes, limit.bytesPerSecond);
+			ops = ops == 0 || limit.opsPerSecond == 0 ? 0 : Math.max(ops, limit.opsPerSecond);
+		}
+		return bytes <= 0 && ops <= 0 ? UNLIMITED : new ThrottleLimit(bytes, ops);
+	}
+	
+	/**
+	 * @return the maximum number of bytes of file data per second, or {@code 0} for
+	 *         no limit
+	 */
+	public long getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+	
+	/**
+	 * @return the maximum number of filesystem operations per second, or {@code 0} for
+	 *         no limit
+	 */
+	public long getOpsPerSecond() {
+		return opsPerSecond;
+	}
+	
+	public boolean isUnlimited() {
+		return bytesPerSecond == 0 && opsPerSecond == 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ThrottleLimit [bytesPerSecond=%s, opsPerSecond=%s]", bytesPerSecond, opsPerSecond); //$NON-NLS-1$
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private static long toLong(Object value) {
+		if(value instanceof Number) {
+			return ((Number)value).longValue();
+		} else if(value instanceof String) {
+			try {
+				return Long.parseLong(((String)value).trim());
+			} catch(NumberFormatException e) {
+				return 0;
+			}
+		}
+		return 0;
+	}
+}
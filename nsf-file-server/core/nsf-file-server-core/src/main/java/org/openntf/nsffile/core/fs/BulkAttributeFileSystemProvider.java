@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.fs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Map;
+
+/**
+ * Extension for {@link FileSystemProvider} implementations that can apply several
+ * attribute changes to a file in a single operation, such as an NSF provider saving
+ * a document once rather than once per attribute.
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public interface BulkAttributeFileSystemProvider {
+	/**
+	 * Sets the provided attributes on the file at the provided path.
+	 *
+	 * <p>Attribute names are in the same format as {@link Files#setAttribute}, such as
+	 * {@code "posix:permissions"} or {@code "lastModifiedTime"}.</p>
+	 *
+	 * <p>Changes to the root of a filesystem are ignored.</p>
+	 *
+	 * @param path the path of the file to update
+	 * @param attributes a map of attribute names to values
+	 * @param options options indicating how symbolic links are handled
+	 * @throws IOException if there is a problem setting the attributes
+	 * @throws UnsupportedOperationException if an attribute view is not available
+	 * @throws IllegalArgumentException if an attribute name is not recognized or its
+	 *         value is of the wrong type
+	 */
+	void setAttributes(Path path, Map<String, ?> attributes, LinkOption... options) throws IOException;
+
+	/**
+	 * Determines whether the provided path will have its attributes applied in bulk,
+	 * as opposed to one at a time.
+	 *
+	 * @param path the path to check
+	 * @return {@code true} if {@link #setAttributes} is backed by a batched operation
+	 *         for the path
+	 */
+	default boolean isBulkAttributesSupported(Path path) {
+		return true;
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.fs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.spi.FileSystemProvider;
+
+import org.openntf.nsffile.core.util.ImportProgress;
+
+/**
+ * Extension for {@link FileSystemProvider} implementations that can import a tree of
+ * files from another filesystem more efficiently than copying one file at a time, such
+ * as an NSF provider creating folders in one batch and storing files in parallel.
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public interface BulkImportFileSystemProvider {
+	/**
+	 * Imports the folder at {@code source}, along with everything beneath it, as the
+	 * folder at {@code target}. Existing files at the target are replaced.
+	 *
+	 * <p>Failures to import individual files are recorded in {@code progress} rather
+	 * than ending the import.</p>
+	 *
+	 * @param source the folder to import, typically on the local filesystem
+	 * @param target the path of the folder to import into
+	 * @param parallelism the maximum number of files to store at once
+	 * @param progress the object used to report progress
+	 * @throws IOException if there is a problem reading the source or creating the
+	 *         target folders
+	 */
+	void importTree(Path source, Path target, int parallelism, ImportProgress progress) throws IOException;
+}
@@ -26,7 +26,8 @@ public class CompositeDirectoryStream implements DirectoryStream<Path> {
 	private final List<Path> paths;
 	
 	public CompositeDirectoryStream(CompositeFileSystem fileSystem) {
-		paths = fileSystem.getFileSystems().keySet()
+		// Served from the mount names, so that listing the root does not open every mount
+		paths = fileSystem.getMountNames()
 			.stream()
 			.map(mount -> fileSystem.getPath("/", mount)) //$NON-NLS-1$
 			.collect(Collectors.toList());
@@ -16,38 +16,146 @@
 package org.openntf.nsffile.core.fs;
 
 import java.io.IOException;
+import java.nio.file.ClosedFileSystemException;
 import java.nio.file.FileStore;
 import java.nio.file.FileSystem;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.nio.file.spi.FileSystemProvider;
 import java.text.MessageFormat;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import org.apache.sshd.common.file.util.BaseFileSystem;
 import org.apache.sshd.sftp.client.fs.SftpFileSystem.DefaultUserPrincipalLookupService;
+import org.openntf.nsffile.core.config.MountDescriptor;
 
 public class CompositeFileSystem extends BaseFileSystem<CompositePath> {
 	private static final Logger log = Logger.getLogger(CompositeFileSystem.class.getPackage().getName());
 	
-	private final Map<String, FileSystem> fileSystems;
-	private boolean closed = false;
+	/** The views supported by the root, reported even before any mount is opened */
+	private static final Set<String> ROOT_VIEWS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("basic", "owner", "posix"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	
+	private final Map<String, MountDescriptor> mounts;
+	private final String username;
+	/** The mounts opened so far, shared with other handles from {@link #retain()} */
+	private final OpenMounts openMounts;
+	/** Whether this handle has been closed, independent of other handles */
+	private final AtomicBoolean closed = new AtomicBoolean();
 	private final List<FileStore> fileStores;
 	
-	public CompositeFileSystem(FileSystemProvider fileSystemProvider, Map<String, FileSystem> fileSystems) {
+	/**
+	 * @param fileSystemProvider the provider for this filesystem
+	 * @param mounts a case-insensitive map of mount names to their descriptors
+	 * @param username the name of the user accessing the mounts
+	 * @since 2.3.0
+	 */
+	public CompositeFileSystem(FileSystemProvider fileSystemProvider, Map<String, MountDescriptor> mounts, String username) {
+		this(fileSystemProvider, mounts, username, new OpenMounts());
+	}
+	
+	private CompositeFileSystem(FileSystemProvider fileSystemProvider, Map<String, MountDescriptor> mounts, String username, OpenMounts openMounts) {
 		super(fileSystemProvider);
-		this.fileSystems = fileSystems;
+		this.mounts = mounts;
+		this.username = username;
+		this.openMounts = openMounts;
 		this.fileStores = Arrays.asList(new CompositeFileStore(this));
+		// Each handle counts as a session, keeping the user's throttles while it is open
+		ThrottleManager.instance.sessionOpened(username);
+	}
+	
+	/**
+	 * @return the names of the mounts in this filesystem
+	 * @since 2.3.0
+	 */
+	public Set<String> getMountNames() {
+		return mounts.keySet();
+	}
+	
+	/**
+	 * Resolves the provided name to a configured mount, so that statistics are only kept
+	 * for mounts that exist and under a single spelling of each.
+	 * 
+	 * @param mount the name of a mount, matched case-insensitively
+	 * @return the name of the mount as configured, or {@code null} if there is no such
+	 *         mount
+	 * @since 2.3.0
+	 */
+	public String resolveMountName(String mount) {
+		MountDescriptor descriptor = mount == null ? null : mounts.get(mount);
+		return descriptor == null ? null : descriptor.getPath();
 	}
 	
+	/**
+	 * @return a map of mount paths to the filesystems that have been opened so far
+	 */
 	public Map<String, FileSystem> getFileSystems() {
-		return fileSystems;
+		return Collections.unmodifiableMap(openMounts.fileSystems);
+	}
+	
+	/**
+	 * Retrieves the filesystem for the provided mount, creating it on first access.
+	 * 
+	 * @param mount the name of the mount, matched case-insensitively
+	 * @return the mounted {@link FileSystem}, or {@code null} if there is no such mount
+	 * @throws IOException if there is a problem creating the filesystem
+	 * @throws ClosedFileSystemException if this filesystem has been closed
+	 * @since 2.3.0
+	 */
+	public FileSystem getFileSystem(String mount) throws IOException {
+		MountDescriptor descriptor = mounts.get(mount);
+		if(descriptor == null) {
+			return null;
+		}
+		if(closed.get()) {
+			throw new ClosedFileSystemException();
+		}
+		Map<String, FileSystem> fileSystems = openMounts.fileSystems;
+		FileSystem fs = fileSystems.get(descriptor.getPath());
+		if(fs != null) {
+			return fs;
+		}
+		synchronized(fileSystems) {
+			if(openMounts.closed) {
+				throw new ClosedFileSystemException();
+			}
+			fs = fileSystems.get(descriptor.getPath());
+			if(fs == null) {
+				if(log.isLoggable(Level.FINE)) {
+					log.fine(MessageFormat.format("Opening mount {0} for {1}", descriptor, username));
+				}
+				fs = descriptor.createFileSystem(username);
+				fileSystems.put(descriptor.getPath(), fs);
+			}
+			return fs;
+		}
+	}
+
+	/**
+	 * Retrieves the throttle that applies to this filesystem's user in the provided
+	 * mount.
+	 * 
+	 * @param mount the name of the mount, matched case-insensitively, or {@code null}
+	 *        for the composite root
+	 * @return the {@link Throttle} for the mount, or for the user overall if there is no
+	 *         such mount
+	 * @since 2.3.0
+	 */
+	public Throttle getThrottle(String mount) {
+		MountDescriptor descriptor = mount == null ? null : mounts.get(mount);
+		if(descriptor == null) {
+			return ThrottleManager.instance.getUserThrottle(username);
+		}
+		return ThrottleManager.instance.getMountThrottle(username, descriptor);
 	}
 
 	@Override
@@ -64,24 +172,59 @@ public class CompositeFileSystem extends BaseFileSystem<CompositePath> {
 		return this.fileStores;
 	}
 
+	/**
+	 * Creates a new handle to this filesystem for another owner, such as another
+	 * session. The handle shares the mounts opened so far, and each handle, including
+	 * this one, should be closed by its owner. The mounts are only closed once every
+	 * handle has been closed, and closing a handle more than once has no further effect.
+	 * 
+	 * @return a new {@link CompositeFileSystem} handle, or {@code null} if every handle
+	 *         has already been closed
+	 * @since 2.3.0
+	 */
+	public CompositeFileSystem retain() {
+		AtomicInteger references = openMounts.references;
+		while(true) {
+			int count = references.get();
+			if(count <= 0) {
+				return null;
+			}
+			if(references.compareAndSet(count, count + 1)) {
+				return new CompositeFileSystem(provider(), mounts, username, openMounts);
+			}
+		}
+	}
+
 	@Override
 	public void close() throws IOException {
-		for(FileSystem fileSystem : fileSystems.values()) {
-			fileSystem.close();
+		if(!closed.compareAndSet(false, true)) {
+			return;
+		}
+		ThrottleManager.instance.sessionClosed(username);
+		if(openMounts.references.decrementAndGet() > 0) {
+			// Still in use by other handles
+			return;
+		}
+		Map<String, FileSystem> fileSystems = openMounts.fileSystems;
+		synchronized(fileSystems) {
+			openMounts.closed = true;
+			for(FileSystem fileSystem : fileSystems.values()) {
+				fileSystem.close();
+			}
 		}
-		this.closed = true;
 	}
 
 	@Override
 	public boolean isOpen() {
-		return !this.closed;
+		return !this.closed.get();
 	}
 
 	@Override
 	public Set<String> supportedFileAttributeViews() {
-		return this.fileSystems.values().stream()
-			.flatMap(fs -> fs.supportedFileAttributeViews().stream())
-			.collect(Collectors.toSet());
+		// Avoid opening mounts just to answer this
+		Set<String> result = new HashSet<>(ROOT_VIEWS);
+		this.openMounts.fileSystems.values().forEach(fs -> result.addAll(fs.supportedFileAttributeViews()));
+		return result;
 	}
 
 	@Override
@@ -91,7 +234,7 @@ public class CompositeFileSystem extends BaseFileSystem<CompositePath> {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(fileStores, fileSystems);
+		return Objects.hash(fileStores, mounts, username);
 	}
 
 	@Override
@@ -106,7 +249,19 @@ public class CompositeFileSystem extends BaseFileSystem<CompositePath> {
 			return false;
 		}
 		CompositeFileSystem other = (CompositeFileSystem) obj;
-		return Objects.equals(fileStores, other.fileStores) && Objects.equals(fileSystems, other.fileSystems);
+		return Objects.equals(fileStores, other.fileStores) && Objects.equals(mounts, other.mounts) && Objects.equals(username, other.username);
+	}
+	
+	/**
+	 * Holds the state shared by all handles to a filesystem.
+	 */
+	private static class OpenMounts {
+		/** Maps mount paths, as configured, to filesystems that have been opened */
+		private final Map<String, FileSystem> fileSystems = new ConcurrentHashMap<>();
+		/** The number of open handles */
+		private final AtomicInteger references = new AtomicInteger(1);
+		/** Whether the mounts have been closed, guarded by {@link #fileSystems} */
+		private boolean closed;
 	}
 
 }
@@ -19,6 +19,9 @@ import static java.text.MessageFormat.format;
 import static org.openntf.nsffile.core.util.NSFFileUtil.toFileName;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
@@ -50,8 +53,11 @@ import java.util.stream.StreamSupport;
 import org.apache.sshd.common.util.OsUtils;
 import org.apache.sshd.sftp.client.SftpClient;
 import org.apache.sshd.sftp.client.fs.SftpPosixFileAttributes;
+import org.openntf.nsffile.core.util.ImportProgress;
+import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.core.util.ServerMetrics;
 
-public class CompositeFileSystemProvider extends FileSystemProvider {
+public class CompositeFileSystemProvider extends FileSystemProvider implements BulkAttributeFileSystemProvider, TreeDeleteFileSystemProvider, BulkImportFileSystemProvider, SequentialWriteFileSystemProvider {
 	public static final String SCHEME = "compositefs"; //$NON-NLS-1$
 	public static final Logger log = Logger.getLogger(CompositeFileSystemProvider.class.getPackage().getName());
 	
@@ -90,6 +96,7 @@ public class CompositeFileSystemProvider extends FileSystemProvider {
 
 	@Override
 	public void checkAccess(Path path, AccessMode... modes) throws IOException, AccessDeniedException {
+		acquireOperation(path, "CheckAccess"); //$NON-NLS-1$
 		if("/".equals(toFileName(path))) { //$NON-NLS-1$
 			if(modes != null && Arrays.asList(modes).contains(AccessMode.WRITE)) {
 				throw new AccessDeniedException("Cannot write to the composite root");
@@ -106,6 +113,7 @@ public class CompositeFileSystemProvider extends FileSystemProvider {
 	@Override
 	public void copy(Path source, Path target, CopyOption... options) throws IOException {
 		// TODO support cross-FS copies
+		acquireOperation(source, "Copy"); //$NON-NLS-1$
 		Path sourceDelegate = getDelegate(source);
 		Path targetDelegate = getDelegate(target);
 		Files.copy(sourceDelegate, targetDelegate, options);
@@ -113,15 +121,43 @@ public class CompositeFileSystemProvider extends FileSystemProvider {
 
 	@Override
 	public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+		acquireOperation(dir, "CreateDirectory"); //$NON-NLS-1$
 		Path delegate = getDelegate(dir);
 		Files.createDirectory(delegate, attrs);
 	}
 
 	@Override
 	public void delete(Path path) throws IOException {
+		acquireOperation(path, "Delete"); //$NON-NLS-1$
 		Path delegate = getDelegate(path);
 		Files.delete(delegate);
 	}
+	
+	@Override
+	public void deleteTree(Path path) throws IOException {
+		if("/".equals(toFileName(path))) { //$NON-NLS-1$
+			throw new AccessDeniedException("Cannot delete the composite root");
+		}
+		acquireOperation(path, "DeleteTree"); //$NON-NLS-1$
+		Path delegate = getDelegate(path);
+		if(log.isLoggable(Level.FINEST)) {
+			log.finest(format("deleteTree for delegate {0}", delegate));
+		}
+		NSFFileUtil.deleteTree(delegate);
+	}
+	
+	@Override
+	public void importTree(Path source, Path target, int parallelism, ImportProgress progress) throws IOException {
+		if("/".equals(toFileName(target))) { //$NON-NLS-1$
+			throw new AccessDeniedException("Cannot import into the composite root");
+		}
+		acquireOperation(target, "ImportTree"); //$NON-NLS-1$
+		Path delegate = getDelegate(target);
+		if(log.isLoggable(Level.FINEST)) {
+			log.finest(format("importTree for delegate {0}", delegate));
+		}
+		NSFFileUtil.importTree(source, delegate, parallelism, progress);
+	}
 
 	@Override
 	public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
@@ -158,6 +194,7 @@ public class CompositeFileSystemProvider extends FileSystemProvider {
 	@Override
 	public void move(Path source, Path target, CopyOption... options) throws IOException {
 		// TODO support cross-FS moves
+		acquireOperation(source, "Move"); //$NON-NLS-1$
 		Path sourceDelegate = getDelegate(source);
 		Path targetDelegate = getDelegate(target);
 		Files.move(sourceDelegate, targetDelegate, options);
@@ -166,8 +203,14 @@ public class CompositeFileSystemProvider extends FileSystemProvider {
 	@Override
 	public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
 			throws IOException {
+		Throttle throttle = acquireOperation(path, "Open"); //$NON-NLS-1$
 		Path delegate = getDelegate(path);
-		return Files.newByteChannel(delegate, options, attrs);
+		SeekableByteChannel channel = Files.newByteChannel(delegate, options, attrs);
+		if(channel instanceof FileChannel) {
+			return new ThrottledFileChannel((FileChannel)channel, throttle, new TransferCounters(getMetricsMountName(path)));
+		} else {
+			return new ThrottledByteChannel(channel, throttle, new TransferCounters(getMetricsMountName(path)));
+		}
 	}
 
 	@Override
@@ -175,6 +218,7 @@ public class CompositeFileSystemProvider extends FileSystemProvider {
 		if(log.isLoggable(Level.FINEST)) {
 			log.finest(format("Opening directory stream for {0}", dir));
 		}
+		acquireOperation(dir, "List"); //$NON-NLS-1$
 		if("/".equals(toFileName(dir))) { //$NON-NLS-1$
 			// Special case for the root
 			CompositeFileSystem fileSystem = (CompositeFileSystem)dir.getFileSystem();
@@ -187,22 +231,37 @@ public class CompositeFileSystemProvider extends FileSystemProvider {
 		return Files.newDirectoryStream(delegate);
 	}
 	
+	@Override
+	public OutputStream newSequentialOutputStream(Path path, long size) throws IOException {
+		if("/".equals(toFileName(path))) { //$NON-NLS-1$
+			throw new AccessDeniedException("Cannot write to the composite root");
+		}
+		Throttle throttle = acquireOperation(path, "Open"); //$NON-NLS-1$
+		Path delegate = getDelegate(path);
+		if(log.isLoggable(Level.FINEST)) {
+			log.finest(format("Getting sequential output stream for delegate {0}", delegate));
+		}
+		return new ThrottledOutputStream(NSFFileUtil.newSequentialOutputStream(delegate, size), throttle, new TransferCounters(getMetricsMountName(path)));
+	}
+	
 	@Override
 	public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
 			throws IOException {
 		if("/".equals(toFileName(path))) { //$NON-NLS-1$
 			throw new UnsupportedOperationException();
 		}
+		Throttle throttle = acquireOperation(path, "Open"); //$NON-NLS-1$
 		Path delegate = getDelegate(path);
 		if(log.isLoggable(Level.FINEST)) {
 			log.finest(format("Getting fileChannel for delegate {0}", delegate));
 		}
-		return delegate.getFileSystem().provider().newFileChannel(delegate, options, attrs);
+		return new ThrottledFileChannel(delegate.getFileSystem().provider().newFileChannel(delegate, options, attrs), throttle, new TransferCounters(getMetricsMountName(path)));
 	}
 
 	@Override
 	public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options)
 			throws IOException {
+		acquireOperation(path, "Stat"); //$NON-NLS-1$
 		if("/".equals(toFileName(path))) { //$NON-NLS-1$
 			if(BasicFileAttributes.class.isAssignableFrom(type)) {
 				return type.cast(RootFileAttributes.instance);
@@ -228,6 +287,7 @@ public class CompositeFileSystemProvider extends FileSystemProvider {
 
 	@Override
 	public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+		acquireOperation(path, "Stat"); //$NON-NLS-1$
 		if("/".equals(toFileName(path))) { //$NON-NLS-1$
 			return Collections.emptyMap();
 		}
@@ -248,25 +308,92 @@ public class CompositeFileSystemProvider extends FileSystemProvider {
 		if("/".equals(toFileName(path))) { //$NON-NLS-1$
 			return;
 		}
+		acquireOperation(path, "SetAttributes"); //$NON-NLS-1$
 		Path delegate = getDelegate(path);
 		if(log.isLoggable(Level.FINEST)) {
 			log.finest(format("setAttribute name {0} for delegate {1}", attribute, delegate));
 		}
 		Files.setAttribute(delegate, attribute, value, options);
 	}
+	
+	@Override
+	public void setAttributes(Path path, Map<String, ?> attributes, LinkOption... options) throws IOException {
+		if("/".equals(toFileName(path))) { //$NON-NLS-1$
+			return;
+		}
+		acquireOperation(path, "SetAttributes"); //$NON-NLS-1$
+		Path delegate = getDelegate(path);
+		if(log.isLoggable(Level.FINEST)) {
+			log.finest(format("setAttributes names {0} for delegate {1}", attributes.keySet(), delegate));
+		}
+		NSFFileUtil.setAttributes(delegate, attributes, options);
+	}
+	
+	@Override
+	public boolean isBulkAttributesSupported(Path path) {
+		if("/".equals(toFileName(path))) { //$NON-NLS-1$
+			return false;
+		}
+		return NSFFileUtil.isBulkAttributesSupported(getDelegate(path));
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	/**
+	 * Counts an operation on the provided path and accounts for it against the throttle
+	 * for its mount, waiting if the user has reached their limit.
+	 * 
+	 * @param path the path being operated on
+	 * @param operation the name of the operation, used for statistics
+	 * @return the {@link Throttle} for the path, to be used for any data transferred
+	 */
+	private static Throttle acquireOperation(Path path, String operation) throws InterruptedIOException {
+		CompositeFileSystem compositeFileSystem = ((CompositePath)path).getFileSystem();
+		String mount = getMountName(path);
+		ServerMetrics.instance.counter("Ops." + operation).increment(); //$NON-NLS-1$
+		String metricsMount = compositeFileSystem.resolveMountName(mount);
+		if(metricsMount != null) {
+			ServerMetrics.instance.counter("Mount." + metricsMount + ".Ops." + operation).increment(); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		Throttle throttle = compositeFileSystem.getThrottle(mount);
+		throttle.acquireOperation();
+		return throttle;
+	}
+	
+	/**
+	 * @return the name of the mount containing the path, or {@code null} for the root
+	 */
+	private static String getMountName(Path path) {
+		return StreamSupport.stream(path.spliterator(), false)
+			.filter(p -> !p.toString().isEmpty())
+			.findFirst()
+			.map(Path::toString)
+			.orElse(null);
+	}
+
+	/**
+	 * @return the configured name of the mount containing the path, or {@code null} for
+	 *         the root or a path outside of any mount
+	 */
+	private static String getMetricsMountName(Path path) {
+		return ((CompositePath)path).getFileSystem().resolveMountName(getMountName(path));
+	}
 
 	private Path getDelegate(Path path) {
 		try {
 			CompositeFileSystem compositeFileSystem = ((CompositePath)path).getFileSystem();
-			Map<String, FileSystem> fileSystems = compositeFileSystem.getFileSystems();
-			
-			
-			String mount = StreamSupport.stream(path.spliterator(), false)
-				.filter(p -> !p.toString().isEmpty())
-				.findFirst()
-				.map(Path::toString)
-				.orElseThrow(() -> new IllegalArgumentException(format("Unable to find subdirectory delegate for path {0}", path)));
-			FileSystem fs = fileSystems.get(mount);
+			String mount = getMountName(path);
+			if(mount == null) {
+				throw new IllegalArgumentException(format("Unable to find subdirectory delegate for path {0}", path));
+			}
+			FileSystem fs;
+			try {
+				fs = compositeFileSystem.getFileSystem(mount);
+			} catch(IOException e) {
+				throw new UncheckedIOException(format("Encountered exception opening mounted filesystem for \"{0}\"", mount), e);
+			}
 			if(fs == null) {
 				throw new IllegalStateException(format("Unable to resolve mounted filesystem for \"{0}\"", mount));
 			}
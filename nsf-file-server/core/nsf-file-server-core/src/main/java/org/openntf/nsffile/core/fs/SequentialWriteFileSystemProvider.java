@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.fs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.spi.FileSystemProvider;
+
+/**
+ * Extension for {@link FileSystemProvider} implementations that can write the complete
+ * content of a file of known size more efficiently when it arrives in order, such as an
+ * NSF provider streaming an upload directly into an attachment.
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public interface SequentialWriteFileSystemProvider {
+	/**
+	 * Opens a stream that replaces the content of the file at {@code path}, creating it
+	 * if it does not exist. Exactly {@code size} bytes are expected to be written before
+	 * the stream is closed.
+	 *
+	 * <p>The new content is committed when the stream is closed. If fewer bytes than
+	 * expected were written, the file is left unchanged and {@link OutputStream#close()}
+	 * throws an {@link IOException}.</p>
+	 *
+	 * @param path the path of the file to write
+	 * @param size the number of bytes that will be written
+	 * @return an {@link OutputStream} for the new content
+	 * @throws IOException if there is a problem opening the file
+	 */
+	OutputStream newSequentialOutputStream(Path path, long size) throws IOException;
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.fs;
+
+import java.io.InterruptedIOException;
+
+import org.openntf.nsffile.core.config.ThrottleLimit;
+import org.openntf.nsffile.core.util.RateLimiter;
+
+/**
+ * Rate limits on file data and operations for a user, or for a user within a single
+ * mount. A throttle for a mount also charges its parent throttle for the user, so
+ * that the stricter of the two applies.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ * @see ThrottleManager
+ */
+public class Throttle {
+	private final String name;
+	private final Throttle parent;
+	private final RateLimiter bytes = new RateLimiter(0);
+	private final RateLimiter operations = new RateLimiter(0);
+	private volatile ThrottleLimit limit = ThrottleLimit.UNLIMITED;
+	
+	/**
+	 * @param name a name for the throttle, used in statistic names
+	 * @param parent a {@link Throttle} to also charge, or {@code null}
+	 */
+	public Throttle(String name, Throttle parent) {
+		this.name = name;
+		this.parent = parent;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public ThrottleLimit getLimit() {
+		return limit;
+	}
+	
+	/**
+	 * Applies the provided limits, keeping the current state of the buckets.
+	 * 
+	 * @param limit the new limits
+	 */
+	public void configure(ThrottleLimit limit) {
+		if(limit != this.limit) {
+			synchronized(this) {
+				bytes.setRate(limit.getBytesPerSecond());
+				operations.setRate(limit.getOpsPerSecond());
+				this.limit = limit;
+			}
+		}
+	}
+	
+	/**
+	 * Accounts for the transfer of the provided number of bytes of file data, waiting
+	 * if the limit has been reached.
+	 * 
+	 * @param count the number of bytes transferred
+	 * @throws InterruptedIOException if the thread is interrupted while waiting
+	 */
+	public void acquireBytes(long count) throws InterruptedIOException {
+		bytes.acquire(count);
+		if(parent != null) {
+			parent.acquireBytes(count);
+		}
+	}
+	
+	/**
+	 * Accounts for a single filesystem operation, waiting if the limit has been reached.
+	 * 
+	 * @throws InterruptedIOException if the thread is interrupted while waiting
+	 */
+	public void acquireOperation() throws InterruptedIOException {
+		operations.acquire(1);
+		if(parent != null) {
+			parent.acquireOperation();
+		}
+	}
+	
+	/**
+	 * @return whether no caller is currently delayed by this throttle
+	 */
+	public boolean isIdle() {
+		return bytes.getWaiting() == 0 && operations.getWaiting() == 0;
+	}
+	
+	/**
+	 * @return the {@link RateLimiter} for file data, in bytes
+	 */
+	public RateLimiter getBytes() {
+		return bytes;
+	}
+	
+	/**
+	 * @return the {@link RateLimiter} for filesystem operations
+	 */
+	public RateLimiter getOperations() {
+		return operations;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Throttle [name=%s, limit=%s]", name, limit); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.fs;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openntf.nsffile.core.config.DominoNSFConfiguration;
+import org.openntf.nsffile.core.config.MountDescriptor;
+
+/**
+ * Holds the {@link Throttle}s for each user and each user's use of a mount, shared
+ * across all of their sessions.
+ * 
+ * <p>Throttles are reconfigured from the current server configuration each time they
+ * are retrieved, so changes to limits apply to open sessions without resetting the
+ * state of their buckets.</p>
+ * 
+ * <p>A user's throttles are kept while they have open sessions, as reported by
+ * {@link #sessionOpened} and {@link #sessionClosed}, and discarded once the last
+ * session closes and no caller is waiting on them.</p>
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public enum ThrottleManager {
+	instance;
+	
+	/** Maps user names to their throttles */
+	private final Map<String, UserThrottles> users = new ConcurrentHashMap<>();
+	/** Maps user names to their number of open sessions, with no entry for users without any */
+	private final Map<String, Integer> sessions = new ConcurrentHashMap<>();
+	
+	/**
+	 * Retrieves the throttle that applies to all of the provided user's activity.
+	 * 
+	 * @param username the name of the user
+	 * @return the user's {@link Throttle}
+	 */
+	public Throttle getUserThrottle(String username) {
+		return getUserThrottles(username).throttle;
+	}
+	
+	/**
+	 * Retrieves the throttle for the provided user's activity in a mount, which also
+	 * applies the user's overall throttle.
+	 * 
+	 * @param username the name of the user
+	 * @param mount the mount being accessed
+	 * @return the {@link Throttle} for the user in the mount
+	 */
+	public Throttle getMountThrottle(String username, MountDescriptor mount) {
+		UserThrottles user = getUserThrottles(username);
+		Throttle throttle = user.mounts.computeIfAbsent(mount.getPath(), path -> new Throttle(user.throttle.getName() + ".Mount." + toStatisticName(path), user.throttle)); //$NON-NLS-1$
+		throttle.configure(mount.getThrottleLimit());
+		return throttle;
+	}
+	
+	/**
+	 * @return a snapshot of the throttles of users with open sessions, along with any
+	 *         that are still waiting to be discarded
+	 */
+	public Collection<Throttle> getThrottles() {
+		return users.values().stream()
+			.flatMap(user -> Stream.concat(Stream.of(user.throttle), user.mounts.values().stream()))
+			.collect(Collectors.toList());
+	}
+	
+	/**
+	 * Records the start of a session for the provided user, keeping the user's
+	 * throttles until it is closed.
+	 * 
+	 * @param username the name of the user
+	 */
+	public void sessionOpened(String username) {
+		sessions.merge(username, 1, Integer::sum);
+	}
+	
+	/**
+	 * Records the end of a session for the provided user, discarding the user's
+	 * throttles if it was their last.
+	 * 
+	 * @param username the name of the user
+	 */
+	public void sessionClosed(String username) {
+		sessions.compute(username, (key, count) -> {
+			if(count == null || count <= 1) {
+				evictIfIdle(key);
+				return null;
+			}
+			return count - 1;
+		});
+	}
+	
+	/**
+	 * Discards the throttles of users without open sessions that were still in use
+	 * when their last session closed.
+	 */
+	public void evictIdle() {
+		for(String username : users.keySet()) {
+			sessions.compute(username, (key, count) -> {
+				if(count == null) {
+					evictIfIdle(key);
+				}
+				return count;
+			});
+		}
+	}
+	
+	/**
+	 * Converts a user or mount name to a form that can be used within a statistic
+	 * name, such as "SomeUser_Org" for "CN=Some User/O=Org". Component labels are
+	 * dropped, components are joined with "_", and whitespace and dots are removed.
+	 * 
+	 * @param name the name to convert
+	 * @return the converted name
+	 */
+	public static String toStatisticName(String name) {
+		StringBuilder result = new StringBuilder();
+		for(String part : String.valueOf(name).split("/")) { //$NON-NLS-1$
+			String value = part.substring(part.indexOf('=') + 1).replaceAll("[\\s.]+", ""); //$NON-NLS-1$ //$NON-NLS-2$
+			if(!value.isEmpty()) {
+				if(result.length() > 0) {
+					result.append('_');
+				}
+				result.append(value);
+			}
+		}
+		return result.length() == 0 ? "_" : result.toString(); //$NON-NLS-1$
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private UserThrottles getUserThrottles(String username) {
+		UserThrottles user = users.computeIfAbsent(username, UserThrottles::new);
+		user.throttle.configure(DominoNSFConfiguration.instance.getThrottleLimit(username));
+		return user;
+	}
+	
+	/**
+	 * Removes the user's throttles unless a caller is still delayed by one of them;
+	 * called while holding the user's entry in {@link #sessions}.
+	 */
+	private void evictIfIdle(String username) {
+		users.computeIfPresent(username, (key, user) -> user.isIdle() ? null : user);
+	}
+	
+	private static class UserThrottles {
+		private final Throttle throttle;
+		/** Maps mount paths, as configured, to the user's throttles within them */
+		private final Map<String, Throttle> mounts = new ConcurrentHashMap<>();
+		
+		UserThrottles(String username) {
+			this.throttle = new Throttle(toStatisticName(username), null);
+		}
+		
+		boolean isIdle() {
+			return throttle.isIdle() && mounts.values().stream().allMatch(Throttle::isIdle);
+		}
+	}
+}
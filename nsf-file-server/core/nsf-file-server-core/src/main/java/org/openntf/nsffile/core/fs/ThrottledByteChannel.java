@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.fs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * {@link SeekableByteChannel} that charges the data read and written through a
+ * delegate channel against a {@link Throttle}.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ * @see ThrottledFileChannel
+ */
+public class ThrottledByteChannel implements SeekableByteChannel {
+	private final SeekableByteChannel delegate;
+	private final Throttle throttle;
+	private final TransferCounters counters;
+	
+	public ThrottledByteChannel(SeekableByteChannel delegate, Throttle throttle, TransferCounters counters) {
+		this.delegate = delegate;
+		this.throttle = throttle;
+		this.counters = counters;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return delegate.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		delegate.close();
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		int read = delegate.read(dst);
+		read(read);
+		return read;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		written(src.remaining());
+		return delegate.write(src);
+	}
+
+	@Override
+	public long position() throws IOException {
+		return delegate.position();
+	}
+
+	@Override
+	public SeekableByteChannel position(long newPosition) throws IOException {
+		delegate.position(newPosition);
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		return delegate.size();
+	}
+
+	@Override
+	public SeekableByteChannel truncate(long size) throws IOException {
+		delegate.truncate(size);
+		return this;
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private void read(long count) throws InterruptedIOException {
+		if(count > 0) {
+			counters.read(count);
+			throttle.acquireBytes(count);
+		}
+	}
+	
+	private void written(long count) throws InterruptedIOException {
+		if(count > 0) {
+			counters.written(count);
+			throttle.acquireBytes(count);
+		}
+	}
+}
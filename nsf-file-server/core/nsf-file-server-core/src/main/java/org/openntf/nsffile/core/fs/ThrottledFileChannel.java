@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.fs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * {@link FileChannel} that charges the data read and written through a delegate
+ * channel against a {@link Throttle}. Writes wait before they are passed on, while
+ * reads wait after the data has been read.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class ThrottledFileChannel extends FileChannel {
+	private final FileChannel delegate;
+	private final Throttle throttle;
+	private final TransferCounters counters;
+	
+	public ThrottledFileChannel(FileChannel delegate, Throttle throttle, TransferCounters counters) {
+		this.delegate = delegate;
+		this.throttle = throttle;
+		this.counters = counters;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		int read = delegate.read(dst);
+		read(read);
+		return read;
+	}
+
+	@Override
+	public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+		long read = delegate.read(dsts, offset, length);
+		read(read);
+		return read;
+	}
+	
+	@Override
+	public int read(ByteBuffer dst, long position) throws IOException {
+		int read = delegate.read(dst, position);
+		read(read);
+		return read;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		written(src.remaining());
+		return delegate.write(src);
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+		long count = 0;
+		for(int i = offset; i < offset + length; i++) {
+			count += srcs[i].remaining();
+		}
+		written(count);
+		return delegate.write(srcs, offset, length);
+	}
+	
+	@Override
+	public int write(ByteBuffer src, long position) throws IOException {
+		written(src.remaining());
+		return delegate.write(src, position);
+	}
+
+	@Override
+	public long position() throws IOException {
+		return delegate.position();
+	}
+
+	@Override
+	public FileChannel position(long newPosition) throws IOException {
+		delegate.position(newPosition);
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		return delegate.size();
+	}
+
+	@Override
+	public FileChannel truncate(long size) throws IOException {
+		delegate.truncate(size);
+		return this;
+	}
+
+	@Override
+	public void force(boolean metaData) throws IOException {
+		delegate.force(metaData);
+	}
+
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		long transferred = delegate.transferTo(position, count, target);
+		read(transferred);
+		return transferred;
+	}
+
+	@Override
+	public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+		long transferred = delegate.transferFrom(src, position, count);
+		written(transferred);
+		return transferred;
+	}
+
+	@Override
+	public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+		return delegate.map(mode, position, size);
+	}
+
+	@Override
+	public FileLock lock(long position, long size, boolean shared) throws IOException {
+		return delegate.lock(position, size, shared);
+	}
+
+	@Override
+	public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+		return delegate.tryLock(position, size, shared);
+	}
+
+	@Override
+	protected void implCloseChannel() throws IOException {
+		delegate.close();
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private void read(long count) throws InterruptedIOException {
+		if(count > 0) {
+			counters.read(count);
+			throttle.acquireBytes(count);
+		}
+	}
+	
+	private void written(long count) throws InterruptedIOException {
+		if(count > 0) {
+			counters.written(count);
+			throttle.acquireBytes(count);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.fs;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * {@link OutputStream} that charges the data written through a delegate stream
+ * against a {@link Throttle}.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ * @see ThrottledFileChannel
+ */
+public class ThrottledOutputStream extends FilterOutputStream {
+	private final Throttle throttle;
+	private final TransferCounters counters;
+	
+	public ThrottledOutputStream(OutputStream delegate, Throttle throttle, TransferCounters counters) {
+		super(delegate);
+		this.throttle = throttle;
+		this.counters = counters;
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		written(1);
+		out.write(b);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		written(len);
+		out.write(b, off, len);
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private void written(long count) throws InterruptedIOException {
+		counters.written(count);
+		throttle.acquireBytes(count);
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.fs;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openntf.nsffile.core.util.ServerMetrics;
+
+/**
+ * Counts the file data read and written through the composite filesystem, both in
+ * total and for a single mount.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class TransferCounters {
+	private static final LongAdder TOTAL_READ = ServerMetrics.instance.counter("BytesRead"); //$NON-NLS-1$
+	private static final LongAdder TOTAL_WRITTEN = ServerMetrics.instance.counter("BytesWritten"); //$NON-NLS-1$
+	
+	private final LongAdder read;
+	private final LongAdder written;
+	
+	/**
+	 * @param mount the name of the mount, or {@code null} to only count totals
+	 */
+	public TransferCounters(String mount) {
+		this.read = mount == null ? null : ServerMetrics.instance.counter("Mount." + mount + ".BytesRead"); //$NON-NLS-1$ //$NON-NLS-2$
+		this.written = mount == null ? null : ServerMetrics.instance.counter("Mount." + mount + ".BytesWritten"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+	
+	public void read(long count) {
+		TOTAL_READ.add(count);
+		if(read != null) {
+			read.add(count);
+		}
+	}
+	
+	public void written(long count) {
+		TOTAL_WRITTEN.add(count);
+		if(written != null) {
+			written.add(count);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.fs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.spi.FileSystemProvider;
+
+/**
+ * Extension for {@link FileSystemProvider} implementations that can delete a folder
+ * and everything beneath it in a single operation, such as an NSF provider deleting
+ * all of the documents in a subtree from one Notes call.
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public interface TreeDeleteFileSystemProvider {
+	/**
+	 * Deletes the file or folder at the provided path, along with all of its descendants.
+	 * This is a no-op if the path does not exist.
+	 *
+	 * @param path the path of the file or folder to delete
+	 * @throws IOException if there is a problem deleting the tree
+	 */
+	void deleteTree(Path path) throws IOException;
+}
@@ -27,4 +27,15 @@ public interface FileSystemMountProvider {
 	String getName();
 	
 	FileSystem createFileSystem(String dataSource, Map<String, Object> env) throws IOException;
+	
+	/**
+	 * Discards any data cached in memory for the provided data source, so that it is
+	 * read again on next access. The default implementation does nothing.
+	 * 
+	 * @param dataSource the data source of the mount, as configured in the NSF
+	 * @since 2.3.0
+	 */
+	default void flushCaches(String dataSource) {
+		// NOP
+	}
 }
@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.util;
+
+import java.text.MessageFormat;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.hcl.domino.data.Database;
+import com.hcl.domino.data.DominoDateTime;
+import com.hcl.domino.misc.Ref;
+
+/**
+ * Watches databases in the background for modifications, so that callers can determine
+ * whether cached data is still current without making a Domino API call.
+ *
+ * <p>A watcher is started for a database the first time its modification time is requested
+ * and polls it on {@link NotesThreadFactory#scheduler} until it goes unused for
+ * {@link #IDLE_TIMEOUT} milliseconds. Registered listeners are notified with the database
+ * path when a change is seen.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class DatabaseChangePoller {
+	private static final Logger log = Logger.getLogger(DatabaseChangePoller.class.getPackage().getName());
+
+	/** The default polling interval, in milliseconds */
+	public static final long DEFAULT_INTERVAL = 2000;
+	/** The time, in milliseconds, after which a watcher for an unused database is stopped */
+	public static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+	public static final DatabaseChangePoller instance = new DatabaseChangePoller(DatabaseChangePoller::readDatabaseModifiedTime);
+
+	private final ToLongFunction<String> modifiedTimeReader;
+	private final Map<String, Watcher> watchers = new ConcurrentHashMap<>();
+	private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param modifiedTimeReader a function that reads the modification time of the
+	 *        database at the provided API path, in epoch milliseconds
+	 */
+	public DatabaseChangePoller(ToLongFunction<String> modifiedTimeReader) {
+		this.modifiedTimeReader = modifiedTimeReader;
+	}
+
+	/**
+	 * Retrieves the last-known modification time of the provided database, starting a
+	 * watcher for it if one is not already running.
+	 *
+	 * <p>The first call for a database polls it synchronously; subsequent calls return
+	 * the value from the most-recent background poll.</p>
+	 *
+	 * @param nsfPath the API path of the database
+	 * @param interval the maximum acceptable staleness, in milliseconds
+	 * @return the later of the data and non-data modification times, in epoch milliseconds
+	 */
+	public long getModifiedTime(String nsfPath, long interval) {
+		while(true) {
+			Watcher watcher = watchers.computeIfAbsent(nsfPath, Watcher::new);
+			long result = watcher.get(interval);
+			if(result != -1) {
+				return result;
+			}
+			// Otherwise, the watcher was stopped while we were retrieving it
+		}
+	}
+
+	/**
+	 * Registers a listener to be notified with the database path when a watched database
+	 * is modified.
+	 *
+	 * @param listener the listener to add
+	 */
+	public void addListener(Consumer<String> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener the listener to remove
+	 */
+	public void removeListener(Consumer<String> listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Notifies listeners that the provided database has changed, whether or not it is
+	 * being watched, so that any data cached for it is discarded.
+	 *
+	 * @param nsfPath the API path of the database
+	 */
+	public void invalidate(String nsfPath) {
+		for(Consumer<String> listener : listeners) {
+			try {
+				listener.accept(nsfPath);
+			} catch(Throwable t) {
+				if(log.isLoggable(Level.WARNING)) {
+					log.log(Level.WARNING, MessageFormat.format("Encountered exception notifying listener of change to {0}", nsfPath), t);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops all active watchers.
+	 */
+	public void stop() {
+		watchers.values().forEach(Watcher::stop);
+		watchers.clear();
+	}
+
+	// *******************************************************************************
+	// * Internal implementation
+	// *******************************************************************************
+
+	private class Watcher {
+		private final String nsfPath;
+		private volatile long modTime = -1;
+		private volatile long lastAccess;
+		private volatile long interval = Long.MAX_VALUE;
+		private ScheduledFuture<?> future;
+		private volatile boolean stopped;
+
+		public Watcher(String nsfPath) {
+			this.nsfPath = nsfPath;
+		}
+
+		public long get(long requestedInterval) {
+			lastAccess = System.currentTimeMillis();
+			long result = modTime;
+			if(result != -1 && requestedInterval >= interval && !stopped) {
+				return result;
+			}
+
+			synchronized(this) {
+				if(stopped) {
+					return -1;
+				}
+				if(modTime == -1) {
+					modTime = readModifiedTime();
+				}
+				if(requestedInterval < interval) {
+					// Start polling or speed up to satisfy the most-demanding mount
+					if(future != null) {
+						future.cancel(false);
+					}
+					interval = requestedInterval;
+					future = NotesThreadFactory.scheduler.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+				}
+				return modTime;
+			}
+		}
+
+		public synchronized void stop() {
+			stopped = true;
+			if(future != null) {
+				future.cancel(false);
+			}
+		}
+
+		private void poll() {
+			if(System.currentTimeMillis() - lastAccess > IDLE_TIMEOUT) {
+				stop();
+				watchers.remove(nsfPath, this);
+				return;
+			}
+
+			long newModTime = readModifiedTime();
+			if(newModTime > modTime) {
+				modTime = newModTime;
+				invalidate(nsfPath);
+			}
+		}
+
+		private long readModifiedTime() {
+			try {
+				return modifiedTimeReader.applyAsLong(nsfPath);
+			} catch(Throwable t) {
+				if(log.isLoggable(Level.WARNING)) {
+					log.log(Level.WARNING, MessageFormat.format("Encountered exception polling modification time of {0}", nsfPath), t);
+				}
+				// Assume that anything could have changed
+				return System.currentTimeMillis();
+			}
+		}
+	}
+
+	private static long readDatabaseModifiedTime(String nsfPath) {
+		return NotesThreadFactory.call(client -> {
+			Database database = client.openDatabase(nsfPath);
+			Ref<DominoDateTime> data = new Ref<>();
+			Ref<DominoDateTime> nonData = new Ref<>();
+			database.getModifiedTime(data, nonData);
+			return Math.max(toEpochMilli(data.get()), toEpochMilli(nonData.get()));
+		});
+	}
+
+	private static long toEpochMilli(DominoDateTime dt) {
+		return dt == null ? 0 : Instant.from(dt).toEpochMilli();
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.util;
+
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the progress of a bulk import of files into a filesystem.
+ *
+ * <p>Counters may be updated from any thread.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class ImportProgress {
+	private static final Logger log = Logger.getLogger(ImportProgress.class.getPackage().getName());
+
+	private final long start = System.nanoTime();
+	private final AtomicLong folders = new AtomicLong();
+	private final AtomicLong files = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+
+	public void folderCreated() {
+		folders.incrementAndGet();
+	}
+
+	public void fileStored(long size) {
+		files.incrementAndGet();
+		bytes.addAndGet(size);
+	}
+
+	/**
+	 * Records that the provided source file could not be imported.
+	 *
+	 * @param source the file that failed
+	 * @param t the cause of the failure
+	 */
+	public void failed(Path source, Throwable t) {
+		failures.incrementAndGet();
+		if(log.isLoggable(Level.WARNING)) {
+			log.log(Level.WARNING, MessageFormat.format("Unable to import {0}", source), t);
+		}
+	}
+
+	public long getFolders() {
+		return folders.get();
+	}
+
+	public long getFiles() {
+		return files.get();
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	public long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * @return a one-line summary of the counters and throughput so far
+	 */
+	public String describe() {
+		long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		double seconds = elapsedMillis / 1000d;
+		double megabytes = getBytes() / (1024d * 1024d);
+		return MessageFormat.format("{0} folders, {1} files, {2,number,0.0} MB in {3,number,0.0}s ({4,number,0.0} files/s, {5,number,0.00} MB/s), {6} failures", //$NON-NLS-1$
+			getFolders(), getFiles(), megabytes, seconds, getFiles() / seconds, megabytes / seconds, getFailures());
+	}
+
+	@Override
+	public String toString() {
+		return describe();
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low-overhead histogram of operation latencies, using power-of-two buckets of
+ * microseconds.
+ * 
+ * <p>Recording a value only increments striped counters, so it never blocks other
+ * threads. Percentiles are reported as the upper bound of the bucket that contains
+ * them, which is within a factor of two of the true value.</p>
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class LatencyHistogram {
+	/** Bucket {@code i} holds values below 2<sup>i</sup> microseconds; the last is unbounded */
+	private static final int BUCKETS = 32;
+	
+	private final LongAdder[] counts = new LongAdder[BUCKETS];
+	private final LongAdder total = new LongAdder();
+	
+	public LatencyHistogram() {
+		for(int i = 0; i < BUCKETS; i++) {
+			counts[i] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * Records a single operation.
+	 * 
+	 * @param nanos the duration of the operation, in nanoseconds
+	 */
+	public void record(long nanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+		int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+		counts[bucket].increment();
+		total.increment();
+	}
+	
+	/**
+	 * @return the total number of operations recorded
+	 */
+	public long getCount() {
+		return total.sum();
+	}
+	
+	/**
+	 * Takes the operations recorded since the last call to this method, resetting the
+	 * buckets so that the next snapshot reflects only newer operations.
+	 * 
+	 * @return a {@link Snapshot} of the recent operations
+	 */
+	public Snapshot drain() {
+		long[] result = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++) {
+			result[i] = counts[i].sumThenReset();
+		}
+		return new Snapshot(result);
+	}
+	
+	/**
+	 * The distribution of operations over a period of time.
+	 */
+	public static class Snapshot {
+		private final long[] counts;
+		private final long count;
+		
+		private Snapshot(long[] counts) {
+			this.counts = counts;
+			long count = 0;
+			for(long c : counts) {
+				count += c;
+			}
+			this.count = count;
+		}
+		
+		/**
+		 * @return the number of operations in this snapshot
+		 */
+		public long getCount() {
+			return count;
+		}
+		
+		/**
+		 * @param percentile the percentile to find, from {@code 0} to {@code 100}
+		 * @return the approximate latency at that percentile, in microseconds, or
+		 *         {@code 0} if there were no operations
+		 */
+		public long getPercentile(double percentile) {
+			if(count == 0) {
+				return 0;
+			}
+			long target = (long)Math.ceil(count * percentile / 100);
+			long seen = 0;
+			for(int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if(seen >= target) {
+					return 1L << i;
+				}
+			}
+			return 1L << (counts.length - 1);
+		}
+	}
+}
@@ -16,17 +16,33 @@
 package org.openntf.nsffile.core.util;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
+import java.nio.file.spi.FileSystemProvider;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.text.MessageFormat;
+import java.text.Normalizer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -37,6 +53,11 @@ import com.ibm.commons.extension.ExtensionManager;
 import com.ibm.commons.util.PathUtil;
 import com.ibm.commons.util.StringUtil;
 
+import org.openntf.nsffile.core.fs.BulkAttributeFileSystemProvider;
+import org.openntf.nsffile.core.fs.BulkImportFileSystemProvider;
+import org.openntf.nsffile.core.fs.SequentialWriteFileSystemProvider;
+import org.openntf.nsffile.core.fs.TreeDeleteFileSystemProvider;
+
 /**
  * Common utilities for working with NSF-based filesystems
  * 
@@ -49,6 +70,9 @@ public enum NSFFileUtil {
 	
 	private static Path tempDir;
 	private static Collection<Path> tempFiles = new ConcurrentSkipListSet<>();
+	/** Names are converted on every NSF operation, so remember them to avoid a thread hop each time */
+	private static final Map<String, String> CANONICAL_NAMES = new ConcurrentHashMap<>();
+	private static final int MAX_CACHED_NAMES = 1000;
 	
 	/**
 	 * <p>Takes an Domino-format name and converts it to LDAP format.</p>
@@ -129,7 +153,20 @@ public enum NSFFileUtil {
 	}
 
 	public static String dn(String name) {
-		return NotesThreadFactory.call(client -> Names.toCanonical(name));
+		if(StringUtil.isEmpty(name)) {
+			return NotesThreadFactory.call(client -> Names.toCanonical(name));
+		}
+		String result = CANONICAL_NAMES.get(name);
+		if(result == null) {
+			result = NotesThreadFactory.call(client -> Names.toCanonical(name));
+			if(result != null) {
+				if(CANONICAL_NAMES.size() >= MAX_CACHED_NAMES) {
+					CANONICAL_NAMES.clear();
+				}
+				CANONICAL_NAMES.put(name, result);
+			}
+		}
+		return result;
 	}
 
 	public static String shortCn(String name) {
@@ -239,6 +276,39 @@ public enum NSFFileUtil {
 		}
 	}
 	
+	/**
+	 * Determines the total size of the temporary files created by
+	 * {@link #createTempFile}, forgetting any that have since been deleted.
+	 * 
+	 * @return the size in bytes of the remaining temporary files
+	 * @since 2.3.0
+	 */
+	public static long getTempStorageSize() {
+		long size = 0;
+		Iterator<Path> iter = tempFiles.iterator();
+		while(iter.hasNext()) {
+			Path tempFile = iter.next();
+			try {
+				size += Files.size(tempFile);
+			} catch(IOException e) {
+				// Most likely deleted by its owner
+				if(!Files.exists(tempFile)) {
+					iter.remove();
+				}
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * @return the number of temporary files created by {@link #createTempFile} that
+	 *         were present at the last call to {@link #getTempStorageSize}
+	 * @since 2.3.0
+	 */
+	public static int getTempFileCount() {
+		return tempFiles.size();
+	}
+	
 	public static void deleteTempFiles() {
 		synchronized(tempFiles) {
 			for(Path tempFile : tempFiles) {
@@ -260,4 +330,207 @@ public enum NSFFileUtil {
 		}
 		return p;
 	}
+	
+	/**
+	 * Normalizes the provided path for comparison, treating paths that differ only by
+	 * case or Unicode normalization as the same, as NSF view lookups do.
+	 * 
+	 * @param path the path to normalize
+	 * @return the normalized path
+	 * @since 2.3.0
+	 */
+	public static String normalizePath(String path) {
+		return Normalizer.normalize(path, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * Determines whether the provider for the provided path can apply several
+	 * attributes in a single operation.
+	 * 
+	 * @param path the path to check
+	 * @return {@code true} if {@link #setAttributes} will apply the attributes in bulk
+	 * @since 2.3.0
+	 */
+	public static boolean isBulkAttributesSupported(Path path) {
+		FileSystemProvider provider = path.getFileSystem().provider();
+		return provider instanceof BulkAttributeFileSystemProvider && ((BulkAttributeFileSystemProvider)provider).isBulkAttributesSupported(path);
+	}
+	
+	/**
+	 * Sets the provided attributes on the provided path, in a single operation if the
+	 * path's provider implements {@link BulkAttributeFileSystemProvider} or one at a
+	 * time via {@link Files#setAttribute} otherwise.
+	 * 
+	 * @param path the path of the file to update
+	 * @param attributes a map of attribute names to values, in {@link Files#setAttribute} format
+	 * @param options options indicating how symbolic links are handled
+	 * @throws IOException if there is a problem setting the attributes
+	 * @since 2.3.0
+	 */
+	public static void setAttributes(Path path, Map<String, ?> attributes, LinkOption... options) throws IOException {
+		if(attributes.isEmpty()) {
+			return;
+		}
+		FileSystemProvider provider = path.getFileSystem().provider();
+		if(provider instanceof BulkAttributeFileSystemProvider) {
+			((BulkAttributeFileSystemProvider)provider).setAttributes(path, attributes, options);
+		} else {
+			for(Map.Entry<String, ?> attr : attributes.entrySet()) {
+				Files.setAttribute(path, attr.getKey(), attr.getValue(), options);
+			}
+		}
+	}
+	
+	/**
+	 * Deletes the provided file or folder and everything beneath it, in a single operation
+	 * if the path's provider implements {@link TreeDeleteFileSystemProvider} or one entry
+	 * at a time otherwise.
+	 * 
+	 * <p>Unlike {@link #deltree}, this propagates any exception encountered.</p>
+	 * 
+	 * @param path the path of the file or folder to delete
+	 * @throws IOException if there is a problem deleting the tree
+	 * @since 2.3.0
+	 */
+	public static void deleteTree(Path path) throws IOException {
+		FileSystemProvider provider = path.getFileSystem().provider();
+		if(provider instanceof TreeDeleteFileSystemProvider) {
+			((TreeDeleteFileSystemProvider)provider).deleteTree(path);
+		} else if(Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+			Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					Files.delete(file);
+					return FileVisitResult.CONTINUE;
+				}
+				
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+					if(exc != null) {
+						throw exc;
+					}
+					Files.delete(dir);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Imports the folder at {@code source}, along with everything beneath it, as the
+	 * folder at {@code target}, using the target provider's bulk implementation if it
+	 * implements {@link BulkImportFileSystemProvider} or {@link #copyTree} otherwise.
+	 * 
+	 * @param source the folder to import
+	 * @param target the path of the folder to import into
+	 * @param parallelism the maximum number of files to store at once
+	 * @param progress the object used to report progress
+	 * @throws IOException if there is a problem reading the source or creating the
+	 *         target folders
+	 * @since 2.3.0
+	 */
+	public static void importTree(Path source, Path target, int parallelism, ImportProgress progress) throws IOException {
+		FileSystemProvider provider = target.getFileSystem().provider();
+		if(provider instanceof BulkImportFileSystemProvider) {
+			((BulkImportFileSystemProvider)provider).importTree(source, target, parallelism, progress);
+		} else {
+			copyTree(source, target, parallelism, progress);
+		}
+	}
+	
+	/**
+	 * Opens a stream that replaces the content of the file at {@code path} with
+	 * {@code size} bytes written in order, using the provider's sequential implementation
+	 * if it implements {@link SequentialWriteFileSystemProvider} or
+	 * {@link Files#newOutputStream} otherwise.
+	 * 
+	 * @param path the path of the file to write
+	 * @param size the number of bytes that will be written
+	 * @return an {@link OutputStream} for the new content
+	 * @throws IOException if there is a problem opening the file
+	 * @since 2.3.0
+	 */
+	public static OutputStream newSequentialOutputStream(Path path, long size) throws IOException {
+		FileSystemProvider provider = path.getFileSystem().provider();
+		if(provider instanceof SequentialWriteFileSystemProvider) {
+			return ((SequentialWriteFileSystemProvider)provider).newSequentialOutputStream(path, size);
+		} else {
+			return Files.newOutputStream(path);
+		}
+	}
+	
+	/**
+	 * Copies the folder at {@code source}, along with everything beneath it, to
+	 * {@code target}. All folders are created first, and then files are copied on up
+	 * to {@code parallelism} threads.
+	 * 
+	 * <p>Failures to copy individual files are recorded in {@code progress} rather
+	 * than ending the copy.</p>
+	 * 
+	 * @param source the folder to copy
+	 * @param target the path of the folder to copy into
+	 * @param parallelism the maximum number of files to copy at once
+	 * @param progress the object used to report progress
+	 * @throws IOException if there is a problem reading the source or creating the
+	 *         target folders
+	 * @since 2.3.0
+	 */
+	public static void copyTree(Path source, Path target, int parallelism, ImportProgress progress) throws IOException {
+		List<Path> files = new ArrayList<>();
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(resolveRelative(target, source.relativize(dir)));
+				progress.folderCreated();
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if(attrs.isRegularFile()) {
+					files.add(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		
+		ExecutorService exec = Executors.newFixedThreadPool(Math.max(1, parallelism));
+		try {
+			List<Future<?>> results = new ArrayList<>(files.size());
+			for(Path file : files) {
+				results.add(exec.submit(() -> {
+					try {
+						Files.copy(file, resolveRelative(target, source.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
+						progress.fileStored(Files.size(file));
+					} catch(IOException | RuntimeException e) {
+						progress.failed(file, e);
+					}
+				}));
+			}
+			for(Future<?> result : results) {
+				NotesThreadFactory.join(result);
+			}
+		} finally {
+			exec.shutdown();
+		}
+	}
+	
+	/**
+	 * Resolves a relative path from one filesystem against a path in another, name by
+	 * name, so that differing separators do not matter.
+	 * 
+	 * @param base the path to resolve against
+	 * @param relative the relative path to resolve
+	 * @return the resolved path in the filesystem of {@code base}
+	 * @since 2.3.0
+	 */
+	public static Path resolveRelative(Path base, Path relative) {
+		Path result = base;
+		for(Path name : relative) {
+			if(!name.toString().isEmpty()) {
+				result = result.resolve(name.toString());
+			}
+		}
+		return result;
+	}
 }
@@ -0,0 +1,453 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.util;
+
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded executor for work that runs on Notes threads.
+ *
+ * <p>Tasks are queued per key (normally the effective user and database) and workers
+ * take from the keys in round-robin order, so that one busy user cannot starve the
+ * others. The number of threads and queued tasks is capped; once the queue is full,
+ * submitters wait up to the configured timeout and then receive a
+ * {@link RejectedExecutionException}.</p>
+ *
+ * <p>Tasks submitted from a thread that is already a worker of the same executor are run
+ * inline, so that nested Notes calls cannot deadlock a saturated pool. Tasks submitted
+ * from a worker of a different executor are queued as usual, so that each lane keeps
+ * its own limits.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class NotesExecutor extends AbstractExecutorService {
+	private static final Logger log = Logger.getLogger(NotesExecutor.class.getPackage().getName());
+
+	/** The key used for tasks submitted without one */
+	public static final String DEFAULT_KEY = ""; //$NON-NLS-1$
+	/** The time, in milliseconds, that an idle worker waits for work before exiting */
+	public static final long KEEP_ALIVE = TimeUnit.SECONDS.toMillis(60);
+
+	/** The executor that owns the current thread, if it is a worker */
+	private static final ThreadLocal<NotesExecutor> CURRENT = new ThreadLocal<>();
+
+	private final String name;
+	private final ThreadFactory threadFactory;
+	private final AtomicInteger threadCount = new AtomicInteger();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Condition terminated = lock.newCondition();
+	/** Per-key queues, in the order in which they will next be served */
+	private final LinkedHashMap<String, ArrayDeque<Runnable>> queues = new LinkedHashMap<>();
+	private int queued;
+	private int workers;
+	private int idleWorkers;
+	private boolean shutdown;
+
+	private volatile int maxThreads;
+	private volatile int maxQueued;
+	private volatile long queueTimeout;
+
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * @param name a name for this executor, used for thread names and messages
+	 * @param threadFactory the factory used to create worker threads
+	 * @param maxThreads the maximum number of worker threads
+	 * @param maxQueued the maximum number of tasks waiting for a worker
+	 * @param queueTimeout the time, in milliseconds, a submitter waits for queue space
+	 */
+	public NotesExecutor(String name, ThreadFactory threadFactory, int maxThreads, int maxQueued, long queueTimeout) {
+		this.name = name;
+		this.threadFactory = threadFactory;
+		configure(maxThreads, maxQueued, queueTimeout);
+	}
+
+	/**
+	 * Updates the limits of this executor. Lowered thread limits take effect as workers
+	 * become idle.
+	 *
+	 * @param maxThreads the maximum number of worker threads
+	 * @param maxQueued the maximum number of tasks waiting for a worker
+	 * @param queueTimeout the time, in milliseconds, a submitter waits for queue space
+	 */
+	public void configure(int maxThreads, int maxQueued, long queueTimeout) {
+		if(maxThreads < 1) {
+			throw new IllegalArgumentException("maxThreads must be at least 1");
+		}
+		if(maxQueued < 1) {
+			throw new IllegalArgumentException("maxQueued must be at least 1");
+		}
+		lock.lock();
+		try {
+			this.maxThreads = maxThreads;
+			this.maxQueued = maxQueued;
+			this.queueTimeout = Math.max(0, queueTimeout);
+			// Wake everyone so waiting submitters and surplus workers re-check the limits
+			notFull.signalAll();
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		execute(DEFAULT_KEY, command);
+	}
+
+	/**
+	 * Executes the provided task, queued fairly with other tasks with the same key.
+	 *
+	 * @param key the fairness key, such as the effective user name
+	 * @param command the task to run
+	 * @throws RejectedExecutionException if the executor is shut down or the queue stays
+	 *         full for longer than the configured timeout
+	 */
+	public void execute(String key, Runnable command) {
+		if(command == null) {
+			throw new NullPointerException();
+		}
+		if(isCurrentThreadWorker()) {
+			// Nested call from one of our workers - waiting for another could deadlock
+			command.run();
+			return;
+		}
+
+		String queueKey = key == null ? DEFAULT_KEY : key;
+		lock.lock();
+		try {
+			long remaining = TimeUnit.MILLISECONDS.toNanos(queueTimeout);
+			while(!shutdown && queued >= maxQueued) {
+				if(remaining <= 0) {
+					rejected.increment();
+					throw new RejectedExecutionException(MessageFormat.format("{0} is saturated with {1} queued tasks", name, queued));
+				}
+				remaining = notFull.awaitNanos(remaining);
+			}
+			if(shutdown) {
+				rejected.increment();
+				throw new RejectedExecutionException(MessageFormat.format("{0} has been shut down", name));
+			}
+
+			queues.computeIfAbsent(queueKey, k -> new ArrayDeque<>()).add(command);
+			queued++;
+			if(queued > idleWorkers && workers < maxThreads) {
+				startWorker();
+			}
+			notEmpty.signal();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException(MessageFormat.format("Interrupted while waiting to submit to {0}", name), e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Determines whether the current thread is a worker of a {@code NotesExecutor}.
+	 *
+	 * @return {@code true} if the current thread is a Notes worker
+	 */
+	public static boolean isWorkerThread() {
+		return CURRENT.get() != null;
+	}
+
+	/**
+	 * Determines whether the current thread is a worker of this executor.
+	 *
+	 * @return {@code true} if the current thread is one of this executor's workers
+	 */
+	public boolean isCurrentThreadWorker() {
+		return CURRENT.get() == this;
+	}
+
+	// *******************************************************************************
+	// * Statistics
+	// *******************************************************************************
+
+	public String getName() {
+		return name;
+	}
+
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+
+	public int getMaxQueued() {
+		return maxQueued;
+	}
+
+	public long getQueueTimeout() {
+		return queueTimeout;
+	}
+
+	/**
+	 * @return the current number of worker threads
+	 */
+	public int getPoolSize() {
+		lock.lock();
+		try {
+			return workers;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of workers currently running a task
+	 */
+	public int getActiveCount() {
+		lock.lock();
+		try {
+			return workers - idleWorkers;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of tasks waiting for a worker
+	 */
+	public int getQueueSize() {
+		lock.lock();
+		try {
+			return queued;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return a snapshot of the number of queued tasks per key, for diagnostics
+	 */
+	public Map<String, Integer> getQueueSizes() {
+		lock.lock();
+		try {
+			Map<String, Integer> result = new LinkedHashMap<>();
+			queues.forEach((key, queue) -> result.put(key, queue.size()));
+			return Collections.unmodifiableMap(result);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of tasks that have finished running
+	 */
+	public long getCompletedCount() {
+		return completed.sum();
+	}
+
+	/**
+	 * @return the number of tasks rejected because of a full queue or shutdown
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	// *******************************************************************************
+	// * ExecutorService lifecycle
+	// *******************************************************************************
+
+	@Override
+	public void shutdown() {
+		lock.lock();
+		try {
+			shutdown = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+			if(workers == 0) {
+				terminated.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		lock.lock();
+		try {
+			List<Runnable> result = new ArrayList<>(queued);
+			queues.values().forEach(result::addAll);
+			queues.clear();
+			queued = 0;
+			shutdown();
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isShutdown() {
+		lock.lock();
+		try {
+			return shutdown;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isTerminated() {
+		lock.lock();
+		try {
+			return shutdown && workers == 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long remaining = unit.toNanos(timeout);
+		lock.lock();
+		try {
+			while(!(shutdown && workers == 0)) {
+				if(remaining <= 0) {
+					return false;
+				}
+				remaining = terminated.awaitNanos(remaining);
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return MessageFormat.format("NotesExecutor [name={0}, maxThreads={1}, maxQueued={2}, queueTimeout={3}]", name, maxThreads, maxQueued, queueTimeout); //$NON-NLS-1$
+	}
+
+	// *******************************************************************************
+	// * Internal implementation
+	// *******************************************************************************
+
+	/**
+	 * Must be called while holding {@link #lock}.
+	 */
+	private void startWorker() {
+		Thread thread = threadFactory.newThread(this::runWorker);
+		thread.setName(MessageFormat.format("{0} Worker {1}", name, threadCount.incrementAndGet())); //$NON-NLS-1$
+		thread.setDaemon(true);
+		workers++;
+		try {
+			thread.start();
+		} catch(Throwable t) {
+			workers--;
+			throw t;
+		}
+	}
+
+	private void runWorker() {
+		CURRENT.set(this);
+		try {
+			Runnable task;
+			while((task = take()) != null) {
+				try {
+					task.run();
+				} catch(Throwable t) {
+					if(log.isLoggable(Level.SEVERE)) {
+						log.log(Level.SEVERE, MessageFormat.format("Encountered unhandled exception in {0}", name), t);
+					}
+				} finally {
+					completed.increment();
+				}
+			}
+		} finally {
+			CURRENT.remove();
+		}
+	}
+
+	/**
+	 * Waits for the next task, serving keys in round-robin order.
+	 *
+	 * @return the next task, or {@code null} if this worker should exit, in which case
+	 *         it has already been removed from the worker count
+	 */
+	private Runnable take() {
+		lock.lock();
+		try {
+			idleWorkers++;
+			try {
+				long remaining = TimeUnit.MILLISECONDS.toNanos(KEEP_ALIVE);
+				while(queued == 0) {
+					if(shutdown || workers > maxThreads || remaining <= 0) {
+						exitWorker();
+						return null;
+					}
+					try {
+						remaining = notEmpty.awaitNanos(remaining);
+					} catch(InterruptedException e) {
+						exitWorker();
+						return null;
+					}
+				}
+			} finally {
+				idleWorkers--;
+			}
+
+			Iterator<Map.Entry<String, ArrayDeque<Runnable>>> iter = queues.entrySet().iterator();
+			Map.Entry<String, ArrayDeque<Runnable>> next = iter.next();
+			iter.remove();
+			ArrayDeque<Runnable> queue = next.getValue();
+			Runnable task = queue.poll();
+			if(!queue.isEmpty()) {
+				// Move this key to the back of the line
+				queues.put(next.getKey(), queue);
+			}
+			queued--;
+			notFull.signal();
+			return task;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Must be called while holding {@link #lock}.
+	 */
+	private void exitWorker() {
+		workers--;
+		if(shutdown && workers == 0) {
+			terminated.signalAll();
+		}
+	}
+}
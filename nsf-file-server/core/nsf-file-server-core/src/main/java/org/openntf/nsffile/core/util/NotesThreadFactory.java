@@ -16,9 +16,11 @@
 package org.openntf.nsffile.core.util;
 
 import java.text.MessageFormat;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -38,7 +40,44 @@ public class NotesThreadFactory implements ThreadFactory {
 	private static final Logger log = Logger.getLogger(NotesThreadFactory.class.getPackage().getName());
 	
 	public static final NotesThreadFactory instance = new NotesThreadFactory();
-	public static final ExecutorService executor = Executors.newCachedThreadPool(instance);
+	/** The default maximum number of Notes worker threads */
+	public static final int DEFAULT_MAX_THREADS = 32;
+	/** The default maximum number of Notes tasks waiting for a worker */
+	public static final int DEFAULT_MAX_QUEUED = 1000;
+	/** The default time, in milliseconds, to wait for space in a full queue */
+	public static final long DEFAULT_QUEUE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+	/** The default maximum number of threads transferring file content */
+	public static final int DEFAULT_CONTENT_MAX_THREADS = 8;
+	/** The default maximum number of content transfers waiting for a worker */
+	public static final int DEFAULT_CONTENT_MAX_QUEUED = 200;
+	/** The default maximum number of threads used for authentication lookups */
+	public static final int DEFAULT_AUTH_MAX_THREADS = 4;
+	/** The default maximum number of authentication lookups waiting for a worker */
+	public static final int DEFAULT_AUTH_MAX_QUEUED = 500;
+	
+	/**
+	 * Bounded executor for Notes work, queued fairly by user and database. This is the
+	 * lane for short metadata operations such as directory listings and stats.
+	 * 
+	 * <p>Long-running work that is not a Notes call, such as a server main loop, should
+	 * use a dedicated thread rather than occupying one of these workers.</p>
+	 */
+	public static final NotesExecutor executor = new NotesExecutor("Notes", instance, DEFAULT_MAX_THREADS, DEFAULT_MAX_QUEUED, DEFAULT_QUEUE_TIMEOUT); //$NON-NLS-1$
+	/**
+	 * Bounded executor for bulk transfers of file content, kept separate from
+	 * {@link #executor} so that large uploads and downloads do not delay metadata calls.
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final NotesExecutor contentExecutor = new NotesExecutor("Notes Content", instance, DEFAULT_CONTENT_MAX_THREADS, DEFAULT_CONTENT_MAX_QUEUED, DEFAULT_QUEUE_TIMEOUT); //$NON-NLS-1$
+	/**
+	 * Bounded executor for credential checks and directory lookups during SSH
+	 * authentication. Submissions to this lane never wait for queue space, so that
+	 * the SSH I/O threads that submit them are not blocked.
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final NotesExecutor authExecutor = new NotesExecutor("Notes Auth", instance, DEFAULT_AUTH_MAX_THREADS, DEFAULT_AUTH_MAX_QUEUED, 0); //$NON-NLS-1$
 	public static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(5, instance);
 	
 	@FunctionalInterface
@@ -61,20 +100,39 @@ public class NotesThreadFactory implements ThreadFactory {
 	 * @throws RuntimeException wrapping any exception thrown by the main body
 	 */
 	public static <T> T call(NotesFunction<T> func) {
-		try {
-			return NotesThreadFactory.executor.submit(() -> {
-				try(DominoClient client = DominoClientBuilder.newDominoClient().asIDUser().build()) {
-					return func.apply(client);
-				} catch(Throwable t) {
-					if(log.isLoggable(Level.SEVERE)) {
-						log.log(Level.SEVERE, "Encountered exception calling a NotesFunction", t);
-					}
-					throw t;
-				}
-			}).get();
-		} catch (InterruptedException | ExecutionException e) {
-			throw new RuntimeException(e);
-		}
+		return join(callAsync(func));
+	}
+	
+	/**
+	 * Evaluates the provided function asynchronously in a separate {@link NotesThread} with
+	 * a {@link Session} for the active Notes ID.
+	 * 
+	 * @param <T> the type of object returned by {@code func}
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 *         or exceptionally with any exception thrown by it
+	 * @since 2.3.0
+	 */
+	public static <T> CompletableFuture<T> callAsync(NotesFunction<T> func) {
+		return submit(executor, NotesExecutor.DEFAULT_KEY, func, () -> DominoClientBuilder.newDominoClient().asIDUser().build(), "Encountered exception calling a NotesFunction"); //$NON-NLS-1$
+	}
+	
+	/**
+	 * Evaluates the provided function asynchronously on the provided executor with
+	 * a {@link Session} for the active Notes ID, queued fairly against other work
+	 * with the same key.
+	 * 
+	 * @param <T> the type of object returned by {@code func}
+	 * @param lane the executor to run the function on, such as {@link #authExecutor}
+	 * @param queueKey the {@link NotesExecutor} fairness key
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 *         or exceptionally with any exception thrown by it, including a
+	 *         {@link RejectedExecutionException} if the executor is saturated
+	 * @since 2.3.0
+	 */
+	public static <T> CompletableFuture<T> callAsync(NotesExecutor lane, String queueKey, NotesFunction<T> func) {
+		return submit(lane, queueKey, func, () -> DominoClientBuilder.newDominoClient().asIDUser().build(), "Encountered exception calling a NotesFunction"); //$NON-NLS-1$
 	}
 	
 	/**
@@ -102,20 +160,61 @@ public class NotesThreadFactory implements ThreadFactory {
 	 * @throws RuntimeException wrapping any exception thrown by the main body
 	 */
 	public static <T> T callAs(String userName, NotesFunction<T> func) {
-		try {
-			return NotesThreadFactory.executor.submit(() -> {
-				try(DominoClient client = DominoClientBuilder.newDominoClient().asUser(userName).build()) {
-					return func.apply(client);
-				} catch(Throwable t) {
-					if(log.isLoggable(Level.SEVERE)) {
-						log.log(Level.SEVERE, MessageFormat.format("Encountered exception calling a NotesFunction as {0}", userName), t);
-					}
-					throw t;
-				}
-			}).get();
-		} catch (ExecutionException | InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+		return join(callAsAsync(userName, func));
+	}
+	
+	/**
+	 * Evaluates the provided function asynchronously in a separate {@link NotesThread} with
+	 * a {@link Session} for the provided Notes user name.
+	 * 
+	 * @param <T> the type of object returned by {@code func}
+	 * @param userName the user to run the provided function as
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 *         or exceptionally with any exception thrown by it
+	 * @since 2.3.0
+	 */
+	public static <T> CompletableFuture<T> callAsAsync(String userName, NotesFunction<T> func) {
+		return callAsAsync(userName, userName, func);
+	}
+	
+	/**
+	 * Evaluates the provided function asynchronously in a separate {@link NotesThread} with
+	 * a {@link Session} for the provided Notes user name, queued fairly against other work
+	 * with the same key.
+	 * 
+	 * @param <T> the type of object returned by {@code func}
+	 * @param userName the user to run the provided function as
+	 * @param queueKey the {@link NotesExecutor} fairness key, such as the user and database
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 *         or exceptionally with any exception thrown by it, including a
+	 *         {@link RejectedExecutionException} if the executor is saturated
+	 * @since 2.3.0
+	 */
+	public static <T> CompletableFuture<T> callAsAsync(String userName, String queueKey, NotesFunction<T> func) {
+		return callAsAsync(executor, userName, queueKey, func);
+	}
+	
+	/**
+	 * Evaluates the provided function asynchronously on the provided executor with
+	 * a {@link Session} for the provided Notes user name, queued fairly against other work
+	 * with the same key.
+	 * 
+	 * @param <T> the type of object returned by {@code func}
+	 * @param lane the executor to run the function on, such as {@link #executor} or
+	 *        {@link #contentExecutor}
+	 * @param userName the user to run the provided function as
+	 * @param queueKey the {@link NotesExecutor} fairness key, such as the user and database
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 *         or exceptionally with any exception thrown by it, including a
+	 *         {@link RejectedExecutionException} if the executor is saturated
+	 * @since 2.3.0
+	 */
+	public static <T> CompletableFuture<T> callAsAsync(NotesExecutor lane, String userName, String queueKey, NotesFunction<T> func) {
+		return submit(lane, queueKey, func, () -> DominoClientBuilder.newDominoClient().asUser(userName).build(),
+			MessageFormat.format("Encountered exception calling a NotesFunction as {0}", userName));
 	}
 	
 	/**
@@ -132,15 +231,68 @@ public class NotesThreadFactory implements ThreadFactory {
 			return null;
 		});
 	}
+	
+	/**
+	 * Waits for the provided future to complete, matching the exception behavior of
+	 * the synchronous methods in this class.
+	 * 
+	 * @param <T> the type of object returned by {@code future}
+	 * @param future the future to wait for
+	 * @return the result of {@code future}
+	 * @throws RuntimeException wrapping any exception thrown while computing the result
+	 * @since 2.3.0
+	 */
+	public static <T> T join(Future<T> future) {
+		try {
+			return future.get();
+		} catch (ExecutionException | InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
 
 	@Override
 	public Thread newThread(Runnable r) {
 		return new JNXThread(r);
 	}
 
+	// *******************************************************************************
+	// * Internal utilities
+	// *******************************************************************************
+	
+	@FunctionalInterface
+	private static interface ClientSupplier {
+		DominoClient get() throws Exception;
+	}
+	
+	private static <T> CompletableFuture<T> submit(NotesExecutor lane, String queueKey, NotesFunction<T> func, ClientSupplier clientSupplier, String errorMessage) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		try {
+			lane.execute(queueKey, () -> {
+				try(DominoClient client = clientSupplier.get()) {
+					result.complete(func.apply(client));
+				} catch(Throwable t) {
+					if(log.isLoggable(Level.SEVERE)) {
+						log.log(Level.SEVERE, errorMessage, t);
+					}
+					result.completeExceptionally(t);
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			if(log.isLoggable(Level.WARNING)) {
+				log.log(Level.WARNING, e.getMessage());
+			}
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+	
 	public static void term() {
+		authExecutor.shutdown();
+		contentExecutor.shutdown();
 		executor.shutdown();
 		try {
+			authExecutor.awaitTermination(1, TimeUnit.MINUTES);
+			contentExecutor.awaitTermination(1, TimeUnit.MINUTES);
 			executor.awaitTermination(1, TimeUnit.MINUTES);
 		} catch(InterruptedException e) {
 		}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.util;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket that limits a quantity, such as bytes or operations, to a rate per
+ * second.
+ * 
+ * <p>The bucket holds up to one second's worth of tokens, so short bursts pass
+ * immediately. A caller that takes more tokens than are available is allowed through
+ * after sleeping for the shortfall, and later callers queue up behind that debt, so
+ * that callers are delayed rather than refused.</p>
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class RateLimiter {
+	private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+	
+	/** The number of tokens added per second, or {@code 0} for no limit */
+	private volatile long rate;
+	/** The current number of tokens, which is negative when callers are waiting; guarded by {@code this} */
+	private double available;
+	/** Guarded by {@code this} */
+	private long lastRefill = System.nanoTime();
+	
+	private final LongAdder acquired = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+	private final AtomicInteger waiting = new AtomicInteger();
+	
+	/**
+	 * @param rate the number of tokens allowed per second, or {@code 0} for no limit
+	 */
+	public RateLimiter(long rate) {
+		setRate(rate);
+	}
+	
+	/**
+	 * Takes the provided number of tokens, sleeping until they would have been
+	 * available if there are not enough.
+	 * 
+	 * @param permits the number of tokens to take
+	 * @throws InterruptedIOException if the thread is interrupted while waiting
+	 */
+	public void acquire(long permits) throws InterruptedIOException {
+		if(permits <= 0) {
+			return;
+		}
+		acquired.add(permits);
+		long rate = this.rate;
+		if(rate <= 0) {
+			return;
+		}
+		
+		long wait;
+		synchronized(this) {
+			refill(rate);
+			available -= permits;
+			wait = available >= 0 ? 0 : (long)Math.ceil(-available * NANOS_PER_SECOND / rate);
+		}
+		if(wait > 0) {
+			waiting.incrementAndGet();
+			try {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(e.toString());
+			} finally {
+				waiting.decrementAndGet();
+				waitNanos.add(wait);
+			}
+		}
+	}
+	
+	/**
+	 * Changes the allowed rate, keeping any tokens already available up to the new
+	 * limit.
+	 * 
+	 * @param rate the number of tokens allowed per second, or {@code 0} for no limit
+	 */
+	public synchronized void setRate(long rate) {
+		long previous = this.rate;
+		if(previous > 0) {
+			refill(previous);
+		}
+		if(rate > 0) {
+			available = previous <= 0 ? rate : Math.min(available, rate);
+		}
+		this.rate = Math.max(0, rate);
+	}
+	
+	/**
+	 * @return the number of tokens allowed per second, or {@code 0} if there is no
+	 *         limit
+	 */
+	public long getRate() {
+		return rate;
+	}
+	
+	/**
+	 * @return the total number of tokens taken, including while unlimited
+	 */
+	public long getAcquired() {
+		return acquired.sum();
+	}
+	
+	/**
+	 * @return the total time, in milliseconds, that callers have been delayed
+	 */
+	public long getWaitTime() {
+		return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+	}
+	
+	/**
+	 * @return the number of callers currently delayed
+	 */
+	public int getWaiting() {
+		return waiting.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RateLimiter [rate=%s, acquired=%s, waiting=%s]", rate, getAcquired(), getWaiting()); //$NON-NLS-1$
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	/**
+	 * Adds the tokens accrued since the last refill; must be called while holding the
+	 * lock on {@code this}.
+	 */
+	private void refill(long rate) {
+		long now = System.nanoTime();
+		available = Math.min(rate, available + (now - lastRefill) * rate / NANOS_PER_SECOND);
+		lastRefill = now;
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.core.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects named counters and latency histograms from across the file server, to be
+ * published as Domino server statistics.
+ * 
+ * <p>Names are dot-separated, such as {@code "Mount.docs.BytesRead"}, and become part
+ * of the statistic name. Counters are striped, so frequently-updated code should look
+ * up its counters once and keep them.</p>
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public enum ServerMetrics {
+	instance;
+	
+	/** The suffix of counters for cache lookups that found a value, paired with {@link #SUFFIX_MISSES} */
+	public static final String SUFFIX_HITS = ".Hits"; //$NON-NLS-1$
+	/** The suffix of counters for cache lookups that did not find a value */
+	public static final String SUFFIX_MISSES = ".Misses"; //$NON-NLS-1$
+	
+	private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	
+	/**
+	 * @param name the name of the counter
+	 * @return the counter with the provided name, created if needed
+	 */
+	public LongAdder counter(String name) {
+		LongAdder result = counters.get(name);
+		if(result == null) {
+			result = counters.computeIfAbsent(name, key -> new LongAdder());
+		}
+		return result;
+	}
+	
+	/**
+	 * @param name the name of the histogram
+	 * @return the latency histogram with the provided name, created if needed
+	 */
+	public LatencyHistogram histogram(String name) {
+		LatencyHistogram result = histograms.get(name);
+		if(result == null) {
+			result = histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+		}
+		return result;
+	}
+	
+	/**
+	 * @return an unmodifiable view of all counters
+	 */
+	public Map<String, LongAdder> getCounters() {
+		return Collections.unmodifiableMap(counters);
+	}
+	
+	/**
+	 * @return an unmodifiable view of all histograms
+	 */
+	public Map<String, LatencyHistogram> getHistograms() {
+		return Collections.unmodifiableMap(histograms);
+	}
+}
@@ -16,7 +16,10 @@
 package org.openntf.nsffile.core.util;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * Utility class to hold a cache map that expires based on a last-modification date.
@@ -25,14 +28,91 @@ import java.util.concurrent.ConcurrentHashMap;
  * @since 1.0.0
  */
 public class TimedCacheHolder {
+	private static final LongAdder HITS = ServerMetrics.instance.counter("Cache.Lookup" + ServerMetrics.SUFFIX_HITS); //$NON-NLS-1$
+	private static final LongAdder MISSES = ServerMetrics.instance.counter("Cache.Lookup" + ServerMetrics.SUFFIX_MISSES); //$NON-NLS-1$
+	
 	private long lastModified = -1;
 	private Map<String, Object> cache;
+	/** Loads in progress for the current {@link #cache}, keyed by cache ID */
+	private Map<String, CompletableFuture<Object>> inFlight;
 	
 	public synchronized Map<String, Object> get(long modTime) {
 		if(this.cache == null || this.lastModified == -1 || modTime > this.lastModified) {
 			this.cache = new ConcurrentHashMap<>();
+			this.inFlight = new ConcurrentHashMap<>();
 			this.lastModified = modTime;
 		}
 		return this.cache;
 	}
+	
+	/**
+	 * Retrieves the cached value for the provided key, loading it if needed.
+	 * 
+	 * <p>Concurrent callers asking for the same key while a load is in progress share
+	 * that load rather than starting their own. The loader is invoked outside of any
+	 * lock, and a load that fails or produces {@code null} is not cached, so the next
+	 * caller will try again.</p>
+	 * 
+	 * <p>Lookups are counted in the {@code Cache.Lookup} server statistics, where
+	 * joining a load already in progress counts as a hit.</p>
+	 * 
+	 * @param <T> the type of the cached value
+	 * @param modTime the current modification time of the underlying data
+	 * @param key the cache key
+	 * @param loader a supplier that starts loading the value
+	 * @return a {@link CompletableFuture} completed with the cached or loaded value
+	 * @since 2.3.0
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> CompletableFuture<T> getOrLoad(long modTime, String key, Supplier<CompletableFuture<T>> loader) {
+		Map<String, Object> cache;
+		Map<String, CompletableFuture<Object>> inFlight;
+		synchronized(this) {
+			cache = get(modTime);
+			inFlight = this.inFlight;
+		}
+		
+		Object cached = cache.get(key);
+		if(cached != null) {
+			HITS.increment();
+			return CompletableFuture.completedFuture((T)cached);
+		}
+		
+		CompletableFuture<Object> promise = new CompletableFuture<>();
+		CompletableFuture<Object> existing = inFlight.putIfAbsent(key, promise);
+		if(existing == null) {
+			// Check again in case a load finished between the cache check and claiming the key
+			cached = cache.get(key);
+			if(cached != null) {
+				HITS.increment();
+				inFlight.remove(key, promise);
+				promise.complete(cached);
+			} else {
+				MISSES.increment();
+				CompletableFuture<T> load;
+				try {
+					load = loader.get();
+				} catch(RuntimeException e) {
+					load = new CompletableFuture<>();
+					load.completeExceptionally(e);
+				}
+				load.whenComplete((result, t) -> {
+					if(t == null && result != null) {
+						cache.putIfAbsent(key, result);
+					}
+					inFlight.remove(key, promise);
+					if(t != null) {
+						promise.completeExceptionally(t);
+					} else {
+						promise.complete(result);
+					}
+				});
+			}
+			existing = promise;
+		} else {
+			HITS.increment();
+		}
+		// Hand out a dependent stage so one caller can't cancel or complete the shared load
+		return existing.thenApply(result -> (T)result);
+	}
 }
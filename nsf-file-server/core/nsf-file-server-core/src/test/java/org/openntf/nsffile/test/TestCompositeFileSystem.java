@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.core.fs.CompositeFileSystem;
+import org.openntf.nsffile.core.fs.CompositeFileSystemProvider;
+
+@SuppressWarnings("nls")
+public class TestCompositeFileSystem {
+	private static CompositeFileSystem newFileSystem() {
+		return new CompositeFileSystem(CompositeFileSystemProvider.instance, Collections.emptyMap(), "CN=Test");
+	}
+	
+	@Test
+	public void testRetainReturnsSeparateHandle() throws Exception {
+		CompositeFileSystem fs = newFileSystem();
+		CompositeFileSystem handle = fs.retain();
+		assertNotNull(handle);
+		assertNotSame(fs, handle);
+		
+		handle.close();
+		assertFalse(handle.isOpen());
+		assertTrue(fs.isOpen());
+		fs.close();
+		assertFalse(fs.isOpen());
+	}
+	
+	@Test
+	public void testRepeatedCloseIsIgnored() throws Exception {
+		CompositeFileSystem fs = newFileSystem();
+		CompositeFileSystem handle = fs.retain();
+		
+		// Closing one handle twice must not release the other's reference
+		handle.close();
+		handle.close();
+		CompositeFileSystem another = fs.retain();
+		assertNotNull(another);
+		
+		another.close();
+		fs.close();
+	}
+	
+	@Test
+	public void testNoRetainAfterLastClose() throws Exception {
+		CompositeFileSystem fs = newFileSystem();
+		CompositeFileSystem handle = fs.retain();
+		fs.close();
+		handle.close();
+		assertNull(fs.retain());
+		assertNull(handle.retain());
+	}
+}
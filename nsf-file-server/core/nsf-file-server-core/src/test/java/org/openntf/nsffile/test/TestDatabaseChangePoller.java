@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.core.util.DatabaseChangePoller;
+
+@SuppressWarnings("nls")
+public class TestDatabaseChangePoller {
+	private final AtomicLong modTime = new AtomicLong(100);
+	private final AtomicInteger reads = new AtomicInteger();
+	private final List<String> changes = new CopyOnWriteArrayList<>();
+	
+	private DatabaseChangePoller newPoller() {
+		DatabaseChangePoller poller = new DatabaseChangePoller(nsfPath -> {
+			reads.incrementAndGet();
+			long result = modTime.get();
+			if(result < 0) {
+				throw new IllegalStateException("unable to open " + nsfPath);
+			}
+			return result;
+		});
+		poller.addListener(changes::add);
+		return poller;
+	}
+	
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while(!condition.getAsBoolean() && System.nanoTime() < end) {
+			Thread.sleep(10);
+		}
+	}
+	
+	@Test
+	public void testFirstCallReads() {
+		DatabaseChangePoller poller = newPoller();
+		try {
+			long interval = TimeUnit.MINUTES.toMillis(1);
+			assertEquals(100, poller.getModifiedTime("test.nsf", interval));
+			modTime.set(200);
+			// Later calls use the value from the background poll
+			assertEquals(100, poller.getModifiedTime("test.nsf", interval));
+			assertEquals(1, reads.get());
+			
+			assertEquals(200, poller.getModifiedTime("other.nsf", interval));
+			assertEquals(2, reads.get());
+		} finally {
+			poller.stop();
+		}
+	}
+	
+	@Test
+	public void testChangeNotifiesListeners() throws InterruptedException {
+		DatabaseChangePoller poller = newPoller();
+		try {
+			assertEquals(100, poller.getModifiedTime("test.nsf", 20));
+			waitFor(() -> reads.get() > 3);
+			assertTrue(changes.isEmpty(), changes.toString());
+			
+			modTime.set(200);
+			waitFor(() -> !changes.isEmpty());
+			assertEquals("test.nsf", changes.get(0));
+			assertEquals(200, poller.getModifiedTime("test.nsf", 20));
+		} finally {
+			poller.stop();
+		}
+	}
+	
+	@Test
+	public void testFasterIntervalPollsSooner() throws InterruptedException {
+		DatabaseChangePoller poller = newPoller();
+		try {
+			poller.getModifiedTime("test.nsf", TimeUnit.MINUTES.toMillis(1));
+			poller.getModifiedTime("test.nsf", 20);
+			modTime.set(200);
+			waitFor(() -> !changes.isEmpty());
+			assertEquals(1, changes.size());
+		} finally {
+			poller.stop();
+		}
+	}
+	
+	@Test
+	public void testFailedReadAssumesChange() {
+		DatabaseChangePoller poller = newPoller();
+		try {
+			modTime.set(-1);
+			long start = System.currentTimeMillis();
+			assertTrue(poller.getModifiedTime("test.nsf", TimeUnit.MINUTES.toMillis(1)) >= start);
+		} finally {
+			poller.stop();
+		}
+	}
+	
+	@Test
+	public void testInvalidateNotifiesListeners() {
+		DatabaseChangePoller poller = newPoller();
+		poller.addListener(nsfPath -> {
+			throw new IllegalStateException("listener failed");
+		});
+		List<String> after = new CopyOnWriteArrayList<>();
+		poller.addListener(after::add);
+		
+		poller.invalidate("test.nsf");
+		assertEquals("test.nsf", changes.get(0));
+		// A failing listener does not prevent the others from being notified
+		assertEquals("test.nsf", after.get(0));
+		assertEquals(0, reads.get());
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.core.util.LatencyHistogram;
+
+public class TestLatencyHistogram {
+	@Test
+	public void testEmpty() {
+		LatencyHistogram.Snapshot snapshot = new LatencyHistogram().drain();
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getPercentile(50));
+		assertEquals(0, snapshot.getPercentile(99));
+	}
+	
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(int i = 0; i < 90; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+		}
+		for(int i = 0; i < 10; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(1000));
+		}
+		assertEquals(100, histogram.getCount());
+		
+		LatencyHistogram.Snapshot snapshot = histogram.drain();
+		assertEquals(100, snapshot.getCount());
+		// Values are reported as the upper bound of their power-of-two bucket
+		assertEquals(16, snapshot.getPercentile(50));
+		assertEquals(16, snapshot.getPercentile(90));
+		assertEquals(1024, snapshot.getPercentile(91));
+		assertEquals(1024, snapshot.getPercentile(100));
+	}
+	
+	@Test
+	public void testDrainResets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+		assertEquals(1, histogram.drain().getCount());
+		assertEquals(0, histogram.drain().getCount());
+		// The running total is not reset
+		assertEquals(1, histogram.getCount());
+	}
+	
+	@Test
+	public void testOutOfRange() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-1);
+		histogram.record(Long.MAX_VALUE);
+		LatencyHistogram.Snapshot snapshot = histogram.drain();
+		assertEquals(2, snapshot.getCount());
+		assertEquals(1, snapshot.getPercentile(50));
+		assertEquals(1L << 31, snapshot.getPercentile(100));
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.core.util.NotesExecutor;
+
+@SuppressWarnings("nls")
+public class TestNotesExecutor {
+	private static NotesExecutor newExecutor(String name, int maxThreads, int maxQueued, long queueTimeout) {
+		return new NotesExecutor(name, Executors.defaultThreadFactory(), maxThreads, maxQueued, queueTimeout);
+	}
+	
+	@Test
+	public void testRunsTasks() throws Exception {
+		NotesExecutor executor = newExecutor("Test", 2, 10, 1000);
+		try {
+			Future<Boolean> result = executor.submit(NotesExecutor::isWorkerThread);
+			assertTrue(result.get(5, TimeUnit.SECONDS));
+			assertFalse(NotesExecutor.isWorkerThread());
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testNestedSameExecutorRunsInline() throws Exception {
+		NotesExecutor executor = newExecutor("Test", 1, 1, 0);
+		try {
+			Future<Thread[]> result = executor.submit(() -> {
+				// With one thread, this would never run if it were queued and waited for
+				Future<Thread> nested = executor.submit(Thread::currentThread);
+				return new Thread[] { Thread.currentThread(), nested.get(5, TimeUnit.SECONDS) };
+			});
+			Thread[] threads = result.get(5, TimeUnit.SECONDS);
+			assertEquals(threads[0], threads[1]);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testNestedOtherExecutorQueues() throws Exception {
+		NotesExecutor first = newExecutor("First", 1, 10, 1000);
+		NotesExecutor second = newExecutor("Second", 1, 10, 1000);
+		try {
+			Future<Thread[]> result = first.submit(() -> {
+				Future<Thread> nested = second.submit(() -> {
+					assertTrue(second.isCurrentThreadWorker());
+					assertFalse(first.isCurrentThreadWorker());
+					return Thread.currentThread();
+				});
+				return new Thread[] { Thread.currentThread(), nested.get(5, TimeUnit.SECONDS) };
+			});
+			Thread[] threads = result.get(5, TimeUnit.SECONDS);
+			assertNotEquals(threads[0], threads[1]);
+		} finally {
+			first.shutdown();
+			second.shutdown();
+		}
+	}
+	
+	@Test
+	public void testRejectsWhenSaturated() throws Exception {
+		NotesExecutor executor = newExecutor("Test", 1, 1, 50);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			executor.execute(() -> {
+				started.countDown();
+				awaitQuietly(release);
+			});
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			executor.execute(() -> {});
+			assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+			assertEquals(1, executor.getRejectedCount());
+			assertEquals(1, executor.getQueueSize());
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(2, executor.getCompletedCount());
+	}
+	
+	@Test
+	public void testRoundRobinPerKey() throws Exception {
+		NotesExecutor executor = newExecutor("Test", 1, 10, 1000);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> order = new CopyOnWriteArrayList<>();
+		try {
+			executor.execute("blocker", () -> {
+				started.countDown();
+				awaitQuietly(release);
+			});
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			executor.execute("a", () -> order.add("a1"));
+			executor.execute("a", () -> order.add("a2"));
+			executor.execute("a", () -> order.add("a3"));
+			executor.execute("b", () -> order.add("b1"));
+			release.countDown();
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("a1", "b1", "a2", "a3"), order);
+	}
+	
+	@Test
+	public void testRejectsAfterShutdown() throws Exception {
+		NotesExecutor executor = newExecutor("Test", 1, 10, 1000);
+		executor.shutdown();
+		assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+		assertTrue(executor.isShutdown());
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+	
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.core.util.RateLimiter;
+
+@SuppressWarnings("nls")
+public class TestRateLimiter {
+	@Test
+	public void testUnlimited() throws InterruptedIOException {
+		RateLimiter limiter = new RateLimiter(0);
+		long start = System.nanoTime();
+		limiter.acquire(Long.MAX_VALUE / 2);
+		limiter.acquire(Long.MAX_VALUE / 2);
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		assertEquals(0, limiter.getWaitTime());
+		assertEquals(Long.MAX_VALUE / 2 * 2, limiter.getAcquired());
+	}
+	
+	@Test
+	public void testBurstThenWait() throws InterruptedIOException {
+		RateLimiter limiter = new RateLimiter(10000);
+		long start = System.nanoTime();
+		// The first second's worth is available immediately
+		limiter.acquire(10000);
+		assertEquals(0, limiter.getWaitTime());
+		// The next 2000 tokens take roughly 200ms to accrue
+		limiter.acquire(2000);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(elapsed >= 150, "elapsed " + elapsed);
+		assertTrue(limiter.getWaitTime() >= 150, "waited " + limiter.getWaitTime());
+		assertEquals(12000, limiter.getAcquired());
+		assertEquals(0, limiter.getWaiting());
+	}
+	
+	@Test
+	public void testRemoveLimit() throws InterruptedIOException {
+		RateLimiter limiter = new RateLimiter(1000);
+		limiter.acquire(1000);
+		limiter.setRate(0);
+		assertEquals(0, limiter.getRate());
+		long start = System.nanoTime();
+		limiter.acquire(1000000);
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+	}
+	
+	@Test
+	public void testIgnoresNonPositive() throws InterruptedIOException {
+		RateLimiter limiter = new RateLimiter(1);
+		limiter.acquire(0);
+		limiter.acquire(-5);
+		assertEquals(0, limiter.getAcquired());
+	}
+	
+	@Test
+	public void testInterrupted() {
+		RateLimiter limiter = new RateLimiter(1);
+		Thread.currentThread().interrupt();
+		try {
+			assertThrows(InterruptedIOException.class, () -> limiter.acquire(100));
+			assertTrue(Thread.currentThread().isInterrupted());
+		} finally {
+			Thread.interrupted();
+		}
+		assertEquals(0, limiter.getWaiting());
+	}
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.core.fs.ThrottleManager;
+
+@SuppressWarnings("nls")
+public class TestThrottleManager {
+	@Test
+	public void testStatisticName() {
+		assertEquals("SomeUser_Org", ThrottleManager.toStatisticName("CN=Some User/O=Org"));
+		assertEquals("SomeUser_Dept_Org_US", ThrottleManager.toStatisticName("CN=Some User/OU=Dept/O=Org/C=US"));
+		assertEquals("Anonymous", ThrottleManager.toStatisticName("Anonymous"));
+		assertEquals("docs", ThrottleManager.toStatisticName("/docs"));
+		assertEquals("examplecom", ThrottleManager.toStatisticName("example.com"));
+		assertEquals("_", ThrottleManager.toStatisticName(""));
+	}
+}
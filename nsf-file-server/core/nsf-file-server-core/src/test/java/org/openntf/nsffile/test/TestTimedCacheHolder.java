@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.core.util.TimedCacheHolder;
+
+@SuppressWarnings("nls")
+public class TestTimedCacheHolder {
+	@Test
+	public void testConcurrentLoadsShared() throws Exception {
+		TimedCacheHolder holder = new TimedCacheHolder();
+		AtomicInteger loads = new AtomicInteger();
+		CompletableFuture<String> load = new CompletableFuture<>();
+		
+		CompletableFuture<String> first = holder.getOrLoad(1, "key", () -> {
+			loads.incrementAndGet();
+			return load;
+		});
+		CompletableFuture<String> second = holder.getOrLoad(1, "key", () -> {
+			loads.incrementAndGet();
+			return CompletableFuture.completedFuture("other");
+		});
+		assertEquals(1, loads.get());
+		assertFalse(first.isDone());
+		assertFalse(second.isDone());
+		
+		load.complete("value");
+		assertEquals("value", first.get());
+		assertEquals("value", second.get());
+	}
+	
+	@Test
+	public void testCachedAfterLoad() throws Exception {
+		TimedCacheHolder holder = new TimedCacheHolder();
+		AtomicInteger loads = new AtomicInteger();
+		for(int i = 0; i < 3; i++) {
+			assertEquals("value", holder.getOrLoad(1, "key", () -> {
+				loads.incrementAndGet();
+				return CompletableFuture.completedFuture("value");
+			}).get());
+		}
+		assertEquals(1, loads.get());
+		assertEquals("value", holder.get(1).get("key"));
+	}
+	
+	@Test
+	public void testNewerModTimeReloads() throws Exception {
+		TimedCacheHolder holder = new TimedCacheHolder();
+		holder.getOrLoad(1, "key", () -> CompletableFuture.completedFuture("old")).get();
+		assertEquals("new", holder.getOrLoad(2, "key", () -> CompletableFuture.completedFuture("new")).get());
+		// An older time doesn't roll the cache back
+		assertEquals("new", holder.getOrLoad(1, "key", () -> CompletableFuture.completedFuture("older")).get());
+	}
+	
+	@Test
+	public void testFailureNotCached() throws Exception {
+		TimedCacheHolder holder = new TimedCacheHolder();
+		CompletableFuture<String> failed = holder.getOrLoad(1, "key", () -> {
+			throw new IllegalStateException("boom");
+		});
+		ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+		assertTrue(e.getCause() instanceof IllegalStateException);
+		
+		assertEquals("value", holder.getOrLoad(1, "key", () -> CompletableFuture.completedFuture("value")).get());
+	}
+	
+	@Test
+	public void testNullNotCached() throws Exception {
+		TimedCacheHolder holder = new TimedCacheHolder();
+		AtomicInteger loads = new AtomicInteger();
+		for(int i = 0; i < 2; i++) {
+			holder.getOrLoad(1, "key", () -> {
+				loads.incrementAndGet();
+				return CompletableFuture.completedFuture(null);
+			}).get();
+		}
+		assertEquals(2, loads.get());
+	}
+	
+	@Test
+	public void testCallerCannotCancelSharedLoad() throws Exception {
+		TimedCacheHolder holder = new TimedCacheHolder();
+		CompletableFuture<String> load = new CompletableFuture<>();
+		CompletableFuture<String> first = holder.getOrLoad(1, "key", () -> load);
+		CompletableFuture<String> second = holder.getOrLoad(1, "key", () -> load);
+		first.cancel(true);
+		
+		load.complete("value");
+		assertEquals("value", second.get());
+		assertFalse(load.isCancelled());
+	}
+}
@@ -16,17 +16,23 @@
 package org.openntf.nsffile.fs.abstractnsf;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.AccessMode;
 import java.nio.file.CopyOption;
 import java.nio.file.DirectoryStream;
 import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileStore;
+import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
@@ -37,10 +43,14 @@ import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.UserDefinedFileAttributeView;
 import java.nio.file.spi.FileSystemProvider;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.logging.Level;
@@ -49,10 +59,25 @@ import java.util.logging.Logger;
 import com.ibm.commons.util.StringUtil;
 
 import org.apache.sshd.common.util.GenericUtils;
+import org.openntf.nsffile.core.fs.BulkAttributeFileSystemProvider;
+import org.openntf.nsffile.core.fs.BulkImportFileSystemProvider;
+import org.openntf.nsffile.core.fs.SequentialWriteFileSystemProvider;
+import org.openntf.nsffile.core.fs.TreeDeleteFileSystemProvider;
+import org.openntf.nsffile.core.fs.attribute.NSFFileAttributes;
 import org.openntf.nsffile.core.fs.attribute.NoneFileAttributeView;
+import org.openntf.nsffile.core.util.ImportProgress;
+import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.core.util.NotesThreadFactory;
 import org.openntf.nsffile.fs.abstractnsf.attribute.NSFPosixFileAttributeView;
 import org.openntf.nsffile.fs.abstractnsf.attribute.NSFUserDefinedFileAttributeView;
+import org.openntf.nsffile.fs.abstractnsf.attribute.RootFileAttributeView;
+import org.openntf.nsffile.fs.abstractnsf.db.AsyncNSFAccessor;
+import org.openntf.nsffile.fs.abstractnsf.db.ContentPrefetcher;
+import org.openntf.nsffile.fs.abstractnsf.db.InstrumentedNSFAccessor;
 import org.openntf.nsffile.fs.abstractnsf.db.NSFAccessor;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFFileSnapshot;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFPathLockManager;
+import org.openntf.nsffile.fs.abstractnsf.db.StreamingNSFAccessor;
 
 /**
  * Java NIO Filesystem implementation for NSF file storage.
@@ -60,13 +85,17 @@ import org.openntf.nsffile.fs.abstractnsf.db.NSFAccessor;
  * @author Jesse Gallagher
  * @since 1.0.0
  */
-public abstract class AbstractNSFFileSystemProvider extends FileSystemProvider {
+public abstract class AbstractNSFFileSystemProvider extends FileSystemProvider implements BulkAttributeFileSystemProvider, TreeDeleteFileSystemProvider, BulkImportFileSystemProvider, SequentialWriteFileSystemProvider {
 	public static final Logger log = Logger.getLogger(AbstractNSFFileSystemProvider.class.getPackage().getName());
 	
 	private final NSFAccessor accessor;
+	private final ContentPrefetcher prefetcher;
+	private final NSFPathLockManager locks = new NSFPathLockManager();
 	
 	public AbstractNSFFileSystemProvider(NSFAccessor accessor) {
-		this.accessor = accessor;
+		this.accessor = InstrumentedNSFAccessor.wrap(accessor);
+		// Read-ahead relies on extracting content off the calling thread
+		this.prefetcher = accessor instanceof AsyncNSFAccessor ? new ContentPrefetcher((AsyncNSFAccessor)this.accessor) : null;
 	}
 	
 	public NSFAccessor getAccessor() {
@@ -86,7 +115,19 @@ public abstract class AbstractNSFFileSystemProvider extends FileSystemProvider {
 	@Override
 	public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
 			throws IOException {
-		return new NSFFileChannel(accessor, (NSFPath)path, options, attrs);
+		return new NSFFileChannel(accessor, prefetcher, locks, (NSFPath)path, options, attrs);
+	}
+	
+	@Override
+	public OutputStream newSequentialOutputStream(Path path, long size) throws IOException {
+		if(accessor instanceof StreamingNSFAccessor) {
+			OutputStream result = NSFSequentialOutputStream.tryOpen((StreamingNSFAccessor)accessor, prefetcher, locks, (NSFPath)path, size);
+			if(result != null) {
+				return result;
+			}
+		}
+		// Fall back to staging the content in a temporary file
+		return Files.newOutputStream(path);
 	}
 
 	@Override
@@ -106,16 +147,43 @@ public abstract class AbstractNSFFileSystemProvider extends FileSystemProvider {
 	@Override
 	public void delete(Path path) throws IOException {
 		accessor.delete((NSFPath)path);
+		invalidateContent(path);
+	}
+	
+	@Override
+	public void deleteTree(Path path) throws IOException {
+		if("".equals(path.toString()) || "/".equals(path.toString())) { //$NON-NLS-1$ //$NON-NLS-2$
+			throw new AccessDeniedException(path.toString(), null, "Cannot delete the root directory");
+		}
+		accessor.deleteTree((NSFPath)path);
+		invalidateContent(path);
+	}
+	
+	@Override
+	public void importTree(Path source, Path target, int parallelism, ImportProgress progress) throws IOException {
+		accessor.importTree(source, (NSFPath)target, parallelism, progress);
+		invalidateContent(target);
 	}
 
 	@Override
 	public void copy(Path source, Path target, CopyOption... options) throws IOException {
+		if(source.equals(target)) {
+			return;
+		}
+		checkReplaceExisting((NSFPath)source, (NSFPath)target, options);
 		accessor.copy((NSFPath)source, (NSFPath)target, options);
+		invalidateContent(target);
 	}
 
 	@Override
 	public void move(Path source, Path target, CopyOption... options) throws IOException {
+		if(source.equals(target)) {
+			return;
+		}
+		checkReplaceExisting((NSFPath)source, (NSFPath)target, options);
 		accessor.move((NSFPath)source, (NSFPath)target, options);
+		invalidateContent(source);
+		invalidateContent(target);
 	}
 
 	@Override
@@ -143,14 +211,30 @@ public abstract class AbstractNSFFileSystemProvider extends FileSystemProvider {
 
 	@Override
 	public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
-		// TODO cache these?
-		if(!accessor.exists((NSFPath)path)) {
-			return type.cast(new NoneFileAttributeView(path));
+		if("/".equals(path.toAbsolutePath().toString())) { //$NON-NLS-1$
+			return type.cast(new RootFileAttributeView(accessor, (NSFPath)path));
+		}
+		
+		// Read everything the view may need in one go, which also tells us if the file exists
+		NSFFileSnapshot snapshot;
+		try {
+			Optional<NSFFileSnapshot> result = accessor.snapshot((NSFPath)path);
+			if(!result.isPresent()) {
+				return type.cast(new NoneFileAttributeView(path));
+			}
+			snapshot = result.get();
+		} catch(IOException e) {
+			// This method can't throw IOException, so leave the view to read on first use
+			//   and report the problem from there
+			if(log.isLoggable(Level.FINE)) {
+				log.log(Level.FINE, MessageFormat.format("Encountered exception reading {0}; deferring to the attribute view", path), e);
+			}
+			snapshot = null;
 		}
 		if(type.isAssignableFrom(UserDefinedFileAttributeView.class)) {
-			return type.cast(new NSFUserDefinedFileAttributeView(accessor, (NSFPath)path, options));
+			return type.cast(new NSFUserDefinedFileAttributeView(accessor, (NSFPath)path, snapshot, options));
 		} else {
-			return type.cast(new NSFPosixFileAttributeView(accessor, (NSFPath)path, options));
+			return type.cast(new NSFPosixFileAttributeView(accessor, (NSFPath)path, snapshot, options));
 		}
 	}
 
@@ -161,6 +245,16 @@ public abstract class AbstractNSFFileSystemProvider extends FileSystemProvider {
 			return type.cast(accessor.getRootFileAttributes(path));
 		}
 		if (type.isAssignableFrom(PosixFileAttributes.class)) {
+			if(accessor instanceof AsyncNSFAccessor) {
+				// Look up and read in a single trip to a Notes worker
+				Optional<NSFFileAttributes> attrs;
+				try {
+					attrs = NotesThreadFactory.join(((AsyncNSFAccessor)accessor).statAsync((NSFPath)path));
+				} catch(RuntimeException e) {
+					throw new IOException(MessageFormat.format("Encountered exception reading attributes of {0}", path), e);
+				}
+				return type.cast(attrs.orElseThrow(() -> new NoSuchFileException(path.toString())));
+			}
 			PosixFileAttributeView view = getFileAttributeView(path, PosixFileAttributeView.class, options);
 			if(view == null) {
 				throw new IOException("File does not exist: " + path); //$NON-NLS-1$
@@ -188,7 +282,79 @@ public abstract class AbstractNSFFileSystemProvider extends FileSystemProvider {
 
 	@Override
 	public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
-		// TODO Auto-generated method stub
+		setAttributes(path, Collections.singletonMap(attribute, value), options);
+	}
+	
+	/**
+	 * Sets the provided attributes, applying all POSIX attribute changes with a single
+	 * call to {@link NSFAccessor#setAttributes}.
+	 * 
+	 * @since 2.3.0
+	 */
+	@Override
+	public void setAttributes(Path path, Map<String, ?> attributes, LinkOption... options) throws IOException {
+		if("/".equals(path.toAbsolutePath().toString())) { //$NON-NLS-1$
+			// The root has no document to hold attributes; ignore changes as the composite provider does
+			return;
+		}
+		NSFPath p = (NSFPath)path;
+		Collection<String> views = p.getFileSystem().supportedFileAttributeViews();
+		
+		Map<String, Object> posixAttributes = new HashMap<>();
+		Map<String, ByteBuffer> userAttributes = new LinkedHashMap<>();
+		for(Map.Entry<String, ?> attr : attributes.entrySet()) {
+			String view;
+			String name;
+			int i = attr.getKey().indexOf(':');
+			if(i == -1) {
+				view = "basic"; //$NON-NLS-1$
+				name = attr.getKey();
+			} else {
+				view = attr.getKey().substring(0, i);
+				name = attr.getKey().substring(i+1);
+			}
+			if(!views.contains(view)) {
+				throw new UnsupportedOperationException(MessageFormat.format("View not supported: {0}", view));
+			}
+			switch(view) {
+			case "basic": //$NON-NLS-1$
+				if(!(NSFAccessor.ATTR_LASTMODIFIEDTIME.equals(name) || NSFAccessor.ATTR_LASTACCESSTIME.equals(name) || NSFAccessor.ATTR_CREATIONTIME.equals(name))) {
+					throw new IllegalArgumentException(MessageFormat.format("Attribute \"{0}\" not supported for view \"{1}\"", name, view));
+				}
+				posixAttributes.put(name, attr.getValue());
+				break;
+			case "owner": //$NON-NLS-1$
+				if(!NSFAccessor.ATTR_OWNER.equals(name)) {
+					throw new IllegalArgumentException(MessageFormat.format("Attribute \"{0}\" not supported for view \"{1}\"", name, view));
+				}
+				posixAttributes.put(name, attr.getValue());
+				break;
+			case "user": //$NON-NLS-1$
+				if(attr.getValue() instanceof byte[]) {
+					userAttributes.put(name, ByteBuffer.wrap((byte[])attr.getValue()));
+				} else if(attr.getValue() instanceof ByteBuffer) {
+					userAttributes.put(name, (ByteBuffer)attr.getValue());
+				} else {
+					throw new IllegalArgumentException(MessageFormat.format("Value for user attribute \"{0}\" must be a byte[] or ByteBuffer", name));
+				}
+				break;
+			case "posix": //$NON-NLS-1$
+			default:
+				posixAttributes.put(name, attr.getValue());
+				break;
+			}
+		}
+		NSFAccessor.checkAttributes(posixAttributes);
+		
+		if(!accessor.exists(p)) {
+			throw new NoSuchFileException(path.toString());
+		}
+		if(!posixAttributes.isEmpty()) {
+			accessor.setAttributes(p, posixAttributes);
+		}
+		for(Map.Entry<String, ByteBuffer> attr : userAttributes.entrySet()) {
+			accessor.writeUserDefinedAttribute(p, attr.getKey(), attr.getValue());
+		}
 	}
 	
 	// *******************************************************************************
@@ -307,4 +473,58 @@ public abstract class AbstractNSFFileSystemProvider extends FileSystemProvider {
             return false;
         }
     }
+	
+	// *******************************************************************************
+	// * Internal utilities
+	// *******************************************************************************
+	
+	/**
+	 * Determines whether the provided filesystem was created with an environment equivalent
+	 * to {@code env}, to decide whether a cached instance can be re-used.
+	 * 
+	 * @param fs the existing filesystem
+	 * @param env the requested environment, which may be {@code null}
+	 * @return whether the environments match
+	 * @since 2.3.0
+	 */
+	protected static boolean isSameEnvironment(NSFFileSystem fs, Map<String, ?> env) {
+		Map<String, ?> requested = env == null ? Collections.emptyMap() : env;
+		return fs.getEnvironment().equals(requested);
+	}
+	
+	/**
+	 * Refuses to copy or move over an existing file unless {@link StandardCopyOption#REPLACE_EXISTING}
+	 * is given, as with the default filesystem.
+	 * 
+	 * <p>A target that differs from the source only in case or Unicode form is the source
+	 * document itself, so renaming to change the case of a name is allowed.</p>
+	 * 
+	 * @param source the path being copied or moved
+	 * @param target the destination path
+	 * @param options the options passed to the copy or move
+	 * @throws FileAlreadyExistsException if the target exists and may not be replaced
+	 * @since 2.3.0
+	 */
+	protected void checkReplaceExisting(NSFPath source, NSFPath target, CopyOption... options) throws IOException {
+		if(Arrays.asList(options).contains(StandardCopyOption.REPLACE_EXISTING)) {
+			return;
+		}
+		String sourceKey = NSFFileUtil.normalizePath(source.toAbsolutePath().toString());
+		String targetKey = NSFFileUtil.normalizePath(target.toAbsolutePath().toString());
+		if(!sourceKey.equals(targetKey) && accessor.exists(target)) {
+			throw new FileAlreadyExistsException(target.toString());
+		}
+	}
+	
+	/**
+	 * Discards any read-ahead content staged for the provided path or its descendants.
+	 * 
+	 * @param path the path that has been modified or removed
+	 * @since 2.3.0
+	 */
+	protected void invalidateContent(Path path) {
+		if(prefetcher != null) {
+			prefetcher.invalidate((NSFPath)path);
+		}
+	}
 }
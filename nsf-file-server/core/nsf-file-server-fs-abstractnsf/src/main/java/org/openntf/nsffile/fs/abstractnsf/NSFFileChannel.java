@@ -16,6 +16,7 @@
 package org.openntf.nsffile.fs.abstractnsf;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
@@ -23,17 +24,27 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileAttribute;
+import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.fs.abstractnsf.db.AsyncNSFAccessor;
+import org.openntf.nsffile.fs.abstractnsf.db.ContentPrefetcher;
 import org.openntf.nsffile.fs.abstractnsf.db.NSFAccessor;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFPathLockManager;
 
 /**
  * 
@@ -51,27 +62,54 @@ public class NSFFileChannel extends FileChannel {
 	);
 	
 	private final NSFPath path;
-	private final Path tempFile;
+	/** Completed when the temp file is ready; extraction may still be running on a Notes worker */
+	private final CompletableFuture<Path> tempFile;
 	private Set<? extends OpenOption> options;
 	private final boolean openForWrite;
 	private final NSFAccessor accessor;
+	private final ContentPrefetcher prefetcher;
+	private final NSFPathLockManager locks;
+	/** Locks handed out by {@link #lock} and {@link #tryLock}; guarded by itself */
+	private final List<NSFFileLock> fileLocks = new ArrayList<>();
 	
 	public NSFFileChannel(NSFAccessor accessor, NSFPath path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) {
+		this(accessor, null, null, path, options, attrs);
+	}
+	
+	/**
+	 * @param accessor the accessor used to read and store the file
+	 * @param prefetcher a {@link ContentPrefetcher} to serve read-only opens from, or
+	 *        {@code null} to always extract the file directly
+	 * @param locks a {@link NSFPathLockManager} used to coordinate with other handles to
+	 *        the same file, or {@code null} to only lock the local copy
+	 * @param path the path of the file
+	 * @param options the options the file is opened with
+	 * @param attrs attributes to set when creating the file
+	 * @since 2.3.0
+	 */
+	public NSFFileChannel(NSFAccessor accessor, ContentPrefetcher prefetcher, NSFPathLockManager locks, NSFPath path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) {
 		this.path = path;
 		this.options = options;
 		this.accessor = accessor;
+		this.prefetcher = prefetcher;
+		this.locks = locks;
+		this.openForWrite = !Collections.disjoint(WRITE_OPTIONS, options);
 		
 		if(options.contains(StandardOpenOption.TRUNCATE_EXISTING)) {
 			try {
-				this.tempFile = NSFFileUtil.createTempFile();
+				this.tempFile = CompletableFuture.completedFuture(NSFFileUtil.createTempFile());
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
+		} else if(prefetcher != null && !openForWrite) {
+			// Reads may have been staged already, and in turn let the next files be staged
+			this.tempFile = prefetcher.open(path);
+		} else if(accessor instanceof AsyncNSFAccessor) {
+			// Let the extraction proceed while the caller gets on with other work
+			this.tempFile = ((AsyncNSFAccessor)accessor).extractAttachmentAsync(path);
 		} else {
-			this.tempFile = accessor.extractAttachment(path);
+			this.tempFile = CompletableFuture.completedFuture(accessor.extractAttachment(path));
 		}
-		
-		this.openForWrite = !Collections.disjoint(WRITE_OPTIONS, options);
 	}
 
 	@Override
@@ -148,16 +186,29 @@ public class NSFFileChannel extends FileChannel {
 		return getTempFileChannel().map(mode, position, size);
 	}
 
+	/**
+	 * Locks the file against other handles to the same path. Locks always cover the
+	 * whole file, regardless of the requested region.
+	 */
 	@Override
 	public FileLock lock(long position, long size, boolean shared) throws IOException {
-		// TODO implement doc locking
-		return getTempFileChannel().lock(position, size, shared);
+		if(locks == null) {
+			return getTempFileChannel().lock(position, size, shared);
+		}
+		return toFileLock(locks.acquire(path, this, shared), position, size, shared);
 	}
 
+	/**
+	 * Attempts to lock the file against other handles to the same path. Locks always
+	 * cover the whole file, regardless of the requested region.
+	 */
 	@Override
 	public FileLock tryLock(long position, long size, boolean shared) throws IOException {
-		// TODO implement doc locking
-		return getTempFileChannel().tryLock(position, size, shared);
+		if(locks == null) {
+			return getTempFileChannel().tryLock(position, size, shared);
+		}
+		NSFPathLockManager.Lease lease = locks.tryAcquire(path, this, shared);
+		return lease == null ? null : toFileLock(lease, position, size, shared);
 	}
 
 	@Override
@@ -166,11 +217,40 @@ public class NSFFileChannel extends FileChannel {
 		getTempFileChannel().close();
 		this.tempFileChannel = null;
 		
-		if(openForWrite) {
-			accessor.storeAttachment(path, this.tempFile);
+		try {
+			Path tempFile = getTempFile();
+			if(openForWrite) {
+				// Serialize commits to the same file so that each store sees the last one complete
+				NSFPathLockManager.Lease commit = null;
+				if(locks != null) {
+					commit = locks.tryAcquire(path, this, false, NSFPathLockManager.DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
+					if(commit == null) {
+						throw new FileSystemException(path.toString(), null, "Timed out waiting for other handles to the file to finish writing");
+					}
+				}
+				try {
+					accessor.storeAttachment(path, tempFile);
+				} finally {
+					if(commit != null) {
+						commit.release();
+					}
+				}
+				if(prefetcher != null) {
+					prefetcher.invalidate(path);
+				}
+			}
+			
+			Files.deleteIfExists(tempFile);
+		} finally {
+			List<NSFFileLock> held;
+			synchronized(fileLocks) {
+				held = new ArrayList<>(fileLocks);
+				fileLocks.clear();
+			}
+			for(NSFFileLock lock : held) {
+				lock.release();
+			}
 		}
-		
-		Files.deleteIfExists(this.tempFile);
 	}
 
 	// *******************************************************************************
@@ -182,8 +262,77 @@ public class NSFFileChannel extends FileChannel {
 	private synchronized FileChannel getTempFileChannel() throws IOException {
 		if(this.tempFileChannel == null) {
 			// TODO pass through options
-			this.tempFileChannel = FileChannel.open(this.tempFile, this.options.toArray(new OpenOption[this.options.size()]));
+			this.tempFileChannel = FileChannel.open(getTempFile(), this.options.toArray(new OpenOption[this.options.size()]));
 		}
 		return this.tempFileChannel;
 	}
+	
+	private FileLock toFileLock(NSFPathLockManager.Lease lease, long position, long size, boolean shared) throws IOException {
+		boolean backendLock = false;
+		if(!shared && Boolean.parseBoolean(path.getFileSystem().getStringOption(NSFFileSystem.ENV_DOCUMENTLOCKING, "false"))) { //$NON-NLS-1$
+			try {
+				accessor.lockFile(path);
+			} catch(IOException | RuntimeException e) {
+				lease.release();
+				throw e;
+			}
+			backendLock = true;
+		}
+		NSFFileLock lock = new NSFFileLock(lease, backendLock, position, size, shared);
+		synchronized(fileLocks) {
+			fileLocks.add(lock);
+		}
+		return lock;
+	}
+	
+	/**
+	 * {@link FileLock} backed by a lease from the {@link NSFPathLockManager}, optionally
+	 * paired with a backend lock on the file.
+	 */
+	private class NSFFileLock extends FileLock {
+		private final NSFPathLockManager.Lease lease;
+		private final boolean backendLock;
+		
+		NSFFileLock(NSFPathLockManager.Lease lease, boolean backendLock, long position, long size, boolean shared) {
+			super(NSFFileChannel.this, position, size, shared);
+			this.lease = lease;
+			this.backendLock = backendLock;
+		}
+
+		@Override
+		public boolean isValid() {
+			return lease.isValid();
+		}
+
+		@Override
+		public void release() throws IOException {
+			if(!lease.isValid()) {
+				return;
+			}
+			synchronized(fileLocks) {
+				fileLocks.remove(this);
+			}
+			try {
+				if(backendLock) {
+					accessor.unlockFile(path);
+				}
+			} finally {
+				lease.release();
+			}
+		}
+	}
+	
+	private Path getTempFile() throws IOException {
+		try {
+			return this.tempFile.get();
+		} catch(InterruptedException e) {
+			throw new InterruptedIOException(e.toString());
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException) {
+				throw (IOException)cause;
+			}
+			throw new IOException(MessageFormat.format("Encountered exception extracting data for {0}", path), cause);
+		}
+	}
 }
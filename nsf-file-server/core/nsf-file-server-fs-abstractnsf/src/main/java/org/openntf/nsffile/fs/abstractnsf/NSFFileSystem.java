@@ -19,25 +19,68 @@ import java.io.IOException;
 import java.nio.file.FileStore;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
 import org.apache.sshd.sftp.client.fs.SftpFileSystem.DefaultUserPrincipalLookupService;
 import org.apache.sshd.common.file.util.BaseFileSystem;
+import org.openntf.nsffile.core.config.MountDescriptor;
 
 public class NSFFileSystem extends BaseFileSystem<NSFPath> {
+	/**
+	 * Environment key for the maximum time, in milliseconds, that cached data may lag behind
+	 * changes made to the database outside of this filesystem. Set to {@code 0} to check the
+	 * database modification time on every cached call.
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String ENV_CHANGEPOLLINTERVAL = "changePollInterval"; //$NON-NLS-1$
+	
+	/**
+	 * Environment key for the number of files to read ahead once a client is detected
+	 * reading the files of a directory in order. Set to {@code 0} to disable read-ahead.
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String ENV_PREFETCHCOUNT = "prefetchCount"; //$NON-NLS-1$
+	/**
+	 * Environment key for the size, in bytes, above which files are not read ahead.
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String ENV_PREFETCHMAXSIZE = "prefetchMaxSize"; //$NON-NLS-1$
+	/**
+	 * Environment key for whether exclusive locks taken through {@link java.nio.channels.FileChannel#lock}
+	 * also place a backend lock, such as a Domino document lock, on the file. Defaults to
+	 * {@code false}.
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String ENV_DOCUMENTLOCKING = "documentLocking"; //$NON-NLS-1$
 	
 	private final String userName;
 	private final String nsfPath;
+	private final Map<String, Object> env;
 	private final List<FileStore> fileStores;
 	
 	public NSFFileSystem(AbstractNSFFileSystemProvider provider, String userName, String nsfPath) {
+		this(provider, userName, nsfPath, null);
+	}
+	
+	/**
+	 * @since 2.3.0
+	 */
+	public NSFFileSystem(AbstractNSFFileSystemProvider provider, String userName, String nsfPath, Map<String, ?> env) {
 		super(provider);
 		
 		this.userName = userName;
 		this.nsfPath = nsfPath;
+		this.env = env == null ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(env));
 		this.fileStores = Arrays.asList(new NSFFileStore(this));
 	}
 
@@ -96,4 +139,63 @@ public class NSFFileSystem extends BaseFileSystem<NSFPath> {
 	public String getNsfPath() {
 		return nsfPath;
 	}
+	
+	/**
+	 * @return the environment map this filesystem was created with
+	 * @since 2.3.0
+	 */
+	public Map<String, Object> getEnvironment() {
+		return env;
+	}
+	
+	/**
+	 * Retrieves a numeric option from the environment map, accepting either numbers (which may
+	 * have been parsed from JSON as any {@link Number} type) or numeric strings.
+	 * 
+	 * @param key the environment key to read
+	 * @param defaultValue the value to return when the key is absent or unparseable
+	 * @return the configured value or {@code defaultValue}
+	 * @since 2.3.0
+	 */
+	public long getLongOption(String key, long defaultValue) {
+		Object value = env.get(key);
+		if(value instanceof Number) {
+			return ((Number)value).longValue();
+		} else if(value instanceof String) {
+			try {
+				return Long.parseLong(((String)value).trim());
+			} catch(NumberFormatException e) {
+				return defaultValue;
+			}
+		} else {
+			return defaultValue;
+		}
+	}
+	
+	/**
+	 * Retrieves the name of the mount that this filesystem was opened for, if any.
+	 * 
+	 * @return the mount name, or {@code null} if it was not opened as a mount
+	 * @since 2.3.0
+	 */
+	public String getMountName() {
+		return getStringOption(MountDescriptor.ENV_MOUNT, null);
+	}
+	
+	/**
+	 * Retrieves a string option from the environment map.
+	 * 
+	 * @param key the environment key to read
+	 * @param defaultValue the value to return when the key is absent or empty
+	 * @return the configured value or {@code defaultValue}
+	 * @since 2.3.0
+	 */
+	public String getStringOption(String key, String defaultValue) {
+		Object value = env.get(key);
+		if(value == null) {
+			return defaultValue;
+		}
+		String result = value.toString().trim();
+		return result.isEmpty() ? defaultValue : result;
+	}
 }
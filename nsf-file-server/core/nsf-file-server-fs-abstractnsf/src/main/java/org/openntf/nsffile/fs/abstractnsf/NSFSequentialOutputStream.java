@@ -0,0 +1,289 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.fs.abstractnsf;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.file.FileSystemException;
+import java.text.MessageFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openntf.nsffile.core.util.NotesThreadFactory;
+import org.openntf.nsffile.fs.abstractnsf.db.ContentPrefetcher;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFPathLockManager;
+import org.openntf.nsffile.fs.abstractnsf.db.StreamingNSFAccessor;
+
+/**
+ * {@link OutputStream} that writes the complete content of a file straight through to
+ * the NSF as it arrives, rather than staging it in a temporary file first.
+ * 
+ * <p>Data is passed through a bounded pipe to a store running on a Notes worker, so a
+ * writer that gets ahead of Domino waits for it. The file holds an exclusive lock for
+ * the length of the transfer, and the store is only saved once all of the expected data
+ * has arrived.</p>
+ * 
+ * <p>As each stream holds a content worker for as long as its writer takes, only
+ * {@link #MAX_STREAMS} may be open at once; {@link #tryOpen} returns {@code null} when
+ * that many are in use so that callers can stage the file instead. A stream whose writer
+ * sends nothing for {@link #IDLE_TIMEOUT} milliseconds, by default, is abandoned, which
+ * frees the worker without saving the file.</p>
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class NSFSequentialOutputStream extends OutputStream {
+	private static final Logger log = Logger.getLogger(NSFSequentialOutputStream.class.getPackage().getName());
+	
+	/** The size, in bytes, of the buffer between the writer and the Notes worker */
+	public static final int BUFFER_SIZE = 1024 * 1024;
+	/** The maximum number of streams that may hold a content worker at once */
+	public static final int MAX_STREAMS = 2;
+	/** The default time, in milliseconds, that a writer may go without sending data */
+	public static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+	
+	private static final Semaphore streams = new Semaphore(MAX_STREAMS);
+	
+	private final NSFPath path;
+	private final long size;
+	private final long idleTimeout;
+	private final ContentPrefetcher prefetcher;
+	private final NSFPathLockManager.Lease lease;
+	private final PipedOutputStream pipe;
+	private final CompletableFuture<Void> result;
+	private final ScheduledFuture<?> idleCheck;
+	private long written;
+	private boolean closed;
+	/** The {@link System#nanoTime()} of the last write, or {@code 0} while a write is under way */
+	private volatile long lastWrite = System.nanoTime();
+	private volatile boolean timedOut;
+	
+	/**
+	 * Opens a stream to the provided file if fewer than {@link #MAX_STREAMS} are already
+	 * open.
+	 * 
+	 * @param accessor the accessor used to store the file
+	 * @param prefetcher a {@link ContentPrefetcher} to invalidate once the file is stored,
+	 *        or {@code null}
+	 * @param locks a {@link NSFPathLockManager} used to coordinate with other handles to
+	 *        the same file, or {@code null}
+	 * @param path the path of the file
+	 * @param size the number of bytes that will be written
+	 * @return a new stream, or {@code null} if too many are already open
+	 * @throws IOException if there is a problem opening the pipe or acquiring the lock
+	 */
+	public static NSFSequentialOutputStream tryOpen(StreamingNSFAccessor accessor, ContentPrefetcher prefetcher, NSFPathLockManager locks, NSFPath path, long size) throws IOException {
+		return tryOpen(accessor, prefetcher, locks, path, size, IDLE_TIMEOUT);
+	}
+	
+	/**
+	 * Opens a stream to the provided file if fewer than {@link #MAX_STREAMS} are already
+	 * open, abandoning it after the provided idle time.
+	 * 
+	 * @param accessor the accessor used to store the file
+	 * @param prefetcher a {@link ContentPrefetcher} to invalidate once the file is stored,
+	 *        or {@code null}
+	 * @param locks a {@link NSFPathLockManager} used to coordinate with other handles to
+	 *        the same file, or {@code null}
+	 * @param path the path of the file
+	 * @param size the number of bytes that will be written
+	 * @param idleTimeout the time, in milliseconds, that the writer may go without
+	 *        sending data
+	 * @return a new stream, or {@code null} if too many are already open
+	 * @throws IOException if there is a problem opening the pipe or acquiring the lock
+	 */
+	public static NSFSequentialOutputStream tryOpen(StreamingNSFAccessor accessor, ContentPrefetcher prefetcher, NSFPathLockManager locks, NSFPath path, long size, long idleTimeout) throws IOException {
+		if(!streams.tryAcquire()) {
+			return null;
+		}
+		try {
+			return new NSFSequentialOutputStream(accessor, prefetcher, locks, path, size, idleTimeout);
+		} catch(IOException | RuntimeException e) {
+			streams.release();
+			throw e;
+		}
+	}
+	
+	/**
+	 * @param accessor the accessor used to store the file
+	 * @param prefetcher a {@link ContentPrefetcher} to invalidate once the file is stored,
+	 *        or {@code null}
+	 * @param locks a {@link NSFPathLockManager} used to coordinate with other handles to
+	 *        the same file, or {@code null}
+	 * @param path the path of the file
+	 * @param size the number of bytes that will be written
+	 * @param idleTimeout the time, in milliseconds, that the writer may go without
+	 *        sending data
+	 * @throws IOException if there is a problem opening the pipe or acquiring the lock
+	 */
+	private NSFSequentialOutputStream(StreamingNSFAccessor accessor, ContentPrefetcher prefetcher, NSFPathLockManager locks, NSFPath path, long size, long idleTimeout) throws IOException {
+		this.path = path;
+		this.size = size;
+		this.idleTimeout = idleTimeout;
+		this.prefetcher = prefetcher;
+		if(locks == null) {
+			this.lease = null;
+		} else {
+			this.lease = locks.tryAcquire(path, this, false, NSFPathLockManager.DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
+			if(this.lease == null) {
+				throw new FileSystemException(path.toString(), null, "Timed out waiting for other handles to the file to finish writing");
+			}
+		}
+		
+		try {
+			PipedInputStream source = new PipedInputStream(BUFFER_SIZE);
+			this.pipe = new PipedOutputStream(source);
+			this.result = accessor.storeAttachmentAsync(path, source, size)
+				.whenComplete((r, t) -> {
+					// Ensure that a writer blocked on a full pipe finds out if the store ends early
+					try {
+						source.close();
+					} catch(IOException e) {
+						// NOP
+					}
+				});
+			this.idleCheck = scheduleIdleCheck();
+		} catch(IOException | RuntimeException e) {
+			if(lease != null) {
+				lease.release();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte)b }, 0, 1);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if(closed) {
+			throw new IOException("Stream closed");
+		}
+		if(written + len > size) {
+			throw new IOException(MessageFormat.format("Received more than the expected {0} bytes for {1}", size, path));
+		}
+		lastWrite = 0;
+		try {
+			pipe.write(b, off, len);
+		} catch(IOException e) {
+			throw toStoreException(e);
+		} finally {
+			lastWrite = System.nanoTime();
+		}
+		written += len;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		if(idleCheck != null) {
+			idleCheck.cancel(false);
+		}
+		try {
+			pipe.close();
+			result.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.toString());
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, MessageFormat.format("Encountered exception storing {0}", path), cause);
+			}
+			throw cause instanceof IOException ? (IOException)cause : new IOException(cause);
+		} finally {
+			if(lease != null) {
+				lease.release();
+			}
+			streams.release();
+			if(prefetcher != null) {
+				prefetcher.invalidate(path);
+			}
+		}
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private ScheduledFuture<?> scheduleIdleCheck() {
+		long interval = Math.max(1, idleTimeout / 4);
+		try {
+			return NotesThreadFactory.scheduler.scheduleWithFixedDelay(this::checkIdle, interval, interval, TimeUnit.MILLISECONDS);
+		} catch(RejectedExecutionException e) {
+			// Shutting down - the store will end along with the workers
+			return null;
+		}
+	}
+	
+	/**
+	 * Ends the pipe if the writer has stalled, which makes the store fail without saving
+	 * and frees its worker.
+	 */
+	private void checkIdle() {
+		if(result.isDone()) {
+			// Left open after the store ended
+			idleCheck.cancel(false);
+			return;
+		}
+		long last = lastWrite;
+		if(last == 0 || System.nanoTime() - last < TimeUnit.MILLISECONDS.toNanos(idleTimeout)) {
+			return;
+		}
+		if(log.isLoggable(Level.WARNING)) {
+			log.warning(MessageFormat.format("Abandoning upload of {0} after receiving no data for {1}ms", path, idleTimeout));
+		}
+		timedOut = true;
+		try {
+			pipe.close();
+		} catch(IOException e) {
+			// NOP
+		}
+	}
+	
+	/**
+	 * Translates a failure to write to the pipe into the reason that the store ended,
+	 * if it has.
+	 */
+	private IOException toStoreException(IOException e) {
+		if(timedOut) {
+			return new IOException(MessageFormat.format("Upload of {0} timed out waiting for data", path), e);
+		}
+		if(result.isCompletedExceptionally()) {
+			try {
+				result.join();
+			} catch(RuntimeException storeException) {
+				Throwable cause = storeException.getCause() == null ? storeException : storeException.getCause();
+				return new IOException(MessageFormat.format("Unable to store {0}", path), cause);
+			}
+		}
+		return e;
+	}
+}
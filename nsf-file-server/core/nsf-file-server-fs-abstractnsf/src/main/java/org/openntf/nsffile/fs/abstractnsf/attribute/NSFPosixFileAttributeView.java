@@ -17,16 +17,21 @@ package org.openntf.nsffile.fs.abstractnsf.attribute;
 
 import java.io.IOException;
 import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.GroupPrincipal;
 import java.nio.file.attribute.PosixFileAttributeView;
 import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.UserPrincipal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.openntf.nsffile.fs.abstractnsf.NSFPath;
 import org.openntf.nsffile.fs.abstractnsf.db.NSFAccessor;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFFileSnapshot;
 
 /**
  * @author Jesse Gallagher
@@ -36,11 +41,25 @@ public class NSFPosixFileAttributeView implements PosixFileAttributeView {
 	
 	private final NSFAccessor accessor;
 	private final NSFPath path;
+	private NSFFileSnapshot snapshot;
 	
 	public NSFPosixFileAttributeView(NSFAccessor accessor, NSFPath path, LinkOption... options) {
+		this(accessor, path, null, options);
+    }
+	
+	/**
+	 * @param accessor the accessor for the path's database
+	 * @param path the path of the file
+	 * @param snapshot an already-read snapshot of the file, or {@code null} to read
+	 *        it on first use
+	 * @param options link options for the view
+	 * @since 2.3.0
+	 */
+	public NSFPosixFileAttributeView(NSFAccessor accessor, NSFPath path, NSFFileSnapshot snapshot, LinkOption... options) {
 		this.accessor = accessor;
 		this.path = path;
-    }
+		this.snapshot = snapshot;
+	}
 
 	@Override
 	public String name() {
@@ -50,7 +69,16 @@ public class NSFPosixFileAttributeView implements PosixFileAttributeView {
 	@Override
 	public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) throws IOException {
 		// lastAccessTime is intentionally ignored, as it cannot be set in the NSF
-		accessor.setTimes(this.path, lastModifiedTime, createTime);
+		Map<String, Object> attributes = new HashMap<>();
+		if(lastModifiedTime != null) {
+			attributes.put(NSFAccessor.ATTR_LASTMODIFIEDTIME, lastModifiedTime);
+		}
+		if(createTime != null) {
+			attributes.put(NSFAccessor.ATTR_CREATIONTIME, createTime);
+		}
+		if(!attributes.isEmpty()) {
+			setAttributes(attributes);
+		}
 	}
 
 	@Override
@@ -60,22 +88,35 @@ public class NSFPosixFileAttributeView implements PosixFileAttributeView {
 
 	@Override
 	public void setOwner(UserPrincipal owner) throws IOException {
-		accessor.setOwner(this.path, owner);
+		setAttributes(Collections.singletonMap(NSFAccessor.ATTR_OWNER, owner));
 	}
 
 	@Override
 	public synchronized PosixFileAttributes readAttributes() throws IOException {
-		return accessor.readAttributes(this.path);
+		if(this.snapshot == null) {
+			this.snapshot = accessor.snapshot(this.path)
+				.orElseThrow(() -> new NoSuchFileException(this.path.toString()));
+		}
+		return this.snapshot.getAttributes();
 	}
 
 	@Override
 	public void setPermissions(Set<PosixFilePermission> perms) throws IOException {
-		accessor.setPermissions(this.path, perms);
+		setAttributes(Collections.singletonMap(NSFAccessor.ATTR_PERMISSIONS, perms));
 	}
 
 	@Override
 	public void setGroup(GroupPrincipal group) throws IOException {
-		accessor.setGroup(this.path, group);
+		setAttributes(Collections.singletonMap(NSFAccessor.ATTR_GROUP, group));
 	}
 	
+	// *******************************************************************************
+	// * Internal utilities
+	// *******************************************************************************
+	
+	private synchronized void setAttributes(Map<String, ?> attributes) throws IOException {
+		// Drop the snapshot first, so that a failed write can't leave it believed current
+		this.snapshot = null;
+		accessor.setAttributes(this.path, attributes);
+	}
 }
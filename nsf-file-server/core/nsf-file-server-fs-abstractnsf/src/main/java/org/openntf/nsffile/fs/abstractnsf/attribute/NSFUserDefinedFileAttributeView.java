@@ -18,11 +18,13 @@ package org.openntf.nsffile.fs.abstractnsf.attribute;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.attribute.UserDefinedFileAttributeView;
 import java.util.List;
 
 import org.openntf.nsffile.fs.abstractnsf.NSFPath;
 import org.openntf.nsffile.fs.abstractnsf.db.NSFAccessor;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFFileSnapshot;
 
 /**
  * Implementation of {@link UserDefinedFileAttributeView} that stores user-defined attributes
@@ -35,11 +37,25 @@ import org.openntf.nsffile.fs.abstractnsf.db.NSFAccessor;
 public class NSFUserDefinedFileAttributeView implements UserDefinedFileAttributeView {
 	private final NSFAccessor accessor;
 	private final NSFPath path;
+	private NSFFileSnapshot snapshot;
 	
 	public NSFUserDefinedFileAttributeView(NSFAccessor accessor, NSFPath path, LinkOption... options) {
+		this(accessor, path, null, options);
+    }
+	
+	/**
+	 * @param accessor the accessor for the path's database
+	 * @param path the path of the file
+	 * @param snapshot an already-read snapshot of the file, or {@code null} to read
+	 *        it on first use
+	 * @param options link options for the view
+	 * @since 2.3.0
+	 */
+	public NSFUserDefinedFileAttributeView(NSFAccessor accessor, NSFPath path, NSFFileSnapshot snapshot, LinkOption... options) {
 		this.accessor = accessor;
 		this.path = path;
-    }
+		this.snapshot = snapshot;
+	}
 
 	@Override
 	public String name() {
@@ -48,28 +64,42 @@ public class NSFUserDefinedFileAttributeView implements UserDefinedFileAttribute
 
 	@Override
 	public List<String> list() throws IOException {
-		return accessor.listUserDefinedAttributes(this.path);
+		return getSnapshot().getUserAttributeNames();
 	}
 
 	@Override
 	public int size(String name) throws IOException {
-		return accessor.getUserDefinedAttribute(this.path, name).length;
+		return getSnapshot().getUserAttribute(name).length;
 	}
 
 	@Override
 	public int read(String name, ByteBuffer dst) throws IOException {
-		byte[] value = accessor.getUserDefinedAttribute(this.path, name);
+		byte[] value = getSnapshot().getUserAttribute(name);
 		dst.put(value);
 		return value.length;
 	}
 
 	@Override
-	public int write(String name, ByteBuffer src) throws IOException {
+	public synchronized int write(String name, ByteBuffer src) throws IOException {
+		this.snapshot = null;
 		return accessor.writeUserDefinedAttribute(this.path, name, src);
 	}
 
 	@Override
-	public void delete(String name) throws IOException {
+	public synchronized void delete(String name) throws IOException {
+		this.snapshot = null;
 		accessor.deleteUserDefinedAttribute(this.path, name);
 	}
+	
+	// *******************************************************************************
+	// * Internal utilities
+	// *******************************************************************************
+	
+	private synchronized NSFFileSnapshot getSnapshot() throws IOException {
+		if(this.snapshot == null) {
+			this.snapshot = accessor.snapshot(this.path)
+				.orElseThrow(() -> new NoSuchFileException(this.path.toString()));
+		}
+		return this.snapshot;
+	}
 }
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.fs.abstractnsf.attribute;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFAccessor;
+
+/**
+ * Attribute view for the root of an NSF filesystem, which has no document of its own.
+ * 
+ * <p>Attributes are read from the database itself, and changes are ignored in the
+ * same way as {@code setAttributes} on the root.</p>
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class RootFileAttributeView implements PosixFileAttributeView, UserDefinedFileAttributeView {
+	private final NSFAccessor accessor;
+	private final NSFPath path;
+	
+	public RootFileAttributeView(NSFAccessor accessor, NSFPath path) {
+		this.accessor = accessor;
+		this.path = path;
+	}
+
+	@Override
+	public String name() {
+		return "posix"; //$NON-NLS-1$
+	}
+
+	@Override
+	public PosixFileAttributes readAttributes() throws IOException {
+		try {
+			return accessor.getRootFileAttributes(path);
+		} catch(RuntimeException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) throws IOException {
+		// NOP
+	}
+
+	@Override
+	public UserPrincipal getOwner() throws IOException {
+		return readAttributes().owner();
+	}
+
+	@Override
+	public void setOwner(UserPrincipal owner) throws IOException {
+		// NOP
+	}
+
+	@Override
+	public void setPermissions(Set<PosixFilePermission> perms) throws IOException {
+		// NOP
+	}
+
+	@Override
+	public void setGroup(GroupPrincipal group) throws IOException {
+		// NOP
+	}
+
+	@Override
+	public List<String> list() throws IOException {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public int size(String name) throws IOException {
+		return 0;
+	}
+
+	@Override
+	public int read(String name, ByteBuffer dst) throws IOException {
+		return 0;
+	}
+
+	@Override
+	public int write(String name, ByteBuffer src) throws IOException {
+		// NOP
+		int size = src.remaining();
+		src.position(src.limit());
+		return size;
+	}
+
+	@Override
+	public void delete(String name) throws IOException {
+		// NOP
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.fs.abstractnsf.db;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.openntf.nsffile.core.fs.attribute.NSFFileAttributes;
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+
+/**
+ * Asynchronous companion to {@link NSFAccessor} for the operations on the hot path of
+ * file transfers.
+ *
+ * <p>Returned futures are completed on Notes worker threads, so the calling thread is
+ * free to continue while Domino work is in progress. Failures complete the future
+ * exceptionally with the same exceptions that the synchronous methods would throw.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public interface AsyncNSFAccessor extends NSFAccessor {
+	/**
+	 * @see NSFAccessor#getDirectoryEntries(NSFPath)
+	 */
+	CompletableFuture<List<String>> getDirectoryEntriesAsync(NSFPath dir);
+
+	/**
+	 * @see NSFAccessor#extractAttachment(NSFPath)
+	 */
+	CompletableFuture<Path> extractAttachmentAsync(NSFPath path);
+
+	/**
+	 * @see NSFAccessor#storeAttachment(NSFPath, Path)
+	 */
+	CompletableFuture<Void> storeAttachmentAsync(NSFPath path, Path attachmentData);
+
+	/**
+	 * @see NSFAccessor#exists(NSFPath)
+	 */
+	CompletableFuture<Boolean> existsAsync(NSFPath path);
+
+	/**
+	 * @see NSFAccessor#readAttributes(NSFPath)
+	 */
+	CompletableFuture<NSFFileAttributes> readAttributesAsync(NSFPath path);
+
+	/**
+	 * Looks up the provided path and reads its attributes if it exists, performing the
+	 * lookup and read together on a Notes worker.
+	 * 
+	 * <p>As with {@link #readAttributes}, this is not used for the root path, which is
+	 * handled by {@link #getRootFileAttributes}.</p>
+	 *
+	 * @param path the path to read
+	 * @return a {@link CompletableFuture} completed with the attributes of the file, or an
+	 *         empty {@link Optional} if the file does not exist
+	 */
+	CompletableFuture<Optional<NSFFileAttributes>> statAsync(NSFPath path);
+
+	/**
+	 * @see NSFAccessor#snapshot(NSFPath)
+	 */
+	CompletableFuture<Optional<NSFFileSnapshot>> snapshotAsync(NSFPath path);
+}
@@ -0,0 +1,488 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.fs.abstractnsf.db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openntf.nsffile.core.fs.attribute.NSFFileAttributes;
+import org.openntf.nsffile.core.util.DatabaseChangePoller;
+import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.core.util.NotesThreadFactory;
+import org.openntf.nsffile.core.util.ServerMetrics;
+import org.openntf.nsffile.fs.abstractnsf.NSFFileSystem;
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+
+/**
+ * Stages the content of files that a client is likely to read next, based on the
+ * order in which it has been opening files in a directory.
+ *
+ * <p>Bulk downloads such as {@code mget *} or {@code scp -r} open the files of a
+ * directory one after another in listing order. Once two consecutive entries of a
+ * listing have been opened by the same user, the next few regular files are extracted
+ * in the background so that their data is already on local disk when the client asks
+ * for them.</p>
+ *
+ * <p>Positions are tracked per user and directory rather than per session, as the
+ * filesystem is shared by a user's sessions. Each directory follows up to
+ * {@link #DEFAULT_MAX_READERS} positions at once, so that several sessions of one
+ * user reading the same directory, such as a parallel {@code mget}, each continue
+ * their own sequence. The directory is listed once, on the first open in it, and
+ * listed again only when a file is opened that the listing does not contain.</p>
+ *
+ * <p>Staged content is keyed by database, user, and path, so that it is only ever
+ * handed to the user whose access was used to read it. The cache is bounded by total
+ * size, evicting the least-recently staged entries to make room, and expired entries
+ * are purged in the background. Any write to a path discards its staged copy.</p>
+ *
+ * <p>Read-ahead is speculative, so only a few extractions run at once, leaving the
+ * rest of the content lane for files that clients have actually asked for.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class ContentPrefetcher {
+	private static final Logger log = Logger.getLogger(ContentPrefetcher.class.getPackage().getName());
+
+	/** The default number of files to stage ahead of a sequential reader */
+	public static final int DEFAULT_COUNT = 3;
+	/** The default size, in bytes, above which files are not staged */
+	public static final long DEFAULT_MAX_FILE_SIZE = 16 * 1024 * 1024;
+	/** The default total size, in bytes, of all staged files */
+	public static final long DEFAULT_MAX_BYTES = 128 * 1024 * 1024;
+	/** The default time, in milliseconds, that staged content is kept before it is discarded */
+	public static final long DEFAULT_TTL = 30000;
+	/** The default number of directory cursors tracked before they are reset */
+	public static final int DEFAULT_MAX_CURSORS = 1000;
+	/** The default number of files extracted ahead of a reader at the same time, across all users */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 2;
+	/** The number of sequential readers followed in each directory */
+	public static final int DEFAULT_MAX_READERS = 4;
+
+	private static final LongAdder HITS = ServerMetrics.instance.counter("Cache.Prefetch" + ServerMetrics.SUFFIX_HITS); //$NON-NLS-1$
+	private static final LongAdder MISSES = ServerMetrics.instance.counter("Cache.Prefetch" + ServerMetrics.SUFFIX_MISSES); //$NON-NLS-1$
+
+	private final AsyncNSFAccessor accessor;
+	private final long maxBytes;
+	private final long ttl;
+	private final int maxCursors;
+	private final int maxInFlight;
+	/** Maps database+user+directory keys to the listing of the directory and the positions of its readers */
+	private final Map<String, Cursor> cursors = new ConcurrentHashMap<>();
+	/**
+	 * Maps database+user+path keys to staged content, in insertion order; guarded by {@code this}.
+	 * Entries are removed when they are used, so the eldest entry is also the least-recently used.
+	 */
+	private final Map<String, Staged> staged = new LinkedHashMap<>();
+	private long stagedBytes;
+	/** The background purge of expired entries, while any are staged; guarded by {@code this} */
+	private ScheduledFuture<?> purgeTask;
+	/** The number of speculative extractions currently running */
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	public ContentPrefetcher(AsyncNSFAccessor accessor) {
+		this(accessor, DEFAULT_MAX_BYTES, DEFAULT_TTL, DEFAULT_MAX_CURSORS, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	public ContentPrefetcher(AsyncNSFAccessor accessor, long maxBytes, long ttl, int maxCursors) {
+		this(accessor, maxBytes, ttl, maxCursors, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	public ContentPrefetcher(AsyncNSFAccessor accessor, long maxBytes, long ttl, int maxCursors, int maxInFlight) {
+		this.accessor = accessor;
+		this.maxBytes = maxBytes;
+		this.ttl = ttl;
+		this.maxCursors = maxCursors;
+		this.maxInFlight = Math.max(1, maxInFlight);
+
+		DatabaseChangePoller.instance.addListener(this::invalidateDatabase);
+	}
+
+	/**
+	 * Retrieves the content of the provided file for reading, using staged content if
+	 * available and extracting it otherwise. The open is also recorded to detect
+	 * sequential access.
+	 *
+	 * <p>Ownership of the returned temporary file passes to the caller, which is
+	 * responsible for deleting it.</p>
+	 *
+	 * @param path the path of the file being opened
+	 * @return a {@link CompletableFuture} completed with a temporary file containing
+	 *         the content of the file
+	 */
+	public CompletableFuture<Path> open(NSFPath path) {
+		String key = toKey(path);
+		Staged hit;
+		synchronized(this) {
+			hit = staged.remove(key);
+			if(hit != null) {
+				stagedBytes -= hit.size;
+			}
+		}
+
+		CompletableFuture<Path> result;
+		if(hit != null && !hit.isExpired()) {
+			HITS.increment();
+			if(log.isLoggable(Level.FINER)) {
+				log.finer(getClass().getSimpleName() + ": Using staged content for " + path); //$NON-NLS-1$
+			}
+			// If the speculative extraction failed, such as from a busy lane, try again now
+			result = hit.content
+				.handle((file, t) -> t == null ? CompletableFuture.completedFuture(file) : accessor.extractAttachmentAsync(path))
+				.thenCompose(Function.identity());
+		} else {
+			MISSES.increment();
+			if(hit != null) {
+				discard(hit);
+			}
+			result = accessor.extractAttachmentAsync(path);
+		}
+
+		track(path);
+		return result;
+	}
+
+	/**
+	 * Discards any staged content for the provided path and its descendants, for all
+	 * users. This should be called after any operation that modifies, moves, or
+	 * removes the path.
+	 *
+	 * @param path the path that has changed
+	 */
+	public void invalidate(NSFPath path) {
+		String dbKey = toDbKey(path);
+		String p = toPath(path);
+		removeIf(s -> s.dbKey.equals(dbKey) && (s.path.equals(p) || s.path.startsWith(p + '/')));
+
+		// The listing of the parent has changed, as may those of any folders beneath
+		NSFPath parent = path.getParent();
+		String parentPath = parent == null ? null : toPath(parent);
+		cursors.entrySet().removeIf(entry -> {
+			Cursor cursor = entry.getValue();
+			return cursor.dbKey.equals(dbKey) && (cursor.dir.equals(parentPath) || cursor.dir.equals(p) || cursor.dir.startsWith(p + '/'));
+		});
+	}
+
+	/**
+	 * Discards all staged content and cursors for the provided database.
+	 *
+	 * @param nsfPath the API path of the database
+	 */
+	public void invalidateDatabase(String nsfPath) {
+		String dbKey = nsfPath + "//"; //$NON-NLS-1$
+		cursors.values().removeIf(cursor -> cursor.dbKey.equals(dbKey));
+		removeIf(s -> s.dbKey.equals(dbKey));
+	}
+
+	/**
+	 * Discards all staged content and cursors.
+	 */
+	public void clear() {
+		cursors.clear();
+		removeIf(s -> true);
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static class Cursor {
+		private final String dbKey;
+		private final String dir;
+		private final List<String> entries;
+		/** The index of the last file opened by each reader, least recent first; guarded by {@code this} */
+		private final Deque<Integer> positions = new ArrayDeque<>();
+
+		Cursor(NSFPath dir, List<String> entries) {
+			this.dbKey = toDbKey(dir);
+			this.dir = toPath(dir);
+			this.entries = entries;
+		}
+
+		/**
+		 * Records an open of the entry at the provided index, moving the reader that
+		 * had opened the previous entry or else starting a new one, replacing the least
+		 * recent reader if there are already {@link #DEFAULT_MAX_READERS}.
+		 *
+		 * @param index the index of the opened entry
+		 * @return {@code true} if the open continued a sequential read
+		 */
+		synchronized boolean advance(int index) {
+			boolean sequential = positions.remove(Integer.valueOf(index - 1));
+			if(!sequential) {
+				positions.remove(Integer.valueOf(index));
+				if(positions.size() >= DEFAULT_MAX_READERS) {
+					positions.removeFirst();
+				}
+			}
+			positions.addLast(index);
+			return sequential;
+		}
+	}
+
+	private class Staged {
+		private final String dbKey;
+		private final String path;
+		private final long size;
+		private final long expires;
+		private final CompletableFuture<Path> content;
+
+		Staged(NSFPath path, long size, CompletableFuture<Path> content) {
+			this.dbKey = toDbKey(path);
+			this.path = toPath(path);
+			this.size = size;
+			this.expires = System.currentTimeMillis() + ttl;
+			this.content = content;
+		}
+
+		boolean isExpired() {
+			return expires < System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Records an open of the provided path and, if it continues a sequential read of
+	 * its directory, stages the next files in the listing.
+	 */
+	private void track(NSFPath path) {
+		NSFFileSystem fs = path.getFileSystem();
+		int count = (int)fs.getLongOption(NSFFileSystem.ENV_PREFETCHCOUNT, DEFAULT_COUNT);
+		if(count <= 0) {
+			return;
+		}
+		NSFPath dir = path.getParent();
+		if(dir == null || path.getFileName() == null) {
+			return;
+		}
+		String name = path.getFileName().toString();
+		String cursorKey = toSessionKey(path) + toPath(dir);
+
+		Cursor cursor = cursors.get(cursorKey);
+		int index = cursor == null ? -1 : cursor.entries.indexOf(name);
+		if(index >= 0) {
+			if(cursor.advance(index)) {
+				long maxFileSize = fs.getLongOption(NSFFileSystem.ENV_PREFETCHMAXSIZE, DEFAULT_MAX_FILE_SIZE);
+				for(int i = index + 1; i <= index + count && i < cursor.entries.size(); i++) {
+					stage(dir.resolve(cursor.entries.get(i)), maxFileSize);
+				}
+			}
+		} else {
+			// New directory, or a file added since it was listed; listings are normally cached from the client's readdir
+			if(cursors.size() >= maxCursors) {
+				cursors.clear();
+			}
+			accessor.getDirectoryEntriesAsync(dir).whenComplete((entries, t) -> {
+				if(t != null) {
+					Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+					Level level = cause instanceof RejectedExecutionException ? Level.FINE : Level.WARNING;
+					if(log.isLoggable(level)) {
+						log.log(level, MessageFormat.format("Unable to list {0} for read-ahead", dir), cause);
+					}
+					return;
+				}
+				Cursor listed = new Cursor(dir, entries);
+				int start = entries.indexOf(name);
+				if(start >= 0) {
+					listed.advance(start);
+				}
+				cursors.put(cursorKey, listed);
+			});
+		}
+	}
+
+	private void stage(NSFPath path, long maxFileSize) {
+		String key = toKey(path);
+		synchronized(this) {
+			if(staged.containsKey(key) || inFlight.get() >= maxInFlight) {
+				return;
+			}
+		}
+
+		accessor.statAsync(path).thenAccept(attrs -> {
+			if(!attrs.isPresent()) {
+				return;
+			}
+			NSFFileAttributes a = attrs.get();
+			if(!a.isRegularFile() || a.size() > maxFileSize || a.size() > maxBytes) {
+				return;
+			}
+			CompletableFuture<Path> content = new CompletableFuture<>();
+			List<Staged> evicted = new ArrayList<>();
+			synchronized(this) {
+				if(staged.containsKey(key) || inFlight.get() >= maxInFlight) {
+					return;
+				}
+				evict(a.size(), evicted);
+				if(log.isLoggable(Level.FINER)) {
+					log.finer(getClass().getSimpleName() + ": Staging content for " + path); //$NON-NLS-1$
+				}
+				staged.put(key, new Staged(path, a.size(), content));
+				stagedBytes += a.size();
+				inFlight.incrementAndGet();
+				schedulePurge();
+			}
+			evicted.forEach(ContentPrefetcher::discard);
+			
+			// Start the extraction outside of the lock, completing the staged entry from it
+			CompletableFuture<Path> extraction;
+			try {
+				extraction = accessor.extractAttachmentAsync(path);
+			} catch(RuntimeException e) {
+				extraction = new CompletableFuture<>();
+				extraction.completeExceptionally(e);
+			}
+			extraction.whenComplete((file, t) -> {
+				inFlight.decrementAndGet();
+				if(t != null) {
+					content.completeExceptionally(t);
+				} else {
+					content.complete(file);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Removes expired entries and then the least-recently staged entries until there
+	 * is room for the provided number of bytes; must be called while holding the lock
+	 * on {@code this}.
+	 *
+	 * @param size the number of bytes about to be staged
+	 * @param evicted a list to receive the removed entries, to be discarded once the
+	 *        lock is released
+	 */
+	private void evict(long size, List<Staged> evicted) {
+		Iterator<Staged> iter = staged.values().iterator();
+		while(iter.hasNext()) {
+			Staged s = iter.next();
+			if(s.isExpired()) {
+				iter.remove();
+				stagedBytes -= s.size;
+				evicted.add(s);
+			}
+		}
+		iter = staged.values().iterator();
+		while(stagedBytes + size > maxBytes && iter.hasNext()) {
+			Staged s = iter.next();
+			iter.remove();
+			stagedBytes -= s.size;
+			evicted.add(s);
+		}
+	}
+
+	/**
+	 * Starts the background purge of expired entries if it is not already running;
+	 * must be called while holding the lock on {@code this}.
+	 */
+	private void schedulePurge() {
+		if(purgeTask == null) {
+			try {
+				purgeTask = NotesThreadFactory.scheduler.scheduleWithFixedDelay(this::purgeExpired, ttl, ttl, TimeUnit.MILLISECONDS);
+			} catch(RejectedExecutionException e) {
+				// Shutting down - entries will still be evicted to make room for new ones
+				if(log.isLoggable(Level.FINE)) {
+					log.log(Level.FINE, "Unable to schedule purge of staged content", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes expired entries, stopping the background purge once nothing is staged.
+	 */
+	private void purgeExpired() {
+		removeIf(Staged::isExpired);
+		synchronized(this) {
+			if(staged.isEmpty() && purgeTask != null) {
+				purgeTask.cancel(false);
+				purgeTask = null;
+			}
+		}
+	}
+
+	private void removeIf(Predicate<Staged> predicate) {
+		List<Staged> removed = new ArrayList<>();
+		synchronized(this) {
+			Iterator<Staged> iter = staged.values().iterator();
+			while(iter.hasNext()) {
+				Staged s = iter.next();
+				if(predicate.test(s)) {
+					iter.remove();
+					stagedBytes -= s.size;
+					removed.add(s);
+				}
+			}
+		}
+		removed.forEach(ContentPrefetcher::discard);
+	}
+
+	/**
+	 * Deletes the temporary file of staged content that will not be handed off, once
+	 * its extraction finishes.
+	 */
+	private static void discard(Staged staged) {
+		staged.content.thenAccept(file -> {
+			try {
+				Files.deleteIfExists(file);
+			} catch(IOException e) {
+				if(log.isLoggable(Level.WARNING)) {
+					log.log(Level.WARNING, "Encountered exception deleting staged file " + file, e);
+				}
+			}
+		});
+	}
+
+	private static String toKey(NSFPath path) {
+		return toSessionKey(path) + toPath(path);
+	}
+
+	private static String toSessionKey(NSFPath path) {
+		return toDbKey(path) + path.getFileSystem().getUserName() + "//"; //$NON-NLS-1$
+	}
+
+	private static String toDbKey(NSFPath path) {
+		return path.getFileSystem().getNsfPath() + "//"; //$NON-NLS-1$
+	}
+
+	private static String toPath(NSFPath path) {
+		String p = NSFFileUtil.toFileName(path.toAbsolutePath());
+		if(p.endsWith("/")) { //$NON-NLS-1$
+			p = p.substring(0, p.length()-1);
+		}
+		return p;
+	}
+}
@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.fs.abstractnsf.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.openntf.nsffile.core.fs.attribute.NSFFileAttributes;
+import org.openntf.nsffile.core.util.ImportProgress;
+import org.openntf.nsffile.core.util.LatencyHistogram;
+import org.openntf.nsffile.core.util.ServerMetrics;
+import org.openntf.nsffile.fs.abstractnsf.NSFFileSystem;
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+import org.openntf.nsffile.fs.abstractnsf.attribute.RootFileAttributes;
+
+/**
+ * Records the latency of each call made to an {@link NSFAccessor} in a
+ * {@link LatencyHistogram} named {@code Latency.<accessor>.<method>}, and again in
+ * one named {@code Mount.<mount>.Latency.<method>} when the path belongs to a mount.
+ *
+ * <p>For methods that return a {@link CompletableFuture}, the time is measured until
+ * the future completes rather than until the method returns.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class InstrumentedNSFAccessor implements NSFAccessor {
+	
+	/**
+	 * Wraps the provided accessor so that the latency of its calls is recorded. The
+	 * returned object implements the same accessor interfaces as the accessor, such as
+	 * {@link AsyncNSFAccessor}.
+	 * 
+	 * @param accessor the accessor to wrap
+	 * @return an instrumented accessor
+	 */
+	public static NSFAccessor wrap(NSFAccessor accessor) {
+		if(accessor instanceof StreamingNSFAccessor) {
+			return new InstrumentedStreamingNSFAccessor((StreamingNSFAccessor)accessor);
+		} else if(accessor instanceof AsyncNSFAccessor) {
+			return new InstrumentedAsyncNSFAccessor((AsyncNSFAccessor)accessor);
+		} else {
+			return new InstrumentedNSFAccessor(accessor);
+		}
+	}
+	
+	@FunctionalInterface
+	private interface Call<T, E extends Exception> {
+		T call() throws E;
+	}
+	
+	@FunctionalInterface
+	private interface VoidCall<E extends Exception> {
+		void call() throws E;
+	}
+	
+	private final NSFAccessor delegate;
+	private final String prefix;
+	/** Maps method names to their histograms across all mounts */
+	private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	/** Maps mount names to maps of method names to their histograms for that mount */
+	private final Map<String, Map<String, LatencyHistogram>> mountHistograms = new ConcurrentHashMap<>();
+	
+	private InstrumentedNSFAccessor(NSFAccessor delegate) {
+		this.delegate = delegate;
+		this.prefix = "Latency." + delegate.getClass().getSimpleName() + '.'; //$NON-NLS-1$
+	}
+	
+	// *******************************************************************************
+	// * NSFAccessor
+	// *******************************************************************************
+
+	@Override
+	public List<String> getDirectoryEntries(NSFPath dir) {
+		return time("getDirectoryEntries", dir, () -> delegate.getDirectoryEntries(dir)); //$NON-NLS-1$
+	}
+
+	@Override
+	public Path extractAttachment(NSFPath path) {
+		return time("extractAttachment", path, () -> delegate.extractAttachment(path)); //$NON-NLS-1$
+	}
+
+	@Override
+	public void storeAttachment(NSFPath path, Path attachmentData) throws IOException {
+		run("storeAttachment", path, () -> delegate.storeAttachment(path, attachmentData)); //$NON-NLS-1$
+	}
+
+	@Override
+	public void createDirectory(NSFPath dir, FileAttribute<?>... attrs) throws IOException {
+		run("createDirectory", dir, () -> delegate.createDirectory(dir, attrs)); //$NON-NLS-1$
+	}
+
+	@Override
+	public void delete(NSFPath path) throws IOException {
+		run("delete", path, () -> delegate.delete(path)); //$NON-NLS-1$
+	}
+	
+	@Override
+	public void deleteTree(NSFPath path) throws IOException {
+		run("deleteTree", path, () -> delegate.deleteTree(path)); //$NON-NLS-1$
+	}
+	
+	@Override
+	public void importTree(Path source, NSFPath target, int parallelism, ImportProgress progress) throws IOException {
+		run("importTree", target, () -> delegate.importTree(source, target, parallelism, progress)); //$NON-NLS-1$
+	}
+
+	@Override
+	public void copy(NSFPath source, NSFPath target, CopyOption... options) throws IOException {
+		run("copy", source, () -> delegate.copy(source, target, options)); //$NON-NLS-1$
+	}
+
+	@Override
+	public void move(NSFPath source, NSFPath target, CopyOption... options) throws IOException {
+		run("move", source, () -> delegate.move(source, target, options)); //$NON-NLS-1$
+	}
+
+	@Override
+	public boolean exists(NSFPath path) {
+		return time("exists", path, () -> delegate.exists(path)); //$NON-NLS-1$
+	}
+
+	@Override
+	public NSFFileAttributes readAttributes(NSFPath path) {
+		return time("readAttributes", path, () -> delegate.readAttributes(path)); //$NON-NLS-1$
+	}
+	
+	@Override
+	public Optional<NSFFileSnapshot> snapshot(NSFPath path) throws IOException {
+		return time("snapshot", path, () -> delegate.snapshot(path)); //$NON-NLS-1$
+	}
+
+	@Override
+	public void setOwner(NSFPath path, UserPrincipal owner) throws IOException {
+		run("setOwner", path, () -> delegate.setOwner(path, owner)); //$NON-NLS-1$
+	}
+
+	@Override
+	public void setGroup(NSFPath path, UserPrincipal group) throws IOException {
+		run("setGroup", path, () -> delegate.setGroup(path, group)); //$NON-NLS-1$
+	}
+
+	@Override
+	public void setPermissions(NSFPath path, Set<PosixFilePermission> perms) throws IOException {
+		run("setPermissions", path, () -> delegate.setPermissions(path, perms)); //$NON-NLS-1$
+	}
+
+	@Override
+	public void setTimes(NSFPath path, FileTime lastModifiedTime, FileTime createTime) throws IOException {
+		run("setTimes", path, () -> delegate.setTimes(path, lastModifiedTime, createTime)); //$NON-NLS-1$
+	}
+	
+	@Override
+	public void setAttributes(NSFPath path, Map<String, ?> attributes) throws IOException {
+		run("setAttributes", path, () -> delegate.setAttributes(path, attributes)); //$NON-NLS-1$
+	}
+
+	@Override
+	public List<String> listUserDefinedAttributes(NSFPath path) throws IOException {
+		return time("listUserDefinedAttributes", path, () -> delegate.listUserDefinedAttributes(path)); //$NON-NLS-1$
+	}
+
+	@Override
+	public int writeUserDefinedAttribute(NSFPath path, String name, ByteBuffer src) throws IOException {
+		return time("writeUserDefinedAttribute", path, () -> delegate.writeUserDefinedAttribute(path, name, src)); //$NON-NLS-1$
+	}
+
+	@Override
+	public void deleteUserDefinedAttribute(NSFPath path, String name) throws IOException {
+		run("deleteUserDefinedAttribute", path, () -> delegate.deleteUserDefinedAttribute(path, name)); //$NON-NLS-1$
+	}
+
+	@Override
+	public byte[] getUserDefinedAttribute(NSFPath path, String name) throws IOException {
+		return time("getUserDefinedAttribute", path, () -> delegate.getUserDefinedAttribute(path, name)); //$NON-NLS-1$
+	}
+	
+	@Override
+	public void lockFile(NSFPath path) throws IOException {
+		run("lockFile", path, () -> delegate.lockFile(path)); //$NON-NLS-1$
+	}
+	
+	@Override
+	public void unlockFile(NSFPath path) throws IOException {
+		run("unlockFile", path, () -> delegate.unlockFile(path)); //$NON-NLS-1$
+	}
+
+	@Override
+	public RootFileAttributes getRootFileAttributes(Path path) {
+		return time("getRootFileAttributes", path, () -> delegate.getRootFileAttributes(path)); //$NON-NLS-1$
+	}
+	
+	@Override
+	public String toString() {
+		return "Instrumented" + delegate; //$NON-NLS-1$
+	}
+	
+	// *******************************************************************************
+	// * Accessor subtypes
+	// *******************************************************************************
+	
+	private static class InstrumentedAsyncNSFAccessor extends InstrumentedNSFAccessor implements AsyncNSFAccessor {
+		private final AsyncNSFAccessor delegate;
+		
+		InstrumentedAsyncNSFAccessor(AsyncNSFAccessor delegate) {
+			super(delegate);
+			this.delegate = delegate;
+		}
+
+		@Override
+		public CompletableFuture<List<String>> getDirectoryEntriesAsync(NSFPath dir) {
+			return timeAsync("getDirectoryEntriesAsync", dir, () -> delegate.getDirectoryEntriesAsync(dir)); //$NON-NLS-1$
+		}
+
+		@Override
+		public CompletableFuture<Path> extractAttachmentAsync(NSFPath path) {
+			return timeAsync("extractAttachmentAsync", path, () -> delegate.extractAttachmentAsync(path)); //$NON-NLS-1$
+		}
+
+		@Override
+		public CompletableFuture<Void> storeAttachmentAsync(NSFPath path, Path attachmentData) {
+			return timeAsync("storeAttachmentAsync", path, () -> delegate.storeAttachmentAsync(path, attachmentData)); //$NON-NLS-1$
+		}
+
+		@Override
+		public CompletableFuture<Boolean> existsAsync(NSFPath path) {
+			return timeAsync("existsAsync", path, () -> delegate.existsAsync(path)); //$NON-NLS-1$
+		}
+
+		@Override
+		public CompletableFuture<NSFFileAttributes> readAttributesAsync(NSFPath path) {
+			return timeAsync("readAttributesAsync", path, () -> delegate.readAttributesAsync(path)); //$NON-NLS-1$
+		}
+
+		@Override
+		public CompletableFuture<Optional<NSFFileAttributes>> statAsync(NSFPath path) {
+			return timeAsync("statAsync", path, () -> delegate.statAsync(path)); //$NON-NLS-1$
+		}
+
+		@Override
+		public CompletableFuture<Optional<NSFFileSnapshot>> snapshotAsync(NSFPath path) {
+			return timeAsync("snapshotAsync", path, () -> delegate.snapshotAsync(path)); //$NON-NLS-1$
+		}
+	}
+	
+	private static class InstrumentedStreamingNSFAccessor extends InstrumentedAsyncNSFAccessor implements StreamingNSFAccessor {
+		private final StreamingNSFAccessor delegate;
+		
+		InstrumentedStreamingNSFAccessor(StreamingNSFAccessor delegate) {
+			super(delegate);
+			this.delegate = delegate;
+		}
+
+		@Override
+		public CompletableFuture<Void> storeAttachmentAsync(NSFPath path, InputStream data, long size) {
+			return timeAsync("storeAttachmentAsync", path, () -> delegate.storeAttachmentAsync(path, data, size)); //$NON-NLS-1$
+		}
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private <T, E extends Exception> T time(String method, Path path, Call<T, E> call) throws E {
+		long start = System.nanoTime();
+		try {
+			return call.call();
+		} finally {
+			record(method, path, System.nanoTime() - start);
+		}
+	}
+	
+	private <E extends Exception> void run(String method, Path path, VoidCall<E> call) throws E {
+		long start = System.nanoTime();
+		try {
+			call.call();
+		} finally {
+			record(method, path, System.nanoTime() - start);
+		}
+	}
+	
+	<T> CompletableFuture<T> timeAsync(String method, Path path, Supplier<CompletableFuture<T>> call) {
+		long start = System.nanoTime();
+		CompletableFuture<T> result;
+		try {
+			result = call.get();
+		} catch(RuntimeException e) {
+			record(method, path, System.nanoTime() - start);
+			throw e;
+		}
+		result.whenComplete((r, t) -> record(method, path, System.nanoTime() - start));
+		return result;
+	}
+	
+	private void record(String method, Path path, long nanos) {
+		histograms.computeIfAbsent(method, m -> ServerMetrics.instance.histogram(prefix + m)).record(nanos);
+		String mount = path != null && path.getFileSystem() instanceof NSFFileSystem ? ((NSFFileSystem)path.getFileSystem()).getMountName() : null;
+		if(mount != null) {
+			mountHistograms.computeIfAbsent(mount, key -> new ConcurrentHashMap<>())
+				.computeIfAbsent(method, m -> ServerMetrics.instance.histogram("Mount." + mount + ".Latency." + m)) //$NON-NLS-1$ //$NON-NLS-2$
+				.record(nanos);
+		}
+	}
+}
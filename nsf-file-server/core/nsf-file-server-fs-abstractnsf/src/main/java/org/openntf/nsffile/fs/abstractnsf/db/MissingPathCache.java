@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.fs.abstractnsf.db;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openntf.nsffile.core.util.DatabaseChangePoller;
+import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.core.util.ServerMetrics;
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+
+/**
+ * Short-lived cache of paths recently found not to exist in an NSF.
+ *
+ * <p>Clients frequently probe for files that aren't there, such as editor swap files
+ * or upload targets. This cache lets {@link NSFAccessor#exists} answer repeated misses
+ * without going to the database. Entries expire after a short TTL, and any write that
+ * could create a path must invalidate it.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class MissingPathCache {
+	/** The default time, in milliseconds, that a negative lookup is trusted */
+	public static final long DEFAULT_TTL = 3000;
+	/** The default number of paths tracked before expired entries are purged */
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private static final LongAdder HITS = ServerMetrics.instance.counter("Cache.MissingPath" + ServerMetrics.SUFFIX_HITS); //$NON-NLS-1$
+	private static final LongAdder MISSES = ServerMetrics.instance.counter("Cache.MissingPath" + ServerMetrics.SUFFIX_MISSES); //$NON-NLS-1$
+
+	private final long ttl;
+	private final int maxEntries;
+	/** Maps database+path keys to per-user expiration times */
+	private final Map<String, Map<String, Long>> entries = new ConcurrentHashMap<>();
+	private final AtomicLong generation = new AtomicLong();
+
+	public MissingPathCache() {
+		this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+	}
+
+	public MissingPathCache(long ttl, int maxEntries) {
+		this.ttl = ttl;
+		this.maxEntries = maxEntries;
+
+		DatabaseChangePoller.instance.addListener(this::invalidateDatabase);
+	}
+
+	/**
+	 * Determines whether the provided path is known to be missing for the path's user.
+	 *
+	 * @param path the path to check
+	 * @return {@code true} if a recent lookup found the path to be missing;
+	 *         {@code false} otherwise
+	 */
+	public boolean isMissing(NSFPath path) {
+		boolean missing = lookup(path);
+		(missing ? HITS : MISSES).increment();
+		return missing;
+	}
+
+	/**
+	 * Retrieves a stamp to be taken before performing a lookup and passed to
+	 * {@link #markMissing}, so that a result which raced with a write is discarded.
+	 *
+	 * @return the current invalidation stamp
+	 */
+	public long stamp() {
+		return generation.get();
+	}
+
+	/**
+	 * Records that the provided path was found not to exist.
+	 *
+	 * @param path the path that was looked up
+	 * @param stamp the value of {@link #stamp()} from before the lookup began
+	 */
+	public void markMissing(NSFPath path, long stamp) {
+		if(entries.size() >= maxEntries) {
+			purge();
+		}
+		String user = toUser(path);
+		Map<String, Long> users = entries.computeIfAbsent(toKey(path), key -> new ConcurrentHashMap<>());
+		users.put(user, System.currentTimeMillis() + ttl);
+		if(generation.get() != stamp) {
+			// A write happened while the lookup was running, so the result may be stale
+			users.remove(user);
+		}
+	}
+
+	/**
+	 * Invalidates any negative entries for the provided path and its ancestors, for
+	 * all users. This should be called after any operation that creates the path.
+	 *
+	 * @param path the path that may now exist
+	 */
+	public void invalidate(NSFPath path) {
+		generation.incrementAndGet();
+		String dbKey = toDbKey(path);
+		String p = toPath(path);
+		while(!p.isEmpty()) {
+			entries.remove(dbKey + p);
+			int slashIndex = p.lastIndexOf('/');
+			p = slashIndex < 0 ? "" : p.substring(0, slashIndex); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Invalidates any negative entries for the provided path, its ancestors, and its
+	 * descendants, for all users. This should be called after operations such as a move
+	 * or copy that may bring a whole directory tree into existence.
+	 *
+	 * @param path the root of the tree that may now exist
+	 */
+	public void invalidateTree(NSFPath path) {
+		invalidate(path);
+		String prefix = toKey(path) + '/';
+		entries.keySet().removeIf(key -> key.startsWith(prefix));
+	}
+
+	/**
+	 * Invalidates all negative entries for the provided database.
+	 *
+	 * @param nsfPath the API path of the database
+	 */
+	public void invalidateDatabase(String nsfPath) {
+		generation.incrementAndGet();
+		String prefix = nsfPath + "//"; //$NON-NLS-1$
+		entries.keySet().removeIf(key -> key.startsWith(prefix));
+	}
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public void clear() {
+		generation.incrementAndGet();
+		entries.clear();
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private boolean lookup(NSFPath path) {
+		Map<String, Long> users = entries.get(toKey(path));
+		if(users == null) {
+			return false;
+		}
+		String user = toUser(path);
+		Long expires = users.get(user);
+		if(expires == null) {
+			return false;
+		}
+		if(expires < System.currentTimeMillis()) {
+			users.remove(user, expires);
+			return false;
+		}
+		return true;
+	}
+
+	private void purge() {
+		long now = System.currentTimeMillis();
+		entries.values().forEach(users -> users.values().removeIf(expires -> expires < now));
+		entries.values().removeIf(Map::isEmpty);
+		if(entries.size() >= maxEntries) {
+			// Still full of live entries - start over rather than growing unbounded
+			entries.clear();
+		}
+	}
+
+	private static String toKey(NSFPath path) {
+		return toDbKey(path) + toPath(path);
+	}
+
+	private static String toDbKey(NSFPath path) {
+		return path.getFileSystem().getNsfPath() + "//"; //$NON-NLS-1$
+	}
+
+	private static String toPath(NSFPath path) {
+		String p = NSFFileUtil.toFileName(path.toAbsolutePath());
+		if(p.endsWith("/")) { //$NON-NLS-1$
+			p = p.substring(0, p.length()-1);
+		}
+		return p;
+	}
+
+	private static String toUser(NSFPath path) {
+		return String.valueOf(path.getFileSystem().getUserName());
+	}
+}
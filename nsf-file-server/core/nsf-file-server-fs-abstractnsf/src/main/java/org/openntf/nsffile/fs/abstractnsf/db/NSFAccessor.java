@@ -23,10 +23,16 @@ import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.UserPrincipal;
+import java.text.MessageFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 import org.openntf.nsffile.core.fs.attribute.NSFFileAttributes;
+import org.openntf.nsffile.core.util.ImportProgress;
+import org.openntf.nsffile.core.util.NSFFileUtil;
 import org.openntf.nsffile.fs.abstractnsf.NSFPath;
 import org.openntf.nsffile.fs.abstractnsf.attribute.RootFileAttributes;
 
@@ -37,6 +43,19 @@ import org.openntf.nsffile.fs.abstractnsf.attribute.RootFileAttributes;
  * @since 2.0.0
  */
 public interface NSFAccessor {
+	/** @since 2.3.0 */
+	String ATTR_LASTMODIFIEDTIME = "lastModifiedTime"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	String ATTR_LASTACCESSTIME = "lastAccessTime"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	String ATTR_CREATIONTIME = "creationTime"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	String ATTR_OWNER = "owner"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	String ATTR_GROUP = "group"; //$NON-NLS-1$
+	/** @since 2.3.0 */
+	String ATTR_PERMISSIONS = "permissions"; //$NON-NLS-1$
+	
 	/**
 	 * Returns a list of file names for files within the provided directory.
 	 * 
@@ -83,6 +102,49 @@ public interface NSFAccessor {
 	 */
 	void delete(NSFPath path) throws IOException;
 	
+	/**
+	 * Deletes the file or folder at the provided path along with all of its descendants,
+	 * if it exists.
+	 * 
+	 * <p>The default implementation walks the tree and calls {@link #delete} for each entry.
+	 * Implementations should override this to delete the whole tree in one database operation.</p>
+	 * 
+	 * @param path the path of the file or folder to delete
+	 * @throws IOException if there is a problem deleting the tree
+	 * @since 2.3.0
+	 */
+	default void deleteTree(NSFPath path) throws IOException {
+		if(!exists(path)) {
+			return;
+		}
+		if(readAttributes(path).isDirectory()) {
+			for(String name : getDirectoryEntries(path)) {
+				deleteTree(path.resolve(name));
+			}
+		}
+		delete(path);
+	}
+	
+	/**
+	 * Imports the provided folder from another filesystem, along with everything beneath
+	 * it, as the folder at {@code target}.
+	 * 
+	 * <p>The default implementation copies through the filesystem with
+	 * {@link NSFFileUtil#copyTree}. Implementations should override this to create folders
+	 * and store files in batches.</p>
+	 * 
+	 * @param source the folder to import
+	 * @param target the path of the folder to import into
+	 * @param parallelism the maximum number of files to store at once
+	 * @param progress the object used to report progress
+	 * @throws IOException if there is a problem reading the source or creating the
+	 *         target folders
+	 * @since 2.3.0
+	 */
+	default void importTree(Path source, NSFPath target, int parallelism, ImportProgress progress) throws IOException {
+		NSFFileUtil.copyTree(source, target, parallelism, progress);
+	}
+	
 	/**
 	 * Copies the provided source note to the target, deleting the target if it exists.
 	 * 
@@ -113,6 +175,30 @@ public interface NSFAccessor {
 	
 	NSFFileAttributes readAttributes(NSFPath path);
 	
+	/**
+	 * Reads the attributes and user-defined attributes of the provided path together.
+	 * 
+	 * <p>The default implementation makes separate calls for each part. Implementations
+	 * should override this to read everything from a single document open.</p>
+	 * 
+	 * <p>As with {@link #readAttributes}, this is not used for the root path.</p>
+	 * 
+	 * @param path the path to read
+	 * @return a snapshot of the file, or an empty {@link Optional} if it does not exist
+	 * @throws IOException if there is a DB problem reading the file
+	 * @since 2.3.0
+	 */
+	default Optional<NSFFileSnapshot> snapshot(NSFPath path) throws IOException {
+		if(!exists(path)) {
+			return Optional.empty();
+		}
+		Map<String, byte[]> userAttributes = new LinkedHashMap<>();
+		for(String name : listUserDefinedAttributes(path)) {
+			userAttributes.put(name, getUserDefinedAttribute(path, name));
+		}
+		return Optional.of(new NSFFileSnapshot(readAttributes(path), userAttributes));
+	}
+	
 	/**
 	 * Sets the owner of the provided path to the provided name.
 	 * 
@@ -150,6 +236,41 @@ public interface NSFAccessor {
 	 */
 	void setTimes(NSFPath path, FileTime lastModifiedTime, FileTime createTime) throws IOException;
 	
+	/**
+	 * Applies several POSIX attribute changes to the provided path at once.
+	 * 
+	 * <p>Supported names are {@code "lastModifiedTime"}, {@code "lastAccessTime"},
+	 * {@code "creationTime"}, {@code "owner"}, {@code "group"}, and {@code "permissions"},
+	 * without a view prefix. {@code "lastAccessTime"} is accepted but ignored, as it is not
+	 * stored in the NSF.</p>
+	 * 
+	 * <p>The default implementation calls the individual setters. Implementations should
+	 * override this to apply all changes with a single save.</p>
+	 * 
+	 * @param path the path of the file or folder to set
+	 * @param attributes a map of attribute names to values
+	 * @throws IOException if there is a database problem setting the attributes
+	 * @throws IllegalArgumentException if an attribute name is not supported or its value
+	 *         is of the wrong type
+	 * @since 2.3.0
+	 */
+	@SuppressWarnings("unchecked")
+	default void setAttributes(NSFPath path, Map<String, ?> attributes) throws IOException {
+		checkAttributes(attributes);
+		if(attributes.containsKey(ATTR_LASTMODIFIEDTIME) || attributes.containsKey(ATTR_CREATIONTIME)) {
+			setTimes(path, (FileTime)attributes.get(ATTR_LASTMODIFIEDTIME), (FileTime)attributes.get(ATTR_CREATIONTIME));
+		}
+		if(attributes.containsKey(ATTR_OWNER)) {
+			setOwner(path, (UserPrincipal)attributes.get(ATTR_OWNER));
+		}
+		if(attributes.containsKey(ATTR_GROUP)) {
+			setGroup(path, (UserPrincipal)attributes.get(ATTR_GROUP));
+		}
+		if(attributes.containsKey(ATTR_PERMISSIONS)) {
+			setPermissions(path, (Set<PosixFilePermission>)attributes.get(ATTR_PERMISSIONS));
+		}
+	}
+	
 	/**
 	 * Lists the names of any user-defined attributes on the provided path
 	 * 
@@ -189,6 +310,34 @@ public interface NSFAccessor {
 	 */
 	byte[] getUserDefinedAttribute(NSFPath path, String name) throws IOException;
 	
+	/**
+	 * Places a backend lock on the provided file, such as a Domino document lock, so
+	 * that other clients of the database see it as being edited.
+	 * 
+	 * <p>The default implementation does nothing.</p>
+	 * 
+	 * @param path the path of the file to lock
+	 * @throws IOException if the file is already locked by someone else or there is
+	 *         a DB problem locking it
+	 * @since 2.3.0
+	 */
+	default void lockFile(NSFPath path) throws IOException {
+		// NOP
+	}
+	
+	/**
+	 * Releases a backend lock placed by {@link #lockFile}.
+	 * 
+	 * <p>The default implementation does nothing.</p>
+	 * 
+	 * @param path the path of the file to unlock
+	 * @throws IOException if there is a DB problem unlocking the file
+	 * @since 2.3.0
+	 */
+	default void unlockFile(NSFPath path) throws IOException {
+		// NOP
+	}
+	
 	/**
 	 * Retrieves a {@link RootFileAttributes} object for the active filesystem
 	 * 
@@ -196,4 +345,39 @@ public interface NSFAccessor {
 	 * @return a {@link RootFileAttributes} object for the active filesystem
 	 */
 	RootFileAttributes getRootFileAttributes(Path path);
+	
+	/**
+	 * Validates the names and value types of an attribute map passed to
+	 * {@link #setAttributes}.
+	 * 
+	 * @param attributes the attributes to check
+	 * @throws IllegalArgumentException if an attribute name is not supported or its value
+	 *         is of the wrong type
+	 * @since 2.3.0
+	 */
+	static void checkAttributes(Map<String, ?> attributes) {
+		for(Map.Entry<String, ?> attr : attributes.entrySet()) {
+			Object value = attr.getValue();
+			Class<?> expected;
+			switch(attr.getKey()) {
+			case ATTR_LASTMODIFIEDTIME:
+			case ATTR_LASTACCESSTIME:
+			case ATTR_CREATIONTIME:
+				expected = FileTime.class;
+				break;
+			case ATTR_OWNER:
+			case ATTR_GROUP:
+				expected = UserPrincipal.class;
+				break;
+			case ATTR_PERMISSIONS:
+				expected = Set.class;
+				break;
+			default:
+				throw new IllegalArgumentException(MessageFormat.format("Unsupported attribute \"{0}\"", attr.getKey()));
+			}
+			if(value != null && !expected.isInstance(value)) {
+				throw new IllegalArgumentException(MessageFormat.format("Value for attribute \"{0}\" must be a {1}", attr.getKey(), expected.getSimpleName()));
+			}
+		}
+	}
 }
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.fs.abstractnsf.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openntf.nsffile.core.fs.attribute.NSFFileAttributes;
+
+/**
+ * Immutable view of everything needed to answer metadata requests for a single file,
+ * read from its document in one pass.
+ *
+ * <p>A snapshot serves existence checks, POSIX attributes, and user-defined attribute
+ * listing and retrieval, so that a stat followed by attribute reads does not re-open
+ * the document for each call.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class NSFFileSnapshot {
+	private final NSFFileAttributes attributes;
+	private final Map<String, byte[]> userAttributes;
+
+	/**
+	 * @param attributes the POSIX attributes of the file
+	 * @param userAttributes a map of user-defined attribute names to values, without any
+	 *        storage prefix
+	 */
+	public NSFFileSnapshot(NSFFileAttributes attributes, Map<String, byte[]> userAttributes) {
+		this.attributes = attributes;
+		this.userAttributes = Collections.unmodifiableMap(new LinkedHashMap<>(userAttributes));
+	}
+
+	public NSFFileAttributes getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * @return the names of the user-defined attributes on the file
+	 */
+	public List<String> getUserAttributeNames() {
+		return new ArrayList<>(userAttributes.keySet());
+	}
+
+	/**
+	 * Retrieves the value of the named user-defined attribute.
+	 *
+	 * @param name the name of the attribute
+	 * @return a copy of the attribute data, or an empty array if the attribute is not set
+	 */
+	public byte[] getUserAttribute(String name) {
+		byte[] value = userAttributes.get(name);
+		return value == null ? new byte[0] : value.clone();
+	}
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.fs.abstractnsf.db;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+
+/**
+ * Coordinates handles that read and write the same path in an NSF.
+ *
+ * <p>Locks are keyed by database and normalized path, and are held by an owner object
+ * such as a file channel rather than by a thread, so that they may be released from
+ * any thread. An owner may hold several shared and exclusive locks on the same path at
+ * once, and may take an exclusive lock while it is the only holder of shared locks.</p>
+ *
+ * <p>While an exclusive lock is being waited for, new shared locks are only granted to
+ * owners that already hold a lock on the path, so that a steady stream of readers
+ * cannot starve a writer.</p>
+ *
+ * <p>Lock state is split across a fixed number of stripes, each guarded by its own
+ * monitor. Paths only contend for the monitor briefly while changing their state, and
+ * waiting for one path never blocks a different path.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class NSFPathLockManager {
+	/** The default number of stripes */
+	public static final int DEFAULT_STRIPES = 64;
+	/** The default time, in milliseconds, that callers should wait for a lock before giving up */
+	public static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+	private final Stripe[] stripes;
+
+	public NSFPathLockManager() {
+		this(DEFAULT_STRIPES);
+	}
+
+	public NSFPathLockManager(int stripeCount) {
+		this.stripes = new Stripe[stripeCount];
+		for(int i = 0; i < stripeCount; i++) {
+			this.stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Acquires a lock on the provided path, waiting until it is available.
+	 *
+	 * @param path the path to lock
+	 * @param owner the object that will hold the lock
+	 * @param shared {@code true} to acquire a shared lock; {@code false} for an
+	 *        exclusive lock
+	 * @return a {@link Lease} that must be released when the lock is no longer needed
+	 * @throws InterruptedIOException if the thread is interrupted while waiting
+	 */
+	public Lease acquire(NSFPath path, Object owner, boolean shared) throws InterruptedIOException {
+		return acquire(path, owner, shared, -1);
+	}
+
+	/**
+	 * Acquires a lock on the provided path, waiting up to the provided time for it to
+	 * become available.
+	 *
+	 * @param path the path to lock
+	 * @param owner the object that will hold the lock
+	 * @param shared {@code true} to acquire a shared lock; {@code false} for an
+	 *        exclusive lock
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of {@code timeout}
+	 * @return a {@link Lease} that must be released when the lock is no longer needed,
+	 *         or {@code null} if the lock could not be acquired in time
+	 * @throws InterruptedIOException if the thread is interrupted while waiting
+	 */
+	public Lease tryAcquire(NSFPath path, Object owner, boolean shared, long timeout, TimeUnit unit) throws InterruptedIOException {
+		return acquire(path, owner, shared, Math.max(0, unit.toNanos(timeout)));
+	}
+
+	/**
+	 * Acquires a lock on the provided path if it is immediately available.
+	 *
+	 * @param path the path to lock
+	 * @param owner the object that will hold the lock
+	 * @param shared {@code true} to acquire a shared lock; {@code false} for an
+	 *        exclusive lock
+	 * @return a {@link Lease} that must be released when the lock is no longer needed,
+	 *         or {@code null} if a conflicting lock is held
+	 */
+	public Lease tryAcquire(NSFPath path, Object owner, boolean shared) {
+		String key = toKey(path);
+		Stripe stripe = stripeFor(key);
+		synchronized(stripe) {
+			Entry entry = stripe.entries.computeIfAbsent(key, k -> new Entry());
+			if(entry.tryAcquire(owner, shared)) {
+				return new Lease(key, owner, shared);
+			}
+			if(entry.isEmpty()) {
+				stripe.entries.remove(key);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A single hold of a lock on a path.
+	 */
+	public class Lease {
+		private final String key;
+		private final Object owner;
+		private final boolean shared;
+		private boolean valid = true;
+
+		private Lease(String key, Object owner, boolean shared) {
+			this.key = key;
+			this.owner = owner;
+			this.shared = shared;
+		}
+
+		public boolean isShared() {
+			return shared;
+		}
+
+		public boolean isValid() {
+			Stripe stripe = stripeFor(key);
+			synchronized(stripe) {
+				return valid;
+			}
+		}
+
+		/**
+		 * Releases the lock. Releasing an already-released lease has no effect.
+		 */
+		public void release() {
+			Stripe stripe = stripeFor(key);
+			synchronized(stripe) {
+				if(!valid) {
+					return;
+				}
+				valid = false;
+				Entry entry = stripe.entries.get(key);
+				if(entry != null) {
+					entry.release(owner, shared);
+					if(entry.isEmpty()) {
+						stripe.entries.remove(key);
+					}
+				}
+				stripe.notifyAll();
+			}
+		}
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static class Stripe {
+		/** Guarded by the stripe's monitor */
+		private final Map<String, Entry> entries = new HashMap<>();
+	}
+
+	/**
+	 * Lock state for a single path; guarded by the monitor of its {@link Stripe}.
+	 */
+	private static class Entry {
+		private final Map<Object, Integer> sharedHolders = new HashMap<>();
+		private Object exclusiveOwner;
+		private int exclusiveCount;
+		/** The number of callers waiting for an exclusive lock */
+		private int waitingWriters;
+
+		boolean tryAcquire(Object owner, boolean shared) {
+			if(exclusiveOwner != null && exclusiveOwner != owner) {
+				return false;
+			}
+			if(shared) {
+				if(waitingWriters > 0 && exclusiveOwner != owner && !sharedHolders.containsKey(owner)) {
+					// Owners already holding a lock may nest, since the writer is waiting on them anyway
+					return false;
+				}
+				sharedHolders.merge(owner, 1, Integer::sum);
+			} else {
+				for(Object holder : sharedHolders.keySet()) {
+					if(holder != owner) {
+						return false;
+					}
+				}
+				exclusiveOwner = owner;
+				exclusiveCount++;
+			}
+			return true;
+		}
+
+		void release(Object owner, boolean shared) {
+			if(shared) {
+				sharedHolders.computeIfPresent(owner, (k, count) -> count > 1 ? count - 1 : null);
+			} else if(exclusiveOwner == owner && --exclusiveCount == 0) {
+				exclusiveOwner = null;
+			}
+		}
+
+		boolean isEmpty() {
+			return exclusiveOwner == null && sharedHolders.isEmpty() && waitingWriters == 0;
+		}
+	}
+
+	/**
+	 * @param timeoutNanos the maximum time to wait, or a negative value to wait
+	 *        indefinitely
+	 */
+	private Lease acquire(NSFPath path, Object owner, boolean shared, long timeoutNanos) throws InterruptedIOException {
+		String key = toKey(path);
+		Stripe stripe = stripeFor(key);
+		long deadline = System.nanoTime() + timeoutNanos;
+		boolean waiting = false;
+		synchronized(stripe) {
+			try {
+				while(true) {
+					Entry entry = stripe.entries.computeIfAbsent(key, k -> new Entry());
+					if(entry.tryAcquire(owner, shared)) {
+						return new Lease(key, owner, shared);
+					}
+					if(!shared && !waiting) {
+						// Hold off new readers until this writer has had its turn
+						entry.waitingWriters++;
+						waiting = true;
+					}
+					
+					long remaining = deadline - System.nanoTime();
+					if(timeoutNanos >= 0 && remaining <= 0) {
+						return null;
+					}
+					try {
+						if(timeoutNanos < 0) {
+							stripe.wait();
+						} else {
+							TimeUnit.NANOSECONDS.timedWait(stripe, remaining);
+						}
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException(e.toString());
+					}
+				}
+			} finally {
+				if(waiting) {
+					Entry entry = stripe.entries.get(key);
+					entry.waitingWriters--;
+					if(entry.isEmpty()) {
+						stripe.entries.remove(key);
+					}
+					// Readers held back by this writer may be able to proceed
+					stripe.notifyAll();
+				}
+			}
+		}
+	}
+
+	private Stripe stripeFor(String key) {
+		return stripes[Math.floorMod(key.hashCode(), stripes.length)];
+	}
+
+	private static String toKey(NSFPath path) {
+		String p = NSFFileUtil.toFileName(path.toAbsolutePath().normalize());
+		if(p.endsWith("/") && p.length() > 1) { //$NON-NLS-1$
+			p = p.substring(0, p.length()-1);
+		}
+		// Match the NSF's lookups, where paths differing only by case are the same file
+		return path.getFileSystem().getNsfPath() + "//" + NSFFileUtil.normalizePath(p); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.fs.abstractnsf.db;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+
+/**
+ * Extension of {@link AsyncNSFAccessor} for accessors that can store file content as
+ * it arrives, without first staging it in a local file.
+ *
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public interface StreamingNSFAccessor extends AsyncNSFAccessor {
+	/**
+	 * Replaces the content of the provided file with {@code size} bytes read from
+	 * {@code data}, creating the file if it does not exist.
+	 * 
+	 * <p>{@code data} is read on a Notes worker, and so must not be fed by the same
+	 * worker. If it ends before {@code size} bytes have been read, the file is left
+	 * unchanged and the returned future is completed with an {@link EOFException}.</p>
+	 *
+	 * @param path the path of the file to store
+	 * @param data the new content of the file
+	 * @param size the number of bytes to read from {@code data}
+	 * @return a {@link CompletableFuture} completed once the file has been saved
+	 * @see NSFAccessor#storeAttachment(NSFPath, java.nio.file.Path)
+	 */
+	CompletableFuture<Void> storeAttachmentAsync(NSFPath path, InputStream data, long size);
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.openntf.nsffile.fs.abstractnsf.AbstractNSFFileSystemProvider;
+import org.openntf.nsffile.fs.abstractnsf.NSFFileSystem;
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFAccessor;
+
+/**
+ * Minimal provider for tests that need {@link NSFPath} instances without a
+ * Domino runtime. Accessor calls are rejected unless an accessor is given.
+ */
+@SuppressWarnings("nls")
+public class FakeNSFFileSystemProvider extends AbstractNSFFileSystemProvider {
+	public static final String SCHEME = "fakensf";
+	
+	public static final FakeNSFFileSystemProvider instance = new FakeNSFFileSystemProvider();
+	
+	public FakeNSFFileSystemProvider() {
+		this(unsupportedAccessor());
+	}
+	
+	public FakeNSFFileSystemProvider(NSFAccessor accessor) {
+		super(accessor);
+	}
+	
+	public static NSFPath path(String userName, String nsfPath, String path) {
+		return new NSFFileSystem(instance, userName, nsfPath).getPath(path);
+	}
+
+	@Override
+	public String getScheme() {
+		return SCHEME;
+	}
+
+	@Override
+	public FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public FileSystem getFileSystem(URI uri) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Path getPath(URI uri) {
+		throw new UnsupportedOperationException();
+	}
+	
+	private static NSFAccessor unsupportedAccessor() {
+		return (NSFAccessor)Proxy.newProxyInstance(NSFAccessor.class.getClassLoader(), new Class<?>[] { NSFAccessor.class }, (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "toString":
+				return "UnsupportedAccessor";
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+}
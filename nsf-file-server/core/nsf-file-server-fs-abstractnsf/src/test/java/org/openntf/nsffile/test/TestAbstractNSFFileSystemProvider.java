@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.fs.abstractnsf.NSFFileSystem;
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFAccessor;
+
+@SuppressWarnings("nls")
+public class TestAbstractNSFFileSystemProvider {
+	/** Paths reported as existing by the fake accessor */
+	private final Set<String> existing = new HashSet<>();
+	/** Copy and move calls that reached the accessor */
+	private final List<String> calls = new ArrayList<>();
+	private final NSFFileSystem fs = new NSFFileSystem(new FakeNSFFileSystemProvider(accessor()), "CN=Test User/O=Test", "test.nsf");
+	
+	private NSFAccessor accessor() {
+		return (NSFAccessor)Proxy.newProxyInstance(NSFAccessor.class.getClassLoader(), new Class<?>[] { NSFAccessor.class }, (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "exists":
+				return existing.contains(args[0].toString());
+			case "copy":
+			case "move":
+				calls.add(method.getName() + " " + args[0] + " " + args[1]);
+				return null;
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+	
+	private NSFPath path(String path) {
+		return fs.getPath(path);
+	}
+	
+	@Test
+	public void testCopyRefusesExisting() throws Exception {
+		existing.addAll(Arrays.asList("/a.txt", "/b.txt"));
+		assertThrows(FileAlreadyExistsException.class, () -> Files.copy(path("/a.txt"), path("/b.txt")));
+		assertTrue(calls.isEmpty());
+		
+		Files.copy(path("/a.txt"), path("/b.txt"), StandardCopyOption.REPLACE_EXISTING);
+		Files.copy(path("/a.txt"), path("/c.txt"));
+		assertEquals(Arrays.asList("copy /a.txt /b.txt", "copy /a.txt /c.txt"), calls);
+	}
+	
+	@Test
+	public void testMoveRefusesExisting() throws Exception {
+		existing.addAll(Arrays.asList("/a.txt", "/b.txt"));
+		assertThrows(FileAlreadyExistsException.class, () -> Files.move(path("/a.txt"), path("/b.txt")));
+		assertTrue(calls.isEmpty());
+		
+		Files.move(path("/a.txt"), path("/b.txt"), StandardCopyOption.REPLACE_EXISTING);
+		Files.move(path("/a.txt"), path("/c.txt"));
+		assertEquals(Arrays.asList("move /a.txt /b.txt", "move /a.txt /c.txt"), calls);
+	}
+	
+	@Test
+	public void testSamePathIsNoOp() throws Exception {
+		existing.add("/a.txt");
+		Files.copy(path("/a.txt"), path("/a.txt"));
+		Files.move(path("/a.txt"), path("/a.txt"));
+		assertTrue(calls.isEmpty());
+	}
+	
+	@Test
+	public void testCaseRename() throws Exception {
+		// The NSF views match paths without regard to case, so the target "exists" as the source
+		existing.addAll(Arrays.asList("/a.txt", "/A.txt"));
+		Files.move(path("/a.txt"), path("/A.txt"));
+		assertEquals(Arrays.asList("move /a.txt /A.txt"), calls);
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.core.fs.attribute.NSFFileAttributes;
+import org.openntf.nsffile.fs.abstractnsf.NSFFileSystem;
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+import org.openntf.nsffile.fs.abstractnsf.db.AsyncNSFAccessor;
+import org.openntf.nsffile.fs.abstractnsf.db.ContentPrefetcher;
+
+@SuppressWarnings("nls")
+public class TestContentPrefetcher {
+	private List<String> listing = Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h");
+	private boolean failListing;
+	/** Calls that reached the fake accessor */
+	private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+	private final List<Path> files = Collections.synchronizedList(new ArrayList<>());
+	private final ContentPrefetcher prefetcher = new ContentPrefetcher(accessor(), 1024 * 1024, 60 * 1000, 100);
+	private final NSFFileSystem fs = new NSFFileSystem(new FakeNSFFileSystemProvider(accessor()), "CN=Test User/O=Test", "test.nsf");
+	
+	@AfterEach
+	public void cleanUp() throws IOException {
+		for(Path file : files) {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	private AsyncNSFAccessor accessor() {
+		return (AsyncNSFAccessor)Proxy.newProxyInstance(AsyncNSFAccessor.class.getClassLoader(), new Class<?>[] { AsyncNSFAccessor.class }, (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "getDirectoryEntriesAsync": {
+				calls.add("list " + args[0]);
+				CompletableFuture<List<String>> result = new CompletableFuture<>();
+				if(failListing) {
+					result.completeExceptionally(new IllegalStateException("listing failed"));
+				} else {
+					result.complete(listing);
+				}
+				return result;
+			}
+			case "statAsync":
+				return CompletableFuture.completedFuture(Optional.of(new NSFFileAttributes(null, null, NSFFileAttributes.Type.File,
+					FileTime.fromMillis(0), FileTime.fromMillis(0), FileTime.fromMillis(0), 10, Collections.emptySet())));
+			case "extractAttachmentAsync":
+				calls.add("extract " + args[0]);
+				try {
+					Path file = Files.createTempFile(getClass().getSimpleName(), ".tmp");
+					files.add(file);
+					return CompletableFuture.completedFuture(file);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+	
+	private void open(String path) {
+		prefetcher.open(fs.getPath(path)).join();
+	}
+	
+	private long count(String prefix) {
+		return calls.stream().filter(call -> call.startsWith(prefix)).count();
+	}
+	
+	@Test
+	public void testSequentialReadStages() {
+		open("/dir/a");
+		open("/dir/b");
+		assertTrue(calls.contains("extract /dir/c"), calls.toString());
+		
+		calls.clear();
+		open("/dir/c");
+		assertTrue(!calls.contains("extract /dir/c"), "should use the staged content: " + calls);
+	}
+	
+	@Test
+	public void testListsOnce() {
+		open("/dir/a");
+		open("/dir/c");
+		open("/dir/e");
+		open("/dir/g");
+		assertEquals(1, count("list "), calls.toString());
+		// None of these were sequential, so only the opened files are extracted
+		assertEquals(4, count("extract "), calls.toString());
+	}
+	
+	@Test
+	public void testParallelReaders() {
+		open("/dir/a");
+		open("/dir/e");
+		open("/dir/b");
+		assertTrue(calls.contains("extract /dir/c"), calls.toString());
+		open("/dir/f");
+		assertTrue(calls.contains("extract /dir/g"), calls.toString());
+		assertEquals(1, count("list "), calls.toString());
+	}
+	
+	@Test
+	public void testListingFailure() {
+		failListing = true;
+		open("/dir/a");
+		failListing = false;
+		open("/dir/b");
+		assertEquals(2, count("list "), calls.toString());
+		
+		// The second listing starts the reader at "b", so "c" continues it
+		open("/dir/c");
+		assertTrue(calls.contains("extract /dir/d"), calls.toString());
+	}
+	
+	@Test
+	public void testNewFileRelists() {
+		listing = Arrays.asList("a", "b");
+		open("/dir/a");
+		listing = Arrays.asList("a", "b", "c");
+		open("/dir/c");
+		assertEquals(2, count("list "), calls.toString());
+	}
+	
+	@Test
+	public void testInvalidateRelists() {
+		open("/dir/a");
+		prefetcher.invalidate(fs.getPath("/dir/z"));
+		open("/dir/b");
+		assertEquals(2, count("list "), calls.toString());
+	}
+}
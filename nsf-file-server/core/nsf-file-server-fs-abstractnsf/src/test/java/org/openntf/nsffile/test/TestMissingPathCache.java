@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.openntf.nsffile.test.FakeNSFFileSystemProvider.path;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+import org.openntf.nsffile.fs.abstractnsf.db.MissingPathCache;
+
+@SuppressWarnings("nls")
+public class TestMissingPathCache {
+	private static final String USER = "CN=Test User/O=Test";
+	private static final String OTHER_USER = "CN=Other User/O=Test";
+	
+	@Test
+	public void testMarkMissing() {
+		MissingPathCache cache = new MissingPathCache();
+		NSFPath path = path(USER, "test.nsf", "/foo/bar.txt");
+		assertFalse(cache.isMissing(path));
+		cache.markMissing(path, cache.stamp());
+		assertTrue(cache.isMissing(path));
+		assertTrue(cache.isMissing(path(USER, "test.nsf", "/foo/bar.txt")));
+		assertFalse(cache.isMissing(path(USER, "test.nsf", "/foo/baz.txt")));
+		assertFalse(cache.isMissing(path(USER, "other.nsf", "/foo/bar.txt")));
+	}
+	
+	@Test
+	public void testPerUser() {
+		MissingPathCache cache = new MissingPathCache();
+		cache.markMissing(path(USER, "test.nsf", "/foo.txt"), cache.stamp());
+		assertFalse(cache.isMissing(path(OTHER_USER, "test.nsf", "/foo.txt")));
+	}
+	
+	@Test
+	public void testStaleStampDiscarded() {
+		MissingPathCache cache = new MissingPathCache();
+		NSFPath path = path(USER, "test.nsf", "/foo.txt");
+		long stamp = cache.stamp();
+		// A write lands while the lookup is running
+		cache.invalidate(path(USER, "test.nsf", "/unrelated.txt"));
+		cache.markMissing(path, stamp);
+		assertFalse(cache.isMissing(path));
+	}
+	
+	@Test
+	public void testInvalidateAncestors() {
+		MissingPathCache cache = new MissingPathCache();
+		NSFPath dir = path(USER, "test.nsf", "/foo");
+		NSFPath file = path(USER, "test.nsf", "/foo/bar.txt");
+		NSFPath sibling = path(USER, "test.nsf", "/baz.txt");
+		cache.markMissing(dir, cache.stamp());
+		cache.markMissing(sibling, cache.stamp());
+		
+		// Creating a file implies that its folder now exists, for everyone
+		cache.invalidate(path(OTHER_USER, "test.nsf", "/foo/bar.txt"));
+		assertFalse(cache.isMissing(dir));
+		assertFalse(cache.isMissing(file));
+		assertTrue(cache.isMissing(sibling));
+	}
+	
+	@Test
+	public void testInvalidateTree() {
+		MissingPathCache cache = new MissingPathCache();
+		NSFPath child = path(USER, "test.nsf", "/foo/bar/baz.txt");
+		NSFPath sibling = path(USER, "test.nsf", "/foobar.txt");
+		cache.markMissing(child, cache.stamp());
+		cache.markMissing(sibling, cache.stamp());
+		
+		cache.invalidateTree(path(USER, "test.nsf", "/foo"));
+		assertFalse(cache.isMissing(child));
+		assertTrue(cache.isMissing(sibling));
+	}
+	
+	@Test
+	public void testInvalidateDatabase() {
+		MissingPathCache cache = new MissingPathCache();
+		NSFPath path = path(USER, "test.nsf", "/foo.txt");
+		NSFPath other = path(USER, "other.nsf", "/foo.txt");
+		cache.markMissing(path, cache.stamp());
+		cache.markMissing(other, cache.stamp());
+		
+		cache.invalidateDatabase("test.nsf");
+		assertFalse(cache.isMissing(path));
+		assertTrue(cache.isMissing(other));
+	}
+	
+	@Test
+	public void testExpires() throws InterruptedException {
+		MissingPathCache cache = new MissingPathCache(50, MissingPathCache.DEFAULT_MAX_ENTRIES);
+		NSFPath path = path(USER, "test.nsf", "/foo.txt");
+		cache.markMissing(path, cache.stamp());
+		assertTrue(cache.isMissing(path));
+		Thread.sleep(100);
+		assertFalse(cache.isMissing(path));
+	}
+	
+	@Test
+	public void testBounded() {
+		MissingPathCache cache = new MissingPathCache(MissingPathCache.DEFAULT_TTL, 10);
+		for(int i = 0; i < 100; i++) {
+			cache.markMissing(path(USER, "test.nsf", "/file" + i), cache.stamp());
+		}
+		assertTrue(cache.isMissing(path(USER, "test.nsf", "/file99")));
+		assertFalse(cache.isMissing(path(USER, "test.nsf", "/file0")));
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFPathLockManager;
+
+@SuppressWarnings("nls")
+public class TestNSFPathLockManager {
+	private static NSFPath path(String nsfPath, String path) {
+		return FakeNSFFileSystemProvider.path("CN=Test User/O=Test", nsfPath, path);
+	}
+	
+	@Test
+	public void testSharedLocks() {
+		NSFPathLockManager locks = new NSFPathLockManager();
+		NSFPath path = path("test.nsf", "/foo.txt");
+		NSFPathLockManager.Lease first = locks.tryAcquire(path, new Object(), true);
+		NSFPathLockManager.Lease second = locks.tryAcquire(path, new Object(), true);
+		assertNotNull(first);
+		assertNotNull(second);
+		assertNull(locks.tryAcquire(path, new Object(), false));
+		
+		first.release();
+		second.release();
+		assertFalse(first.isValid());
+		assertNotNull(locks.tryAcquire(path, new Object(), false));
+	}
+	
+	@Test
+	public void testExclusiveLock() {
+		NSFPathLockManager locks = new NSFPathLockManager();
+		NSFPath path = path("test.nsf", "/foo.txt");
+		Object owner = new Object();
+		NSFPathLockManager.Lease lease = locks.tryAcquire(path, owner, false);
+		assertNotNull(lease);
+		assertNull(locks.tryAcquire(path, new Object(), true));
+		assertNull(locks.tryAcquire(path, new Object(), false));
+		
+		// The owner may nest locks of either kind
+		NSFPathLockManager.Lease nested = locks.tryAcquire(path, owner, true);
+		assertNotNull(nested);
+		nested.release();
+		lease.release();
+		// Releasing twice has no effect
+		lease.release();
+		assertNotNull(locks.tryAcquire(path, new Object(), true));
+	}
+	
+	@Test
+	public void testUpgradeWhenOnlyHolder() {
+		NSFPathLockManager locks = new NSFPathLockManager();
+		NSFPath path = path("test.nsf", "/foo.txt");
+		Object owner = new Object();
+		assertNotNull(locks.tryAcquire(path, owner, true));
+		assertNotNull(locks.tryAcquire(path, owner, false));
+	}
+	
+	@Test
+	public void testNormalizedKeys() {
+		NSFPathLockManager locks = new NSFPathLockManager();
+		assertNotNull(locks.tryAcquire(path("test.nsf", "/Foo/Bar.txt"), new Object(), false));
+		assertNull(locks.tryAcquire(path("test.nsf", "/foo/bar.txt"), new Object(), false));
+		assertNull(locks.tryAcquire(path("test.nsf", "/foo/./baz/../bar.txt"), new Object(), false));
+		// Composed and decomposed forms of "é"
+		assertNotNull(locks.tryAcquire(path("test.nsf", "/caf\u00e9"), new Object(), false));
+		assertNull(locks.tryAcquire(path("test.nsf", "/cafe\u0301"), new Object(), false));
+	}
+	
+	@Test
+	public void testDistinctPaths() {
+		NSFPathLockManager locks = new NSFPathLockManager(1);
+		assertNotNull(locks.tryAcquire(path("test.nsf", "/foo.txt"), new Object(), false));
+		assertNotNull(locks.tryAcquire(path("test.nsf", "/bar.txt"), new Object(), false));
+		assertNotNull(locks.tryAcquire(path("other.nsf", "/foo.txt"), new Object(), false));
+	}
+	
+	@Test
+	public void testTimeout() throws InterruptedIOException {
+		NSFPathLockManager locks = new NSFPathLockManager();
+		NSFPath path = path("test.nsf", "/foo.txt");
+		assertNotNull(locks.tryAcquire(path, new Object(), true));
+		
+		long start = System.nanoTime();
+		assertNull(locks.tryAcquire(path, new Object(), false, 100, TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+		// The abandoned wait no longer holds back readers
+		assertNotNull(locks.tryAcquire(path, new Object(), true));
+	}
+	
+	@Test
+	public void testWaitingWriterNotStarved() throws Exception {
+		NSFPathLockManager locks = new NSFPathLockManager();
+		NSFPath path = path("test.nsf", "/foo.txt");
+		Object reader = new Object();
+		NSFPathLockManager.Lease read = locks.tryAcquire(path, reader, true);
+		assertNotNull(read);
+		
+		CompletableFuture<NSFPathLockManager.Lease> write = CompletableFuture.supplyAsync(() -> {
+			try {
+				return locks.tryAcquire(path, new Object(), false, 5, TimeUnit.SECONDS);
+			} catch(InterruptedIOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		// Wait for the writer to queue up behind the reader
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		NSFPathLockManager.Lease lateRead;
+		while((lateRead = locks.tryAcquire(path, new Object(), true)) != null) {
+			lateRead.release();
+			assertTrue(System.nanoTime() < deadline, "writer never started waiting");
+			Thread.sleep(10);
+		}
+		
+		// The existing reader may still nest
+		NSFPathLockManager.Lease nested = locks.tryAcquire(path, reader, true);
+		assertNotNull(nested);
+		nested.release();
+		assertWaiting(write);
+		
+		read.release();
+		NSFPathLockManager.Lease writeLease = write.get(5, TimeUnit.SECONDS);
+		assertNotNull(writeLease);
+		assertNull(locks.tryAcquire(path, new Object(), true));
+		writeLease.release();
+		assertNotNull(locks.tryAcquire(path, new Object(), true));
+	}
+	
+	@Test
+	public void testBlockingAcquire() throws Exception {
+		NSFPathLockManager locks = new NSFPathLockManager();
+		NSFPath path = path("test.nsf", "/foo.txt");
+		NSFPathLockManager.Lease lease = locks.tryAcquire(path, new Object(), false);
+		
+		CompletableFuture<NSFPathLockManager.Lease> waiter = CompletableFuture.supplyAsync(() -> {
+			try {
+				return locks.acquire(path, new Object(), true);
+			} catch(InterruptedIOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		assertWaiting(waiter);
+		lease.release();
+		assertTrue(waiter.get(5, TimeUnit.SECONDS).isShared());
+	}
+	
+	private static void assertWaiting(CompletableFuture<?> future) throws InterruptedException, ExecutionException {
+		try {
+			future.get(100, TimeUnit.MILLISECONDS);
+			throw new AssertionError("Lock was acquired while it should have been waiting");
+		} catch(TimeoutException e) {
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.fs.abstractnsf.NSFFileSystem;
+import org.openntf.nsffile.fs.abstractnsf.NSFPath;
+import org.openntf.nsffile.fs.abstractnsf.NSFSequentialOutputStream;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFPathLockManager;
+import org.openntf.nsffile.fs.abstractnsf.db.StreamingNSFAccessor;
+
+@SuppressWarnings("nls")
+public class TestNSFSequentialOutputStream {
+	/** The content of files saved by the fake accessor */
+	private final Map<String, byte[]> saved = new ConcurrentHashMap<>();
+	/** The most recent store started by the fake accessor */
+	private volatile CompletableFuture<Void> store;
+	private boolean failStore;
+	private final NSFPathLockManager locks = new NSFPathLockManager();
+	private final NSFFileSystem fs = new NSFFileSystem(new FakeNSFFileSystemProvider(), "CN=Test User/O=Test", "test.nsf");
+	private final NSFPath path = fs.getPath("/foo.txt");
+	
+	private StreamingNSFAccessor accessor() {
+		return (StreamingNSFAccessor)Proxy.newProxyInstance(StreamingNSFAccessor.class.getClassLoader(), new Class<?>[] { StreamingNSFAccessor.class }, (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "storeAttachmentAsync": {
+				CompletableFuture<Void> store = new CompletableFuture<>();
+				this.store = store;
+				if(failStore) {
+					store.completeExceptionally(new IOException("store failed"));
+					return store;
+				}
+				// Read on another thread, as a Notes worker would
+				InputStream data = (InputStream)args[1];
+				byte[] content = new byte[(int)(long)args[2]];
+				new Thread(() -> {
+					try {
+						new DataInputStream(data).readFully(content);
+						saved.put(args[0].toString(), content);
+						store.complete(null);
+					} catch(IOException e) {
+						store.completeExceptionally(e);
+					}
+				}).start();
+				return store;
+			}
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+	
+	private OutputStream open(long size) throws IOException {
+		return open(size, NSFSequentialOutputStream.IDLE_TIMEOUT);
+	}
+	
+	private OutputStream open(long size, long idleTimeout) throws IOException {
+		OutputStream result = NSFSequentialOutputStream.tryOpen(accessor(), null, locks, path, size, idleTimeout);
+		assertNotNull(result);
+		return result;
+	}
+	
+	private void assertReleased() {
+		NSFPathLockManager.Lease lease = locks.tryAcquire(path, new Object(), false);
+		assertNotNull(lease, "the lease on the file should be released");
+		lease.release();
+	}
+	
+	@Test
+	public void testCompleteWrite() throws IOException {
+		try(OutputStream os = open(5)) {
+			os.write("hel".getBytes());
+			os.write("lo".getBytes());
+		}
+		assertArrayEquals("hello".getBytes(), saved.get("/foo.txt"));
+		assertReleased();
+	}
+	
+	@Test
+	public void testShortWrite() throws IOException {
+		OutputStream os = open(5);
+		os.write("hel".getBytes());
+		IOException e = assertThrows(IOException.class, os::close);
+		assertTrue(e instanceof EOFException, e.toString());
+		assertTrue(saved.isEmpty());
+		assertReleased();
+	}
+	
+	@Test
+	public void testOverlongWrite() throws IOException {
+		OutputStream os = open(5);
+		os.write("hel".getBytes());
+		assertThrows(IOException.class, () -> os.write("lo!".getBytes()));
+		// Nothing past the expected size reaches the store, so it is still short
+		assertThrows(IOException.class, os::close);
+		assertTrue(saved.isEmpty());
+		assertReleased();
+	}
+	
+	@Test
+	public void testIdleWriterAbandoned() throws Exception {
+		OutputStream os = open(5, 100);
+		os.write("hel".getBytes());
+		assertThrows(Exception.class, () -> store.get(10, TimeUnit.SECONDS));
+		IOException e = assertThrows(IOException.class, () -> os.write("lo".getBytes()));
+		assertTrue(e.getMessage().contains("timed out"), e.getMessage());
+		assertThrows(IOException.class, os::close);
+		assertTrue(saved.isEmpty());
+		assertReleased();
+	}
+	
+	@Test
+	public void testStoreFailureReleasesLease() throws IOException {
+		failStore = true;
+		OutputStream os = open(5);
+		IOException e = assertThrows(IOException.class, () -> os.write("hello".getBytes()));
+		assertTrue(e.getMessage().contains("Unable to store"), e.getMessage());
+		assertThrows(IOException.class, os::close);
+		assertReleased();
+		
+		// The stream's slot is free again
+		failStore = false;
+		for(int i = 0; i < NSFSequentialOutputStream.MAX_STREAMS + 1; i++) {
+			open(0).close();
+		}
+	}
+}
@@ -33,8 +33,80 @@ public enum NSFFileSystemConstants {
 	public static final String FORM_FOLDER = "Folder"; //$NON-NLS-1$
 	/** The rich text item in File documents used to store the file attachment */
 	public static final String ITEM_FILE = "File"; //$NON-NLS-1$
-	/** The item used to store the string path of the parent folder */
+	/**
+	 * The item used to store the string path of the parent folder, or the UNID of the
+	 * parent folder when using {@link #HIERARCHY_ID}
+	 */
 	public static final String ITEM_PARENT = "Parent"; //$NON-NLS-1$
+	/** The value of {@link #ITEM_PARENT} for entries at the root of the filesystem */
+	public static final String PARENT_ROOT = "/"; //$NON-NLS-1$
+	/**
+	 * The non-summary item in File documents used to store the content of files small
+	 * enough to be kept inline, in place of an attachment
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String ITEM_INLINEDATA = "FileData"; //$NON-NLS-1$
+	
+	/**
+	 * Environment key for the way documents refer to their parent folder, either
+	 * {@link #HIERARCHY_PATH} (the default) or {@link #HIERARCHY_ID}. All mounts of
+	 * a given database must use the same value.
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String ENV_HIERARCHY = "hierarchy"; //$NON-NLS-1$
+	/**
+	 * Hierarchy mode where {@link #ITEM_PARENT} holds the full path of the parent folder
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String HIERARCHY_PATH = "path"; //$NON-NLS-1$
+	/**
+	 * Hierarchy mode where {@link #ITEM_PARENT} holds the UNID of the parent folder, so
+	 * that renaming or moving a folder only modifies the folder document itself
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String HIERARCHY_ID = "id"; //$NON-NLS-1$
+	
+	/**
+	 * Environment key for the way documents are located by path, either
+	 * {@link #ADDRESSING_VIEW} (the default) or {@link #ADDRESSING_UNID}.
+	 * {@link #ADDRESSING_UNID} requires {@link #HIERARCHY_PATH}.
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String ENV_ADDRESSING = "addressing"; //$NON-NLS-1$
+	/**
+	 * Addressing mode where documents are found by path in {@link #VIEW_FILESBYPATH}
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String ADDRESSING_VIEW = "view"; //$NON-NLS-1$
+	/**
+	 * Addressing mode where each document's UNID is derived from a hash of its path, so
+	 * that documents can be opened directly without navigating a view
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String ADDRESSING_UNID = "unid"; //$NON-NLS-1$
+	
+	/**
+	 * Environment key for the size, in bytes, at or below which file content is stored in
+	 * {@link #ITEM_INLINEDATA} rather than as an attachment. Defaults to {@code 0}, which
+	 * disables inline storage, and is capped at {@link #MAX_INLINE_SIZE}.
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String ENV_INLINETHRESHOLD = "inlineThreshold"; //$NON-NLS-1$
+	/**
+	 * The largest file size, in bytes, that may be stored inline, leaving headroom below
+	 * the Domino item size limit
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final int MAX_INLINE_SIZE = 32000;
 	
 	/** The name of the view containing all files and folders by their full path */
 	public static final String VIEW_FILESBYPATH = "Files by Path"; //$NON-NLS-1$
@@ -59,4 +131,10 @@ public enum NSFFileSystemConstants {
 	public static final String PREFIX_USERITEM = "user."; //$NON-NLS-1$
 	/** The name of the custom data type used to store custom attributes */
 	public static final String DATATYPE_NAME = NSFUserDefinedFileAttributeView.class.getSimpleName();
+	/**
+	 * The name of the custom data type used to store {@link #ITEM_INLINEDATA}
+	 * 
+	 * @since 2.3.0
+	 */
+	public static final String DATATYPE_INLINEDATA = "NSFFileData"; //$NON-NLS-1$
 }
\ No newline at end of file
@@ -68,8 +68,8 @@ public class NSFStoreFileSystemProvider extends AbstractNSFFileSystemProvider {
 		
 		String mapKey = uri.getUserInfo() + nsfPath;
 		FileSystem fs = fileSystems.get(mapKey);
-		if(fs == null || !fs.isOpen()) {
-			fileSystems.put(mapKey, new NSFFileSystem(this, uri.getUserInfo(), nsfPath));
+		if(fs == null || !fs.isOpen() || !isSameEnvironment((NSFFileSystem)fs, env)) {
+			fileSystems.put(mapKey, new NSFFileSystem(this, uri.getUserInfo(), nsfPath, env));
 		}
 		return fileSystems.get(mapKey);
 	}
@@ -84,7 +84,7 @@ public class NSFStoreFileSystemProvider extends AbstractNSFFileSystemProvider {
 		}
 		
 		String mapKey = uri.getUserInfo() + nsfPath;
-		return fileSystems.put(mapKey, new NSFFileSystem(this, uri.getUserInfo(), nsfPath));
+		return fileSystems.put(mapKey, new NSFFileSystem(this, uri.getUserInfo(), nsfPath, env));
 	}
 
 	@Override
@@ -15,30 +15,42 @@
  */
 package org.openntf.nsffile.fs.nsffilestore.db;
 
+import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.DATATYPE_INLINEDATA;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.DATATYPE_NAME;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.FORM_FOLDER;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.ITEM_CREATED;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.ITEM_FILE;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.ITEM_GROUP;
+import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.ITEM_INLINEDATA;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.ITEM_MODIFIED;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.ITEM_OWNER;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.ITEM_PARENT;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.ITEM_PERMISSIONS;
+import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.PARENT_ROOT;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.PREFIX_USERITEM;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.VIEW_FILESBYPARENT;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.VIEW_FILESBYPARENT_INDEX_NAME;
 import static org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants.VIEW_FILESBYPATH;
 
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.CopyOption;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFilePermission;
@@ -46,11 +58,22 @@ import java.nio.file.attribute.PosixFilePermissions;
 import java.nio.file.attribute.UserPrincipal;
 import java.text.MessageFormat;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -65,20 +88,27 @@ import com.hcl.domino.data.Document.IAttachmentProducer;
 import com.hcl.domino.data.Document.LockMode;
 import com.hcl.domino.data.DominoCollection;
 import com.hcl.domino.data.DominoDateTime;
+import com.hcl.domino.data.Item;
+import com.hcl.domino.data.Item.ItemFlag;
 import com.hcl.domino.data.UserData;
 import com.hcl.domino.misc.NotesConstants;
 import com.hcl.domino.misc.Ref;
 import com.hcl.domino.richtext.RichTextWriter;
 import com.ibm.commons.util.StringUtil;
-import com.ibm.commons.util.io.StreamUtil;
 
 import org.openntf.nsffile.core.NotesPrincipal;
 import org.openntf.nsffile.core.fs.attribute.NSFFileAttributes;
 import org.openntf.nsffile.core.fs.attribute.NSFFileAttributes.Type;
+import org.openntf.nsffile.core.util.ImportProgress;
 import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.core.util.NotesThreadFactory;
+import org.openntf.nsffile.fs.abstractnsf.db.MissingPathCache;
 import org.openntf.nsffile.fs.abstractnsf.db.NSFAccessor;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFFileSnapshot;
+import org.openntf.nsffile.fs.abstractnsf.db.StreamingNSFAccessor;
 import org.openntf.nsffile.fs.abstractnsf.NSFPath;
 import org.openntf.nsffile.fs.abstractnsf.attribute.RootFileAttributes;
+import org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants;
 import org.openntf.nsffile.fs.nsffilestore.util.NSFPathUtil;
 
 /**
@@ -87,21 +117,35 @@ import org.openntf.nsffile.fs.nsffilestore.util.NSFPathUtil;
  * @author Jesse Gallagher
  * @since 1.0.0
  */
-public enum NSFStoreNSFAccessor implements NSFAccessor {
+public enum NSFStoreNSFAccessor implements StreamingNSFAccessor {
 	instance;
 	private static final Logger log = Logger.getLogger(NSFStoreNSFAccessor.class.getPackage().getName());
 	
+	/** The number of path-derived UNIDs tried for each path before giving up */
+	private static final int UNID_PROBES = 3;
+	/** The size of the buffer used when copying streamed content into an attachment */
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+	
+	private final MissingPathCache missingPaths = new MissingPathCache();
+	
 	@Override
 	public List<String> getDirectoryEntries(NSFPath dir) {
+		return NotesThreadFactory.join(getDirectoryEntriesAsync(dir));
+	}
+	
+	@Override
+	public CompletableFuture<List<String>> getDirectoryEntriesAsync(NSFPath dir) {
 		String cacheId = "entries-" + dir; //$NON-NLS-1$
-		return NSFPathUtil.callWithDatabase(dir, cacheId, database -> {
-			DominoCollection filesByParent = database.openCollection(VIEW_FILESBYPARENT)
-				.orElseThrow(() -> new IllegalStateException(MessageFormat.format("Unable to open view \"{0}\" in database \"{1}\"", VIEW_FILESBYPARENT, database.getRelativeFilePath())));;
-			filesByParent.refresh();
+		return NSFPathUtil.callWithDatabaseAsync(dir, cacheId, database -> {
+			Optional<String> category = toParentKey(dir, database);
+			if(!category.isPresent()) {
+				// Only possible for a missing folder in an ID-based hierarchy
+				return new ArrayList<>();
+			}
 			
-			String category = dir.toAbsolutePath().toString();
+			DominoCollection filesByParent = openView(database, VIEW_FILESBYPARENT);
 			return filesByParent.query()
-				.startAtCategory(category)
+				.startAtCategory(category.get())
 				.readColumnValues()
 				.build(0, Integer.MAX_VALUE, new CollectionEntryProcessor<List<String>>() {
 
@@ -125,8 +169,20 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 	
 	@Override
 	public Path extractAttachment(NSFPath path) {
-		return NSFPathUtil.callWithDocument(path, null, doc -> {
+		return NotesThreadFactory.join(extractAttachmentAsync(path));
+	}
+	
+	@Override
+	public CompletableFuture<Path> extractAttachmentAsync(NSFPath path) {
+		// File content goes through its own lane to avoid delaying metadata calls
+		return NSFPathUtil.callWithDocumentAsync(NotesThreadFactory.contentExecutor, path, null, doc -> {
 			Path result = NSFFileUtil.createTempFile();
+			Optional<byte[]> inlineData = readInlineData(doc);
+			if(inlineData.isPresent()) {
+				Files.write(result, inlineData.get());
+				return result;
+			}
+			
 			boolean[] extracted = new boolean[1];
 			// TODO add sanity checks
 			doc.forEachAttachment((attachment, loop) -> {
@@ -150,38 +206,7 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 	@Override
 	public void storeAttachment(NSFPath path, Path attachmentData) throws IOException {
 		try {
-			NSFPathUtil.runWithDocument(path, doc -> {
-				if(doc.isNew()) {
-					doc.replaceItemValue(NotesConstants.FIELD_FORM, ITEM_FILE);
-				}
-				if(doc.hasItem(ITEM_FILE)) {
-					doc.removeItem(ITEM_FILE);
-				}
-				// TODO consider only deleting attachments referenced in ITEM_FILE
-				doc.forEachAttachment((att, loop) -> att.deleteFromDocument());
-				
-				Attachment att;
-				try(InputStream is = Files.newInputStream(attachmentData)) {
-					long size = Files.size(attachmentData);
-					att = doc.attachFile(path.getFileName().toString(), Instant.now(), Instant.now(), new IAttachmentProducer() {
-						@Override
-						public long getSizeEstimation() {
-							return size;
-						}
-
-						@Override
-						public void produceAttachment(OutputStream os) throws IOException {
-							StreamUtil.copyStream(is, os);
-						}
-					});	
-				}
-				try(RichTextWriter w = doc.createRichTextItem(ITEM_FILE)) {
-					w.addAttachmentIcon(att, path.getFileName().toString());
-				}
-				doc.computeWithForm(true, null);
-				doc.save();
-				NSFPathUtil.invalidateDatabaseCache(doc.getParentDatabase());
-			});
+			NotesThreadFactory.join(storeAttachmentAsync(path, attachmentData));
 		} catch (RuntimeException e) {
 			if(log.isLoggable(Level.SEVERE)) {
 				log.log(Level.SEVERE, MessageFormat.format("Encountered exception storing attachment in path {0}", path), e);
@@ -190,6 +215,22 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 		}
 	}
 	
+	@Override
+	public CompletableFuture<Void> storeAttachmentAsync(NSFPath path, Path attachmentData) {
+		return NSFPathUtil.runWithDocumentAsync(NotesThreadFactory.contentExecutor, path, doc -> {
+			storeContent(doc, path, attachmentData);
+			NSFPathUtil.invalidateDatabaseCache(path);
+		}).whenComplete((result, t) -> missingPaths.invalidate(path));
+	}
+	
+	@Override
+	public CompletableFuture<Void> storeAttachmentAsync(NSFPath path, InputStream data, long size) {
+		return NSFPathUtil.runWithDocumentAsync(NotesThreadFactory.contentExecutor, path, doc -> {
+			storeContent(doc, path, data, size);
+			NSFPathUtil.invalidateDatabaseCache(path);
+		}).whenComplete((result, t) -> missingPaths.invalidate(path));
+	}
+	
 	@Override
 	public void createDirectory(NSFPath dir, FileAttribute<?>... attrs) throws IOException {
 		// TODO support attrs
@@ -199,7 +240,7 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 					doc.replaceItemValue(NotesConstants.FIELD_FORM, FORM_FOLDER);
 					doc.computeWithForm(true, null);
 					doc.save();
-					NSFPathUtil.invalidateDatabaseCache(doc.getParentDatabase());
+					NSFPathUtil.invalidateDatabaseCache(dir);
 				}
 			});
 		} catch (RuntimeException e) {
@@ -207,22 +248,28 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 				log.log(Level.SEVERE, MessageFormat.format("Encountered exception creating directory {0}", dir), e);
 			}
 			throw new IOException(e);
+		} finally {
+			missingPaths.invalidate(dir);
 		}
 	}
 
 	@Override
 	public void delete(NSFPath path) throws IOException {
-		// TODO throw exception if it is a non-empty directory
+		boolean deleted;
 		try {
-			NSFPathUtil.runWithDocument((NSFPath)path, doc -> {
+			deleted = NSFPathUtil.callWithDocument(path, null, doc -> {
 				if(!doc.isNew()) {
-					if(doc.getParentDatabase().isDocumentLockingEnabled()) {
-						doc.lock(doc.getParentDatabase().getParentDominoClient().getEffectiveUserName(), LockMode.HardOrProvisional);
+					Database database = doc.getParentDatabase();
+					if(isFolder(doc) && !findDescendantIds(path, doc, openView(database, VIEW_FILESBYPATH), false).isEmpty()) {
+						return false;
+					}
+					if(database.isDocumentLockingEnabled()) {
+						doc.lock(database.getParentDominoClient().getEffectiveUserName(), LockMode.HardOrProvisional);
 					}
-					Database db = doc.getParentDatabase();
 					doc.delete();
-					NSFPathUtil.invalidateDatabaseCache(db);
+					NSFPathUtil.invalidateDatabaseCache(path);
 				}
+				return true;
 			});
 		} catch (RuntimeException e) {
 			if(log.isLoggable(Level.SEVERE)) {
@@ -230,8 +277,160 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 			}
 			throw new IOException(e);
 		}
+		if(!deleted) {
+			throw new DirectoryNotEmptyException(path.toString());
+		}
 	}
 	
+	@Override
+	public void deleteTree(NSFPath path) throws IOException {
+		try {
+			NSFPathUtil.runWithDatabase(path, database -> {
+				Optional<Document> root = findDocument(path, database);
+				if(!root.isPresent()) {
+					return;
+				}
+				
+				Set<Integer> noteIds = new LinkedHashSet<>();
+				noteIds.add(root.get().getNoteID());
+				if(isFolder(root.get())) {
+					noteIds.addAll(findDescendantIds(path, root.get(), openView(database, VIEW_FILESBYPATH), true));
+				}
+				
+				String userName = database.isDocumentLockingEnabled() ? database.getParentDominoClient().getEffectiveUserName() : null;
+				for(Integer id : noteIds) {
+					database.getDocumentById(id).ifPresent(doc -> {
+						if(userName != null) {
+							doc.lock(userName, LockMode.HardOrProvisional);
+						}
+						doc.delete();
+					});
+				}
+				NSFPathUtil.invalidateDatabaseCache(path);
+				
+				if(log.isLoggable(Level.FINE)) {
+					log.fine(MessageFormat.format("Deleted {0} documents under {1}", noteIds.size(), path));
+				}
+			});
+		} catch (RuntimeException e) {
+			if(log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, MessageFormat.format("Encountered exception deleting tree {0}", path), e);
+			}
+			throw new IOException(e);
+		}
+	}
+	
+	/**
+	 * Imports the provided tree by creating all folders in a single Notes call, then
+	 * storing files in parallel on the content lane. Lookups during the import skip the
+	 * usual view refresh, and the views are refreshed once at the end.
+	 */
+	@Override
+	public void importTree(Path source, NSFPath target, int parallelism, ImportProgress progress) throws IOException {
+		// Gather the tree up front so that the folders can be created in one pass
+		List<Path> dirs = new ArrayList<>();
+		Map<Path, Long> files = new LinkedHashMap<>();
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				dirs.add(dir);
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if(attrs.isRegularFile()) {
+					files.put(file, attrs.size());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		
+		boolean idHierarchy = NSFPathUtil.isIdHierarchy(target.getFileSystem());
+		// Maps source folders to the value of ITEM_PARENT for their children
+		Map<Path, String> parentKeys = new ConcurrentHashMap<>();
+		try {
+			NSFPathUtil.runWithDatabase(target, database -> {
+				DominoCollection view = openView(database, VIEW_FILESBYPATH);
+				for(Path dir : dirs) {
+					NSFPath dirPath = (NSFPath)NSFFileUtil.resolveRelative(target, source.relativize(dir));
+					if(dirPath.toAbsolutePath().getNameCount() == 0) {
+						parentKeys.put(dir, PARENT_ROOT);
+						continue;
+					}
+					String parentKey = dir.equals(source) ? requireParentKey(dirPath, database) : parentKeys.get(dir.getParent());
+					Optional<Document> existing = findDocument(dirPath, parentKey, database, view);
+					Document doc;
+					if(existing.isPresent()) {
+						doc = existing.get();
+						if(!isFolder(doc)) {
+							throw new FileAlreadyExistsException(dirPath.toString(), null, "A file exists where a folder is to be imported");
+						}
+					} else {
+						doc = createDocument(dirPath, parentKey, database);
+						doc.replaceItemValue(NotesConstants.FIELD_FORM, FORM_FOLDER);
+						doc.computeWithForm(true, null);
+						doc.save();
+						progress.folderCreated();
+					}
+					parentKeys.put(dir, idHierarchy ? doc.getUNID() : dirPath.toAbsolutePath().toString());
+				}
+			});
+		} catch(RuntimeException e) {
+			if(log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, MessageFormat.format("Encountered exception creating folders to import into {0}", target), e);
+			}
+			throw new IOException(e);
+		} finally {
+			NSFPathUtil.invalidateDatabaseCache(target);
+			missingPaths.invalidateTree(target);
+		}
+		
+		Semaphore slots = new Semaphore(Math.max(1, parallelism));
+		List<CompletableFuture<?>> results = new ArrayList<>(files.size());
+		try {
+			for(Map.Entry<Path, Long> file : files.entrySet()) {
+				NSFPath filePath = (NSFPath)NSFFileUtil.resolveRelative(target, source.relativize(file.getKey()));
+				String parentKey = parentKeys.get(file.getKey().getParent());
+				slots.acquire();
+				results.add(NSFPathUtil.runWithDatabaseAsync(NotesThreadFactory.contentExecutor, filePath, database -> {
+					DominoCollection view = NSFPathUtil.isUnidAddressing(filePath.getFileSystem()) ? null : openView(database, VIEW_FILESBYPATH, false);
+					Document doc = findDocument(filePath, parentKey, database, view)
+						.orElseGet(() -> createDocument(filePath, parentKey, database));
+					storeContent(doc, filePath, file.getKey());
+				}).whenComplete((result, t) -> {
+					slots.release();
+					if(t == null) {
+						progress.fileStored(file.getValue());
+					} else {
+						progress.failed(file.getKey(), t);
+					}
+				}));
+			}
+			// Failures are reported to the progress listener per file
+			CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()]))
+				.exceptionally(t -> null)
+				.join();
+		} catch(InterruptedException e) {
+			throw new InterruptedIOException(e.toString());
+		} finally {
+			NSFPathUtil.invalidateDatabaseCache(target);
+			missingPaths.invalidateTree(target);
+		}
+		
+		try {
+			// Bring the views up to date once for everything stored above
+			NSFPathUtil.runWithDatabase(target, database -> {
+				openView(database, VIEW_FILESBYPATH);
+				openView(database, VIEW_FILESBYPARENT);
+			});
+		} catch(RuntimeException e) {
+			if(log.isLoggable(Level.WARNING)) {
+				log.log(Level.WARNING, MessageFormat.format("Encountered exception refreshing views after importing into {0}", target), e);
+			}
+		}
+	}
+
 	@Override
 	public void copy(NSFPath source, NSFPath target, CopyOption... options) throws IOException {
 		// TODO respect options
@@ -246,23 +445,24 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 				}
 				
 				Document doc = NSFStoreNSFAccessor.getDocument(source, database);
-				targetDoc = doc.copyToDatabase(database);
-				targetDoc.replaceItemValue(ITEM_PARENT, target.getParent().toAbsolutePath().toString());
-				targetDoc.replaceItemValue(NotesConstants.ITEM_META_TITLE, target.getFileName().toString());
-				targetDoc.computeWithForm(true, null);
-				targetDoc.save();
-				NSFPathUtil.invalidateDatabaseCache(database);
+				copyDocument(doc, target, database);
+				NSFPathUtil.invalidateDatabaseCache(target);
 			});
 		} catch (RuntimeException e) {
 			if(log.isLoggable(Level.SEVERE)) {
 				log.log(Level.SEVERE, MessageFormat.format("Encountered exception copying {0} to {1} with options {2}", source, target, Arrays.toString(options)), e);
 			}
 			throw new IOException(e);
+		} finally {
+			missingPaths.invalidateTree(target);
 		}
 	}
 
 	@Override
 	public void move(NSFPath source, NSFPath target, CopyOption... options) throws IOException {
+		if(!source.equals(target) && target.toAbsolutePath().startsWith(source.toAbsolutePath())) {
+			throw new FileSystemException(source.toString(), target.toString(), "Cannot move a folder into itself");
+		}
 		try {
 			NSFPathUtil.runWithDatabase(source, database -> {
 				Document targetDoc = NSFStoreNSFAccessor.getDocument(target, database);
@@ -274,159 +474,175 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 				}
 				
 				Document doc = NSFStoreNSFAccessor.getDocument((NSFPath)source, database);
-				doc.replaceItemValue(ITEM_PARENT, target.getParent().toAbsolutePath().toString());
-				doc.replaceItemValue(NotesConstants.ITEM_META_TITLE, target.getFileName().toString());
-				doc.computeWithForm(true, null);
-				doc.save();
-				NSFPathUtil.invalidateDatabaseCache(database);
+				if(NSFPathUtil.isUnidAddressing(target.getFileSystem())) {
+					// The UNID of a saved note must not change, so move it to a new note with
+					//   the UNID for the new path instead
+					copyDocument(doc, target, database);
+					if(database.isDocumentLockingEnabled()) {
+						doc.lock(database.getParentDominoClient().getEffectiveUserName(), LockMode.HardOrProvisional);
+					}
+					doc.delete();
+				} else {
+					// With an ID-based hierarchy, this is the only document that changes
+					doc.replaceItemValue(ITEM_PARENT, requireParentKey(target, database));
+					doc.replaceItemValue(NotesConstants.ITEM_META_TITLE, target.getFileName().toString());
+					doc.computeWithForm(true, null);
+					doc.save();
+				}
+				NSFPathUtil.invalidateDatabaseCache(target);
 			});
 		} catch (RuntimeException e) {
 			if(log.isLoggable(Level.SEVERE)) {
 				log.log(Level.SEVERE, MessageFormat.format("Encountered exception moving {0} to {1} with options {2}", source, target, Arrays.toString(options)), e);
 			}
 			throw new IOException(e);
+		} finally {
+			missingPaths.invalidateTree(target);
 		}
 	}
 	
 	@Override
 	public boolean exists(NSFPath path) {
+		return NotesThreadFactory.join(existsAsync(path));
+	}
+	
+	@Override
+	public CompletableFuture<Boolean> existsAsync(NSFPath path) {
 		if("/".equals(NSFFileUtil.toFileName(path))) { //$NON-NLS-1$
-			return true;
+			return CompletableFuture.completedFuture(true);
+		}
+		if(missingPaths.isMissing(path)) {
+			return CompletableFuture.completedFuture(false);
 		}
+		long stamp = missingPaths.stamp();
 		String cacheId = "exists-" + path; //$NON-NLS-1$
-		return NSFPathUtil.callWithDatabase(path, cacheId, database -> {
-			DominoCollection view = database.openCollection(VIEW_FILESBYPATH)
-				.orElseThrow(() -> new IllegalStateException(MessageFormat.format("Unable to open view \"{0}\" in database \"{1}\"", VIEW_FILESBYPATH, database.getRelativeFilePath())));;
-			view.refresh();
-			return view.query()
-				.selectByKey(path.toAbsolutePath().toString(), true)
-				.firstId()
-				.isPresent();
+		return NSFPathUtil.callWithDatabaseAsync(path, cacheId, database ->
+			findDocument(path, database).isPresent()
+		).thenApply(exists -> {
+			if(!exists) {
+				missingPaths.markMissing(path, stamp);
+			}
+			return exists;
 		});
 	}
-
+	
 	@Override
-	public NSFFileAttributes readAttributes(NSFPath path) {
-		String cacheId = "attrs-" + path; //$NON-NLS-1$
-		return NSFPathUtil.callWithDocument(path, cacheId, doc -> {
-			NotesPrincipal owner;
-			NotesPrincipal group;
-			Type type;
-			FileTime lastModified;
-			FileTime lastAccessed;
-			FileTime created;
-			long size;
-			Set<PosixFilePermission> permissions;
-			
-			if(!doc.isNew()) {
-				owner = new NotesPrincipal(doc.get(ITEM_OWNER, String.class, "")); //$NON-NLS-1$
-				group = new NotesPrincipal(doc.get(ITEM_GROUP, String.class, "")); //$NON-NLS-1$
-				
-				String form = doc.get(NotesConstants.FIELD_FORM, String.class, null);
-				if(StringUtil.isNotEmpty(form)) {
-					type = Type.valueOf(form);
-				} else {
-					type = null;
-				}
-				Instant mod = doc.get(ITEM_MODIFIED, Instant.class, Instant.now());
-				lastModified = FileTime.from(mod);
-				
-				// TODO check for minimum
-				lastAccessed = FileTime.from(Instant.from(doc.getLastAccessed()));
-				
-				Instant docCreated = doc.get(ITEM_CREATED, Instant.class, Instant.from(doc.getCreated()));
-				created = FileTime.from(docCreated);
-
-				size = doc.getAttachmentNames()
-					.stream()
-					.findFirst()
-					.flatMap(name -> doc.getAttachment(name))
-					.map(Attachment::getFileSize)
-					.orElse(0l);
-				
-				permissions = PosixFilePermissions.fromString(doc.get(ITEM_PERMISSIONS, String.class, "")); //$NON-NLS-1$
-			} else {
-				owner = new NotesPrincipal("CN=root"); //$NON-NLS-1$
-				group = new NotesPrincipal("CN=wheel"); //$NON-NLS-1$
-				type = Type.File;
-				lastModified = FileTime.from(Instant.EPOCH);
-				lastAccessed = FileTime.from(Instant.EPOCH);
-				created = FileTime.from(Instant.EPOCH);
-				size = 0;
-				permissions = EnumSet.allOf(PosixFilePermission.class);
-			}
-			
-			return new NSFFileAttributes(owner, group, type, lastModified, lastAccessed, created, size, permissions);
-		});
+	public CompletableFuture<Optional<NSFFileAttributes>> statAsync(NSFPath path) {
+		return snapshotAsync(path).thenApply(snapshot -> snapshot.map(NSFFileSnapshot::getAttributes));
 	}
 	
 	@Override
-	public void setOwner(NSFPath path, UserPrincipal owner) throws IOException {
+	public Optional<NSFFileSnapshot> snapshot(NSFPath path) throws IOException {
 		try {
-			NSFPathUtil.runWithDocument(path, doc -> {
-				doc.replaceItemValue(ITEM_OWNER, owner.getName());
-				doc.save();
-				NSFPathUtil.invalidateDatabaseCache(doc.getParentDatabase());
-			});
+			return NotesThreadFactory.join(snapshotAsync(path));
 		} catch(RuntimeException e) {
 			if(log.isLoggable(Level.SEVERE)) {
-				log.log(Level.SEVERE, MessageFormat.format("Encountered exception setting owner of {0} to {1}", path, owner), e);
+				log.log(Level.SEVERE, MessageFormat.format("Encountered exception reading {0}", path), e);
 			}
 			throw new IOException(e);
 		}
 	}
 	
 	@Override
-	public void setGroup(NSFPath path, UserPrincipal group) throws IOException {
-		try {
-			NSFPathUtil.runWithDocument(path, doc -> {
-				doc.replaceItemValue(ITEM_GROUP, group.getName());
-				doc.save();
-				NSFPathUtil.invalidateDatabaseCache(doc.getParentDatabase());
-			});
-		} catch(RuntimeException e) {
-			if(log.isLoggable(Level.SEVERE)) {
-				log.log(Level.SEVERE, MessageFormat.format("Encountered exception setting group of {0} to {1}", path, group), e);
-			}
-			throw new IOException(e);
+	public CompletableFuture<Optional<NSFFileSnapshot>> snapshotAsync(NSFPath path) {
+		if(missingPaths.isMissing(path)) {
+			return CompletableFuture.completedFuture(Optional.empty());
 		}
+		long stamp = missingPaths.stamp();
+		String cacheId = "snapshot-" + path; //$NON-NLS-1$
+		return NSFPathUtil.callWithDatabaseAsync(path, cacheId, database ->
+			findDocument(path, database)
+				// Inline content is left out, as snapshots are cached for every file that is listed
+				.map(doc -> new NSFFileSnapshot(toAttributes(doc), toUserAttributes(doc)))
+		).thenApply(snapshot -> {
+			if(!snapshot.isPresent()) {
+				missingPaths.markMissing(path, stamp);
+			}
+			return snapshot;
+		});
+	}
+
+	@Override
+	public NSFFileAttributes readAttributes(NSFPath path) {
+		return NotesThreadFactory.join(readAttributesAsync(path));
+	}
+	
+	@Override
+	public CompletableFuture<NSFFileAttributes> readAttributesAsync(NSFPath path) {
+		String cacheId = "attrs-" + path; //$NON-NLS-1$
+		return NSFPathUtil.callWithDocumentAsync(path, cacheId, NSFStoreNSFAccessor::toAttributes);
+	}
+	
+	@Override
+	public void setOwner(NSFPath path, UserPrincipal owner) throws IOException {
+		setAttributes(path, Collections.singletonMap(ATTR_OWNER, owner));
+	}
+	
+	@Override
+	public void setGroup(NSFPath path, UserPrincipal group) throws IOException {
+		setAttributes(path, Collections.singletonMap(ATTR_GROUP, group));
 	}
 	
 	@Override
 	public void setPermissions(NSFPath path, Set<PosixFilePermission> perms) throws IOException {
-		try {
-			NSFPathUtil.runWithDocument(path, doc -> {
-				doc.replaceItemValue(ITEM_PERMISSIONS, PosixFilePermissions.toString(perms));
-				doc.save();
-				NSFPathUtil.invalidateDatabaseCache(doc.getParentDatabase());
-			});
-		} catch(RuntimeException e) {
-			if(log.isLoggable(Level.SEVERE)) {
-				log.log(Level.SEVERE, MessageFormat.format("Encountered exception setting permissions of {0} to {1}", path, perms), e);
-			}
-			throw new IOException(e);
-		}
+		setAttributes(path, Collections.singletonMap(ATTR_PERMISSIONS, perms));
 	}
 	
 	@Override
 	public void setTimes(NSFPath path, FileTime lastModifiedTime, FileTime createTime) throws IOException {
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put(ATTR_LASTMODIFIEDTIME, lastModifiedTime);
+		attributes.put(ATTR_CREATIONTIME, createTime);
+		setAttributes(path, attributes);
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public void setAttributes(NSFPath path, Map<String, ?> attributes) throws IOException {
+		NSFAccessor.checkAttributes(attributes);
+		if(attributes.isEmpty()) {
+			return;
+		}
 		try {
 			NSFPathUtil.runWithDocument(path, doc -> {
-				if(lastModifiedTime != null) {
-					doc.replaceItemValue(ITEM_MODIFIED, lastModifiedTime.toInstant());
-				}
-				if(createTime != null) {
-					doc.replaceItemValue(ITEM_CREATED, createTime.toInstant());
+				for(Map.Entry<String, ?> attr : attributes.entrySet()) {
+					Object value = attr.getValue();
+					if(value == null) {
+						continue;
+					}
+					switch(attr.getKey()) {
+					case ATTR_LASTMODIFIEDTIME:
+						doc.replaceItemValue(ITEM_MODIFIED, ((FileTime)value).toInstant());
+						break;
+					case ATTR_CREATIONTIME:
+						doc.replaceItemValue(ITEM_CREATED, ((FileTime)value).toInstant());
+						break;
+					case ATTR_OWNER:
+						doc.replaceItemValue(ITEM_OWNER, ((UserPrincipal)value).getName());
+						break;
+					case ATTR_GROUP:
+						doc.replaceItemValue(ITEM_GROUP, ((UserPrincipal)value).getName());
+						break;
+					case ATTR_PERMISSIONS:
+						doc.replaceItemValue(ITEM_PERMISSIONS, PosixFilePermissions.toString((Set<PosixFilePermission>)value));
+						break;
+					case ATTR_LASTACCESSTIME:
+					default:
+						// Not stored in the NSF
+						break;
+					}
 				}
-				
 				doc.save();
-				NSFPathUtil.invalidateDatabaseCache(doc.getParentDatabase());
 			});
+			NSFPathUtil.invalidateDatabaseCache(path);
 		} catch(RuntimeException e) {
 			if(log.isLoggable(Level.SEVERE)) {
-				log.log(Level.SEVERE, MessageFormat.format("Encountered exception setting timestamps of {0} to {1}, {2}", path, lastModifiedTime, createTime), e);
+				log.log(Level.SEVERE, MessageFormat.format("Encountered exception setting attributes {1} of {0}", path, attributes.keySet()), e);
 			}
 			throw new IOException(e);
+		} finally {
+			// Saving a new document brings the path into existence
+			missingPaths.invalidate(path);
 		}
 	}
 	
@@ -453,11 +669,13 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 		try {
 			return NSFPathUtil.callWithDocument(path, null, doc -> {
 				String itemName = PREFIX_USERITEM + name;
-				byte[] data = src.array();
+				byte[] data = new byte[src.remaining()];
+				src.get(data);
 				UserData userData = doc.getParentDatabase().getParentDominoClient().createUserData(DATATYPE_NAME, data);
 				doc.replaceItemValue(itemName, userData);
 				doc.computeWithForm(true, null);
-				NSFPathUtil.invalidateDatabaseCache(doc.getParentDatabase());
+				doc.save();
+				NSFPathUtil.invalidateDatabaseCache(path);
 				return data.length;
 			});
 		} catch(RuntimeException e) {
@@ -465,6 +683,8 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 				log.log(Level.SEVERE, MessageFormat.format("Encountered exception setting user-defined attribute {0} on {1}", name, path), e);
 			}
 			throw new IOException(e);
+		} finally {
+			missingPaths.invalidate(path);
 		}
 	}
 
@@ -477,7 +697,7 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 					doc.removeItem(itemName);
 					doc.computeWithForm(true, null);
 					doc.save();
-					NSFPathUtil.invalidateDatabaseCache(doc.getParentDatabase());
+					NSFPathUtil.invalidateDatabaseCache(path);
 				}
 			});
 		} catch(RuntimeException e) {
@@ -485,6 +705,8 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 				log.log(Level.SEVERE, MessageFormat.format("Encountered exception deleting user-defined attribute {0} on {1}", name, path), e);
 			}
 			throw new IOException(e);
+		} finally {
+			missingPaths.invalidate(path);
 		}
 	}
 	
@@ -495,18 +717,7 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 			return NSFPathUtil.callWithDocument(path, cacheId, doc -> {
 				String itemName = PREFIX_USERITEM + name;
 				return doc.getFirstItem(itemName)
-					.map(item -> {
-						switch(item.getType()) {
-						case TYPE_TEXT:
-						case TYPE_TEXT_LIST:
-							return item.get(String.class, "").getBytes(StandardCharsets.UTF_8);
-						case TYPE_USERDATA:
-							UserData userData = item.get(UserData.class, null);
-							return userData.getData();
-						default:
-							return new byte[0];
-						}
-					})
+					.map(NSFStoreNSFAccessor::toUserAttributeValue)
 					.orElseGet(() -> new byte[0]);
 			});
 		} catch(RuntimeException e) {
@@ -517,6 +728,54 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 		}
 	}
 
+	/**
+	 * Places a Domino document lock on the file's document when the database has document
+	 * locking enabled.
+	 * 
+	 * @since 2.3.0
+	 */
+	@Override
+	public void lockFile(NSFPath path) throws IOException {
+		boolean locked;
+		try {
+			locked = NSFPathUtil.callWithDatabase(path, null, database -> {
+				if(!database.isDocumentLockingEnabled()) {
+					return true;
+				}
+				Optional<Document> doc = findDocument(path, database);
+				if(!doc.isPresent()) {
+					// Nothing to lock until the file is first stored
+					return true;
+				}
+				return doc.get().lock(database.getParentDominoClient().getEffectiveUserName(), LockMode.Hard);
+			});
+		} catch(RuntimeException e) {
+			if(log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, MessageFormat.format("Encountered exception locking {0}", path), e);
+			}
+			throw new IOException(e);
+		}
+		if(!locked) {
+			throw new FileSystemException(path.toString(), null, "File is locked by another user");
+		}
+	}
+	
+	@Override
+	public void unlockFile(NSFPath path) throws IOException {
+		try {
+			NSFPathUtil.runWithDatabase(path, database -> {
+				if(database.isDocumentLockingEnabled()) {
+					findDocument(path, database).ifPresent(doc -> doc.unlock(LockMode.Hard));
+				}
+			});
+		} catch(RuntimeException e) {
+			if(log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, MessageFormat.format("Encountered exception unlocking {0}", path), e);
+			}
+			throw new IOException(e);
+		}
+	}
+
 	@Override
 	public RootFileAttributes getRootFileAttributes(Path path) {
 		return NSFPathUtil.callWithDatabase((NSFPath)path, "rootAttribues", database -> { //$NON-NLS-1$
@@ -537,18 +796,418 @@ public enum NSFStoreNSFAccessor implements NSFAccessor {
 	 * @return a document representing the note
 	 */
 	public static Document getDocument(NSFPath path, Database database) {
-		DominoCollection view = database.openCollection(VIEW_FILESBYPATH)
-			.orElseThrow(() -> new IllegalStateException(MessageFormat.format("Unable to open view \"{0}\" in database \"{1}\"", VIEW_FILESBYPATH, database.getRelativeFilePath())));
-		view.refresh();
+		return findDocument(path, database)
+			.orElseGet(() -> createDocument(path, requireParentKey(path, database), database));
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private static Document createDocument(NSFPath path, String parentKey, Database database) {
+		Document doc = database.createDocument();
+		if(NSFPathUtil.isUnidAddressing(path.getFileSystem())) {
+			findFreeUnid(path, database).ifPresent(doc::setUNID);
+		}
+		doc.replaceItemValue(ITEM_PARENT, parentKey);
+		doc.replaceItemValue(NotesConstants.ITEM_META_TITLE, path.getFileName().toString());
+		return doc;
+	}
+	
+	/**
+	 * Copies the provided document to a new note at the target path.
+	 * 
+	 * <p>With UNID addressing, the new note is given the UNID derived from the target
+	 * path before its first save. The UNID of a note that has already been saved is
+	 * never changed, since replicas and links refer to notes by UNID.</p>
+	 * 
+	 * @param doc the document to copy
+	 * @param target the path of the copy
+	 * @param database the database housing the document
+	 * @return the saved copy
+	 */
+	private static Document copyDocument(Document doc, NSFPath target, Database database) {
+		Document copy = doc.copyToDatabase(database);
+		copy.replaceItemValue(ITEM_PARENT, requireParentKey(target, database));
+		copy.replaceItemValue(NotesConstants.ITEM_META_TITLE, target.getFileName().toString());
+		if(NSFPathUtil.isUnidAddressing(target.getFileSystem()) && copy.isNew()) {
+			findFreeUnid(target, database).ifPresent(copy::setUNID);
+		}
+		copy.computeWithForm(true, null);
+		copy.save();
+		return copy;
+	}
+	
+	/**
+	 * Finds the document for the provided path when the parent key is already known,
+	 * such as during an import, without walking or refreshing the view.
+	 * 
+	 * @param path the path to find
+	 * @param parentKey the value of {@link NSFFileSystemConstants#ITEM_PARENT} for the path
+	 * @param database the database housing the document
+	 * @param view the {@link NSFFileSystemConstants#VIEW_FILESBYPATH} view, which is not
+	 * 		used with UNID addressing
+	 * @return the document for the path, or an empty {@link Optional} if it does not exist
+	 */
+	private static Optional<Document> findDocument(NSFPath path, String parentKey, Database database, DominoCollection view) {
+		if(NSFPathUtil.isUnidAddressing(path.getFileSystem())) {
+			return findDocumentByUnid(path, database);
+		}
+		String name = path.getFileName().toString();
+		String key = PARENT_ROOT.equals(parentKey) ? PARENT_ROOT + name : parentKey + '/' + name;
 		return view.query()
-			.selectByKey(path.toAbsolutePath().toString(), true)
+			.selectByKey(key, true)
 			.firstId()
-			.flatMap(database::getDocumentById)
-			.orElseGet(() -> {
-				Document doc = database.createDocument();
-				doc.replaceItemValue(ITEM_PARENT, path.getParent().toAbsolutePath().toString());
-				doc.replaceItemValue(NotesConstants.ITEM_META_TITLE, path.getFileName().toString());
-				return doc;
-			});
+			.flatMap(database::getDocumentById);
+	}
+	
+	private static Optional<Document> findDocument(NSFPath path, Database database) {
+		if(NSFPathUtil.isUnidAddressing(path.getFileSystem())) {
+			return findDocumentByUnid(path, database);
+		}
+		return findNoteId(path, database)
+			.flatMap(database::getDocumentById);
+	}
+	
+	/**
+	 * Opens the document for the provided path by its path-derived UNID, verifying that
+	 * the document is actually at that path.
+	 * 
+	 * @param path the path to find
+	 * @param database the database housing the document
+	 * @return the document for the path, or an empty {@link Optional} if it does not exist
+	 */
+	private static Optional<Document> findDocumentByUnid(NSFPath path, Database database) {
+		String absolute = path.toAbsolutePath().toString();
+		String normalized = NSFPathUtil.normalizePath(absolute);
+		boolean taken = false;
+		for(int probe = 0; probe < UNID_PROBES; probe++) {
+			Optional<Document> doc = database.getDocumentByUNID(NSFPathUtil.toPathUnid(absolute, probe));
+			if(doc.isPresent()) {
+				if(normalized.equals(NSFPathUtil.normalizePath(toDocumentPath(doc.get())))) {
+					return doc;
+				}
+				taken = true;
+			}
+		}
+		if(taken) {
+			// The document may have been given a random UNID if every slot was in use
+			return findNoteId(path, database)
+				.flatMap(database::getDocumentById);
+		}
+		return Optional.empty();
+	}
+	
+	private static Optional<String> findFreeUnid(NSFPath path, Database database) {
+		String absolute = path.toAbsolutePath().toString();
+		for(int probe = 0; probe < UNID_PROBES; probe++) {
+			String unid = NSFPathUtil.toPathUnid(absolute, probe);
+			if(!database.getDocumentByUNID(unid).isPresent()) {
+				return Optional.of(unid);
+			}
+		}
+		if(log.isLoggable(Level.WARNING)) {
+			log.warning(MessageFormat.format("All derived UNIDs for {0} are in use; falling back to a random UNID", path));
+		}
+		return Optional.empty();
+	}
+	
+	private static String toDocumentPath(Document doc) {
+		String parent = doc.get(ITEM_PARENT, String.class, ""); //$NON-NLS-1$
+		String title = doc.get(NotesConstants.ITEM_META_TITLE, String.class, ""); //$NON-NLS-1$
+		return PARENT_ROOT.equals(parent) ? PARENT_ROOT + title : parent + '/' + title;
+	}
+	
+	private static Optional<Integer> findNoteId(NSFPath path, Database database) {
+		DominoCollection view = openView(database, VIEW_FILESBYPATH);
+		if(!NSFPathUtil.isIdHierarchy(path.getFileSystem())) {
+			return view.query()
+				.selectByKey(path.toAbsolutePath().toString(), true)
+				.firstId();
+		}
+		
+		// The view is keyed by ITEM_PARENT + "/" + name, so walk down from the root one
+		//   segment at a time, swapping in the UNID of each folder along the way
+		NSFPath absolute = path.toAbsolutePath();
+		String parentKey = PARENT_ROOT;
+		Optional<Integer> noteId = Optional.empty();
+		for(int i = 0; i < absolute.getNameCount(); i++) {
+			String name = absolute.getName(i).toString();
+			if(name.isEmpty()) {
+				continue;
+			}
+			if(noteId.isPresent()) {
+				Optional<String> unid = database.getDocumentById(noteId.get()).map(Document::getUNID);
+				if(!unid.isPresent()) {
+					return Optional.empty();
+				}
+				parentKey = unid.get();
+			}
+			String key = PARENT_ROOT.equals(parentKey) ? PARENT_ROOT + name : parentKey + '/' + name;
+			noteId = view.query()
+				.selectByKey(key, true)
+				.firstId();
+			if(!noteId.isPresent()) {
+				return Optional.empty();
+			}
+		}
+		return noteId;
+	}
+	
+	/**
+	 * Determines the value of {@link NSFFileSystemConstants#ITEM_PARENT} used by entries
+	 * within the provided folder.
+	 * 
+	 * @param dir the folder to check
+	 * @param database the database housing the folder
+	 * @return the folder path or, with an ID-based hierarchy, the folder UNID; an empty
+	 * 		{@link Optional} if the hierarchy is ID-based and the folder does not exist
+	 */
+	private static Optional<String> toParentKey(NSFPath dir, Database database) {
+		String dirPath = dir.toAbsolutePath().toString();
+		if(PARENT_ROOT.equals(dirPath) || !NSFPathUtil.isIdHierarchy(dir.getFileSystem())) {
+			return Optional.of(dirPath);
+		}
+		return findDocument(dir, database)
+			.map(Document::getUNID);
+	}
+	
+	/**
+	 * Finds the note IDs of the entries beneath the provided folder.
+	 * 
+	 * <p>With a path-based hierarchy, all descendants sort together in
+	 * {@link NSFFileSystemConstants#VIEW_FILESBYPATH} and are read in a single lookup.
+	 * With an ID-based hierarchy, each nested folder requires a lookup of its own.</p>
+	 * 
+	 * @param dir the path of the folder
+	 * @param dirDoc the document for the folder
+	 * @param view the {@link NSFFileSystemConstants#VIEW_FILESBYPATH} view
+	 * @param recursive {@code true} to find all descendants; {@code false} to stop at the
+	 * 		first level, such as when checking if the folder is empty
+	 * @return a {@link Set} of note IDs
+	 */
+	private static Set<Integer> findDescendantIds(NSFPath dir, Document dirDoc, DominoCollection view, boolean recursive) {
+		if(!NSFPathUtil.isIdHierarchy(dir.getFileSystem())) {
+			String prefix = dir.toAbsolutePath().toString() + '/';
+			return view.query()
+				.selectByKey(prefix, false)
+				.collectIds(0, recursive ? Integer.MAX_VALUE : 1);
+		}
+		
+		Database database = dirDoc.getParentDatabase();
+		Set<Integer> result = new LinkedHashSet<>();
+		Deque<String> folders = new ArrayDeque<>();
+		folders.add(dirDoc.getUNID());
+		while(!folders.isEmpty()) {
+			Set<Integer> children = view.query()
+				.selectByKey(folders.poll() + '/', false)
+				.collectIds(0, recursive ? Integer.MAX_VALUE : 1);
+			if(!recursive) {
+				return children;
+			}
+			for(Integer childId : children) {
+				if(result.add(childId)) {
+					database.getDocumentById(childId)
+						.filter(NSFStoreNSFAccessor::isFolder)
+						.ifPresent(child -> folders.add(child.getUNID()));
+				}
+			}
+		}
+		return result;
+	}
+	
+	private static boolean isFolder(Document doc) {
+		return FORM_FOLDER.equals(doc.get(NotesConstants.FIELD_FORM, String.class, "")); //$NON-NLS-1$
+	}
+	
+	private static DominoCollection openView(Database database, String viewName) {
+		return openView(database, viewName, true);
+	}
+	
+	private static DominoCollection openView(Database database, String viewName, boolean refresh) {
+		DominoCollection view = database.openCollection(viewName)
+			.orElseThrow(() -> new IllegalStateException(MessageFormat.format("Unable to open view \"{0}\" in database \"{1}\"", viewName, database.getRelativeFilePath())));
+		if(refresh) {
+			view.refresh();
+		}
+		return view;
+	}
+	
+	private static String requireParentKey(NSFPath path, Database database) {
+		return toParentKey(path.getParent(), database)
+			.orElseThrow(() -> new IllegalStateException(MessageFormat.format("Unable to find parent folder of {0}", path)));
+	}
+	
+	private static NSFFileAttributes toAttributes(Document doc) {
+		NotesPrincipal owner;
+		NotesPrincipal group;
+		Type type;
+		FileTime lastModified;
+		FileTime lastAccessed;
+		FileTime created;
+		long size;
+		Set<PosixFilePermission> permissions;
+		
+		if(!doc.isNew()) {
+			owner = new NotesPrincipal(doc.get(ITEM_OWNER, String.class, "")); //$NON-NLS-1$
+			group = new NotesPrincipal(doc.get(ITEM_GROUP, String.class, "")); //$NON-NLS-1$
+			
+			String form = doc.get(NotesConstants.FIELD_FORM, String.class, null);
+			if(StringUtil.isNotEmpty(form)) {
+				type = Type.valueOf(form);
+			} else {
+				type = null;
+			}
+			Instant mod = doc.get(ITEM_MODIFIED, Instant.class, Instant.now());
+			lastModified = FileTime.from(mod);
+			
+			// TODO check for minimum
+			lastAccessed = FileTime.from(Instant.from(doc.getLastAccessed()));
+			
+			Instant docCreated = doc.get(ITEM_CREATED, Instant.class, Instant.from(doc.getCreated()));
+			created = FileTime.from(docCreated);
+
+			size = readInlineData(doc)
+				.map(data -> (long)data.length)
+				.orElseGet(() -> doc.getAttachmentNames()
+					.stream()
+					.findFirst()
+					.flatMap(name -> doc.getAttachment(name))
+					.map(Attachment::getFileSize)
+					.orElse(0l)
+				);
+			
+			permissions = PosixFilePermissions.fromString(doc.get(ITEM_PERMISSIONS, String.class, "")); //$NON-NLS-1$
+		} else {
+			owner = new NotesPrincipal("CN=root"); //$NON-NLS-1$
+			group = new NotesPrincipal("CN=wheel"); //$NON-NLS-1$
+			type = Type.File;
+			lastModified = FileTime.from(Instant.EPOCH);
+			lastAccessed = FileTime.from(Instant.EPOCH);
+			created = FileTime.from(Instant.EPOCH);
+			size = 0;
+			permissions = EnumSet.allOf(PosixFilePermission.class);
+		}
+		
+		return new NSFFileAttributes(owner, group, type, lastModified, lastAccessed, created, size, permissions);
+	}
+	
+	/**
+	 * Replaces the content of the provided file document with the provided data and
+	 * saves it.
+	 * 
+	 * @param doc the file document, which may be new
+	 * @param path the path of the file
+	 * @param attachmentData the new content of the file
+	 * @throws IOException if there is a problem reading {@code attachmentData}
+	 */
+	private static void storeContent(Document doc, NSFPath path, Path attachmentData) throws IOException {
+		try(InputStream is = Files.newInputStream(attachmentData)) {
+			storeContent(doc, path, is, Files.size(attachmentData));
+		}
+	}
+	
+	/**
+	 * Replaces the content of the provided file document with {@code size} bytes read
+	 * from the provided stream and saves it. The document is not saved if the stream
+	 * ends early.
+	 * 
+	 * @param doc the file document, which may be new
+	 * @param path the path of the file
+	 * @param data the new content of the file
+	 * @param size the number of bytes to read from {@code data}
+	 * @throws IOException if there is a problem reading {@code data}
+	 */
+	private static void storeContent(Document doc, NSFPath path, InputStream data, long size) throws IOException {
+		if(doc.isNew()) {
+			doc.replaceItemValue(NotesConstants.FIELD_FORM, ITEM_FILE);
+		}
+		if(doc.hasItem(ITEM_FILE)) {
+			doc.removeItem(ITEM_FILE);
+		}
+		// TODO consider only deleting attachments referenced in ITEM_FILE
+		doc.forEachAttachment((att, loop) -> att.deleteFromDocument());
+		
+		long threshold = NSFPathUtil.getInlineThreshold(path.getFileSystem());
+		if(threshold > 0 && size <= threshold) {
+			// Small enough to skip the attachment and rich text machinery
+			byte[] bytes = new byte[(int)size];
+			new DataInputStream(data).readFully(bytes);
+			UserData userData = doc.getParentDatabase().getParentDominoClient().createUserData(DATATYPE_INLINEDATA, bytes);
+			doc.replaceItemValue(ITEM_INLINEDATA, EnumSet.noneOf(ItemFlag.class), userData);
+			doc.computeWithForm(true, null);
+			doc.save();
+			return;
+		}
+		if(doc.hasItem(ITEM_INLINEDATA)) {
+			// The file has outgrown inline storage
+			doc.removeItem(ITEM_INLINEDATA);
+		}
+		
+		Attachment att = doc.attachFile(path.getFileName().toString(), Instant.now(), Instant.now(), new IAttachmentProducer() {
+			@Override
+			public long getSizeEstimation() {
+				return size;
+			}
+
+			@Override
+			public void produceAttachment(OutputStream os) throws IOException {
+				byte[] buffer = new byte[COPY_BUFFER_SIZE];
+				long remaining = size;
+				while(remaining > 0) {
+					int read = data.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+					if(read < 0) {
+						throw new EOFException(MessageFormat.format("Expected {0} more bytes for {1}", remaining, path));
+					}
+					os.write(buffer, 0, read);
+					remaining -= read;
+				}
+			}
+		});
+		try(RichTextWriter w = doc.createRichTextItem(ITEM_FILE)) {
+			w.addAttachmentIcon(att, path.getFileName().toString());
+		}
+		doc.computeWithForm(true, null);
+		doc.save();
+	}
+	
+	/**
+	 * Reads the content of a file stored in {@link NSFFileSystemConstants#ITEM_INLINEDATA}.
+	 * 
+	 * @param doc the file document
+	 * @return the file content, or an empty {@link Optional} if the file is stored as an
+	 * 		attachment
+	 */
+	private static Optional<byte[]> readInlineData(Document doc) {
+		if(doc.isNew() || !doc.hasItem(ITEM_INLINEDATA)) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(doc.get(ITEM_INLINEDATA, UserData.class, null))
+			.map(UserData::getData);
+	}
+	
+	private static Map<String, byte[]> toUserAttributes(Document doc) {
+		Map<String, byte[]> result = new LinkedHashMap<>();
+		for(String itemName : doc.getItemNames()) {
+			if(itemName.startsWith(PREFIX_USERITEM) && itemName.length() > PREFIX_USERITEM.length()) {
+				doc.getFirstItem(itemName).ifPresent(item ->
+					result.put(itemName.substring(PREFIX_USERITEM.length()), toUserAttributeValue(item))
+				);
+			}
+		}
+		return result;
+	}
+	
+	private static byte[] toUserAttributeValue(Item item) {
+		switch(item.getType()) {
+		case TYPE_TEXT:
+		case TYPE_TEXT_LIST:
+			return item.get(String.class, "").getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$
+		case TYPE_USERDATA:
+			UserData userData = item.get(UserData.class, null);
+			return userData.getData();
+		default:
+			return new byte[0];
+		}
 	}
 }
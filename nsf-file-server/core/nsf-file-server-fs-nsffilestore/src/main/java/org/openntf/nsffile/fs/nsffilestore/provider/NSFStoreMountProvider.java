@@ -20,12 +20,12 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.FileSystem;
 import java.text.MessageFormat;
-import java.util.Collections;
 import java.util.Map;
 
 import com.ibm.commons.util.StringUtil;
 
 import org.openntf.nsffile.core.spi.FileSystemMountProvider;
+import org.openntf.nsffile.core.util.DatabaseChangePoller;
 import org.openntf.nsffile.fs.nsffilestore.NSFStoreFileSystemProvider;
 import org.openntf.nsffile.fs.nsffilestore.util.NSFPathUtil;
 
@@ -45,10 +45,21 @@ public class NSFStoreMountProvider implements FileSystemMountProvider {
 		}
 		try {
 			URI uri = NSFPathUtil.toFileSystemURI(username, dataSource);
-			return NSFStoreFileSystemProvider.instance.getOrCreateFileSystem(uri, Collections.emptyMap());
+			return NSFStoreFileSystemProvider.instance.getOrCreateFileSystem(uri, env);
 		} catch (URISyntaxException e) {
 			throw new IOException(MessageFormat.format("Unable to build URI for data source {0}", dataSource), e);
 		}
 	}
+	
+	@Override
+	public void flushCaches(String dataSource) {
+		try {
+			// Round-trip through the URI form to get the same API path that filesystems use
+			String nsfPath = NSFPathUtil.extractApiPath(NSFPathUtil.toFileSystemURI(null, dataSource));
+			DatabaseChangePoller.instance.invalidate(nsfPath);
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException(MessageFormat.format("Unable to build URI for data source {0}", dataSource), e);
+		}
+	}
 
 }
@@ -17,22 +17,28 @@ package org.openntf.nsffile.fs.nsffilestore.util;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.openntf.nsffile.core.util.DatabaseChangePoller;
 import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.core.util.NotesExecutor;
 import org.openntf.nsffile.core.util.NotesThreadFactory;
 import org.openntf.nsffile.core.util.TimedCacheHolder;
 import org.openntf.nsffile.fs.abstractnsf.NSFFileSystem;
+import org.openntf.nsffile.fs.nsffilestore.NSFFileSystemConstants;
 import org.openntf.nsffile.fs.nsffilestore.NSFStoreFileSystemProvider;
 import org.openntf.nsffile.fs.abstractnsf.NSFPath;
 import org.openntf.nsffile.fs.nsffilestore.db.NSFStoreNSFAccessor;
@@ -61,6 +67,10 @@ public enum NSFPathUtil {
 	
 	public static final String LOCAL_SERVER = "LOCALSERVER"; //$NON-NLS-1$
 	
+	/** Mixed into path hashes so that derived UNIDs are distinct from those of other schemes */
+	private static final String UNID_SALT = "nsffilestore:"; //$NON-NLS-1$
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray(); //$NON-NLS-1$
+	
 	private static final Function<String, String> encoder = path -> StringUtil.isEmpty(path) ? "" : //$NON-NLS-1$
 		Base64.getUrlEncoder().encodeToString(path.getBytes()).replace('=', '-') + "END"; //$NON-NLS-1$
 	private static final Function<String, String> decoder = enc -> StringUtil.isEmpty(enc) ? "" : //$NON-NLS-1$
@@ -195,6 +205,99 @@ public enum NSFPathUtil {
 		return new URI(NSFStoreFileSystemProvider.SCHEME, userName, base.getHost(), -1, pathInfo, null, null);
 	}
 	
+	/**
+	 * Determines whether the provided filesystem stores its folder hierarchy by parent
+	 * UNID rather than by parent path.
+	 * 
+	 * @param fileSystem the filesystem to check
+	 * @return {@code true} if {@link NSFFileSystemConstants#ENV_HIERARCHY} is
+	 * 			{@link NSFFileSystemConstants#HIERARCHY_ID}
+	 * @since 2.3.0
+	 */
+	public static boolean isIdHierarchy(NSFFileSystem fileSystem) {
+		String hierarchy = fileSystem.getStringOption(NSFFileSystemConstants.ENV_HIERARCHY, NSFFileSystemConstants.HIERARCHY_PATH);
+		return NSFFileSystemConstants.HIERARCHY_ID.equalsIgnoreCase(hierarchy);
+	}
+	
+	/**
+	 * Determines whether the provided filesystem locates documents by UNIDs derived
+	 * from their paths.
+	 * 
+	 * <p>This is never the case for an ID-based hierarchy, where renaming a folder
+	 * changes the paths of its descendants without touching their documents.</p>
+	 * 
+	 * @param fileSystem the filesystem to check
+	 * @return {@code true} if {@link NSFFileSystemConstants#ENV_ADDRESSING} is
+	 * 			{@link NSFFileSystemConstants#ADDRESSING_UNID}
+	 * @since 2.3.0
+	 */
+	public static boolean isUnidAddressing(NSFFileSystem fileSystem) {
+		if(isIdHierarchy(fileSystem)) {
+			return false;
+		}
+		String addressing = fileSystem.getStringOption(NSFFileSystemConstants.ENV_ADDRESSING, NSFFileSystemConstants.ADDRESSING_VIEW);
+		return NSFFileSystemConstants.ADDRESSING_UNID.equalsIgnoreCase(addressing);
+	}
+	
+	/**
+	 * Determines the size at or below which the provided filesystem stores file content
+	 * inline in the document.
+	 * 
+	 * @param fileSystem the filesystem to check
+	 * @return the configured {@link NSFFileSystemConstants#ENV_INLINETHRESHOLD}, capped at
+	 * 			{@link NSFFileSystemConstants#MAX_INLINE_SIZE}; {@code 0} if inline storage
+	 * 			is disabled
+	 * @since 2.3.0
+	 */
+	public static long getInlineThreshold(NSFFileSystem fileSystem) {
+		long threshold = fileSystem.getLongOption(NSFFileSystemConstants.ENV_INLINETHRESHOLD, 0);
+		return Math.max(0, Math.min(threshold, NSFFileSystemConstants.MAX_INLINE_SIZE));
+	}
+	
+	/**
+	 * Normalizes the provided absolute path for comparison, matching the case-insensitive
+	 * lookup of {@link NSFFileSystemConstants#VIEW_FILESBYPATH}.
+	 * 
+	 * @param path the path to normalize
+	 * @return the normalized path
+	 * @since 2.3.0
+	 */
+	public static String normalizePath(String path) {
+		return NSFFileUtil.normalizePath(path);
+	}
+	
+	/**
+	 * Derives a document UNID from the provided absolute path.
+	 * 
+	 * <p>Paths that differ only by case or Unicode normalization produce the same UNID.
+	 * Non-zero {@code probe} values produce alternate UNIDs for use when the primary one
+	 * is already taken by another document.</p>
+	 * 
+	 * @param path the absolute path of the file or folder
+	 * @param probe the index of the alternate UNID to produce, starting at {@code 0}
+	 * @return a 32-character hexadecimal UNID
+	 * @since 2.3.0
+	 */
+	public static String toPathUnid(String path, int probe) {
+		String key = UNID_SALT + normalizePath(path);
+		if(probe > 0) {
+			key += "#" + probe; //$NON-NLS-1$
+		}
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+		char[] result = new char[hash.length * 2];
+		for(int i = 0; i < hash.length; i++) {
+			result[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+			result[i * 2 + 1] = HEX[hash[i] & 0xF];
+		}
+		return new String(result);
+	}
+	
 	/**
 	 * Executes the provided function with a document for the provided path.
 	 * 
@@ -207,7 +310,40 @@ public enum NSFPathUtil {
 	 * @throws RuntimeException wrapping any exception thrown by the main body
 	 */
 	public static <T> T callWithDocument(NSFPath path, String cacheId, NotesDocumentFunction<T> func) {
-		return callWithDatabase(path, cacheId, database -> {
+		return NotesThreadFactory.join(callWithDocumentAsync(path, cacheId, func));
+	}
+	
+	/**
+	 * Asynchronously executes the provided function with a document for the provided path.
+	 * 
+	 * @param <T> the type returned by {@code func}
+	 * @param path the context {@link NSFPath}
+	 * @param cacheId an identifier used to cache the result based on the database modification
+	 * 			time. Pass {@code null} to skip cache
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 * @since 2.3.0
+	 */
+	public static <T> CompletableFuture<T> callWithDocumentAsync(NSFPath path, String cacheId, NotesDocumentFunction<T> func) {
+		return callWithDocumentAsync(NotesThreadFactory.executor, path, cacheId, func);
+	}
+	
+	/**
+	 * Asynchronously executes the provided function with a document for the provided path
+	 * on the provided execution lane.
+	 * 
+	 * @param <T> the type returned by {@code func}
+	 * @param lane the executor to use for uncached calls, such as
+	 * 			{@link NotesThreadFactory#contentExecutor} for bulk transfers
+	 * @param path the context {@link NSFPath}
+	 * @param cacheId an identifier used to cache the result based on the database modification
+	 * 			time. Pass {@code null} to skip cache
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 * @since 2.3.0
+	 */
+	public static <T> CompletableFuture<T> callWithDocumentAsync(NotesExecutor lane, NSFPath path, String cacheId, NotesDocumentFunction<T> func) {
+		return callWithDatabaseAsync(lane, path, cacheId, database -> {
 			Document doc = NSFStoreNSFAccessor.getDocument(path, database);
 			return func.apply(doc);
 		});
@@ -221,17 +357,52 @@ public enum NSFPathUtil {
 	 * @throws RuntimeException wrapping any exception thrown by the main body
 	 */
 	public static void runWithDocument(NSFPath path, NotesDocumentConsumer consumer) {
-		runWithDatabase(path, database -> {
+		NotesThreadFactory.join(runWithDocumentAsync(path, consumer));
+	}
+	
+	/**
+	 * Asynchronously executes the provided function with a document for the provided path.
+	 * 
+	 * @param path the context {@link NSFPath}
+	 * @param consumer the consumer to call
+	 * @return a {@link CompletableFuture} completed when {@code consumer} returns
+	 * @since 2.3.0
+	 */
+	public static CompletableFuture<Void> runWithDocumentAsync(NSFPath path, NotesDocumentConsumer consumer) {
+		return runWithDocumentAsync(NotesThreadFactory.executor, path, consumer);
+	}
+	
+	/**
+	 * Asynchronously executes the provided function with a document for the provided path
+	 * on the provided execution lane.
+	 * 
+	 * @param lane the executor to use, such as {@link NotesThreadFactory#contentExecutor}
+	 * 			for bulk transfers
+	 * @param path the context {@link NSFPath}
+	 * @param consumer the consumer to call
+	 * @return a {@link CompletableFuture} completed when {@code consumer} returns
+	 * @since 2.3.0
+	 */
+	public static CompletableFuture<Void> runWithDocumentAsync(NotesExecutor lane, NSFPath path, NotesDocumentConsumer consumer) {
+		return runWithDatabaseAsync(lane, path, database -> {
 			Document doc = NSFStoreNSFAccessor.getDocument(path, database);
 			consumer.accept(doc);
 		});
 	}
 	
 	private static final Map<String, TimedCacheHolder> PER_DATABASE_CACHE = Collections.synchronizedMap(new HashMap<>());
+	static {
+		DatabaseChangePoller.instance.addListener(NSFPathUtil::invalidateDatabaseCache);
+	}
 
 	/**
 	 * Executes the provided function with the database for the provided path.
 	 * 
+	 * <p>When {@code cacheId} is provided, the database modification time is taken from
+	 * {@link DatabaseChangePoller}, so that a cache hit does not require a call to Domino.
+	 * The maximum staleness is controlled per mount by
+	 * {@link NSFFileSystem#ENV_CHANGEPOLLINTERVAL}.</p>
+	 * 
 	 * @param <T> the type returned by {@code func}
 	 * @param path the context {@link NSFPath}
 	 * @param cacheId an identifier used to cache the result based on the database modification
@@ -240,45 +411,114 @@ public enum NSFPathUtil {
 	 * @return the return value of {@code func}
 	 * @throws RuntimeException wrapping any exception thrown by the main body
 	 */
-	@SuppressWarnings("unchecked")
 	public static <T> T callWithDatabase(NSFPath path, String cacheId, NotesDatabaseFunction<T> func) {
-		return NotesThreadFactory.callAs(NSFFileUtil.dn(path.getFileSystem().getUserName()), client -> {
-			Database database = getDatabase(client, path.getFileSystem());
-			if(StringUtil.isEmpty(cacheId)) {
+		return NotesThreadFactory.join(callWithDatabaseAsync(path, cacheId, func));
+	}
+
+	/**
+	 * Asynchronously executes the provided function with the database for the provided path.
+	 * 
+	 * <p>Cache hits complete immediately on the calling thread; otherwise, the returned
+	 * future is completed on a Notes worker.</p>
+	 * 
+	 * @param <T> the type returned by {@code func}
+	 * @param path the context {@link NSFPath}
+	 * @param cacheId an identifier used to cache the result based on the database modification
+	 * 			time. Pass {@code null} to skip cache
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 * @since 2.3.0
+	 */
+	public static <T> CompletableFuture<T> callWithDatabaseAsync(NSFPath path, String cacheId, NotesDatabaseFunction<T> func) {
+		return callWithDatabaseAsync(NotesThreadFactory.executor, path, cacheId, func);
+	}
+
+	/**
+	 * Asynchronously executes the provided function with the database for the provided path
+	 * on the provided execution lane.
+	 * 
+	 * @param <T> the type returned by {@code func}
+	 * @param lane the executor to use for uncached calls, such as
+	 * 			{@link NotesThreadFactory#contentExecutor} for bulk transfers
+	 * @param path the context {@link NSFPath}
+	 * @param cacheId an identifier used to cache the result based on the database modification
+	 * 			time. Pass {@code null} to skip cache
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 * @since 2.3.0
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> CompletableFuture<T> callWithDatabaseAsync(NotesExecutor lane, NSFPath path, String cacheId, NotesDatabaseFunction<T> func) {
+		NSFFileSystem fileSystem = path.getFileSystem();
+		if(StringUtil.isEmpty(cacheId)) {
+			return NotesThreadFactory.callAsAsync(lane, NSFFileUtil.dn(fileSystem.getUserName()), getCacheKey(fileSystem), client -> {
+				Database database = getDatabase(client, fileSystem);
 				return func.apply(database);
-			} else {
+			});
+		}
+		
+		TimedCacheHolder cacheHolder = PER_DATABASE_CACHE.computeIfAbsent(getCacheKey(fileSystem), key -> new TimedCacheHolder());
+		long interval = fileSystem.getLongOption(NSFFileSystem.ENV_CHANGEPOLLINTERVAL, DatabaseChangePoller.DEFAULT_INTERVAL);
+		if(interval <= 0) {
+			// Then the caller wants the database checked on every call
+			return NotesThreadFactory.callAsAsync(lane, NSFFileUtil.dn(fileSystem.getUserName()), getCacheKey(fileSystem), client -> {
+				Database database = getDatabase(client, fileSystem);
 				Ref<DominoDateTime> mod = new Ref<>();
 				database.getModifiedTime(mod, null);
 				long modTime = Instant.from(mod.get()).toEpochMilli();
-				String dbKey = database.getRelativeFilePath() + "//" + client.getEffectiveUserName(); //$NON-NLS-1$
-				TimedCacheHolder cacheHolder = PER_DATABASE_CACHE.computeIfAbsent(dbKey, key -> new TimedCacheHolder());
-				return (T)cacheHolder.get(modTime).computeIfAbsent(cacheId, key -> {
-					try {
-						return func.apply(database);
-					} catch (Exception e) {
-						if(log.isLoggable(Level.SEVERE)) {
-							log.log(Level.SEVERE, MessageFormat.format("Encountered exception accessing database for path {0}", path), e);
-						}
-						throw new RuntimeException(e);
+				Map<String, Object> cache = cacheHolder.get(modTime);
+				Object cached = cache.get(cacheId);
+				if(cached != null) {
+					return (T)cached;
+				}
+				// Load outside of any map lock so that other keys are not held up
+				T result;
+				try {
+					result = func.apply(database);
+				} catch (Exception e) {
+					if(log.isLoggable(Level.SEVERE)) {
+						log.log(Level.SEVERE, MessageFormat.format("Encountered exception accessing database for path {0}", path), e);
 					}
-				});
-			}
-		});
+					throw e;
+				}
+				if(result != null) {
+					Object existing = cache.putIfAbsent(cacheId, result);
+					if(existing != null) {
+						return (T)existing;
+					}
+				}
+				return result;
+			});
+		}
+		
+		long modTime = DatabaseChangePoller.instance.getModifiedTime(fileSystem.getNsfPath(), interval);
+		// Identical concurrent lookups share a single trip to Domino
+		return cacheHolder.getOrLoad(modTime, cacheId, () -> NotesThreadFactory.callAsAsync(lane, NSFFileUtil.dn(fileSystem.getUserName()), getCacheKey(fileSystem), client -> {
+			Database database = getDatabase(client, fileSystem);
+			return func.apply(database);
+		}));
+	}
+	
+	/**
+	 * Invalidates any in-memory cache for the database housing the provided path.
+	 * 
+	 * @param path a path within the database to invalidate
+	 * @since 2.3.0
+	 */
+	public static void invalidateDatabaseCache(NSFPath path) {
+		invalidateDatabaseCache(path.getFileSystem().getNsfPath());
 	}
 	
 	/**
 	 * Invalidates any in-memory cache for the provided database.
 	 * 
-	 * @param database 
+	 * @param nsfPath the API path of the database to invalidate
+	 * @since 2.3.0
 	 */
-	public static synchronized void invalidateDatabaseCache(Database database) {
-		String dbKeyPrefix = database.getRelativeFilePath();
-		Iterator<String> iter = PER_DATABASE_CACHE.keySet().iterator();
-		while(iter.hasNext()) {
-			String key = iter.next();
-			if(key.startsWith(dbKeyPrefix+"//")) { //$NON-NLS-1$
-				iter.remove();
-			}
+	public static void invalidateDatabaseCache(String nsfPath) {
+		String dbKeyPrefix = nsfPath + "//"; //$NON-NLS-1$
+		synchronized(PER_DATABASE_CACHE) {
+			PER_DATABASE_CACHE.keySet().removeIf(key -> key.startsWith(dbKeyPrefix));
 		}
 	}
 
@@ -290,9 +530,37 @@ public enum NSFPathUtil {
 	 * @throws RuntimeException wrapping any exception thrown by the main body
 	 */
 	public static void runWithDatabase(NSFPath path, NotesDatabaseConsumer consumer) {
-		NotesThreadFactory.runAs(NSFFileUtil.dn(path.getFileSystem().getUserName()), session -> {
+		NotesThreadFactory.join(runWithDatabaseAsync(path, consumer));
+	}
+
+	/**
+	 * Asynchronously executes the provided function with the database for the provided path.
+	 * 
+	 * @param path the context {@link NSFPath}
+	 * @param consumer the function to call
+	 * @return a {@link CompletableFuture} completed when {@code consumer} returns
+	 * @since 2.3.0
+	 */
+	public static CompletableFuture<Void> runWithDatabaseAsync(NSFPath path, NotesDatabaseConsumer consumer) {
+		return runWithDatabaseAsync(NotesThreadFactory.executor, path, consumer);
+	}
+
+	/**
+	 * Asynchronously executes the provided function with the database for the provided path
+	 * on the provided execution lane.
+	 * 
+	 * @param lane the executor to use, such as {@link NotesThreadFactory#contentExecutor}
+	 * 			for bulk transfers
+	 * @param path the context {@link NSFPath}
+	 * @param consumer the function to call
+	 * @return a {@link CompletableFuture} completed when {@code consumer} returns
+	 * @since 2.3.0
+	 */
+	public static CompletableFuture<Void> runWithDatabaseAsync(NotesExecutor lane, NSFPath path, NotesDatabaseConsumer consumer) {
+		return NotesThreadFactory.callAsAsync(lane, NSFFileUtil.dn(path.getFileSystem().getUserName()), getCacheKey(path.getFileSystem()), session -> {
 			Database database = getDatabase(session, path.getFileSystem());
 			consumer.accept(database);
+			return null;
 		});
 	}
 	
@@ -301,6 +569,10 @@ public enum NSFPathUtil {
 	// * Internal utilities
 	// *******************************************************************************
 	
+	private static String getCacheKey(NSFFileSystem fileSystem) {
+		return fileSystem.getNsfPath() + "//" + fileSystem.getUserName(); //$NON-NLS-1$
+	}
+	
 	private static Database getDatabase(DominoClient client, NSFFileSystem fileSystem) {
 		String nsfPath = fileSystem.getNsfPath();
 		return client.openDatabase(nsfPath);
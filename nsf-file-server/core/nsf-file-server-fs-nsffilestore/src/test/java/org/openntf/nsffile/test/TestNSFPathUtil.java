@@ -16,6 +16,8 @@
 package org.openntf.nsffile.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -147,4 +149,27 @@ public class TestNSFPathUtil {
 		URI uri = NSFPathUtil.toFileSystemURI(null, apiPath, "foo", "bar");
 		assertEquals("/foo/bar", NSFPathUtil.extractPathInfo(uri));
 	}
+	
+	@Test
+	public void testPathUnid() {
+		String unid = NSFPathUtil.toPathUnid("/foo/bar.txt", 0);
+		assertEquals(32, unid.length());
+		assertTrue(unid.matches("[0-9A-F]{32}"), unid);
+		assertEquals(unid, NSFPathUtil.toPathUnid("/foo/bar.txt", 0));
+	}
+	
+	@Test
+	public void testPathUnidNormalized() {
+		assertEquals(NSFPathUtil.toPathUnid("/Foo/Bar.txt", 0), NSFPathUtil.toPathUnid("/foo/bar.txt", 0));
+		// Composed and decomposed forms of "é"
+		assertEquals(NSFPathUtil.toPathUnid("/caf\u00e9", 0), NSFPathUtil.toPathUnid("/cafe\u0301", 0));
+	}
+	
+	@Test
+	public void testPathUnidDistinct() {
+		String unid = NSFPathUtil.toPathUnid("/foo/bar.txt", 0);
+		assertNotEquals(unid, NSFPathUtil.toPathUnid("/foo/bar.txt", 1));
+		assertNotEquals(unid, NSFPathUtil.toPathUnid("/foo/bar.tx", 0));
+		assertNotEquals(NSFPathUtil.toPathUnid("/foo/bar.txt", 1), NSFPathUtil.toPathUnid("/foo/bar.txt", 2));
+	}
 }
@@ -37,11 +37,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -53,6 +55,7 @@ import com.hcl.domino.data.Database;
 import com.hcl.domino.data.Document;
 import com.hcl.domino.data.DocumentClass;
 import com.hcl.domino.data.DominoDateTime;
+import com.hcl.domino.data.Item;
 import com.hcl.domino.data.UserData;
 import com.hcl.domino.design.DesignElement;
 import com.hcl.domino.design.DesignEntry;
@@ -66,10 +69,13 @@ import org.openntf.nsffile.core.NotesPrincipal;
 import org.openntf.nsffile.core.fs.attribute.NSFFileAttributes;
 import org.openntf.nsffile.core.fs.attribute.NSFFileAttributes.Type;
 import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.core.util.NotesThreadFactory;
 import org.openntf.nsffile.fs.abstractnsf.NSFPath;
 import org.openntf.nsffile.fs.abstractnsf.attribute.NSFUserDefinedFileAttributeView;
 import org.openntf.nsffile.fs.abstractnsf.attribute.RootFileAttributes;
-import org.openntf.nsffile.fs.abstractnsf.db.NSFAccessor;
+import org.openntf.nsffile.fs.abstractnsf.db.AsyncNSFAccessor;
+import org.openntf.nsffile.fs.abstractnsf.db.MissingPathCache;
+import org.openntf.nsffile.fs.abstractnsf.db.NSFFileSnapshot;
 import org.openntf.nsffile.fs.nsfwebcontent.util.WebContentPathUtil;
 
 /**
@@ -78,7 +84,7 @@ import org.openntf.nsffile.fs.nsfwebcontent.util.WebContentPathUtil;
  * @author Jesse Gallagher
  * @since 2.0.0
  */
-public enum WebContentNSFAccessor implements NSFAccessor {
+public enum WebContentNSFAccessor implements AsyncNSFAccessor {
 	instance;
 	private static final Logger log = Logger.getLogger(WebContentNSFAccessor.class.getPackage().getName());
 	
@@ -92,10 +98,17 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 	 */
 	private final Map<String, Collection<String>> virtualDirsPerNsf = new ConcurrentHashMap<>();
 	
+	private final MissingPathCache missingPaths = new MissingPathCache();
+	
 	@Override
 	public List<String> getDirectoryEntries(NSFPath dir) {
+		return NotesThreadFactory.join(getDirectoryEntriesAsync(dir));
+	}
+	
+	@Override
+	public CompletableFuture<List<String>> getDirectoryEntriesAsync(NSFPath dir) {
 		String cacheId = "entries-" + dir; //$NON-NLS-1$
-		return WebContentPathUtil.callWithDatabase(dir, cacheId, database -> {
+		return WebContentPathUtil.callWithDatabaseAsync(dir, cacheId, database -> {
 			String path = WebContentPathUtil.toFileName(dir);
 			long slashes = countChars(path, '/');
 			Set<String> result = streamWebContent(database)
@@ -136,7 +149,13 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 	
 	@Override
 	public Path extractAttachment(NSFPath path) {
-		return WebContentPathUtil.callWithDatabase(path, null, database -> {
+		return NotesThreadFactory.join(extractAttachmentAsync(path));
+	}
+	
+	@Override
+	public CompletableFuture<Path> extractAttachmentAsync(NSFPath path) {
+		// File content goes through its own lane to avoid delaying metadata calls
+		return WebContentPathUtil.callWithDatabaseAsync(NotesThreadFactory.contentExecutor, path, null, database -> {
 			String p = WebContentPathUtil.toFileName(path);
 			Path result = NSFFileUtil.createTempFile();
 			Optional<InputStream> optStream = database.getDesign().getResourceAsStream(p);
@@ -157,7 +176,12 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 	
 	@Override
 	public void storeAttachment(NSFPath path, Path attachmentData) throws IOException {
-		WebContentPathUtil.runWithDatabase(path, database -> {
+		NotesThreadFactory.join(storeAttachmentAsync(path, attachmentData));
+	}
+	
+	@Override
+	public CompletableFuture<Void> storeAttachmentAsync(NSFPath path, Path attachmentData) {
+		return WebContentPathUtil.runWithDatabaseAsync(NotesThreadFactory.contentExecutor, path, database -> {
 			String p = WebContentPathUtil.toFileName(path);
 			Consumer<DesignElement> callback = element -> {
 				FileResource res = (FileResource)element;
@@ -171,6 +195,9 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 			try(OutputStream os = database.getDesign().newResourceOutputStream(p, callback)) {
 				Files.copy(attachmentData, os);
 			}
+		}).whenComplete((result, t) -> {
+			WebContentPathUtil.invalidateDatabaseCache(path);
+			missingPaths.invalidate(path);
 		});
 	}
 	
@@ -180,6 +207,8 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 		String nsfPath = dir.getFileSystem().getNsfPath();
 		Collection<String> virtualDirs = virtualDirsPerNsf.computeIfAbsent(nsfPath, key -> new TreeSet<>(String.CASE_INSENSITIVE_ORDER));
 		virtualDirs.add(WebContentPathUtil.toFileName(dir));
+		WebContentPathUtil.invalidateDatabaseCache(dir);
+		missingPaths.invalidate(dir);
 	}
 
 	@Override
@@ -198,6 +227,7 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 				}
 			}
 		});
+		WebContentPathUtil.invalidateDatabaseCache(path);
 	}
 	
 	@Override
@@ -214,18 +244,27 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 	
 	@Override
 	public boolean exists(NSFPath path) {
+		return NotesThreadFactory.join(existsAsync(path));
+	}
+	
+	@Override
+	public CompletableFuture<Boolean> existsAsync(NSFPath path) {
 		if("/".equals(path.toString()) || "/.".equals(path.toString())) { //$NON-NLS-1$ //$NON-NLS-2$
-			return true;
+			return CompletableFuture.completedFuture(true);
 		}
 		
 		// Could be a virtual directory created earlier
 		Collection<String> virtualDirs = virtualDirsPerNsf.computeIfAbsent(path.getFileSystem().getNsfPath(), key -> new TreeSet<>(String.CASE_INSENSITIVE_ORDER));
 		if(virtualDirs.contains(WebContentPathUtil.toFileName(path))) {
-			return true;
+			return CompletableFuture.completedFuture(true);
 		}
 		
+		if(missingPaths.isMissing(path)) {
+			return CompletableFuture.completedFuture(false);
+		}
+		long stamp = missingPaths.stamp();
 		String cacheId = "exists-" + path; //$NON-NLS-1$
-		return WebContentPathUtil.callWithDatabase(path, cacheId, database -> {
+		return WebContentPathUtil.callWithDatabaseAsync(path, cacheId, database -> {
 			String p = WebContentPathUtil.toFileName(path);
 			boolean regularFile = database.getDesign().getFileResource(p, true).isPresent();
 			if(regularFile) {
@@ -242,68 +281,57 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 					return false;
 				}
 			}
+		}).thenApply(exists -> {
+			if(!exists) {
+				missingPaths.markMissing(path, stamp);
+			}
+			return exists;
 		});
 	}
-
+	
 	@Override
-	public NSFFileAttributes readAttributes(NSFPath path) {
-		String cacheId = "attrs-" + path; //$NON-NLS-1$
-		return WebContentPathUtil.callWithDocument(path, cacheId, doc -> {
-			NotesPrincipal owner;
-			NotesPrincipal group;
-			Type type;
-			FileTime lastModified;
-			FileTime lastAccessed;
-			FileTime created;
-			long size;
-			Set<PosixFilePermission> permissions;
-			
-			if(doc == null) {
-				// Then it's a directory, which has no in-NSF representation
-				owner = new NotesPrincipal("CN=root"); //$NON-NLS-1$
-				group = new NotesPrincipal("CN=wheel"); //$NON-NLS-1$
-				type = Type.Folder;
-				lastModified = FileTime.from(Instant.EPOCH);
-				lastAccessed = FileTime.from(Instant.EPOCH);
-				created = FileTime.from(Instant.EPOCH);
-				size = 0;
-				permissions = EnumSet.allOf(PosixFilePermission.class);
-			} else if(!doc.isNew()) {
-				String user;
-				try {
-					user = doc.getSigner();
-				} catch(ItemNotFoundException e) {
-					// Seen when signatures are a mess - move to n to avoid trouble
-					user = "unknown"; //$NON-NLS-1$
-				}
-				owner = new NotesPrincipal(user);
-				group = new NotesPrincipal(user);
-				type = Type.File;
-				
-				lastModified = FileTime.from(Instant.from(doc.getModifiedInThisFile()));
-				
-				// TODO check for minimum
-				lastAccessed = FileTime.from(Instant.from(doc.getLastAccessed()));
-				
-				created = FileTime.from(Instant.from(doc.getCreated()));
-
-				size = doc.getAsInt("$FileSize", 0); //$NON-NLS-1$
-				
-				permissions = PosixFilePermissions.fromString("rwx------"); //$NON-NLS-1$
+	public CompletableFuture<Optional<NSFFileAttributes>> statAsync(NSFPath path) {
+		return snapshotAsync(path).thenApply(snapshot -> snapshot.map(NSFFileSnapshot::getAttributes));
+	}
+	
+	@Override
+	public Optional<NSFFileSnapshot> snapshot(NSFPath path) throws IOException {
+		try {
+			return NotesThreadFactory.join(snapshotAsync(path));
+		} catch(RuntimeException e) {
+			if(log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, MessageFormat.format("Encountered exception reading {0}", path), e);
+			}
+			throw new IOException(e);
+		}
+	}
+	
+	@Override
+	public CompletableFuture<Optional<NSFFileSnapshot>> snapshotAsync(NSFPath path) {
+		return existsAsync(path).thenCompose(exists -> {
+			if(exists) {
+				String cacheId = "snapshot-" + path; //$NON-NLS-1$
+				return WebContentPathUtil.callWithDocumentAsync(path, cacheId, doc -> {
+					// Directories have no document and so no user-defined attributes
+					Map<String, byte[]> userAttributes = doc == null ? Collections.emptyMap() : toUserAttributes(doc);
+					return Optional.of(new NSFFileSnapshot(toAttributes(doc), userAttributes));
+				});
 			} else {
-				owner = new NotesPrincipal("CN=root"); //$NON-NLS-1$
-				group = new NotesPrincipal("CN=wheel"); //$NON-NLS-1$
-				type = Type.File;
-				lastModified = FileTime.from(Instant.EPOCH);
-				lastAccessed = FileTime.from(Instant.EPOCH);
-				created = FileTime.from(Instant.EPOCH);
-				size = 0;
-				permissions = EnumSet.allOf(PosixFilePermission.class);
+				return CompletableFuture.completedFuture(Optional.empty());
 			}
-			
-			return new NSFFileAttributes(owner, group, type, lastModified, lastAccessed, created, size, permissions);
 		});
 	}
+
+	@Override
+	public NSFFileAttributes readAttributes(NSFPath path) {
+		return NotesThreadFactory.join(readAttributesAsync(path));
+	}
+	
+	@Override
+	public CompletableFuture<NSFFileAttributes> readAttributesAsync(NSFPath path) {
+		String cacheId = "attrs-" + path; //$NON-NLS-1$
+		return WebContentPathUtil.callWithDocumentAsync(path, cacheId, WebContentNSFAccessor::toAttributes);
+	}
 	
 	@Override
 	public void setOwner(NSFPath path, UserPrincipal owner) throws IOException {
@@ -348,11 +376,13 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 		try {
 			return WebContentPathUtil.callWithDocument(path, null, doc -> {
 				String itemName = PREFIX_USERITEM + name;
-				byte[] data = src.array();
+				byte[] data = new byte[src.remaining()];
+				src.get(data);
 				UserData userData = doc.getParentDatabase().getParentDominoClient().createUserData(DATATYPE_NAME, data);
 				doc.replaceItemValue(itemName, userData);
 				doc.computeWithForm(true, null);
-				WebContentPathUtil.invalidateDatabaseCache(doc.getParentDatabase());
+				doc.save();
+				WebContentPathUtil.invalidateDatabaseCache(path);
 				return data.length;
 			});
 		} catch(RuntimeException e) {
@@ -360,6 +390,8 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 				log.log(Level.SEVERE, MessageFormat.format("Encountered exception setting user-defined attribute {0} on {1}", name, path), e);
 			}
 			throw new IOException(e);
+		} finally {
+			missingPaths.invalidate(path);
 		}
 	}
 
@@ -372,7 +404,7 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 					doc.removeItem(itemName);
 					doc.computeWithForm(true, null);
 					doc.save();
-					WebContentPathUtil.invalidateDatabaseCache(doc.getParentDatabase());
+					WebContentPathUtil.invalidateDatabaseCache(path);
 				}
 			});
 		} catch(RuntimeException e) {
@@ -380,6 +412,8 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 				log.log(Level.SEVERE, MessageFormat.format("Encountered exception deleting user-defined attribute {0} on {1}", name, path), e);
 			}
 			throw new IOException(e);
+		} finally {
+			missingPaths.invalidate(path);
 		}
 	}
 	
@@ -390,18 +424,7 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 			return WebContentPathUtil.callWithDocument(path, cacheId, doc -> {
 				String itemName = PREFIX_USERITEM + name;
 				return doc.getFirstItem(itemName)
-					.map(item -> {
-						switch(item.getType()) {
-						case TYPE_TEXT:
-						case TYPE_TEXT_LIST:
-							return item.get(String.class, "").getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$
-						case TYPE_USERDATA:
-							UserData userData = item.get(UserData.class, null);
-							return userData.getData();
-						default:
-							return new byte[0];
-						}
-					})
+					.map(WebContentNSFAccessor::toUserAttributeValue)
 					.orElseGet(() -> new byte[0]);
 			});
 		} catch(RuntimeException e) {
@@ -457,4 +480,85 @@ public enum WebContentNSFAccessor implements NSFAccessor {
 
 		return "application/octet-stream"; //$NON-NLS-1$
 	}
+	
+	private static NSFFileAttributes toAttributes(Document doc) {
+		NotesPrincipal owner;
+		NotesPrincipal group;
+		Type type;
+		FileTime lastModified;
+		FileTime lastAccessed;
+		FileTime created;
+		long size;
+		Set<PosixFilePermission> permissions;
+		
+		if(doc == null) {
+			// Then it's a directory, which has no in-NSF representation
+			owner = new NotesPrincipal("CN=root"); //$NON-NLS-1$
+			group = new NotesPrincipal("CN=wheel"); //$NON-NLS-1$
+			type = Type.Folder;
+			lastModified = FileTime.from(Instant.EPOCH);
+			lastAccessed = FileTime.from(Instant.EPOCH);
+			created = FileTime.from(Instant.EPOCH);
+			size = 0;
+			permissions = EnumSet.allOf(PosixFilePermission.class);
+		} else if(!doc.isNew()) {
+			String user;
+			try {
+				user = doc.getSigner();
+			} catch(ItemNotFoundException e) {
+				// Seen when signatures are a mess - move to n to avoid trouble
+				user = "unknown"; //$NON-NLS-1$
+			}
+			owner = new NotesPrincipal(user);
+			group = new NotesPrincipal(user);
+			type = Type.File;
+			
+			lastModified = FileTime.from(Instant.from(doc.getModifiedInThisFile()));
+			
+			// TODO check for minimum
+			lastAccessed = FileTime.from(Instant.from(doc.getLastAccessed()));
+			
+			created = FileTime.from(Instant.from(doc.getCreated()));
+
+			size = doc.getAsInt("$FileSize", 0); //$NON-NLS-1$
+			
+			permissions = PosixFilePermissions.fromString("rwx------"); //$NON-NLS-1$
+		} else {
+			owner = new NotesPrincipal("CN=root"); //$NON-NLS-1$
+			group = new NotesPrincipal("CN=wheel"); //$NON-NLS-1$
+			type = Type.File;
+			lastModified = FileTime.from(Instant.EPOCH);
+			lastAccessed = FileTime.from(Instant.EPOCH);
+			created = FileTime.from(Instant.EPOCH);
+			size = 0;
+			permissions = EnumSet.allOf(PosixFilePermission.class);
+		}
+		
+		return new NSFFileAttributes(owner, group, type, lastModified, lastAccessed, created, size, permissions);
+	}
+	
+	private static Map<String, byte[]> toUserAttributes(Document doc) {
+		Map<String, byte[]> result = new LinkedHashMap<>();
+		for(String itemName : doc.getItemNames()) {
+			if(itemName.startsWith(PREFIX_USERITEM) && itemName.length() > PREFIX_USERITEM.length()) {
+				doc.getFirstItem(itemName).ifPresent(item ->
+					result.put(itemName.substring(PREFIX_USERITEM.length()), toUserAttributeValue(item))
+				);
+			}
+		}
+		return result;
+	}
+	
+	private static byte[] toUserAttributeValue(Item item) {
+		switch(item.getType()) {
+		case TYPE_TEXT:
+		case TYPE_TEXT_LIST:
+			return item.get(String.class, "").getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$
+		case TYPE_USERDATA:
+			UserData userData = item.get(UserData.class, null);
+			return userData.getData();
+		default:
+			return new byte[0];
+		}
+	}
 }
@@ -20,12 +20,12 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.FileSystem;
 import java.text.MessageFormat;
-import java.util.Collections;
 import java.util.Map;
 
 import com.ibm.commons.util.StringUtil;
 
 import org.openntf.nsffile.core.spi.FileSystemMountProvider;
+import org.openntf.nsffile.core.util.DatabaseChangePoller;
 import org.openntf.nsffile.fs.nsfwebcontent.WebContentFileSystemProvider;
 import org.openntf.nsffile.fs.nsfwebcontent.util.WebContentPathUtil;
 
@@ -45,10 +45,21 @@ public class WebContentMountProvider implements FileSystemMountProvider {
 		}
 		try {
 			URI uri = WebContentPathUtil.toFileSystemURI(username, dataSource);
-			return WebContentFileSystemProvider.instance.getOrCreateFileSystem(uri, Collections.emptyMap());
+			return WebContentFileSystemProvider.instance.getOrCreateFileSystem(uri, env);
 		} catch (URISyntaxException e) {
 			throw new IOException(MessageFormat.format("Unable to build URI for data source {0}", dataSource), e);
 		}
 	}
+	
+	@Override
+	public void flushCaches(String dataSource) {
+		try {
+			// Round-trip through the URI form to get the same API path that filesystems use
+			String nsfPath = WebContentPathUtil.extractApiPath(WebContentPathUtil.toFileSystemURI(null, dataSource));
+			DatabaseChangePoller.instance.invalidate(nsfPath);
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException(MessageFormat.format("Unable to build URI for data source {0}", dataSource), e);
+		}
+	}
 
 }
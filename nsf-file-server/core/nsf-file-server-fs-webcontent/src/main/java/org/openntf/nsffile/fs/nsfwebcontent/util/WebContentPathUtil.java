@@ -22,14 +22,16 @@ import java.time.Instant;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.openntf.nsffile.core.util.DatabaseChangePoller;
 import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.core.util.NotesExecutor;
 import org.openntf.nsffile.core.util.NotesThreadFactory;
 import org.openntf.nsffile.core.util.TimedCacheHolder;
 import org.openntf.nsffile.fs.abstractnsf.NSFFileSystem;
@@ -207,7 +209,40 @@ public enum WebContentPathUtil {
 	 * @throws RuntimeException wrapping any exception thrown by the main body
 	 */
 	public static <T> T callWithDocument(NSFPath path, String cacheId, NotesDocumentFunction<T> func) {
-		return callWithDatabase(path, cacheId, database -> {
+		return NotesThreadFactory.join(callWithDocumentAsync(path, cacheId, func));
+	}
+	
+	/**
+	 * Asynchronously executes the provided function with a document for the provided path.
+	 * 
+	 * @param <T> the type returned by {@code func}
+	 * @param path the context {@link NSFPath}
+	 * @param cacheId an identifier used to cache the result based on the database modification
+	 * 			time. Pass {@code null} to skip cache
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 * @since 2.3.0
+	 */
+	public static <T> CompletableFuture<T> callWithDocumentAsync(NSFPath path, String cacheId, NotesDocumentFunction<T> func) {
+		return callWithDocumentAsync(NotesThreadFactory.executor, path, cacheId, func);
+	}
+	
+	/**
+	 * Asynchronously executes the provided function with a document for the provided path
+	 * on the provided execution lane.
+	 * 
+	 * @param <T> the type returned by {@code func}
+	 * @param lane the executor to use for uncached calls, such as
+	 * 			{@link NotesThreadFactory#contentExecutor} for bulk transfers
+	 * @param path the context {@link NSFPath}
+	 * @param cacheId an identifier used to cache the result based on the database modification
+	 * 			time. Pass {@code null} to skip cache
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 * @since 2.3.0
+	 */
+	public static <T> CompletableFuture<T> callWithDocumentAsync(NotesExecutor lane, NSFPath path, String cacheId, NotesDocumentFunction<T> func) {
+		return callWithDatabaseAsync(lane, path, cacheId, database -> {
 			Document doc = WebContentNSFAccessor.getDocument(path, database);
 			return func.apply(doc);
 		});
@@ -221,17 +256,52 @@ public enum WebContentPathUtil {
 	 * @throws RuntimeException wrapping any exception thrown by the main body
 	 */
 	public static void runWithDocument(NSFPath path, NotesDocumentConsumer consumer) {
-		runWithDatabase(path, database -> {
+		NotesThreadFactory.join(runWithDocumentAsync(path, consumer));
+	}
+	
+	/**
+	 * Asynchronously executes the provided function with a document for the provided path.
+	 * 
+	 * @param path the context {@link NSFPath}
+	 * @param consumer the consumer to call
+	 * @return a {@link CompletableFuture} completed when {@code consumer} returns
+	 * @since 2.3.0
+	 */
+	public static CompletableFuture<Void> runWithDocumentAsync(NSFPath path, NotesDocumentConsumer consumer) {
+		return runWithDocumentAsync(NotesThreadFactory.executor, path, consumer);
+	}
+	
+	/**
+	 * Asynchronously executes the provided function with a document for the provided path
+	 * on the provided execution lane.
+	 * 
+	 * @param lane the executor to use, such as {@link NotesThreadFactory#contentExecutor}
+	 * 			for bulk transfers
+	 * @param path the context {@link NSFPath}
+	 * @param consumer the consumer to call
+	 * @return a {@link CompletableFuture} completed when {@code consumer} returns
+	 * @since 2.3.0
+	 */
+	public static CompletableFuture<Void> runWithDocumentAsync(NotesExecutor lane, NSFPath path, NotesDocumentConsumer consumer) {
+		return runWithDatabaseAsync(lane, path, database -> {
 			Document doc = WebContentNSFAccessor.getDocument(path, database);
 			consumer.accept(doc);
 		});
 	}
 	
 	private static final Map<String, TimedCacheHolder> PER_DATABASE_CACHE = Collections.synchronizedMap(new HashMap<>());
+	static {
+		DatabaseChangePoller.instance.addListener(WebContentPathUtil::invalidateDatabaseCache);
+	}
 
 	/**
 	 * Executes the provided function with the database for the provided path.
 	 * 
+	 * <p>When {@code cacheId} is provided, the database modification time is taken from
+	 * {@link DatabaseChangePoller}, so that a cache hit does not require a call to Domino.
+	 * The maximum staleness is controlled per mount by
+	 * {@link NSFFileSystem#ENV_CHANGEPOLLINTERVAL}.</p>
+	 * 
 	 * @param <T> the type returned by {@code func}
 	 * @param path the context {@link NSFPath}
 	 * @param cacheId an identifier used to cache the result based on the database modification
@@ -240,45 +310,114 @@ public enum WebContentPathUtil {
 	 * @return the return value of {@code func}
 	 * @throws RuntimeException wrapping any exception thrown by the main body
 	 */
-	@SuppressWarnings("unchecked")
 	public static <T> T callWithDatabase(NSFPath path, String cacheId, NotesDatabaseFunction<T> func) {
-		return NotesThreadFactory.callAs(NSFFileUtil.dn(path.getFileSystem().getUserName()), client -> {
-			Database database = getDatabase(client, path.getFileSystem());
-			if(StringUtil.isEmpty(cacheId)) {
+		return NotesThreadFactory.join(callWithDatabaseAsync(path, cacheId, func));
+	}
+
+	/**
+	 * Asynchronously executes the provided function with the database for the provided path.
+	 * 
+	 * <p>Cache hits complete immediately on the calling thread; otherwise, the returned
+	 * future is completed on a Notes worker.</p>
+	 * 
+	 * @param <T> the type returned by {@code func}
+	 * @param path the context {@link NSFPath}
+	 * @param cacheId an identifier used to cache the result based on the database modification
+	 * 			time. Pass {@code null} to skip cache
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 * @since 2.3.0
+	 */
+	public static <T> CompletableFuture<T> callWithDatabaseAsync(NSFPath path, String cacheId, NotesDatabaseFunction<T> func) {
+		return callWithDatabaseAsync(NotesThreadFactory.executor, path, cacheId, func);
+	}
+
+	/**
+	 * Asynchronously executes the provided function with the database for the provided path
+	 * on the provided execution lane.
+	 * 
+	 * @param <T> the type returned by {@code func}
+	 * @param lane the executor to use for uncached calls, such as
+	 * 			{@link NotesThreadFactory#contentExecutor} for bulk transfers
+	 * @param path the context {@link NSFPath}
+	 * @param cacheId an identifier used to cache the result based on the database modification
+	 * 			time. Pass {@code null} to skip cache
+	 * @param func the function to call
+	 * @return a {@link CompletableFuture} completed with the return value of {@code func}
+	 * @since 2.3.0
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> CompletableFuture<T> callWithDatabaseAsync(NotesExecutor lane, NSFPath path, String cacheId, NotesDatabaseFunction<T> func) {
+		NSFFileSystem fileSystem = path.getFileSystem();
+		if(StringUtil.isEmpty(cacheId)) {
+			return NotesThreadFactory.callAsAsync(lane, NSFFileUtil.dn(fileSystem.getUserName()), getCacheKey(fileSystem), client -> {
+				Database database = getDatabase(client, fileSystem);
 				return func.apply(database);
-			} else {
+			});
+		}
+		
+		TimedCacheHolder cacheHolder = PER_DATABASE_CACHE.computeIfAbsent(getCacheKey(fileSystem), key -> new TimedCacheHolder());
+		long interval = fileSystem.getLongOption(NSFFileSystem.ENV_CHANGEPOLLINTERVAL, DatabaseChangePoller.DEFAULT_INTERVAL);
+		if(interval <= 0) {
+			// Then the caller wants the database checked on every call
+			return NotesThreadFactory.callAsAsync(lane, NSFFileUtil.dn(fileSystem.getUserName()), getCacheKey(fileSystem), client -> {
+				Database database = getDatabase(client, fileSystem);
 				Ref<DominoDateTime> mod = new Ref<>();
 				database.getModifiedTime(null, mod);
 				long modTime = Instant.from(mod.get()).toEpochMilli();
-				String dbKey = database.getRelativeFilePath() + "//" + client.getEffectiveUserName(); //$NON-NLS-1$
-				TimedCacheHolder cacheHolder = PER_DATABASE_CACHE.computeIfAbsent(dbKey, key -> new TimedCacheHolder());
-				return (T)cacheHolder.get(modTime).computeIfAbsent(cacheId, key -> {
-					try {
-						return func.apply(database);
-					} catch (Exception e) {
-						if(log.isLoggable(Level.SEVERE)) {
-							log.log(Level.SEVERE, MessageFormat.format("Encountered exception accessing database for path {0}", path), e);
-						}
-						throw new RuntimeException(e);
+				Map<String, Object> cache = cacheHolder.get(modTime);
+				Object cached = cache.get(cacheId);
+				if(cached != null) {
+					return (T)cached;
+				}
+				// Load outside of any map lock so that other keys are not held up
+				T result;
+				try {
+					result = func.apply(database);
+				} catch (Exception e) {
+					if(log.isLoggable(Level.SEVERE)) {
+						log.log(Level.SEVERE, MessageFormat.format("Encountered exception accessing database for path {0}", path), e);
 					}
-				});
-			}
-		});
+					throw e;
+				}
+				if(result != null) {
+					Object existing = cache.putIfAbsent(cacheId, result);
+					if(existing != null) {
+						return (T)existing;
+					}
+				}
+				return result;
+			});
+		}
+		
+		long modTime = DatabaseChangePoller.instance.getModifiedTime(fileSystem.getNsfPath(), interval);
+		// Identical concurrent lookups share a single trip to Domino
+		return cacheHolder.getOrLoad(modTime, cacheId, () -> NotesThreadFactory.callAsAsync(lane, NSFFileUtil.dn(fileSystem.getUserName()), getCacheKey(fileSystem), client -> {
+			Database database = getDatabase(client, fileSystem);
+			return func.apply(database);
+		}));
+	}
+	
+	/**
+	 * Invalidates any in-memory cache for the database housing the provided path.
+	 * 
+	 * @param path a path within the database to invalidate
+	 * @since 2.3.0
+	 */
+	public static void invalidateDatabaseCache(NSFPath path) {
+		invalidateDatabaseCache(path.getFileSystem().getNsfPath());
 	}
 	
 	/**
 	 * Invalidates any in-memory cache for the provided database.
 	 * 
-	 * @param database 
+	 * @param nsfPath the API path of the database to invalidate
+	 * @since 2.3.0
 	 */
-	public static synchronized void invalidateDatabaseCache(Database database) {
-		String dbKeyPrefix = database.getRelativeFilePath();
-		Iterator<String> iter = PER_DATABASE_CACHE.keySet().iterator();
-		while(iter.hasNext()) {
-			String key = iter.next();
-			if(key.startsWith(dbKeyPrefix+"//")) { //$NON-NLS-1$
-				iter.remove();
-			}
+	public static void invalidateDatabaseCache(String nsfPath) {
+		String dbKeyPrefix = nsfPath + "//"; //$NON-NLS-1$
+		synchronized(PER_DATABASE_CACHE) {
+			PER_DATABASE_CACHE.keySet().removeIf(key -> key.startsWith(dbKeyPrefix));
 		}
 	}
 
@@ -290,9 +429,37 @@ public enum WebContentPathUtil {
 	 * @throws RuntimeException wrapping any exception thrown by the main body
 	 */
 	public static void runWithDatabase(NSFPath path, NotesDatabaseConsumer consumer) {
-		NotesThreadFactory.runAs(NSFFileUtil.dn(path.getFileSystem().getUserName()), session -> {
+		NotesThreadFactory.join(runWithDatabaseAsync(path, consumer));
+	}
+
+	/**
+	 * Asynchronously executes the provided function with the database for the provided path.
+	 * 
+	 * @param path the context {@link NSFPath}
+	 * @param consumer the function to call
+	 * @return a {@link CompletableFuture} completed when {@code consumer} returns
+	 * @since 2.3.0
+	 */
+	public static CompletableFuture<Void> runWithDatabaseAsync(NSFPath path, NotesDatabaseConsumer consumer) {
+		return runWithDatabaseAsync(NotesThreadFactory.executor, path, consumer);
+	}
+
+	/**
+	 * Asynchronously executes the provided function with the database for the provided path
+	 * on the provided execution lane.
+	 * 
+	 * @param lane the executor to use, such as {@link NotesThreadFactory#contentExecutor}
+	 * 			for bulk transfers
+	 * @param path the context {@link NSFPath}
+	 * @param consumer the function to call
+	 * @return a {@link CompletableFuture} completed when {@code consumer} returns
+	 * @since 2.3.0
+	 */
+	public static CompletableFuture<Void> runWithDatabaseAsync(NotesExecutor lane, NSFPath path, NotesDatabaseConsumer consumer) {
+		return NotesThreadFactory.callAsAsync(lane, NSFFileUtil.dn(path.getFileSystem().getUserName()), getCacheKey(path.getFileSystem()), session -> {
 			Database database = getDatabase(session, path.getFileSystem());
 			consumer.accept(database);
+			return null;
 		});
 	}
 	
@@ -301,6 +468,10 @@ public enum WebContentPathUtil {
 	// * Internal utilities
 	// *******************************************************************************
 	
+	private static String getCacheKey(NSFFileSystem fileSystem) {
+		return fileSystem.getNsfPath() + "//" + fileSystem.getUserName(); //$NON-NLS-1$
+	}
+	
 	private static Database getDatabase(DominoClient client, NSFFileSystem fileSystem) {
 		String nsfPath = fileSystem.getNsfPath();
 		return client.openDatabase(nsfPath);
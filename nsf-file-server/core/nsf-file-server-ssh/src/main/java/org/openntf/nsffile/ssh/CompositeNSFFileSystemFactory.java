@@ -31,6 +31,7 @@ public class CompositeNSFFileSystemFactory implements FileSystemFactory {
 
 	@Override
 	public FileSystem createFileSystem(SessionContext session) throws IOException {
-		return DominoNSFConfiguration.instance.buildFileSystem(session.getUsername());
+		// Sessions for the same user share a filesystem, which is closed with the last of them
+		return DominoNSFConfiguration.instance.openFileSystem(session.getUsername());
 	}
 }
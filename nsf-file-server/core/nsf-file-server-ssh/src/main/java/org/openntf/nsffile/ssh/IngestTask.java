@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.ssh;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openntf.nsffile.core.util.ImportProgress;
+import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.core.util.NotesThreadFactory;
+
+/**
+ * Imports a local directory tree into a mounted filesystem on behalf of the server
+ * console, reporting progress periodically.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+@SuppressWarnings("nls")
+public class IngestTask implements Runnable {
+	private static final Logger log = Logger.getLogger(IngestTask.class.getPackage().getName());
+	
+	/** The interval, in seconds, between progress reports */
+	public static final long REPORT_INTERVAL = 10;
+
+	private final Path source;
+	private final Path target;
+	private final int parallelism;
+	private final Consumer<String> console;
+	
+	/**
+	 * @param source the local directory to import
+	 * @param target the path to import into
+	 * @param parallelism the maximum number of files to store at once
+	 * @param console a callback used to report progress to the server console
+	 */
+	public IngestTask(Path source, Path target, int parallelism, Consumer<String> console) {
+		this.source = source;
+		this.target = target;
+		this.parallelism = parallelism;
+		this.console = console;
+	}
+	
+	@Override
+	public void run() {
+		if(!Files.isDirectory(source)) {
+			console.accept(MessageFormat.format("Ingest source {0} is not a directory", source));
+			return;
+		}
+		
+		console.accept(MessageFormat.format("Importing {0} into {1} with {2} workers", source, target, parallelism));
+		ImportProgress progress = new ImportProgress();
+		ScheduledFuture<?> reporter = NotesThreadFactory.scheduler.scheduleWithFixedDelay(() -> {
+			console.accept(MessageFormat.format("Importing {0}: {1}", source, progress.describe()));
+		}, REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.SECONDS);
+		try {
+			NSFFileUtil.importTree(source, target, parallelism, progress);
+			console.accept(MessageFormat.format("Imported {0} into {1}: {2}", source, target, progress.describe()));
+		} catch(Throwable t) {
+			if(log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, MessageFormat.format("Encountered exception importing {0} into {1}", source, target), t);
+			}
+			console.accept(MessageFormat.format("Import of {0} into {1} failed after {2}: {3}", source, target, progress.describe(), t));
+		} finally {
+			reporter.cancel(false);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.ssh;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.sshd.common.AttributeRepository.AttributeKey;
+import org.apache.sshd.common.session.Session;
+
+/**
+ * Tracks the SFTP operations and file data transferred by a single session, so that
+ * busy sessions can be identified from the console.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class SessionActivity {
+	private static final AttributeKey<SessionActivity> KEY = new AttributeKey<>();
+	
+	/**
+	 * @param session the session to retrieve activity for
+	 * @return the activity of the session, created if needed
+	 */
+	public static SessionActivity get(Session session) {
+		return session.computeAttributeIfAbsent(KEY, key -> new SessionActivity());
+	}
+	
+	private final long started = System.currentTimeMillis();
+	private final LongAdder operations = new LongAdder();
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder bytesWritten = new LongAdder();
+	
+	/** Guarded by {@code this} */
+	private long sampleTime = started;
+	/** Guarded by {@code this} */
+	private long sampleBytes;
+	private volatile long recentRate;
+	
+	public void operation() {
+		operations.increment();
+	}
+	
+	public void read(long count) {
+		if(count > 0) {
+			bytesRead.add(count);
+		}
+	}
+	
+	public void written(long count) {
+		if(count > 0) {
+			bytesWritten.add(count);
+		}
+	}
+	
+	/**
+	 * Updates the recent transfer rate to reflect the data transferred since the
+	 * previous call. This is expected to be called periodically.
+	 */
+	public synchronized void sample() {
+		long now = System.currentTimeMillis();
+		long bytes = getBytesRead() + getBytesWritten();
+		if(now > sampleTime) {
+			recentRate = (bytes - sampleBytes) * 1000 / (now - sampleTime);
+		}
+		sampleTime = now;
+		sampleBytes = bytes;
+	}
+	
+	/**
+	 * @return the time the session was first seen, in epoch milliseconds
+	 */
+	public long getStarted() {
+		return started;
+	}
+	
+	public long getOperations() {
+		return operations.sum();
+	}
+	
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+	
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+	
+	/**
+	 * @return the average transfer rate since the session started, in bytes per second
+	 */
+	public long getAverageRate() {
+		long elapsed = Math.max(1, System.currentTimeMillis() - started);
+		return (getBytesRead() + getBytesWritten()) * 1000 / elapsed;
+	}
+	
+	/**
+	 * @return the transfer rate between the two most-recent calls to {@link #sample},
+	 *         in bytes per second
+	 */
+	public long getRecentRate() {
+		return recentRate;
+	}
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.ssh;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.sshd.common.AttributeRepository.AttributeKey;
+import org.apache.sshd.common.SshConstants;
+import org.apache.sshd.common.io.IoAcceptor;
+import org.apache.sshd.common.io.IoServiceEventListener;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+
+/**
+ * Limits the number of concurrent sessions on the server and from each remote
+ * address, closing excess connections as soon as they are accepted and before any
+ * key exchange or authentication work is done.
+ * 
+ * <p>A slot is reserved as each connection is accepted, so that connections accepted
+ * at the same time cannot together exceed the limits. The slot is released when the
+ * session closes, or when the connection fails before its session is created.</p>
+ * 
+ * <p>The per-user limit is enforced by SSHD itself after authentication, and this
+ * class only counts the sessions that it rejects.</p>
+ * 
+ * <p>The server can also be put into a draining state, where all new connections are
+ * refused so that it can be taken out of service without interrupting transfers.</p>
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class SessionAdmissionController implements IoServiceEventListener, SessionListener {
+	private static final Logger log = Logger.getLogger(SessionAdmissionController.class.getPackage().getName());
+	
+	private static final AttributeKey<String> ADDRESS_KEY = new AttributeKey<>();
+	
+	private volatile int maxSessions;
+	private volatile int maxSessionsPerAddress;
+	private volatile boolean draining;
+	
+	private final AtomicInteger sessions = new AtomicInteger();
+	/** Maps remote addresses to their number of open sessions */
+	private final Map<String, AtomicInteger> addressSessions = new ConcurrentHashMap<>();
+	/** Maps the remote ends of accepted connections to their addresses until their sessions are created */
+	private final Map<SocketAddress, String> pending = new ConcurrentHashMap<>();
+	
+	private final LongAdder rejectedDraining = new LongAdder();
+	private final LongAdder rejectedServer = new LongAdder();
+	private final LongAdder rejectedAddress = new LongAdder();
+	private final LongAdder rejectedUser = new LongAdder();
+	
+	public SessionAdmissionController(int maxSessions, int maxSessionsPerAddress) {
+		configure(maxSessions, maxSessionsPerAddress);
+	}
+	
+	/**
+	 * Changes the limits applied to new connections. Existing sessions are not
+	 * affected.
+	 * 
+	 * @param maxSessions the maximum number of concurrent sessions
+	 * @param maxSessionsPerAddress the maximum number of concurrent sessions from a
+	 *        single remote address
+	 */
+	public void configure(int maxSessions, int maxSessionsPerAddress) {
+		this.maxSessions = maxSessions;
+		this.maxSessionsPerAddress = maxSessionsPerAddress;
+	}
+	
+	/**
+	 * Sets whether the server is draining, in which case all new connections are
+	 * refused while existing sessions continue until they disconnect.
+	 * 
+	 * @param draining whether to refuse new connections
+	 */
+	public void setDraining(boolean draining) {
+		this.draining = draining;
+	}
+	
+	public boolean isDraining() {
+		return draining;
+	}
+	
+	// *******************************************************************************
+	// * Connection events
+	// *******************************************************************************
+	
+	@Override
+	public void connectionAccepted(IoAcceptor acceptor, SocketAddress local, SocketAddress remote, SocketAddress service) throws IOException {
+		if(draining) {
+			rejectedDraining.increment();
+			throw reject(remote, "server is draining");
+		}
+		if(!reserveServer()) {
+			rejectedServer.increment();
+			throw reject(remote, "server session limit reached");
+		}
+		String address = toAddress(remote);
+		if(!reserveAddress(address)) {
+			sessions.decrementAndGet();
+			rejectedAddress.increment();
+			throw reject(remote, "address session limit reached");
+		}
+		pending.put(remote, address);
+	}
+	
+	@Override
+	public void abortAcceptedConnection(IoAcceptor acceptor, SocketAddress local, SocketAddress remote, SocketAddress service, Throwable reason) throws IOException {
+		// Also called for connections rejected above, which hold no slot
+		String address = pending.remove(remote);
+		if(address != null) {
+			release(address);
+		}
+	}
+	
+	@Override
+	public void sessionCreated(Session session) {
+		SocketAddress remote = session.getIoSession().getRemoteAddress();
+		String address = pending.remove(remote);
+		if(address == null) {
+			// Not seen when accepted, so count it without applying the limits
+			address = toAddress(remote);
+			sessions.incrementAndGet();
+			addressSessions.computeIfAbsent(address, key -> new AtomicInteger()).incrementAndGet();
+		}
+		session.setAttribute(ADDRESS_KEY, address);
+	}
+	
+	@Override
+	public void sessionDisconnect(Session session, int reason, String msg, String language, boolean initiator) {
+		if(initiator && reason == SshConstants.SSH2_DISCONNECT_TOO_MANY_CONNECTIONS) {
+			// Sent by SSHD when the user's session limit is reached
+			rejectedUser.increment();
+		}
+	}
+	
+	@Override
+	public void sessionClosed(Session session) {
+		String address = session.getAttribute(ADDRESS_KEY);
+		if(address == null) {
+			return;
+		}
+		release(address);
+	}
+	
+	// *******************************************************************************
+	// * Statistics
+	// *******************************************************************************
+	
+	/**
+	 * @return the number of sessions currently counted against the limits
+	 */
+	public int getSessions() {
+		return sessions.get();
+	}
+	
+	/**
+	 * @return the total number of connections rejected because the server was draining
+	 */
+	public long getRejectedDraining() {
+		return rejectedDraining.sum();
+	}
+	
+	/**
+	 * @return the total number of connections rejected because the server was at its
+	 *         session limit
+	 */
+	public long getRejectedServer() {
+		return rejectedServer.sum();
+	}
+	
+	/**
+	 * @return the total number of connections rejected because their remote address was
+	 *         at its session limit
+	 */
+	public long getRejectedAddress() {
+		return rejectedAddress.sum();
+	}
+	
+	/**
+	 * @return the total number of sessions disconnected after authentication because the
+	 *         user was at their session limit
+	 */
+	public long getRejectedUser() {
+		return rejectedUser.sum();
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private boolean reserveServer() {
+		while(true) {
+			int count = sessions.get();
+			if(count >= maxSessions) {
+				return false;
+			}
+			if(sessions.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	private boolean reserveAddress(String address) {
+		boolean[] reserved = new boolean[1];
+		addressSessions.compute(address, (key, count) -> {
+			AtomicInteger result = count == null ? new AtomicInteger() : count;
+			if(result.get() < maxSessionsPerAddress) {
+				result.incrementAndGet();
+				reserved[0] = true;
+			}
+			return result.get() == 0 ? null : result;
+		});
+		return reserved[0];
+	}
+	
+	private void release(String address) {
+		sessions.decrementAndGet();
+		addressSessions.computeIfPresent(address, (key, count) -> count.decrementAndGet() <= 0 ? null : count);
+	}
+	
+	private static IOException reject(SocketAddress remote, String reason) {
+		// Logged at FINE to avoid flooding the log during a connection storm; counts are kept in statistics
+		if(log.isLoggable(Level.FINE)) {
+			log.fine(MessageFormat.format("Rejecting connection from {0}: {1}", remote, reason));
+		}
+		return new IOException(MessageFormat.format("Rejected connection from {0}: {1}", remote, reason));
+	}
+	
+	private static String toAddress(SocketAddress address) {
+		if(address instanceof InetSocketAddress) {
+			InetSocketAddress inet = (InetSocketAddress)address;
+			return inet.getAddress() == null ? inet.getHostString() : inet.getAddress().getHostAddress();
+		}
+		return String.valueOf(address);
+	}
+}
@@ -16,12 +16,24 @@
 package org.openntf.nsffile.ssh;
 
 import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,18 +43,31 @@ import com.hcl.domino.mq.MessageQueue;
 import com.hcl.domino.server.RunJavaAddin;
 import com.hcl.domino.server.ServerStatusLine;
 
+import org.apache.sshd.common.session.helpers.AbstractSession;
+import org.apache.sshd.core.CoreModuleProperties;
 import org.apache.sshd.scp.server.ScpCommandFactory;
 import org.apache.sshd.server.ServerBuilder;
 import org.apache.sshd.server.SshServer;
-import org.apache.sshd.server.auth.password.RejectAllPasswordAuthenticator;
 import org.apache.sshd.server.shell.UnknownCommandFactory;
 import org.apache.sshd.sftp.server.SftpSubsystemFactory;
 import org.openntf.nsffile.core.config.DominoNSFConfiguration;
+import org.openntf.nsffile.core.config.MountDescriptor;
+import org.openntf.nsffile.core.config.ServerConfiguration;
+import org.openntf.nsffile.core.fs.Throttle;
+import org.openntf.nsffile.core.fs.ThrottleManager;
+import org.openntf.nsffile.core.util.LatencyHistogram;
+import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.core.util.NotesExecutor;
 import org.openntf.nsffile.core.util.NotesThreadFactory;
+import org.openntf.nsffile.core.util.RateLimiter;
+import org.openntf.nsffile.core.util.ServerMetrics;
 import org.openntf.nsffile.ssh.auth.NotesPasswordAuthenticator;
 import org.openntf.nsffile.ssh.auth.NotesPublicKeyAuthenticator;
+import org.openntf.nsffile.ssh.command.RemoveCommandFactory;
 import org.openntf.nsffile.ssh.scp.CompositeScpFileOpener;
 import org.openntf.nsffile.ssh.scp.DummyShellFactory;
+import org.openntf.nsffile.ssh.sftp.NSFSftpSubsystemFactory;
+import org.openntf.nsffile.ssh.sftp.SftpTrace;
 
 /**
  * Frontend-independent manager for running the SSH/SFTP server.
@@ -59,10 +84,40 @@ public class SshServerAddin extends RunJavaAddin {
 
 	public static final String STAT_FACILITY = "SFTP";
 	public static final String STAT_SESSIONS = "CurrentSessions";
-	private static final String[] STAT_NAMES = { STAT_SESSIONS };
+	/** @since 2.3.0 */
+	public static final String STAT_REJECTED_SERVER = "RejectedSessions.ServerLimit";
+	/** @since 2.3.0 */
+	public static final String STAT_REJECTED_ADDRESS = "RejectedSessions.AddressLimit";
+	/** @since 2.3.0 */
+	public static final String STAT_REJECTED_USER = "RejectedSessions.UserLimit";
+	/** @since 2.3.0 */
+	public static final String STAT_REJECTED_DRAINING = "RejectedSessions.Draining";
+	private static final String[] STAT_NAMES = { STAT_SESSIONS, STAT_REJECTED_SERVER, STAT_REJECTED_ADDRESS, STAT_REJECTED_USER, STAT_REJECTED_DRAINING };
+	private static final List<String> THROTTLE_STAT_NAMES = Arrays.asList("BytesLimit", "BytesTransferred", "OpsLimit", "Ops", "DelayedMs", "Waiting");
+	/** Prefix for per-user and per-mount throttle statistics, followed by the throttle name */
+	public static final String STAT_THROTTLE = "Throttle.";
+	/** Suffix for the percentage of cache lookups that were hits */
+	public static final String STAT_HITRATE = ".HitRate";
+	/** Prefix for execution lane statistics, followed by the lane name */
+	public static final String STAT_EXECUTOR = "Executor.";
+	/** @since 2.3.0 */
+	public static final String STAT_TEMP_FILES = "TempStorage.Files";
+	/** @since 2.3.0 */
+	public static final String STAT_TEMP_BYTES = "TempStorage.Bytes";
 
 	private final int port;
 	private DominoClient client;
+	private ServerConfiguration config;
+	private SshServer server;
+	private final SessionAdmissionController admissionController = new SessionAdmissionController(
+		DominoNSFConfiguration.DEFAULT_MAX_SESSIONS, DominoNSFConfiguration.DEFAULT_MAX_SESSIONS_PER_ADDRESS);
+	private final NotesPublicKeyAuthenticator publicKeyAuthenticator = new NotesPublicKeyAuthenticator();
+	/** Names of the statistics beyond {@link #STAT_NAMES} that have been published, to be removed at shutdown */
+	private final Set<String> publishedStats = ConcurrentHashMap.newKeySet();
+	/** The latencies published at the last statistics update, for display on the console */
+	private final Map<String, LatencyHistogram.Snapshot> latencies = new ConcurrentHashMap<>();
+	/** Whether the end of a drain still needs to be reported */
+	private volatile boolean drainPending;
 
 	public SshServerAddin(int port) {
 		super(ADDIN_NAME, QUEUE_NAME);
@@ -79,33 +134,37 @@ public class SshServerAddin extends RunJavaAddin {
 		this.client = client;
 		ServerStatistics stats = client.getServerStatistics();
 		
+		applyConfiguration(DominoNSFConfiguration.instance.getSnapshot());
+		
 		CompositeNSFFileSystemFactory fileSystemFactory = new CompositeNSFFileSystemFactory();
 		ScpCommandFactory commandFactory = new ScpCommandFactory.Builder()
 			.withFileOpener(new CompositeScpFileOpener(fileSystemFactory))
-			.withDelegate(new UnknownCommandFactory())
+			.withDelegate(new RemoveCommandFactory(new UnknownCommandFactory()))
 			.withDelegateShellFactory(new DummyShellFactory())
 			.build();
 
 		ServerBuilder builder = ServerBuilder.builder()
 			.fileSystemFactory(fileSystemFactory)
-			.publickeyAuthenticator(new NotesPublicKeyAuthenticator());
+			.publickeyAuthenticator(publicKeyAuthenticator);
 		try (SshServer server = builder.build()) {
+			this.server = server;
 			server.setPort(port);
 			server.setKeyPairProvider(new NSFHostKeyProvider());
 
-			if (DominoNSFConfiguration.instance.isAllowPasswordAuth()) {
-				server.setPasswordAuthenticator(new NotesPasswordAuthenticator());
-			} else {
-				server.setPasswordAuthenticator(RejectAllPasswordAuthenticator.INSTANCE);
-			}
+			// This checks the current configuration on each attempt
+			server.setPasswordAuthenticator(new NotesPasswordAuthenticator());
 
-			SftpSubsystemFactory sftp = new SftpSubsystemFactory.Builder()
-					.build();
+			SftpSubsystemFactory sftp = new NSFSftpSubsystemFactory();
 			server.setSubsystemFactories(Collections.singletonList(sftp));
 
 			server.setCommandFactory(commandFactory);
 			server.setScheduledExecutorService(NotesThreadFactory.scheduler);
 			
+			// Turn away excess connections before they cost a key exchange or a Notes lookup
+			server.setIoServiceEventListener(admissionController);
+			server.addSessionListener(admissionController);
+			CoreModuleProperties.SOCKET_BACKLOG.set(server, this.config.getAcceptBacklog());
+			CoreModuleProperties.MAX_CONCURRENT_SESSIONS.set(server, this.config.getMaxSessionsPerUser());
 
 			server.start();
 
@@ -119,15 +178,33 @@ public class SshServerAddin extends RunJavaAddin {
 			NotesThreadFactory.scheduler.scheduleWithFixedDelay(() -> {
 				stats.updateStatistic(STAT_FACILITY, STAT_SESSIONS, EnumSet.of(ServerStatistics.Flag.UNIQUE),
 						server.getActiveSessions().size());
+				stats.updateStatistic(STAT_FACILITY, STAT_REJECTED_SERVER, EnumSet.of(ServerStatistics.Flag.UNIQUE),
+						admissionController.getRejectedServer());
+				stats.updateStatistic(STAT_FACILITY, STAT_REJECTED_ADDRESS, EnumSet.of(ServerStatistics.Flag.UNIQUE),
+						admissionController.getRejectedAddress());
+				stats.updateStatistic(STAT_FACILITY, STAT_REJECTED_USER, EnumSet.of(ServerStatistics.Flag.UNIQUE),
+						admissionController.getRejectedUser());
+				stats.updateStatistic(STAT_FACILITY, STAT_REJECTED_DRAINING, EnumSet.of(ServerStatistics.Flag.UNIQUE),
+						admissionController.getRejectedDraining());
+				updateThrottleStatistics(stats);
+				updateMetricStatistics(stats);
+				server.getActiveSessions().forEach(session -> SessionActivity.get(session).sample());
+				if(drainPending && server.getActiveSessions().isEmpty()) {
+					drainPending = false;
+					log("Drain complete; no sessions remain");
+				}
 			}, 0, 10, TimeUnit.SECONDS);
 
 			while (!mq.isQuitPending()) {
 				Optional<String> message;
 				while ((message = mq.get(5, TimeUnit.SECONDS)) != null) {
-					message.ifPresent(msg -> {
-						// if we got a message in the queue, process it
-						// TODO actually implement some messages
-					});
+					message.ifPresent(this::processCommand);
+					
+					// Pick up changes made to the configuration NSF
+					ServerConfiguration config = DominoNSFConfiguration.instance.getSnapshot();
+					if (config != this.config) {
+						applyConfiguration(config);
+					}
 				}
 			}
 		} catch (IOException e) {
@@ -138,11 +215,511 @@ public class SshServerAddin extends RunJavaAddin {
 			// Fine - meant to quit
 		} finally {
 			Arrays.stream(STAT_NAMES).forEach(stat -> stats.deleteStatistic(STAT_FACILITY, stat));
+			publishedStats.forEach(stat -> stats.deleteStatistic(STAT_FACILITY, stat));
+			this.server = null;
 		}
 
 		log("Shutdown");
 	}
 
+	/**
+	 * Handles a command sent to the add-in's message queue, such as via
+	 * "tell sftp reload".
+	 * 
+	 * @param command the full command text
+	 * @since 2.3.0
+	 */
+	private void processCommand(String command) {
+		List<String> args = parseArgs(command);
+		if(args.isEmpty()) {
+			return;
+		}
+		switch(args.get(0).toLowerCase(Locale.ENGLISH)) {
+		case "reload":
+			reload();
+			break;
+		case "ingest":
+			ingest(args.subList(1, args.size()));
+			break;
+		case "show":
+			show(args.subList(1, args.size()));
+			break;
+		case "cache":
+			cache(args.subList(1, args.size()));
+			break;
+		case "trace":
+			trace(args.subList(1, args.size()));
+			break;
+		case "drain":
+			drain(args.subList(1, args.size()));
+			break;
+		default:
+			log(MessageFormat.format("Unknown command \"{0}\"; use reload, ingest, show, cache, trace, or drain", args.get(0)));
+			break;
+		}
+	}
+	
+	/**
+	 * Re-reads the configuration NSF and applies the new settings, and discards cached
+	 * public keys. Existing sessions are left as-is, while new sessions use the new
+	 * mounts and settings.
+	 * 
+	 * @since 2.3.0
+	 */
+	private void reload() {
+		try {
+			applyConfiguration(DominoNSFConfiguration.instance.reload());
+			publicKeyAuthenticator.clearCache();
+			log("Reloaded configuration");
+		} catch(RuntimeException e) {
+			if (log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, "Encountered exception reloading configuration", e);
+			}
+			log(MessageFormat.format("Unable to reload configuration: {0}", e));
+		}
+	}
+	
+	/**
+	 * Applies the settings that can change while the server is running.
+	 * 
+	 * @param config the configuration to apply
+	 * @since 2.3.0
+	 */
+	private void applyConfiguration(ServerConfiguration config) {
+		long queueTimeout = config.getNotesQueueTimeout();
+		NotesThreadFactory.executor.configure(config.getNotesMaxThreads(), config.getNotesMaxQueued(), queueTimeout);
+		NotesThreadFactory.contentExecutor.configure(config.getNotesContentMaxThreads(), config.getNotesContentMaxQueued(), queueTimeout);
+		admissionController.configure(config.getMaxSessions(), config.getMaxSessionsPerAddress());
+		SshServer server = this.server;
+		if (server != null) {
+			CoreModuleProperties.MAX_CONCURRENT_SESSIONS.set(server, config.getMaxSessionsPerUser());
+		}
+		if (log.isLoggable(Level.INFO)) {
+			log.info(getClass().getSimpleName() + ": Using " + NotesThreadFactory.executor);
+			log.info(getClass().getSimpleName() + ": Using " + NotesThreadFactory.contentExecutor);
+		}
+		if (this.config != null && config.getPort() != port) {
+			log(MessageFormat.format("Port changed to {0}; restart HTTP to apply", Integer.toString(config.getPort())));
+		}
+		if (this.config != null && config.getAcceptBacklog() != this.config.getAcceptBacklog()) {
+			log("Accept backlog changed; restart HTTP to apply");
+		}
+		this.config = config;
+	}
+	
+	/**
+	 * Publishes the limits and current usage of each throttle that has a limit, such as
+	 * "SFTP.Throttle.SomeUser_Org.BytesLimit" or "SFTP.Throttle.SomeUser_Org.Mount.docs.BytesLimit".
+	 * Statistics for throttles that are no longer limited or have been discarded are removed.
+	 * 
+	 * @param stats the {@link ServerStatistics} to update
+	 * @since 2.3.0
+	 */
+	private void updateThrottleStatistics(ServerStatistics stats) {
+		Set<ServerStatistics.Flag> flags = EnumSet.of(ServerStatistics.Flag.UNIQUE);
+		ThrottleManager.instance.evictIdle();
+		Set<String> limited = new HashSet<>();
+		for(Throttle throttle : ThrottleManager.instance.getThrottles()) {
+			String prefix = STAT_THROTTLE + throttle.getName() + '.';
+			if(throttle.getLimit().isUnlimited()) {
+				continue;
+			}
+			limited.add(prefix);
+			RateLimiter bytes = throttle.getBytes();
+			RateLimiter operations = throttle.getOperations();
+			updateDynamicStatistic(stats, flags, prefix + "BytesLimit", bytes.getRate());
+			updateDynamicStatistic(stats, flags, prefix + "BytesTransferred", bytes.getAcquired());
+			updateDynamicStatistic(stats, flags, prefix + "OpsLimit", operations.getRate());
+			updateDynamicStatistic(stats, flags, prefix + "Ops", operations.getAcquired());
+			updateDynamicStatistic(stats, flags, prefix + "DelayedMs", bytes.getWaitTime() + operations.getWaitTime());
+			updateDynamicStatistic(stats, flags, prefix + "Waiting", bytes.getWaiting() + operations.getWaiting());
+		}
+		
+		// Remove the statistics of throttles whose limit was removed or that were discarded
+		String limitSuffix = ".BytesLimit"; //$NON-NLS-1$
+		for(String stat : publishedStats) {
+			if(stat.startsWith(STAT_THROTTLE) && stat.endsWith(limitSuffix)) {
+				String prefix = stat.substring(0, stat.length() - limitSuffix.length() + 1);
+				if(!limited.contains(prefix)) {
+					THROTTLE_STAT_NAMES.forEach(name -> {
+						stats.deleteStatistic(STAT_FACILITY, prefix + name);
+						publishedStats.remove(prefix + name);
+					});
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Publishes the counters and latencies collected in {@link ServerMetrics}, along
+	 * with the state of the execution lanes and temporary storage.
+	 * 
+	 * <p>Counters are published as running totals, with an additional percentage for
+	 * each pair of cache hit and miss counters. Latencies are published as the count,
+	 * median, and 99th percentile in microseconds of the operations since the previous
+	 * update.</p>
+	 * 
+	 * @param stats the {@link ServerStatistics} to update
+	 * @since 2.3.0
+	 */
+	private void updateMetricStatistics(ServerStatistics stats) {
+		Set<ServerStatistics.Flag> flags = EnumSet.of(ServerStatistics.Flag.UNIQUE);
+		Map<String, LongAdder> counters = ServerMetrics.instance.getCounters();
+		counters.forEach((name, counter) -> {
+			long value = counter.sum();
+			updateDynamicStatistic(stats, flags, name, value);
+			if(name.endsWith(ServerMetrics.SUFFIX_HITS)) {
+				String cacheName = name.substring(0, name.length() - ServerMetrics.SUFFIX_HITS.length());
+				LongAdder misses = counters.get(cacheName + ServerMetrics.SUFFIX_MISSES);
+				long total = value + (misses == null ? 0 : misses.sum());
+				updateDynamicStatistic(stats, flags, cacheName + STAT_HITRATE, total == 0 ? 0 : value * 100 / total);
+			}
+		});
+		
+		ServerMetrics.instance.getHistograms().forEach((name, histogram) -> {
+			LatencyHistogram.Snapshot snapshot = histogram.drain();
+			latencies.put(name, snapshot);
+			updateDynamicStatistic(stats, flags, name + ".Count", snapshot.getCount());
+			updateDynamicStatistic(stats, flags, name + ".P50Us", snapshot.getPercentile(50));
+			updateDynamicStatistic(stats, flags, name + ".P99Us", snapshot.getPercentile(99));
+		});
+		
+		updateExecutorStatistics(stats, flags, "Notes", NotesThreadFactory.executor);
+		updateExecutorStatistics(stats, flags, "Content", NotesThreadFactory.contentExecutor);
+		updateExecutorStatistics(stats, flags, "Auth", NotesThreadFactory.authExecutor);
+		
+		// Prune deleted files before counting what remains
+		long tempBytes = NSFFileUtil.getTempStorageSize();
+		updateDynamicStatistic(stats, flags, STAT_TEMP_FILES, NSFFileUtil.getTempFileCount());
+		updateDynamicStatistic(stats, flags, STAT_TEMP_BYTES, tempBytes);
+	}
+	
+	private void updateExecutorStatistics(ServerStatistics stats, Set<ServerStatistics.Flag> flags, String name, NotesExecutor executor) {
+		String prefix = STAT_EXECUTOR + name + '.';
+		updateDynamicStatistic(stats, flags, prefix + "Queued", executor.getQueueSize());
+		updateDynamicStatistic(stats, flags, prefix + "Active", executor.getActiveCount());
+		updateDynamicStatistic(stats, flags, prefix + "Threads", executor.getPoolSize());
+		updateDynamicStatistic(stats, flags, prefix + "Completed", executor.getCompletedCount());
+		updateDynamicStatistic(stats, flags, prefix + "Rejected", executor.getRejectedCount());
+	}
+	
+	private void updateDynamicStatistic(ServerStatistics stats, Set<ServerStatistics.Flag> flags, String name, long value) {
+		stats.updateStatistic(STAT_FACILITY, name, flags, value);
+		publishedStats.add(name);
+	}
+	
+	/**
+	 * Writes current activity to the console.
+	 * 
+	 * <p>Usage: {@code show stats} for a summary of the server, or {@code show sessions}
+	 * for the activity of each connected session.</p>
+	 * 
+	 * @param args the arguments to the command
+	 * @since 2.3.0
+	 */
+	private void show(List<String> args) {
+		String what = args.isEmpty() ? "" : args.get(0).toLowerCase(Locale.ENGLISH);
+		switch(what) {
+		case "stats":
+			showStats();
+			break;
+		case "sessions":
+			showSessions();
+			break;
+		default:
+			log("Usage: show stats|sessions");
+			break;
+		}
+	}
+	
+	private void showStats() {
+		SshServer server = this.server;
+		int sessions = server == null ? 0 : server.getActiveSessions().size();
+		log(MessageFormat.format("Sessions: {0} active{1}; rejected {2} at server limit, {3} at address limit, {4} at user limit, {5} while draining",
+			sessions, admissionController.isDraining() ? " (draining)" : "", admissionController.getRejectedServer(),
+			admissionController.getRejectedAddress(), admissionController.getRejectedUser(), admissionController.getRejectedDraining()));
+		
+		Map<String, LongAdder> counters = ServerMetrics.instance.getCounters();
+		long operations = counters.entrySet().stream()
+			.filter(entry -> entry.getKey().startsWith("Ops."))
+			.mapToLong(entry -> entry.getValue().sum())
+			.sum();
+		log(MessageFormat.format("Transfers: {0} operations, {1} read, {2} written", operations,
+			formatBytes(sum(counters, "BytesRead")), formatBytes(sum(counters, "BytesWritten"))));
+		log(MessageFormat.format("Authentication: {0} password successes, {1} password failures, {2} public key successes, {3} public key failures",
+			sum(counters, "Auth.Password.Successes"), sum(counters, "Auth.Password.Failures"),
+			sum(counters, "Auth.PublicKey.Successes"), sum(counters, "Auth.PublicKey.Failures")));
+		
+		for(NotesExecutor executor : Arrays.asList(NotesThreadFactory.executor, NotesThreadFactory.contentExecutor, NotesThreadFactory.authExecutor)) {
+			log(MessageFormat.format("{0}: {1} active, {2} queued, {3} threads, {4} completed, {5} rejected", executor.getName(),
+				executor.getActiveCount(), executor.getQueueSize(), executor.getPoolSize(), executor.getCompletedCount(), executor.getRejectedCount()));
+		}
+		
+		new TreeMap<>(latencies).forEach((name, snapshot) -> {
+			if(snapshot.getCount() > 0) {
+				log(MessageFormat.format("{0}: {1} calls, median {2}us, 99th percentile {3}us", name,
+					snapshot.getCount(), snapshot.getPercentile(50), snapshot.getPercentile(99)));
+			}
+		});
+		
+		long tempBytes = NSFFileUtil.getTempStorageSize();
+		log(MessageFormat.format("Temporary storage: {0} files, {1}", NSFFileUtil.getTempFileCount(), formatBytes(tempBytes)));
+	}
+	
+	private void showSessions() {
+		SshServer server = this.server;
+		List<AbstractSession> sessions = server == null ? Collections.emptyList() : server.getActiveSessions();
+		if(sessions.isEmpty()) {
+			log("No active sessions");
+			return;
+		}
+		long now = System.currentTimeMillis();
+		for(AbstractSession session : sessions) {
+			SessionActivity activity = SessionActivity.get(session);
+			String username = session.getUsername() == null ? "(unauthenticated)" : session.getUsername();
+			log(MessageFormat.format("{0} from {1}: {2}s, {3} requests, {4} read, {5} written, {6}/s average, {7}/s recent",
+				username, session.getRemoteAddress(), Long.toString(TimeUnit.MILLISECONDS.toSeconds(now - activity.getStarted())),
+				activity.getOperations(), formatBytes(activity.getBytesRead()), formatBytes(activity.getBytesWritten()),
+				formatBytes(activity.getAverageRate()), formatBytes(activity.getRecentRate())));
+		}
+		log(MessageFormat.format("{0} active sessions", sessions.size()));
+	}
+	
+	/**
+	 * Manages the in-memory caches of NSF data.
+	 * 
+	 * <p>Usage: {@code cache flush [mount]} to discard cached data for one mount or for
+	 * all mounts and public keys, or {@code cache stats} to show cache effectiveness.</p>
+	 * 
+	 * @param args the arguments to the command
+	 * @since 2.3.0
+	 */
+	private void cache(List<String> args) {
+		String what = args.isEmpty() ? "" : args.get(0).toLowerCase(Locale.ENGLISH);
+		switch(what) {
+		case "flush":
+			flushCaches(args.size() > 1 ? args.get(1) : null);
+			break;
+		case "stats":
+			Map<String, LongAdder> counters = ServerMetrics.instance.getCounters();
+			new TreeMap<>(counters).forEach((name, hits) -> {
+				if(name.startsWith("Cache.") && name.endsWith(ServerMetrics.SUFFIX_HITS)) {
+					String cacheName = name.substring(0, name.length() - ServerMetrics.SUFFIX_HITS.length());
+					long hitCount = hits.sum();
+					long missCount = sum(counters, cacheName + ServerMetrics.SUFFIX_MISSES);
+					long total = hitCount + missCount;
+					log(MessageFormat.format("{0}: {1} hits, {2} misses, {3}% hit rate", cacheName.substring("Cache.".length()),
+						hitCount, missCount, total == 0 ? 0 : hitCount * 100 / total));
+				}
+			});
+			break;
+		default:
+			log("Usage: cache flush [mount] | cache stats");
+			break;
+		}
+	}
+	
+	private void flushCaches(String mountName) {
+		try {
+			Map<String, MountDescriptor> mounts = DominoNSFConfiguration.instance.getMounts();
+			if(mountName == null) {
+				mounts.values().forEach(mount -> mount.getProvider().flushCaches(mount.getDataSource()));
+				publicKeyAuthenticator.clearCache();
+				log("Flushed all caches");
+			} else {
+				String path = mountName.replaceAll("^/+|/+$", "");
+				MountDescriptor mount = mounts.get(path);
+				if(mount == null) {
+					log(MessageFormat.format("Unknown mount \"{0}\"", mountName));
+					return;
+				}
+				mount.getProvider().flushCaches(mount.getDataSource());
+				log(MessageFormat.format("Flushed caches for {0}", path));
+			}
+		} catch(RuntimeException e) {
+			if (log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, "Encountered exception flushing caches", e);
+			}
+			log(MessageFormat.format("Unable to flush caches: {0}", e));
+		}
+	}
+	
+	/**
+	 * Turns logging of individual SFTP requests and their durations on or off for a
+	 * user. Entries are written at INFO level to the {@code org.openntf.nsffile.ssh.sftp}
+	 * logger.
+	 * 
+	 * <p>Usage: {@code trace on|off <user>}, or {@code trace} to list traced users.</p>
+	 * 
+	 * @param args the arguments to the command
+	 * @since 2.3.0
+	 */
+	private void trace(List<String> args) {
+		if(args.isEmpty()) {
+			Set<String> users = SftpTrace.instance.getUsers();
+			log(users.isEmpty() ? "No users are being traced" : MessageFormat.format("Tracing {0}", String.join(", ", users)));
+			return;
+		}
+		if(args.size() < 2) {
+			log("Usage: trace on|off <user>");
+			return;
+		}
+		String username = args.get(1);
+		switch(args.get(0).toLowerCase(Locale.ENGLISH)) {
+		case "on":
+			SftpTrace.instance.enable(username);
+			log(MessageFormat.format("Tracing SFTP requests for {0}", username));
+			break;
+		case "off":
+			if(SftpTrace.instance.disable(username)) {
+				log(MessageFormat.format("Stopped tracing SFTP requests for {0}", username));
+			} else {
+				log(MessageFormat.format("{0} was not being traced", username));
+			}
+			break;
+		default:
+			log("Usage: trace on|off <user>");
+			break;
+		}
+	}
+	
+	/**
+	 * Stops accepting new connections so that the server can be taken out of service
+	 * once the current sessions finish, reporting to the console when none remain.
+	 * 
+	 * <p>Usage: {@code drain} to start draining, or {@code drain off} to accept new
+	 * connections again.</p>
+	 * 
+	 * @param args the arguments to the command
+	 * @since 2.3.0
+	 */
+	private void drain(List<String> args) {
+		if(!args.isEmpty() && "off".equalsIgnoreCase(args.get(0))) {
+			admissionController.setDraining(false);
+			drainPending = false;
+			log("Accepting new connections");
+			return;
+		}
+		admissionController.setDraining(true);
+		SshServer server = this.server;
+		int sessions = server == null ? 0 : server.getActiveSessions().size();
+		log(MessageFormat.format("Draining: refusing new connections while {0} sessions finish", sessions));
+		drainPending = true;
+	}
+	
+	/**
+	 * Starts a background import of a local directory tree into a mounted path.
+	 * 
+	 * <p>Usage: {@code ingest <local directory> <target path> [workers]}, where the target
+	 * path is the full path as seen by SFTP clients, including the mount name.</p>
+	 * 
+	 * @param args the arguments to the command
+	 * @since 2.3.0
+	 */
+	private void ingest(List<String> args) {
+		if(args.size() < 2) {
+			log("Usage: ingest <local directory> <target path> [workers]");
+			return;
+		}
+		int parallelism = NotesThreadFactory.DEFAULT_CONTENT_MAX_THREADS;
+		if(args.size() > 2) {
+			try {
+				parallelism = Integer.parseInt(args.get(2));
+			} catch(NumberFormatException e) {
+				log(MessageFormat.format("Invalid worker count \"{0}\"", args.get(2)));
+				return;
+			}
+		}
+		
+		FileSystem fs;
+		try {
+			// Run with the server's own access
+			fs = DominoNSFConfiguration.instance.buildFileSystem(client.getIDUserName());
+		} catch(RuntimeException e) {
+			if (log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, "Encountered exception starting ingest", e);
+			}
+			log(MessageFormat.format("Unable to start ingest: {0}", e));
+			return;
+		}
+		try {
+			Path source = Paths.get(args.get(0));
+			Path target = fs.getPath(args.get(1));
+			IngestTask task = new IngestTask(source, target, Math.max(1, parallelism), this::log);
+			Thread thread = NotesThreadFactory.instance.newThread(() -> {
+				// The filesystem belongs to this import alone, so close it once finished
+				try(FileSystem ingestFs = fs) {
+					task.run();
+				} catch(IOException e) {
+					if (log.isLoggable(Level.WARNING)) {
+						log.log(Level.WARNING, "Encountered exception closing the ingest filesystem", e);
+					}
+				}
+			});
+			thread.setName(ADDIN_NAME + " Ingest");
+			thread.setDaemon(true);
+			thread.start();
+		} catch(RuntimeException e) {
+			if (log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, "Encountered exception starting ingest", e);
+			}
+			log(MessageFormat.format("Unable to start ingest: {0}", e));
+			closeQuietly(fs);
+		}
+	}
+	
+	private static void closeQuietly(FileSystem fs) {
+		try {
+			fs.close();
+		} catch(IOException e) {
+			if (log.isLoggable(Level.WARNING)) {
+				log.log(Level.WARNING, "Encountered exception closing the ingest filesystem", e);
+			}
+		}
+	}
+	
+	/**
+	 * Splits a command line on whitespace, keeping double-quoted segments together.
+	 */
+	private static List<String> parseArgs(String command) {
+		List<String> result = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		boolean quoted = false;
+		boolean inArg = false;
+		for(char c : command.toCharArray()) {
+			if(c == '"') {
+				quoted = !quoted;
+				inArg = true;
+			} else if(Character.isWhitespace(c) && !quoted) {
+				if(inArg) {
+					result.add(current.toString());
+					current.setLength(0);
+					inArg = false;
+				}
+			} else {
+				current.append(c);
+				inArg = true;
+			}
+		}
+		if(inArg) {
+			result.add(current.toString());
+		}
+		return result;
+	}
+
+	private static long sum(Map<String, LongAdder> counters, String name) {
+		LongAdder counter = counters.get(name);
+		return counter == null ? 0 : counter.sum();
+	}
+	
+	private static String formatBytes(long bytes) {
+		if(bytes < 1024) {
+			return bytes + " B";
+		}
+		int unit = Math.min(4, (63 - Long.numberOfLeadingZeros(bytes)) / 10);
+		return String.format(Locale.ENGLISH, "%.1f %sB", bytes / (double)(1L << (unit * 10)), " KMGT".charAt(unit));
+	}
+
 	private void log(String s) {
 		if (s == null) {
 			return;
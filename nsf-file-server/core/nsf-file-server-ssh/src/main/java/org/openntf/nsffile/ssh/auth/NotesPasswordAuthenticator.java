@@ -15,8 +15,7 @@
  */
 package org.openntf.nsffile.ssh.auth;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.naming.AuthenticationException;
 import javax.naming.AuthenticationNotSupportedException;
@@ -26,30 +25,46 @@ import org.apache.sshd.server.auth.AsyncAuthException;
 import org.apache.sshd.server.auth.password.PasswordAuthenticator;
 import org.apache.sshd.server.auth.password.PasswordChangeRequiredException;
 import org.apache.sshd.server.session.ServerSession;
+import org.openntf.nsffile.core.config.DominoNSFConfiguration;
 import org.openntf.nsffile.core.util.NotesThreadFactory;
+import org.openntf.nsffile.core.util.ServerMetrics;
 
 /**
  * @author Jesse Gallagher
  * @since 1.0.0
  */
 public class NotesPasswordAuthenticator implements PasswordAuthenticator {
-	private static final Logger log = Logger.getLogger(NotesPasswordAuthenticator.class.getPackage().getName());
-
+	private static final LongAdder SUCCESSES = ServerMetrics.instance.counter("Auth.Password.Successes"); //$NON-NLS-1$
+	private static final LongAdder FAILURES = ServerMetrics.instance.counter("Auth.Password.Failures"); //$NON-NLS-1$
+	
 	@Override
 	public boolean authenticate(String username, String password, ServerSession sshSession)
 			throws PasswordChangeRequiredException, AsyncAuthException {
-		return NotesThreadFactory.call(client -> {
+		// Check and validate on the auth lane rather than blocking this I/O thread
+		AsyncAuthException result = new AsyncAuthException();
+		NotesThreadFactory.callAsync(NotesThreadFactory.authExecutor, username, client -> {
+			// Checked per attempt so that the setting can change without a restart. This
+			// may re-read the configuration NSF, so it must not run on the I/O thread
+			if(!DominoNSFConfiguration.instance.isAllowPasswordAuth()) {
+				return null;
+			}
 			try {
 				client.validateCredentials(null, username, password);
 				return true;
 			} catch(NameNotFoundException | AuthenticationException | AuthenticationNotSupportedException e) {
 				return false;
-			} catch(Throwable t) {
-				if(log.isLoggable(Level.SEVERE)) {
-					log.log(Level.SEVERE, "Encountered exception validating Internet password", t);
-				}
-				throw t;
 			}
+		}).whenComplete((authed, t) -> {
+			if(t == null && authed == null) {
+				// Password authentication is disabled, which is not a failed attempt
+				result.setAuthed(false);
+				return;
+			}
+			// Failures, including a saturated lane, are logged by NotesThreadFactory
+			boolean success = t == null && Boolean.TRUE.equals(authed);
+			(success ? SUCCESSES : FAILURES).increment();
+			result.setAuthed(success);
 		});
+		throw result;
 	}
 }
@@ -15,11 +15,18 @@
  */
 package org.openntf.nsffile.ssh.auth;
 
+import java.security.MessageDigest;
 import java.security.PublicKey;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,6 +41,7 @@ import org.apache.sshd.server.auth.pubkey.PublickeyAuthenticator;
 import org.apache.sshd.server.session.ServerSession;
 import org.openntf.nsffile.core.util.NSFFileUtil;
 import org.openntf.nsffile.core.util.NotesThreadFactory;
+import org.openntf.nsffile.core.util.ServerMetrics;
 
 /**
  * 
@@ -45,41 +53,180 @@ public class NotesPublicKeyAuthenticator implements PublickeyAuthenticator {
 	
 	public static final String ITEM_PUBKEY = "sshPublicKey"; //$NON-NLS-1$
 
+	/** The default time, in milliseconds, that a user's keys are cached */
+	public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(5);
+	/** The default number of users whose keys are cached before the cache is reset */
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+	
+	private static final LongAdder SUCCESSES = ServerMetrics.instance.counter("Auth.PublicKey.Successes"); //$NON-NLS-1$
+	private static final LongAdder FAILURES = ServerMetrics.instance.counter("Auth.PublicKey.Failures"); //$NON-NLS-1$
+	private static final LongAdder CACHE_HITS = ServerMetrics.instance.counter("Cache.PublicKey" + ServerMetrics.SUFFIX_HITS); //$NON-NLS-1$
+	private static final LongAdder CACHE_MISSES = ServerMetrics.instance.counter("Cache.PublicKey" + ServerMetrics.SUFFIX_MISSES); //$NON-NLS-1$
+	
+	private final long ttl;
+	private final int maxEntries;
+	/** Maps user names to their parsed keys, loaded once for concurrent attempts */
+	private final Map<String, CompletableFuture<UserKeys>> keyCache = new ConcurrentHashMap<>();
+	
+	public NotesPublicKeyAuthenticator() {
+		this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+	}
+	
+	/**
+	 * @param ttl the time, in milliseconds, that a user's keys are cached
+	 * @param maxEntries the number of users whose keys are cached before the cache is reset
+	 * @since 2.3.0
+	 */
+	public NotesPublicKeyAuthenticator(long ttl, int maxEntries) {
+		this.ttl = ttl;
+		this.maxEntries = maxEntries;
+	}
+
 	@Override
 	public boolean authenticate(String username, PublicKey key, ServerSession serverSession) throws AsyncAuthException {
-		return NotesThreadFactory.call(client -> {
-			List<String> publicKeys = getItemValueStringListForUser(client, username, ITEM_PUBKEY);
-			if(publicKeys.isEmpty() || (publicKeys.size() == 1 && StringUtil.isEmpty(publicKeys.get(0)))) {
-				return false;
-			} else {
-				for(String publicKey : publicKeys) {
-					try {
-						int space = publicKey.indexOf(' ');
-						String type = publicKey.substring(0, space);
-						int lastSpace = publicKey.lastIndexOf(' ');
-						if(lastSpace == space) {
-							// Then there's no trailing user/machine note
-							lastSpace = publicKey.length();
-						}
-						String encKey = publicKey.substring(space+1, lastSpace);
-						byte[] keyBytes = Base64.getDecoder().decode(encKey);
-						Buffer keyBuf = new ByteArrayBuffer(keyBytes);
-						// The first bit is "ssh-rsa" - discard
-						keyBuf.getString();
-						PublicKey dirKey = BufferPublicKeyParser.DEFAULT.getRawPublicKey(type, keyBuf);
-						if(key.equals(dirKey)) {
-							return true;
-						}
-					} catch(Exception e) {
-						// Log and move on
-						if(log.isLoggable(Level.WARNING)) {
-							log.log(Level.WARNING, MessageFormat.format("Encountered exception parsing SSH public key {0}", publicKey), e);
-						}
+		if(StringUtil.isEmpty(username)) {
+			return false;
+		}
+		
+		byte[] encoded = key.getEncoded();
+		if(encoded == null) {
+			return false;
+		}
+		
+		CompletableFuture<UserKeys> userKeys = getKeys(username);
+		if(userKeys.isDone() && !userKeys.isCompletedExceptionally()) {
+			return count(matches(userKeys.join(), key.getAlgorithm(), encoded));
+		}
+		
+		// Finish once the directory lookup completes on the auth lane, rather than blocking this I/O thread
+		AsyncAuthException result = new AsyncAuthException();
+		userKeys.whenComplete((keys, t) -> {
+			if(t != null && log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, MessageFormat.format("Encountered exception looking up SSH public keys for {0}", username), t);
+			}
+			result.setAuthed(count(t == null && matches(keys, key.getAlgorithm(), encoded)));
+		});
+		throw result;
+	}
+	
+	/**
+	 * Discards all cached keys, so that the next attempt for each user reads the
+	 * directory again.
+	 * 
+	 * @since 2.3.0
+	 */
+	public void clearCache() {
+		keyCache.clear();
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private static class UserKeys {
+		private final List<PublicKey> keys;
+		private final long expires;
+		
+		UserKeys(List<PublicKey> keys, long expires) {
+			this.keys = keys;
+			this.expires = expires;
+		}
+		
+		boolean isExpired() {
+			return expires < System.currentTimeMillis();
+		}
+	}
+	
+	/**
+	 * Retrieves the keys for the provided user from the cache, starting a lookup on
+	 * {@link NotesThreadFactory#authExecutor} if they are missing or expired.
+	 */
+	private CompletableFuture<UserKeys> getKeys(String username) {
+		while(true) {
+			CompletableFuture<UserKeys> existing = keyCache.get(username);
+			if(existing != null) {
+				if(!existing.isDone() || existing.isCompletedExceptionally() || !existing.join().isExpired()) {
+					CACHE_HITS.increment();
+					return existing;
+				}
+				keyCache.remove(username, existing);
+				continue;
+			}
+			
+			if(keyCache.size() >= maxEntries) {
+				keyCache.clear();
+			}
+			CompletableFuture<UserKeys> loader = new CompletableFuture<>();
+			existing = keyCache.putIfAbsent(username, loader);
+			if(existing != null) {
+				// Another attempt started loading first
+				continue;
+			}
+			CACHE_MISSES.increment();
+			NotesThreadFactory.callAsync(NotesThreadFactory.authExecutor, username, client -> readKeys(client, username))
+				.whenComplete((keys, t) -> {
+					if(t == null) {
+						loader.complete(new UserKeys(keys, System.currentTimeMillis() + ttl));
+					} else {
+						// Don't cache failures
+						keyCache.remove(username, loader);
+						loader.completeExceptionally(t);
 					}
+				});
+			return loader;
+		}
+	}
+	
+	/**
+	 * Counts the result of a key check in the authentication statistics.
+	 */
+	private static boolean count(boolean success) {
+		(success ? SUCCESSES : FAILURES).increment();
+		return success;
+	}
+	
+	/**
+	 * Checks the offered key against every stored key without stopping early, so that
+	 * timing does not reveal which one matched.
+	 */
+	private static boolean matches(UserKeys userKeys, String algorithm, byte[] encoded) {
+		boolean matched = false;
+		for(PublicKey dirKey : userKeys.keys) {
+			boolean sameAlgorithm = dirKey.getAlgorithm().equals(algorithm);
+			matched |= sameAlgorithm & MessageDigest.isEqual(encoded, dirKey.getEncoded());
+		}
+		return matched;
+	}
+	
+	private List<PublicKey> readKeys(DominoClient client, String username) {
+		List<String> publicKeys = getItemValueStringListForUser(client, username, ITEM_PUBKEY);
+		List<PublicKey> result = new ArrayList<>(publicKeys.size());
+		for(String publicKey : publicKeys) {
+			if(StringUtil.isEmpty(publicKey)) {
+				continue;
+			}
+			try {
+				int space = publicKey.indexOf(' ');
+				String type = publicKey.substring(0, space);
+				int lastSpace = publicKey.lastIndexOf(' ');
+				if(lastSpace == space) {
+					// Then there's no trailing user/machine note
+					lastSpace = publicKey.length();
+				}
+				String encKey = publicKey.substring(space+1, lastSpace);
+				byte[] keyBytes = Base64.getDecoder().decode(encKey);
+				Buffer keyBuf = new ByteArrayBuffer(keyBytes);
+				// The first bit is "ssh-rsa" - discard
+				keyBuf.getString();
+				result.add(BufferPublicKeyParser.DEFAULT.getRawPublicKey(type, keyBuf));
+			} catch(Exception e) {
+				// Log and move on
+				if(log.isLoggable(Level.WARNING)) {
+					log.log(Level.WARNING, MessageFormat.format("Encountered exception parsing SSH public key {0}", publicKey), e);
 				}
-				return false;
 			}
-		});
+		}
+		return Collections.unmodifiableList(result);
 	}
 	
 	protected List<String> getItemValueStringListForUser(DominoClient client, String dominoName, String itemName) {
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.ssh.command;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.sshd.server.command.AbstractFileSystemCommand;
+import org.openntf.nsffile.core.util.NSFFileUtil;
+
+/**
+ * Implementation of a minimal {@code rm} command against the session filesystem,
+ * supporting the {@code -r}/{@code -R} and {@code -f} options.
+ * 
+ * <p>Recursive deletes use {@link NSFFileUtil#deleteTree}, which removes NSF-backed
+ * trees from a single Notes call.</p>
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class RemoveCommand extends AbstractFileSystemCommand {
+	private static final Logger log = Logger.getLogger(RemoveCommand.class.getPackage().getName());
+	
+	private final List<String> args;
+
+	/**
+	 * @param command the full command line
+	 * @param args the arguments following the command name
+	 */
+	public RemoveCommand(String command, List<String> args) {
+		super(command, null);
+		this.args = args;
+	}
+
+	@Override
+	public void run() {
+		boolean recursive = false;
+		boolean force = false;
+		boolean endOfOptions = false;
+		List<String> paths = new ArrayList<>();
+		for(String arg : args) {
+			if(!endOfOptions && "--".equals(arg)) { //$NON-NLS-1$
+				endOfOptions = true;
+			} else if(!endOfOptions && arg.startsWith("-") && arg.length() > 1) { //$NON-NLS-1$
+				for(char c : arg.substring(1).toCharArray()) {
+					switch(c) {
+					case 'r':
+					case 'R':
+						recursive = true;
+						break;
+					case 'f':
+						force = true;
+						break;
+					default:
+						error(MessageFormat.format("rm: invalid option -- ''{0}''", c));
+						onExit(1);
+						return;
+					}
+				}
+			} else {
+				paths.add(arg);
+			}
+		}
+		if(paths.isEmpty()) {
+			error("rm: missing operand");
+			onExit(1);
+			return;
+		}
+		
+		Path root = getFileSystem().getPath("/"); //$NON-NLS-1$
+		int exitValue = 0;
+		for(String pathArg : paths) {
+			Path path = root.resolve(pathArg);
+			try {
+				if(!Files.exists(path)) {
+					if(!force) {
+						throw new NoSuchFileException(pathArg);
+					}
+				} else if(recursive) {
+					NSFFileUtil.deleteTree(path);
+				} else if(Files.isDirectory(path)) {
+					// Match rm, which refuses directories without -r even when empty
+					error(MessageFormat.format("rm: cannot remove ''{0}'': Is a directory", pathArg));
+					exitValue = 1;
+				} else {
+					Files.delete(path);
+				}
+			} catch(IOException | RuntimeException e) {
+				if(log.isLoggable(Level.FINE)) {
+					log.log(Level.FINE, MessageFormat.format("Encountered exception removing {0}", path), e);
+				}
+				error(MessageFormat.format("rm: cannot remove ''{0}'': {1}", pathArg, describe(e)));
+				exitValue = 1;
+			}
+		}
+		onExit(exitValue);
+	}
+	
+	private static String describe(Exception e) {
+		if(e instanceof NoSuchFileException) {
+			return "No such file or directory";
+		} else if(e instanceof DirectoryNotEmptyException) {
+			return "Directory not empty";
+		} else if(e instanceof AccessDeniedException) {
+			return "Permission denied";
+		} else {
+			return String.valueOf(e.getMessage());
+		}
+	}
+	
+	private void error(String message) {
+		OutputStream err = getErrorStream();
+		if(err == null) {
+			return;
+		}
+		try {
+			err.write((message + '\n').getBytes(StandardCharsets.UTF_8));
+			err.flush();
+		} catch(IOException e) {
+			// Nothing else to report it to
+		}
+	}
+}
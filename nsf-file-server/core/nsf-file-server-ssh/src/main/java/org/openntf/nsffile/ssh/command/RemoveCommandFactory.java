@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.ssh.command;
+
+import java.util.List;
+
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.AbstractDelegatingCommandFactory;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.command.CommandFactory;
+
+/**
+ * {@link CommandFactory} that handles {@code "rm"} exec requests with a
+ * {@link RemoveCommand}, passing anything else to the delegate.
+ * 
+ * <p>SFTP has no recursive delete, so clients remove a tree one entry at a time.
+ * This allows {@code ssh host rm -r /mount/dir} to delete the tree in a single
+ * call instead.</p>
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class RemoveCommandFactory extends AbstractDelegatingCommandFactory {
+	public static final String COMMAND_NAME = "rm"; //$NON-NLS-1$
+
+	public RemoveCommandFactory(CommandFactory delegate) {
+		super(RemoveCommandFactory.class.getSimpleName());
+		setDelegateCommandFactory(delegate);
+	}
+
+	@Override
+	public boolean isSupportedCommand(ChannelSession channel, String command) {
+		List<String> args = CommandFactory.split(command);
+		return !args.isEmpty() && COMMAND_NAME.equals(args.get(0));
+	}
+
+	@Override
+	protected Command executeSupportedCommand(ChannelSession channel, String command) {
+		List<String> args = CommandFactory.split(command);
+		return new RemoveCommand(command, args.subList(1, args.size()));
+	}
+}
@@ -16,16 +16,35 @@
 package org.openntf.nsffile.ssh.scp;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.FileSystem;
 import java.nio.file.InvalidPathException;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.ibm.commons.util.StringUtil;
 
+import org.apache.sshd.common.AttributeRepository.AttributeKey;
 import org.apache.sshd.common.file.FileSystemFactory;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.scp.common.ScpTargetStreamResolver;
 import org.apache.sshd.scp.common.helpers.DefaultScpFileOpener;
+import org.openntf.nsffile.core.fs.CompositeFileSystem;
+import org.openntf.nsffile.core.util.NSFFileUtil;
 
 public class CompositeScpFileOpener extends DefaultScpFileOpener {
+	private static final Logger log = Logger.getLogger(CompositeScpFileOpener.class.getPackage().getName());
+	
+	/** The filesystem opened for a session that resolved a path outside of its command's */
+	private static final AttributeKey<FileSystem> FILE_SYSTEM_KEY = new AttributeKey<>();
+	
 	private final FileSystemFactory fileSystemFactory;
 
 	public CompositeScpFileOpener(FileSystemFactory fileSystemFactory) {
@@ -35,10 +54,30 @@ public class CompositeScpFileOpener extends DefaultScpFileOpener {
 	@Override
 	public Path resolveIncomingReceiveLocation(org.apache.sshd.common.session.Session session, Path path,
 			boolean recursive, boolean shouldBeDir, boolean preserve) throws IOException {
-		FileSystem fs = fileSystemFactory.createFileSystem(session);
-		Path nsfPath = fs.getPath(path.toString());
+		Path nsfPath;
+		if(path.getFileSystem() instanceof CompositeFileSystem) {
+			// Already resolved against the filesystem of the session's command
+			nsfPath = path;
+		} else {
+			nsfPath = getSessionFileSystem(session).getPath(path.toString());
+		}
 		return super.resolveIncomingReceiveLocation(session, nsfPath, recursive, shouldBeDir, preserve);
 	}
+	
+	@Override
+	public OutputStream openWrite(Session session, Path file, long size, Set<PosixFilePermission> permissions,
+			OpenOption... options) throws IOException {
+		if(size >= 0 && !Arrays.asList(options).contains(StandardOpenOption.APPEND)) {
+			// SCP always sends the whole file, so it can be written through as it arrives
+			return NSFFileUtil.newSequentialOutputStream(file, size);
+		}
+		return super.openWrite(session, file, size, permissions, options);
+	}
+
+	@Override
+	public ScpTargetStreamResolver createScpTargetStreamResolver(Session session, Path path) throws IOException {
+		return new NSFScpTargetStreamResolver(path, this);
+	}
 
 	@Override
 	public Path resolveLocalPath(org.apache.sshd.common.session.Session session, FileSystem fileSystem,
@@ -49,4 +88,32 @@ public class CompositeScpFileOpener extends DefaultScpFileOpener {
 			return fileSystem.getPath(commandPath);
 		}
 	}
+	
+	/**
+	 * Retrieves a filesystem for the provided session, opening one on first use that is
+	 * closed along with the session.
+	 */
+	private FileSystem getSessionFileSystem(Session session) throws IOException {
+		try {
+			return session.computeAttributeIfAbsent(FILE_SYSTEM_KEY, key -> {
+				try {
+					FileSystem fs = fileSystemFactory.createFileSystem(session);
+					session.addCloseFutureListener(future -> {
+						try {
+							fs.close();
+						} catch(IOException e) {
+							if(log.isLoggable(Level.WARNING)) {
+								log.log(Level.WARNING, "Encountered exception closing SCP filesystem", e);
+							}
+						}
+					});
+					return fs;
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
 }
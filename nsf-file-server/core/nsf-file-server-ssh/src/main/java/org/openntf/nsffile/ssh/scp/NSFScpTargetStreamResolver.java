@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.ssh.scp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sshd.scp.common.ScpFileOpener;
+import org.apache.sshd.scp.common.helpers.LocalFileScpTargetStreamResolver;
+import org.apache.sshd.scp.common.helpers.ScpTimestampCommandDetails;
+import org.openntf.nsffile.core.util.NSFFileUtil;
+
+/**
+ * {@link LocalFileScpTargetStreamResolver} that applies the permissions and timestamps
+ * preserved by {@code scp -p} in a single operation when the target filesystem supports it.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class NSFScpTargetStreamResolver extends LocalFileScpTargetStreamResolver {
+
+	public NSFScpTargetStreamResolver(Path path, ScpFileOpener opener) throws IOException {
+		super(path, opener);
+	}
+
+	@Override
+	protected void updateFileProperties(String name, Path path, Set<PosixFilePermission> perms, ScpTimestampCommandDetails time) throws IOException {
+		if(!NSFFileUtil.isBulkAttributesSupported(path)) {
+			super.updateFileProperties(name, path, perms, time);
+			return;
+		}
+		
+		Map<String, Object> attributes = new HashMap<>();
+		if(perms != null) {
+			attributes.put("posix:permissions", perms); //$NON-NLS-1$
+		}
+		if(time != null) {
+			attributes.put("posix:lastModifiedTime", FileTime.from(time.getLastModifiedTime(), TimeUnit.MILLISECONDS)); //$NON-NLS-1$
+			attributes.put("posix:lastAccessTime", FileTime.from(time.getLastAccessTime(), TimeUnit.MILLISECONDS)); //$NON-NLS-1$
+		}
+		NSFFileUtil.setAttributes(path, attributes);
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.ssh.sftp;
+
+import java.io.IOException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.UserPrincipal;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.sshd.common.util.buffer.Buffer;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.sftp.common.SftpConstants;
+import org.apache.sshd.sftp.server.SftpSubsystem;
+import org.apache.sshd.sftp.server.SftpSubsystemConfigurator;
+import org.openntf.nsffile.core.util.NSFFileUtil;
+import org.openntf.nsffile.ssh.SessionActivity;
+
+/**
+ * {@link SftpSubsystem} that applies the POSIX attributes of a SETSTAT request in one
+ * operation when the target filesystem supports it, rather than one call (and, for an
+ * NSF, one document save) per attribute.
+ * 
+ * <p>Requests and file data are also counted in the {@link SessionActivity} of the
+ * session, and requests from users enabled in {@link SftpTrace} are logged with their
+ * duration.</p>
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class NSFSftpSubsystem extends SftpSubsystem {
+	/** Named to avoid hiding the SLF4J logger of the superclass */
+	private static final Logger traceLog = Logger.getLogger(NSFSftpSubsystem.class.getPackage().getName());
+
+	public NSFSftpSubsystem(ChannelSession channel, SftpSubsystemConfigurator configurator) {
+		super(channel, configurator);
+	}
+	
+	@Override
+	protected void doProcess(Buffer buffer, int length, int type, int id) throws IOException {
+		ServerSession session = getServerSession();
+		SessionActivity.get(session).operation();
+		if(!SftpTrace.instance.isTraced(session.getUsername())) {
+			super.doProcess(buffer, length, type, id);
+			return;
+		}
+		
+		long start = System.nanoTime();
+		Throwable failure = null;
+		try {
+			super.doProcess(buffer, length, type, id);
+		} catch(IOException | RuntimeException e) {
+			failure = e;
+			throw e;
+		} finally {
+			if(traceLog.isLoggable(Level.INFO)) {
+				long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+				traceLog.info(MessageFormat.format("SFTP trace: {0} {1} #{2} took {3}us{4}", //$NON-NLS-1$
+					session.getUsername(), SftpConstants.getCommandMessageName(type), Integer.toString(id),
+					Long.toString(micros), failure == null ? "" : " and failed: " + failure)); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+	}
+	
+	@Override
+	protected int doRead(int id, String handle, long offset, int length, byte[] data, int doff, AtomicReference<Boolean> eof) throws IOException {
+		int read = super.doRead(id, handle, offset, length, data, doff, eof);
+		SessionActivity.get(getServerSession()).read(read);
+		return read;
+	}
+	
+	@Override
+	protected void doWrite(int id, String handle, long offset, int length, byte[] data, int doff, int remaining) throws IOException {
+		super.doWrite(id, handle, offset, length, data, doff, remaining);
+		SessionActivity.get(getServerSession()).written(length);
+	}
+
+	@Override
+	protected void setFileAttributes(Path file, Map<String, ?> attributes, LinkOption... options) throws IOException {
+		if(!NSFFileUtil.isBulkAttributesSupported(file)) {
+			super.setFileAttributes(file, attributes, options);
+			return;
+		}
+		
+		UserPrincipalLookupService lookup = file.getFileSystem().getUserPrincipalLookupService();
+		Map<String, Object> bulk = new HashMap<>();
+		Map<String, Object> remaining = new LinkedHashMap<>();
+		for(Map.Entry<String, ?> attr : attributes.entrySet()) {
+			String name = attr.getKey();
+			Object value = attr.getValue();
+			switch(name) {
+			case "lastModifiedTime": //$NON-NLS-1$
+			case "lastAccessTime": //$NON-NLS-1$
+			case "creationTime": //$NON-NLS-1$
+			case "permissions": //$NON-NLS-1$
+				bulk.put("posix:" + name, value); //$NON-NLS-1$
+				break;
+			case "owner": //$NON-NLS-1$
+				bulk.put("posix:owner", value instanceof UserPrincipal ? value : lookup.lookupPrincipalByName(String.valueOf(value))); //$NON-NLS-1$
+				break;
+			case "group": //$NON-NLS-1$
+				bulk.put("posix:group", value instanceof GroupPrincipal ? value : lookup.lookupPrincipalByGroupName(String.valueOf(value))); //$NON-NLS-1$
+				break;
+			default:
+				// Sizes, numeric IDs, ACLs, and extensions keep the stock handling
+				remaining.put(name, value);
+				break;
+			}
+		}
+		
+		NSFFileUtil.setAttributes(file, bulk, options);
+		if(!remaining.isEmpty()) {
+			super.setFileAttributes(file, remaining, options);
+		}
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.ssh.sftp;
+
+import java.io.IOException;
+
+import org.apache.sshd.common.util.GenericUtils;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+
+/**
+ * {@link SftpSubsystemFactory} that creates {@link NSFSftpSubsystem} instances.
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public class NSFSftpSubsystemFactory extends SftpSubsystemFactory {
+	@Override
+	public Command createSubsystem(ChannelSession channel) throws IOException {
+		NSFSftpSubsystem subsystem = new NSFSftpSubsystem(channel, this);
+		GenericUtils.forEach(getRegisteredListeners(), subsystem::addSftpEventListener);
+		return subsystem;
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.ssh.sftp;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the users whose SFTP requests are logged along with their duration, for
+ * diagnosing slow sessions on a running server.
+ * 
+ * <p>User names are compared case-insensitively against the name that the client
+ * logged in with.</p>
+ * 
+ * @author Jesse Gallagher
+ * @since 2.3.0
+ */
+public enum SftpTrace {
+	instance;
+	
+	private final Set<String> users = ConcurrentHashMap.newKeySet();
+	
+	/**
+	 * @param username the user to start tracing
+	 * @return {@code true} if the user was not already being traced
+	 */
+	public boolean enable(String username) {
+		return users.add(toKey(username));
+	}
+	
+	/**
+	 * @param username the user to stop tracing
+	 * @return {@code true} if the user was being traced
+	 */
+	public boolean disable(String username) {
+		return users.remove(toKey(username));
+	}
+	
+	public boolean isTraced(String username) {
+		return !users.isEmpty() && username != null && users.contains(toKey(username));
+	}
+	
+	/**
+	 * @return an unmodifiable view of the traced user names, in lower case
+	 */
+	public Set<String> getUsers() {
+		return Collections.unmodifiableSet(users);
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private static String toKey(String username) {
+		return username.toLowerCase(Locale.ENGLISH);
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2019-2026 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsffile.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sshd.common.io.IoSession;
+import org.apache.sshd.common.session.Session;
+import org.junit.jupiter.api.Test;
+import org.openntf.nsffile.ssh.SessionAdmissionController;
+
+@SuppressWarnings("nls")
+public class TestSessionAdmissionController {
+	private static final SocketAddress LOCAL = new InetSocketAddress("127.0.0.1", 22);
+	
+	private static SocketAddress remote(String host, int port) {
+		return new InetSocketAddress(host, port);
+	}
+	
+	/**
+	 * Creates a session for the provided remote end that supports only the calls made
+	 * by {@link SessionAdmissionController}.
+	 */
+	private static Session session(SocketAddress remote) {
+		IoSession ioSession = (IoSession)Proxy.newProxyInstance(TestSessionAdmissionController.class.getClassLoader(), new Class<?>[] { IoSession.class }, (proxy, method, args) -> {
+			if("getRemoteAddress".equals(method.getName())) {
+				return remote;
+			}
+			throw new UnsupportedOperationException(method.getName());
+		});
+		Map<Object, Object> attributes = new HashMap<>();
+		return (Session)Proxy.newProxyInstance(TestSessionAdmissionController.class.getClassLoader(), new Class<?>[] { Session.class }, (proxy, method, args) -> {
+			switch(method.getName()) {
+			case "getIoSession":
+				return ioSession;
+			case "setAttribute":
+				return attributes.put(args[0], args[1]);
+			case "getAttribute":
+				return attributes.get(args[0]);
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+	
+	private static Session connect(SessionAdmissionController controller, SocketAddress remote) throws IOException {
+		controller.connectionAccepted(null, LOCAL, remote, LOCAL);
+		Session session = session(remote);
+		controller.sessionCreated(session);
+		return session;
+	}
+	
+	@Test
+	public void testServerLimit() throws Exception {
+		SessionAdmissionController controller = new SessionAdmissionController(2, 10);
+		Session first = connect(controller, remote("10.0.0.1", 1000));
+		connect(controller, remote("10.0.0.2", 1000));
+		assertThrows(IOException.class, () -> connect(controller, remote("10.0.0.3", 1000)));
+		assertEquals(1, controller.getRejectedServer());
+		assertEquals(2, controller.getSessions());
+		
+		controller.sessionClosed(first);
+		connect(controller, remote("10.0.0.3", 1001));
+		assertEquals(2, controller.getSessions());
+	}
+	
+	@Test
+	public void testAddressLimit() throws Exception {
+		SessionAdmissionController controller = new SessionAdmissionController(10, 2);
+		connect(controller, remote("10.0.0.1", 1000));
+		Session second = connect(controller, remote("10.0.0.1", 1001));
+		assertThrows(IOException.class, () -> connect(controller, remote("10.0.0.1", 1002)));
+		assertEquals(1, controller.getRejectedAddress());
+		// The rejected connection must not hold a server slot either
+		assertEquals(2, controller.getSessions());
+		
+		connect(controller, remote("10.0.0.2", 1000));
+		controller.sessionClosed(second);
+		connect(controller, remote("10.0.0.1", 1003));
+		assertEquals(3, controller.getSessions());
+	}
+	
+	@Test
+	public void testAbortReleasesSlot() throws Exception {
+		SessionAdmissionController controller = new SessionAdmissionController(1, 1);
+		SocketAddress remote = remote("10.0.0.1", 1000);
+		controller.connectionAccepted(null, LOCAL, remote, LOCAL);
+		assertEquals(1, controller.getSessions());
+		controller.abortAcceptedConnection(null, LOCAL, remote, LOCAL, new IOException());
+		assertEquals(0, controller.getSessions());
+		
+		// Aborting a connection that was rejected must not release another's slot
+		connect(controller, remote);
+		SocketAddress rejected = remote("10.0.0.1", 1001);
+		assertThrows(IOException.class, () -> controller.connectionAccepted(null, LOCAL, rejected, LOCAL));
+		controller.abortAcceptedConnection(null, LOCAL, rejected, LOCAL, new IOException());
+		assertEquals(1, controller.getSessions());
+	}
+	
+	@Test
+	public void testDrainingCounted() throws Exception {
+		SessionAdmissionController controller = new SessionAdmissionController(10, 10);
+		controller.setDraining(true);
+		assertThrows(IOException.class, () -> connect(controller, remote("10.0.0.1", 1000)));
+		assertThrows(IOException.class, () -> connect(controller, remote("10.0.0.1", 1001)));
+		assertEquals(2, controller.getRejectedDraining());
+		assertEquals(0, controller.getSessions());
+		
+		controller.setDraining(false);
+		connect(controller, remote("10.0.0.1", 1002));
+		assertEquals(1, controller.getSessions());
+	}
+	
+	@Test
+	public void testConcurrentAccepts() throws Exception {
+		int limit = 5;
+		int connections = 32;
+		SessionAdmissionController controller = new SessionAdmissionController(limit, limit);
+		ExecutorService executor = Executors.newFixedThreadPool(connections);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Boolean>> results = new ArrayList<>();
+			for(int i = 0; i < connections; i++) {
+				SocketAddress remote = remote("10.0.0.1", 1000 + i);
+				results.add(executor.submit(() -> {
+					start.await();
+					try {
+						controller.connectionAccepted(null, LOCAL, remote, LOCAL);
+						return true;
+					} catch(IOException e) {
+						return false;
+					}
+				}));
+			}
+			start.countDown();
+			
+			int accepted = 0;
+			for(Future<Boolean> result : results) {
+				if(result.get(10, TimeUnit.SECONDS)) {
+					accepted++;
+				}
+			}
+			assertEquals(limit, accepted);
+			assertEquals(limit, controller.getSessions());
+			assertEquals(connections - limit, controller.getRejectedServer() + controller.getRejectedAddress());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
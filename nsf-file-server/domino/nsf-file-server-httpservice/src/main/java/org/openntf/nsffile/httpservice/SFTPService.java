@@ -64,8 +64,9 @@ public class SFTPService extends HttpService {
 		this.enabled = DominoNSFConfiguration.instance.isEnabled();
 		
 		if(enabled) {
-			// Kick off initialization on a separate thread to not block HTTP startup
-			NotesThreadFactory.executor.submit(() -> {
+			// Kick off initialization on a separate thread to not block HTTP startup. This
+			//   lives as long as the server, so it doesn't use one of the Notes workers
+			Thread serverThread = NotesThreadFactory.instance.newThread(() -> {
 				Path tempDir = null;
 				if(OsUtils.isUNIX()) {
 					try {
@@ -104,6 +105,9 @@ public class SFTPService extends HttpService {
 					}
 				}
 			});
+			serverThread.setName(SshServerAddin.ADDIN_NAME);
+			serverThread.setDaemon(true);
+			serverThread.start();
 		}
 	}
 	